@@ -1,8 +1,91 @@
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+
 plugins {
     alias(libs.plugins.android.application)
     id("com.chaquo.python")
 }
 
+/**
+ * Converts the plain-text discovery wordlist into the sorted, front-coded dictionary read by
+ * WordlistDictionary. Keep the format in sync with WordlistDictionary.encode(): the unit tests get both
+ * the wordlist and this task's output as resources and check that encode() produces the same bytes.
+ */
+abstract class FrontCodeWordlistTask : DefaultTask() {
+    @get:InputFile
+    abstract val wordlist: RegularFileProperty
+
+    @get:Input
+    abstract val blockSize: Property<Int>
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @TaskAction
+    fun convert() {
+        val words = sortedSetOf<ByteArray>({ a, b -> java.util.Arrays.compareUnsigned(a, b) })
+        wordlist.get().asFile.forEachLine(Charsets.UTF_8) { line ->
+            // Same rules as encode(): "#" starts a comment, and trim() only strips characters up to U+0020
+            // like Java's String.trim(), not Kotlin's wider notion of whitespace
+            if (!line.startsWith("#")) {
+                val word = line.trim { it <= ' ' }
+                if (word.isNotEmpty()) {
+                    words.add(word.toByteArray(Charsets.UTF_8))
+                }
+            }
+        }
+
+        val size = blockSize.get()
+        val blocks = ByteArrayOutputStream()
+        val offsets = mutableListOf<Int>()
+        var previous = ByteArray(0)
+        words.forEachIndexed { i, word ->
+            if (i % size == 0) {
+                offsets.add(blocks.size())
+                writeVarint(blocks, word.size)
+                blocks.write(word)
+            } else {
+                var shared = 0
+                val max = minOf(previous.size, word.size)
+                while (shared < max && previous[shared] == word[shared]) {
+                    shared++
+                }
+                writeVarint(blocks, shared)
+                writeVarint(blocks, word.size - shared)
+                blocks.write(word, shared, word.size - shared)
+            }
+            previous = word
+        }
+
+        val output = outputDir.get().file("words.fcd").asFile
+        output.parentFile.mkdirs()
+        DataOutputStream(output.outputStream().buffered()).use { out ->
+            out.write(byteArrayOf('F'.code.toByte(), 'C'.code.toByte(), 'D'.code.toByte(), 1))
+            out.writeInt(words.size)
+            out.writeInt(size)
+            out.writeInt(offsets.size)
+            offsets.forEach { out.writeInt(it) }
+            blocks.writeTo(out)
+        }
+        logger.lifecycle("Front-coded ${words.size} words into ${output.length()} bytes")
+    }
+
+    private fun writeVarint(out: ByteArrayOutputStream, value: Int) {
+        var v = value
+        while (v and 0x7F.inv() != 0) {
+            out.write((v and 0x7F) or 0x80)
+            v = v ushr 7
+        }
+        out.write(v)
+    }
+}
+
+val frontCodeWordlist = tasks.register<FrontCodeWordlistTask>("frontCodeWordlist") {
+    wordlist.set(layout.projectDirectory.file("src/main/wordlists/words.txt"))
+    blockSize.set(16)
+    outputDir.set(layout.buildDirectory.dir("generated/wordlist/assets"))
+}
+
 android {
     namespace = "com.example.bullet"
     compileSdk = 34
@@ -41,6 +124,27 @@ android {
             java.srcDir("src/main/python")
         }
     }
+
+    // Local unit tests exercise engine classes that log through android.util.Log
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+    }
+
+    // The wordlist dictionary is memory-mapped, which only works for uncompressed assets
+    androidResources {
+        noCompress += "fcd"
+    }
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(frontCodeWordlist, FrontCodeWordlistTask::outputDir)
+        // WordlistDictionaryTest compares the task's output with WordlistDictionary.encode() of the same wordlist
+        variant.unitTest?.sources?.resources?.let { resources ->
+            resources.addGeneratedSourceDirectory(frontCodeWordlist, FrontCodeWordlistTask::outputDir)
+            resources.addStaticSourceDirectory("src/main/wordlists")
+        }
+    }
 }
 
 chaquopy {
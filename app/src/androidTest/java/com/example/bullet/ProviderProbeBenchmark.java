@@ -0,0 +1,86 @@
+package com.example.bullet;
+
+import android.content.ContentProviderClient;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares probe throughput against {@link StandInProvider}, which runs in its own process like a real
+ * target, when acquiring a client per probe and when sharing one client through {@link ProviderClientHolder}.
+ * Results are logged under the "ProviderProbeBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProviderProbeBenchmark {
+
+    private static final String TAG = "ProviderProbeBenchmark";
+    private static final int PROBES = 20000;
+
+    @Test
+    public void sharedClientIsFasterThanClientPerProbe() throws Exception {
+        ContentResolver resolver = InstrumentationRegistry.getInstrumentation().getTargetContext().getContentResolver();
+
+        // Warm up both paths so class loading and provider start-up are not measured
+        clientPerProbe(resolver, 500);
+        sharedClient(resolver, 500);
+
+        double before = clientPerProbe(resolver, PROBES);
+        double after = sharedClient(resolver, PROBES);
+
+        Log.i(TAG, String.format(Locale.ROOT, "client per probe: %.0f probes/s, shared client: %.0f probes/s (%.2fx)",
+                before, after, after / before));
+        // A shared client saves the acquire and release binder calls of every probe
+        assertTrue(String.format(Locale.ROOT, "shared client: %.0f probes/s, client per probe: %.0f probes/s", after, before),
+                after > before);
+    }
+
+    private double clientPerProbe(ContentResolver resolver, int probes) throws Exception {
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < probes; i++) {
+            Uri uri = Uri.parse(pathFor(i));
+            try (ContentProviderClient client = resolver.acquireUnstableContentProviderClient(uri)) {
+                if (client != null) {
+                    Cursor cursor = client.query(uri, null, null, null, null);
+                    if (cursor != null) {
+                        cursor.close();
+                    }
+                }
+            }
+        }
+        return probesPerSecond(probes, start);
+    }
+
+    private double sharedClient(ContentResolver resolver, int probes) throws Exception {
+        long start = SystemClock.elapsedRealtimeNanos();
+        try (ProviderClientHolder clients = new ProviderClientHolder(resolver, StandInProvider.AUTHORITY)) {
+            for (int i = 0; i < probes; i++) {
+                Cursor cursor = clients.query(Uri.parse(pathFor(i)));
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+        return probesPerSecond(probes, start);
+    }
+
+    private static String pathFor(int i) {
+        return "content://" + StandInProvider.AUTHORITY + "/" + (i % 10 == 0 ? "users" : "word" + i);
+    }
+
+    private static double probesPerSecond(int probes, long startNanos) {
+        double seconds = (SystemClock.elapsedRealtimeNanos() - startNanos) / 1e9;
+        return probes / seconds;
+    }
+}
@@ -1,24 +1,37 @@
 package com.example.bullet;
 
+import android.app.Activity;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
+import android.text.InputType;
+import android.text.TextUtils;
 import android.util.Log;
 import android.widget.EditText;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * The Activities class provides methods to prompt the user for action and category,
- * and to launch activities with or without these parameters.
+ * The Activities class provides methods to prompt the user for action, category and data,
+ * and to launch activities with or without these parameters, one at a time, in a sweep or with
+ * generated deep links.
  */
 public class Activities {
 
+    // Number of ranked results shown when a sweep is over, the report file has all of them
+    private static final int MAX_SHOWN_RESULTS = 50;
+
     /**
-     * Prompts the user to enter action and category for launching an activity.
-     * This method displays a dialog where the user can input an action and category
+     * Prompts the user to enter action, category and data for launching an activity.
+     * This method displays a dialog where the user can input an action, category and data URI
      * to be associated with the activity to be launched. If the user confirms the
-     * input, the activity is launched with the specified action and category.
+     * input, the activity is launched with the specified action, category and data.
      *
      * @param context The context from which this method is called.
      * @param packageName The package name of the app containing the activity to launch.
@@ -37,11 +50,16 @@ public class Activities {
         EditText inputCategory = new EditText(context);
         inputCategory.setHint("Enter category (e.g., DEFAULT)");
 
+        // Input field for data URI
+        EditText inputData = new EditText(context);
+        inputData.setHint("Enter data URI (optional)");
+
         // Arranging the input fields in a vertical layout
         android.widget.LinearLayout layout = new android.widget.LinearLayout(context);
         layout.setOrientation(android.widget.LinearLayout.VERTICAL);
         layout.addView(inputAction);
         layout.addView(inputCategory);
+        layout.addView(inputData);
 
         builder.setView(layout);
 
@@ -49,8 +67,9 @@ public class Activities {
         builder.setPositiveButton("OK", (dialog, which) -> {
             String action = inputAction.getText().toString().trim();
             String category = inputCategory.getText().toString().trim();
+            String data = inputData.getText().toString().trim();
             if (type.equals("activity")) {
-                launchActivityWithActionAndCategory(context, packageName, componentName, action, category);
+                launchActivityWithActionAndCategory(context, packageName, componentName, action, category, data);
             }
         });
 
@@ -76,6 +95,7 @@ public class Activities {
             context.startActivity(intent);
         } catch (Exception e) {
             Log.e("Activities", "Failed to launch activity: " + activityName, e);
+            Toast.makeText(context, "Failed to launch activity: " + e.getClass().getSimpleName(), Toast.LENGTH_SHORT).show();
         }
     }
 
@@ -89,33 +109,244 @@ public class Activities {
      * @param componentName The name of the component to be launched.
      */
     public void showActionOptions(Context context, String packageName, String componentName) {
-        String[] options = {"Launch without Action and Category", "Launch with Action and Category"};
+        String[] options = {"Launch without Action and Category", "Launch with Action and Category",
+                "Sweep All Exported Activities", "Fuzz Deep Links"};
         new AlertDialog.Builder(context)
                 .setTitle("Launch Options")
                 .setItems(options, (dialog, which) -> {
                     if (which == 0) {
                         // Launch activity without action and category
                         launchActivity(context, packageName, componentName);
-                    } else {
+                    } else if (which == 1) {
                         // Prompt user for action and category before launching the activity
                         promptForActionAndCategory(context, packageName, componentName, "activity");
+                    } else if (which == 2) {
+                        // Launch every exported activity of the package one after another
+                        promptForSweep((Activity) context, packageName);
+                    } else {
+                        // Open links generated from the activity's intent filters
+                        promptForDeepLinks((Activity) context, packageName, componentName);
                     }
                 })
                 .show();
     }
 
     /**
-     * Launches an activity with specified action and category.
+     * Prompts the user for the dwell time and the actions, categories and data URIs to sweep the exported
+     * activities of a package with, and starts the sweep.
+     *
+     * @param host        The activity the launches are made from.
+     * @param packageName The package name of the app whose activities are swept.
+     */
+    public void promptForSweep(Activity host, String packageName) {
+        List<IpcComponent> exported = new ArrayList<>();
+        for (IpcComponent activity : PackageInventory.getInstance(host).getIndex(packageName).ofKind(IpcComponent.Kind.ACTIVITY)) {
+            if (activity.isExported()) {
+                exported.add(activity);
+            }
+        }
+        if (exported.isEmpty()) {
+            Toast.makeText(host, "No exported activities.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        EditText inputDwell = new EditText(host);
+        inputDwell.setHint("Dwell time in ms (default " + ActivitySweep.DEFAULT_DWELL_MS + ")");
+        inputDwell.setInputType(InputType.TYPE_CLASS_NUMBER);
+
+        EditText inputActions = new EditText(host);
+        inputActions.setHint("Actions, comma separated (optional)");
+
+        EditText inputCategories = new EditText(host);
+        inputCategories.setHint("Categories, comma separated (optional)");
+
+        EditText inputData = new EditText(host);
+        inputData.setHint("Data URIs, comma separated (optional)");
+
+        android.widget.LinearLayout layout = new android.widget.LinearLayout(host);
+        layout.setOrientation(android.widget.LinearLayout.VERTICAL);
+        layout.addView(inputDwell);
+        layout.addView(inputActions);
+        layout.addView(inputCategories);
+        layout.addView(inputData);
+
+        new AlertDialog.Builder(host)
+                .setTitle("Sweep " + exported.size() + " Activities")
+                .setView(layout)
+                .setPositiveButton("Start", (dialog, which) -> {
+                    LaunchMonitor monitor = new LaunchMonitor(host);
+                    ActivitySweep sweep = new ActivitySweep(host, monitor, packageName, exported,
+                            Services.splitList(inputActions.getText().toString()),
+                            Services.splitList(inputCategories.getText().toString()),
+                            Services.splitList(inputData.getText().toString()));
+                    String dwell = inputDwell.getText().toString().trim();
+                    try {
+                        if (!dwell.isEmpty()) {
+                            sweep.setDwellMillis(Long.parseLong(dwell));
+                        }
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(host, "Invalid dwell time, using the default.", Toast.LENGTH_SHORT).show();
+                    }
+                    startSweep(host, monitor, sweep);
+                })
+                .setNegativeButton("Cancel", (dialog, which) -> dialog.cancel())
+                .show();
+    }
+
+    /**
+     * Runs a sweep, showing its progress in a dialog that can stop it and the ranked results at the end.
+     *
+     * @param host    The activity the launches are made from.
+     * @param monitor The monitor making the launches.
+     * @param sweep   The sweep to run.
+     */
+    private void startSweep(Activity host, LaunchMonitor monitor, ActivitySweep sweep) {
+        AlertDialog progressDialog = new AlertDialog.Builder(host)
+                .setTitle("Sweeping Activities")
+                .setMessage("Launched 0 of " + sweep.size())
+                .setCancelable(false)
+                .setNegativeButton("Stop", (dialog, which) -> sweep.cancel())
+                .show();
+
+        sweep.start(new ActivitySweep.Listener() {
+            @Override
+            public void onLaunchFinished(int done, int total, LaunchMonitor.Result result) {
+                progressDialog.setMessage("Launched " + done + " of " + total + "\nLast: " + result);
+            }
+
+            @Override
+            public void onSweepFinished(List<LaunchMonitor.Result> ranked, File report) {
+                monitor.release();
+                progressDialog.dismiss();
+                if (host.isFinishing() || host.isDestroyed()) {
+                    return;
+                }
+                List<LaunchMonitor.Result> shown = ranked.subList(0, Math.min(ranked.size(), MAX_SHOWN_RESULTS));
+                new AlertDialog.Builder(host)
+                        .setTitle("Sweep Results")
+                        .setMessage(TextUtils.join("\n\n", shown) + "\n\n"
+                                + (report != null ? "Full report: " + report.getName() : "The full report could not be written"))
+                        .setPositiveButton("OK", (dialog, which) -> dialog.dismiss())
+                        .show();
+            }
+        });
+    }
+
+    /**
+     * Prompts the user for the rate, the number of links and the dwell time, and opens links generated
+     * from the intent filters of an activity in it.
+     *
+     * @param host          The activity the launches are made from.
+     * @param packageName   The package name of the app containing the activity.
+     * @param componentName The name of the activity.
+     */
+    public void promptForDeepLinks(Activity host, String packageName, String componentName) {
+        IpcComponent activity = PackageInventory.getInstance(host).getIndex(packageName).get(componentName);
+        DeepLinkGenerator generator = activity != null
+                ? DeepLinkGenerator.withAllMutations(activity.getFilters()) : null;
+        if (generator == null || generator.size() == 0) {
+            Toast.makeText(host, "The activity declares no deep links.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        EditText inputRate = new EditText(host);
+        inputRate.setHint("Links per second (default " + (int) DeepLinkLauncher.DEFAULT_RATE + ")");
+        inputRate.setInputType(InputType.TYPE_CLASS_NUMBER);
+
+        EditText inputMax = new EditText(host);
+        inputMax.setHint("Maximum links (default " + DeepLinkLauncher.DEFAULT_MAX_LAUNCHES + ")");
+        inputMax.setInputType(InputType.TYPE_CLASS_NUMBER);
+
+        EditText inputDwell = new EditText(host);
+        inputDwell.setHint("Dwell time in ms (default " + ActivitySweep.DEFAULT_DWELL_MS + ")");
+        inputDwell.setInputType(InputType.TYPE_CLASS_NUMBER);
+
+        android.widget.LinearLayout layout = new android.widget.LinearLayout(host);
+        layout.setOrientation(android.widget.LinearLayout.VERTICAL);
+        layout.addView(inputRate);
+        layout.addView(inputMax);
+        layout.addView(inputDwell);
+
+        new AlertDialog.Builder(host)
+                .setTitle("Fuzz " + generator.size() + " Deep Links")
+                .setView(layout)
+                .setPositiveButton("Start", (dialog, which) -> {
+                    LaunchMonitor monitor = new LaunchMonitor(host);
+                    DeepLinkLauncher launcher = new DeepLinkLauncher(host, monitor, activity, generator);
+                    String rate = inputRate.getText().toString().trim();
+                    String max = inputMax.getText().toString().trim();
+                    String dwell = inputDwell.getText().toString().trim();
+                    try {
+                        if (!rate.isEmpty() && Integer.parseInt(rate) > 0) {
+                            launcher.setRate(Integer.parseInt(rate));
+                        }
+                        if (!max.isEmpty() && Integer.parseInt(max) > 0) {
+                            launcher.setMaxLaunches(Integer.parseInt(max));
+                        }
+                        if (!dwell.isEmpty()) {
+                            launcher.setDwellMillis(Long.parseLong(dwell));
+                        }
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(host, "Invalid number, using the defaults.", Toast.LENGTH_SHORT).show();
+                    }
+                    startDeepLinks(host, monitor, launcher);
+                })
+                .setNegativeButton("Cancel", (dialog, which) -> dialog.cancel())
+                .show();
+    }
+
+    /**
+     * Opens deep links, showing the progress in a dialog that can stop it and the ranked results at the end.
+     *
+     * @param host     The activity the launches are made from.
+     * @param monitor  The monitor making the launches.
+     * @param launcher The launcher to run.
+     */
+    private void startDeepLinks(Activity host, LaunchMonitor monitor, DeepLinkLauncher launcher) {
+        AlertDialog progressDialog = new AlertDialog.Builder(host)
+                .setTitle("Opening Deep Links")
+                .setMessage("Opened 0 of " + launcher.size())
+                .setCancelable(false)
+                .setNegativeButton("Stop", (dialog, which) -> launcher.cancel())
+                .show();
+
+        launcher.start(new DeepLinkLauncher.Listener() {
+            @Override
+            public void onLaunchFinished(int done, int total, DeepLinkLauncher.Result result) {
+                progressDialog.setMessage("Opened " + done + " of " + total + "\nLast: " + result);
+            }
+
+            @Override
+            public void onFinished(List<DeepLinkLauncher.Result> ranked, File report) {
+                monitor.release();
+                progressDialog.dismiss();
+                if (host.isFinishing() || host.isDestroyed()) {
+                    return;
+                }
+                List<DeepLinkLauncher.Result> shown = ranked.subList(0, Math.min(ranked.size(), MAX_SHOWN_RESULTS));
+                new AlertDialog.Builder(host)
+                        .setTitle("Deep Link Results")
+                        .setMessage(TextUtils.join("\n\n", shown) + "\n\n"
+                                + (report != null ? "Full report: " + report.getName() : "The full report could not be written"))
+                        .setPositiveButton("OK", (dialog, which) -> dialog.dismiss())
+                        .show();
+            }
+        });
+    }
+
+    /**
+     * Launches an activity with specified action, category and data.
      * This method starts an activity by its component name, setting the specified
-     * action and category to the intent before launching the activity.
+     * action, category and data URI to the intent before launching the activity.
      *
      * @param context The context from which this method is called.
      * @param packageName The package name of the app containing the activity to launch.
      * @param activityName The name of the activity to be launched.
      * @param action The action to be set for the intent.
      * @param category The category to be added to the intent.
+     * @param data The data URI to be set for the intent.
      */
-    public void launchActivityWithActionAndCategory(Context context, String packageName, String activityName, String action, String category) {
+    public void launchActivityWithActionAndCategory(Context context, String packageName, String activityName, String action, String category, String data) {
         try {
             Intent intent = new Intent();
             intent.setComponent(new ComponentName(packageName, activityName));
@@ -125,10 +356,14 @@ public class Activities {
             if (!category.isEmpty()) {
                 intent.addCategory(category);
             }
+            if (!data.isEmpty()) {
+                intent.setData(Uri.parse(data));
+            }
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
             context.startActivity(intent);
         } catch (Exception e) {
             Log.e("Activities", "Failed to launch activity with action and category: " + activityName, e);
+            Toast.makeText(context, "Failed to launch activity: " + e.getClass().getSimpleName(), Toast.LENGTH_SHORT).show();
         }
     }
 }
@@ -0,0 +1,168 @@
+package com.example.bullet;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The ActivitySweep class launches every exported activity of a package back to back, optionally with
+ * every combination of the given actions, categories and data URIs, using a {@link LaunchMonitor}. When the
+ * sweep is over, the launches are ranked by how suspicious they are and written to a {@link LaunchReport}.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public class ActivitySweep {
+
+    public static final long DEFAULT_DWELL_MS = 1_500;
+
+    /**
+     * Receives the progress and the ranked results of a sweep.
+     */
+    public interface Listener {
+        void onLaunchFinished(int done, int total, LaunchMonitor.Result result);
+
+        /**
+         * @param ranked The results, most suspicious first.
+         * @param report The written report, or null if it could not be written.
+         */
+        void onSweepFinished(List<LaunchMonitor.Result> ranked, File report);
+    }
+
+    /**
+     * Orders the results most suspicious first: activities that went away by themselves (crashes), then
+     * ones that never showed up (hangs), then the rest by launch time, slowest first. Rejected launches
+     * come last, they did not reach the target at all.
+     */
+    static final Comparator<LaunchMonitor.Result> RANKING = Comparator
+            .comparingInt((LaunchMonitor.Result result) -> result.getOutcome().ordinal())
+            .thenComparing(Comparator.comparingLong(LaunchMonitor.Result::getLaunchMillis).reversed());
+
+    private final Context context;
+    private final LaunchMonitor monitor;
+    private final String packageName;
+    private final List<Intent> intents = new ArrayList<>();
+    private final List<String> descriptions = new ArrayList<>();
+    private final List<LaunchMonitor.Result> results = new ArrayList<>();
+    private long dwellMillis = DEFAULT_DWELL_MS;
+    private Listener listener;
+    private int next = 0;
+    private boolean cancelled = false;
+
+    /**
+     * @param context     Any context of the application.
+     * @param monitor     The monitor making the launches.
+     * @param packageName The package of the activities.
+     * @param activities  The activities to launch.
+     * @param actions     The actions to launch every activity with, besides none.
+     * @param categories  The categories to launch every activity with, besides none.
+     * @param dataUris    The data URIs to launch every activity with, besides none.
+     */
+    public ActivitySweep(Context context, LaunchMonitor monitor, String packageName, List<IpcComponent> activities,
+                         List<String> actions, List<String> categories, List<String> dataUris) {
+        this.context = context.getApplicationContext();
+        this.monitor = monitor;
+        this.packageName = packageName;
+
+        List<String> actionChoices = withNone(actions);
+        List<String> categoryChoices = withNone(categories);
+        List<String> dataChoices = withNone(dataUris);
+        for (IpcComponent activity : activities) {
+            for (String action : actionChoices) {
+                for (String category : categoryChoices) {
+                    for (String data : dataChoices) {
+                        Intent intent = new Intent();
+                        intent.setComponent(new ComponentName(activity.getPackageName(), activity.getName()));
+                        if (action != null) {
+                            intent.setAction(action);
+                        }
+                        if (category != null) {
+                            intent.addCategory(category);
+                        }
+                        if (data != null) {
+                            intent.setData(Uri.parse(data));
+                        }
+                        intents.add(intent);
+                        descriptions.add("action=" + (action != null ? action : "-") + " category="
+                                + (category != null ? category : "-") + " data=" + (data != null ? data : "-"));
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<String> withNone(List<String> values) {
+        List<String> choices = new ArrayList<>();
+        choices.add(null);
+        choices.addAll(values);
+        return choices;
+    }
+
+    /**
+     * @param dwellMillis How long every activity is left open.
+     */
+    public void setDwellMillis(long dwellMillis) {
+        this.dwellMillis = dwellMillis;
+    }
+
+    /**
+     * @return The number of launches of the sweep.
+     */
+    public int size() {
+        return intents.size();
+    }
+
+    /**
+     * Starts the sweep.
+     *
+     * @param listener Receives the progress and the results.
+     */
+    public void start(Listener listener) {
+        this.listener = listener;
+        launchNext();
+    }
+
+    /**
+     * Stops the sweep after the current launch; the results so far are still reported.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void launchNext() {
+        if (cancelled || next >= intents.size()) {
+            finishSweep();
+            return;
+        }
+        int index = next++;
+        monitor.launch(intents.get(index), descriptions.get(index), dwellMillis, result -> {
+            results.add(result);
+            listener.onLaunchFinished(results.size(), intents.size(), result);
+            launchNext();
+        });
+    }
+
+    private void finishSweep() {
+        List<LaunchMonitor.Result> ranked = rank(results);
+        LaunchReport.write(context, packageName + "_activities", ranked,
+                report -> listener.onSweepFinished(ranked, report));
+    }
+
+    /**
+     * Ranks results most suspicious first, see {@link #RANKING}.
+     *
+     * @param results The results of the launches.
+     * @return The ranked results.
+     */
+    static List<LaunchMonitor.Result> rank(List<LaunchMonitor.Result> results) {
+        List<LaunchMonitor.Result> ranked = new ArrayList<>(results);
+        Collections.sort(ranked, RANKING);
+        return ranked;
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.bullet;
+
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The AdaptiveConcurrencyController class limits how many queries are in flight against a target provider,
+ * and how many are started per second, using additive increase / multiplicative decrease (AIMD):
+ * <ul>
+ *     <li>every window of {@code limit} queries answered at a stable latency raises the limit by one,</li>
+ *     <li>a latency spike or a failed binder call ({@code RemoteException}, {@code DeadObjectException})
+ *     halves the limit,</li>
+ *     <li>a provider restart drops the limit to its minimum and caps the query rate at half the rate
+ *     observed before the restart.</li>
+ * </ul>
+ * After a decrease, further decreases are ignored until the queries in flight at that time have been
+ * answered, so a single overload is only punished once. A rate cap grows back by 10% per stable window.
+ * <p>
+ * All methods are safe to call from several probe workers at the same time.
+ */
+public class AdaptiveConcurrencyController {
+
+    private static final String TAG = "AdaptiveConcurrency";
+
+    // A query this much slower than the usual latency counts as a spike
+    private static final double SPIKE_FACTOR = 3.0;
+
+    // Queries faster than this never count as spikes, however fast the usual latency is
+    private static final long MIN_SPIKE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    // Weight of a new sample in the usual latency
+    private static final double BASELINE_ALPHA = 0.05;
+
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double RATE_INCREASE_FACTOR = 1.1;
+    private static final double MIN_RATE = 1.0;
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitAvailable = lock.newCondition();
+
+    private int limit;
+    private int inFlight = 0;
+    private int stableInWindow = 0;
+    private int ignoreDecreasesFor = 0;
+    private double baselineNanos = 0;
+    private double rateLimit = Double.POSITIVE_INFINITY;
+    private long nextStartNanos = 0;
+    private long rateWindowStart = System.nanoTime();
+    private int rateWindowCount = 0;
+    private double observedRate = 0;
+    private long decreases = 0;
+    private boolean shutdown = false;
+
+    /**
+     * @param minLimit     The lowest number of queries kept in flight, at least 1.
+     * @param maxLimit     The highest number of queries kept in flight.
+     * @param initialLimit The number of queries in flight at the start.
+     */
+    public AdaptiveConcurrencyController(int minLimit, int maxLimit, int initialLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Blocks until another query may be started, i.e. fewer than {@code limit} queries are in flight and
+     * the rate cap allows it. Every successful call must be followed by {@link #release(long, boolean)}.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit && !shutdown) {
+                permitAvailable.await();
+            }
+            inFlight++;
+            waitNanos = reserveStart();
+        } finally {
+            lock.unlock();
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Reports that a query finished and adapts the limits to how it went.
+     *
+     * @param latencyNanos How long the query took.
+     * @param failed       True if the binder call failed, e.g. with a {@code RemoteException}.
+     */
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            inFlight--;
+            countForRate();
+            boolean spike = baselineNanos > 0 && latencyNanos > MIN_SPIKE_NANOS && latencyNanos > baselineNanos * SPIKE_FACTOR;
+            boolean coolingDown = ignoreDecreasesFor > 0;
+            if (coolingDown) {
+                ignoreDecreasesFor--;
+            }
+            if (failed || spike) {
+                stableInWindow = 0;
+                if (!coolingDown) {
+                    decrease(failed ? "binder failure" : "latency spike of " + latencyNanos / 1_000_000 + " ms");
+                }
+            } else {
+                baselineNanos = baselineNanos == 0 ? latencyNanos : baselineNanos + BASELINE_ALPHA * (latencyNanos - baselineNanos);
+                if (++stableInWindow >= limit) {
+                    stableInWindow = 0;
+                    if (limit < maxLimit) {
+                        limit++;
+                    }
+                    if (rateLimit != Double.POSITIVE_INFINITY) {
+                        rateLimit *= RATE_INCREASE_FACTOR;
+                    }
+                }
+            }
+            permitAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reports that the provider process died and was restarted. Drops the limit to its minimum and caps
+     * the query rate at half the rate that preceded the restart.
+     */
+    public void onProviderDeath() {
+        lock.lock();
+        try {
+            limit = minLimit;
+            stableInWindow = 0;
+            ignoreDecreasesFor = inFlight;
+            double base = observedRate > 0 ? observedRate : currentWindowRate();
+            if (base != Double.POSITIVE_INFINITY) {
+                rateLimit = Math.max(MIN_RATE, base * DECREASE_FACTOR);
+            }
+            decreases++;
+            Log.w(TAG, "Provider died, limit " + limit + ", rate cap " + formatRate(rateLimit));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets every waiting and future caller through, e.g. when the scan is stopping.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            rateLimit = Double.POSITIVE_INFINITY;
+            permitAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The current maximum number of queries in flight.
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The current maximum number of queries started per second, infinite if the rate is not capped.
+     */
+    public double getRateLimit() {
+        lock.lock();
+        try {
+            return rateLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How many times the limits were decreased.
+     */
+    public long getDecreases() {
+        lock.lock();
+        try {
+            return decreases;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(String reason) {
+        limit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+        ignoreDecreasesFor = inFlight;
+        decreases++;
+        Log.i(TAG, "Backing off after " + reason + ", limit " + limit);
+    }
+
+    /**
+     * Reserves the start time of a query under the rate cap.
+     *
+     * @return How long the caller has to wait before starting the query.
+     */
+    private long reserveStart() {
+        if (rateLimit == Double.POSITIVE_INFINITY) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long start = Math.max(now, nextStartNanos);
+        nextStartNanos = start + (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit);
+        return start - now;
+    }
+
+    private void countForRate() {
+        rateWindowCount++;
+        long now = System.nanoTime();
+        long elapsed = now - rateWindowStart;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            observedRate = rateWindowCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            rateWindowStart = now;
+            rateWindowCount = 0;
+        }
+    }
+
+    private double currentWindowRate() {
+        long elapsed = System.nanoTime() - rateWindowStart;
+        return rateWindowCount == 0 || elapsed <= 0 ? rateLimit : rateWindowCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private static String formatRate(double rate) {
+        return rate == Double.POSITIVE_INFINITY ? "none" : String.format(Locale.ROOT, "%.1f/s", rate);
+    }
+}
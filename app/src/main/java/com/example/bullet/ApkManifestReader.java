@@ -0,0 +1,397 @@
+package com.example.bullet;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The ApkManifestReader class reads the components and intent filters an APK declares, which the
+ * PackageManager does not report. Only the end of the APK, its central directory and the compressed
+ * AndroidManifest.xml are read, so the size of the APK does not matter; the manifest is then decoded
+ * with an {@link AxmlParser}.
+ * <p>
+ * ZIP64 archives are not supported; APKs are never large enough to need them.
+ */
+public final class ApkManifestReader {
+
+    private static final String MANIFEST_NAME = "AndroidManifest.xml";
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    // Manifests of even the largest apps are a few MB, anything bigger is a damaged or hostile APK
+    private static final int MAX_MANIFEST_SIZE = 16 * 1024 * 1024;
+
+    // Framework attribute ids, from android.R.attr
+    private static final int ATTR_NAME = 0x01010003;
+    private static final int ATTR_PERMISSION = 0x01010006;
+    private static final int ATTR_READ_PERMISSION = 0x01010007;
+    private static final int ATTR_WRITE_PERMISSION = 0x01010008;
+    private static final int ATTR_EXPORTED = 0x01010010;
+    private static final int ATTR_AUTHORITIES = 0x01010018;
+    private static final int ATTR_MIME_TYPE = 0x01010026;
+    private static final int ATTR_SCHEME = 0x01010027;
+    private static final int ATTR_HOST = 0x01010028;
+    private static final int ATTR_PORT = 0x01010029;
+    private static final int ATTR_PATH = 0x0101002a;
+    private static final int ATTR_PATH_PREFIX = 0x0101002b;
+    private static final int ATTR_PATH_PATTERN = 0x0101002c;
+    private static final int ATTR_AUTO_VERIFY = 0x010104ee;
+
+    private ApkManifestReader() {
+    }
+
+    /**
+     * Reads the components of an installed package from its base APK.
+     *
+     * @param packageManager  The package manager, used to resolve references to the package's resources.
+     * @param applicationInfo The package, whose {@code sourceDir} is read.
+     * @return The components declared by the manifest, with their intent filters.
+     * @throws IOException If the APK cannot be read or its manifest is damaged.
+     */
+    public static List<IpcComponent> readComponents(PackageManager packageManager, ApplicationInfo applicationInfo)
+            throws IOException {
+        return readComponents(new File(applicationInfo.sourceDir), resolverFor(packageManager, applicationInfo));
+    }
+
+    /**
+     * Reads the components declared by the manifest of an APK.
+     *
+     * @param apk      The APK.
+     * @param resolver Resolves references in attribute values, e.g. hosts kept in string resources. May be null.
+     * @return The components declared by the manifest, with their intent filters.
+     * @throws IOException If the APK cannot be read or its manifest is damaged.
+     */
+    public static List<IpcComponent> readComponents(File apk, AxmlParser.ReferenceResolver resolver) throws IOException {
+        ComponentCollector collector = new ComponentCollector();
+        new AxmlParser(readManifest(apk), resolver).parse(collector);
+        return collector.components;
+    }
+
+    /**
+     * Returns a resolver that looks references up in the resources of a package. The resources are only
+     * loaded once a reference is met, most manifests have none in their intent filters.
+     */
+    static AxmlParser.ReferenceResolver resolverFor(PackageManager packageManager, ApplicationInfo applicationInfo) {
+        return new AxmlParser.ReferenceResolver() {
+            private Resources resources;
+
+            @Override
+            public String resolve(int resourceId) {
+                try {
+                    if (resources == null) {
+                        resources = packageManager.getResourcesForApplication(applicationInfo);
+                    }
+                    return resources.getString(resourceId);
+                } catch (PackageManager.NameNotFoundException | Resources.NotFoundException e) {
+                    return null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads the binary AndroidManifest.xml out of an APK, going through the ZIP central directory.
+     *
+     * @param apk The APK.
+     * @return The uncompressed manifest.
+     * @throws IOException If the APK cannot be read, is not a ZIP archive or has no manifest.
+     */
+    static ByteBuffer readManifest(File apk) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(apk, "r"); FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+
+            // The end of central directory record is followed by a comment of up to 64 KB
+            int tailSize = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT_SIZE);
+            ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, tail, size - tailSize);
+            int eocd = -1;
+            for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == EOCD_SIGNATURE) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                throw new IOException(apk + " is not a ZIP archive");
+            }
+            long directorySize = tail.getInt(eocd + 12) & 0xffffffffL;
+            long directoryOffset = tail.getInt(eocd + 16) & 0xffffffffL;
+            if (directoryOffset == 0xffffffffL || directorySize == 0xffffffffL) {
+                throw new IOException(apk + " is a ZIP64 archive, which is not supported");
+            }
+            if (directoryOffset + directorySize > size) {
+                throw new IOException(apk + " has a damaged central directory");
+            }
+
+            MappedByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, directoryOffset, directorySize);
+            directory.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] manifestName = MANIFEST_NAME.getBytes(StandardCharsets.UTF_8);
+            int position = 0;
+            while (position + CENTRAL_HEADER_SIZE <= directorySize) {
+                if (directory.getInt(position) != CENTRAL_SIGNATURE) {
+                    throw new IOException(apk + " has a damaged central directory");
+                }
+                int nameLength = directory.getShort(position + 28) & 0xffff;
+                int extraLength = directory.getShort(position + 30) & 0xffff;
+                int commentLength = directory.getShort(position + 32) & 0xffff;
+                if (position + CENTRAL_HEADER_SIZE + nameLength > directorySize) {
+                    throw new IOException(apk + " has a damaged central directory");
+                }
+                if (nameEquals(directory, position + CENTRAL_HEADER_SIZE, nameLength, manifestName)) {
+                    int method = directory.getShort(position + 10) & 0xffff;
+                    long compressedSize = directory.getInt(position + 20) & 0xffffffffL;
+                    long uncompressedSize = directory.getInt(position + 24) & 0xffffffffL;
+                    long localOffset = directory.getInt(position + 42) & 0xffffffffL;
+                    return readEntry(channel, method, compressedSize, uncompressedSize, localOffset);
+                }
+                position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+            }
+            throw new IOException(apk + " has no " + MANIFEST_NAME);
+        }
+    }
+
+    private static ByteBuffer readEntry(FileChannel channel, int method, long compressedSize, long uncompressedSize,
+                                        long localOffset) throws IOException {
+        if (uncompressedSize > MAX_MANIFEST_SIZE || compressedSize > MAX_MANIFEST_SIZE) {
+            throw new IOException(MANIFEST_NAME + " is too large: " + uncompressedSize + " bytes");
+        }
+        // The local header repeats the name, but its extra field may differ from the central directory's
+        ByteBuffer local = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, local, localOffset);
+        if (local.getInt(0) != LOCAL_SIGNATURE) {
+            throw new IOException("Damaged local header of " + MANIFEST_NAME);
+        }
+        long dataOffset = localOffset + LOCAL_HEADER_SIZE + (local.getShort(26) & 0xffff) + (local.getShort(28) & 0xffff);
+
+        ByteBuffer data = ByteBuffer.allocate((int) compressedSize);
+        readFully(channel, data, dataOffset);
+        if (method == METHOD_STORED) {
+            return data;
+        }
+        if (method != METHOD_DEFLATED) {
+            throw new IOException(MANIFEST_NAME + " uses unsupported compression method " + method);
+        }
+        byte[] manifest = new byte[(int) uncompressedSize];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data.array(), 0, data.limit());
+            int length = 0;
+            while (length < manifest.length && !inflater.finished()) {
+                int inflated = inflater.inflate(manifest, length, manifest.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != manifest.length) {
+                throw new IOException(MANIFEST_NAME + " is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged " + MANIFEST_NAME, e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(manifest);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static boolean nameEquals(ByteBuffer buffer, int position, int length, byte[] name) {
+        if (length != name.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(position + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the components while the manifest is parsed.
+     */
+    private static final class ComponentCollector implements AxmlParser.Handler {
+        private final List<IpcComponent> components = new ArrayList<>();
+        private String packageName = "";
+
+        // The component being read, null outside of components
+        private IpcComponent.Kind kind;
+        private String name;
+        private String exported;
+        private String permission;
+        private String readPermission;
+        private String writePermission;
+        private List<String> authorities;
+        private List<IpcComponent.Filter> filters;
+
+        // The intent filter being read, null outside of filters
+        private List<String> actions;
+        private List<String> categories;
+        private List<String> schemes;
+        private List<String> hosts;
+        private List<String> ports;
+        private List<String> paths;
+        private List<String> pathPrefixes;
+        private List<String> pathPatterns;
+        private List<String> mimeTypes;
+        private boolean autoVerify;
+
+        @Override
+        public void startElement(String element, AxmlParser.Attributes attributes) {
+            switch (element) {
+                case "manifest":
+                    // The package attribute is not in the android namespace
+                    String manifestPackage = attributes.getValue(0, "package");
+                    packageName = manifestPackage != null ? manifestPackage : "";
+                    break;
+                case "activity":
+                case "activity-alias":
+                    startComponent(IpcComponent.Kind.ACTIVITY, attributes);
+                    break;
+                case "service":
+                    startComponent(IpcComponent.Kind.SERVICE, attributes);
+                    break;
+                case "receiver":
+                    startComponent(IpcComponent.Kind.RECEIVER, attributes);
+                    break;
+                case "provider":
+                    startComponent(IpcComponent.Kind.PROVIDER, attributes);
+                    break;
+                case "intent-filter":
+                    if (kind != null) {
+                        actions = new ArrayList<>();
+                        categories = new ArrayList<>();
+                        schemes = new ArrayList<>();
+                        hosts = new ArrayList<>();
+                        ports = new ArrayList<>();
+                        paths = new ArrayList<>();
+                        pathPrefixes = new ArrayList<>();
+                        pathPatterns = new ArrayList<>();
+                        mimeTypes = new ArrayList<>();
+                        autoVerify = attributes.getBoolean(ATTR_AUTO_VERIFY, "autoVerify", false);
+                    }
+                    break;
+                case "action":
+                    addValue(actions, attributes.getValue(ATTR_NAME, "name"));
+                    break;
+                case "category":
+                    addValue(categories, attributes.getValue(ATTR_NAME, "name"));
+                    break;
+                case "data":
+                    if (actions != null) {
+                        addValue(schemes, attributes.getValue(ATTR_SCHEME, "scheme"));
+                        addValue(hosts, attributes.getValue(ATTR_HOST, "host"));
+                        addValue(ports, attributes.getValue(ATTR_PORT, "port"));
+                        addValue(paths, attributes.getValue(ATTR_PATH, "path"));
+                        addValue(pathPrefixes, attributes.getValue(ATTR_PATH_PREFIX, "pathPrefix"));
+                        addValue(pathPatterns, attributes.getValue(ATTR_PATH_PATTERN, "pathPattern"));
+                        // Newer path forms have no place of their own, they are kept as patterns
+                        String pathSuffix = attributes.getValue(0, "pathSuffix");
+                        if (pathSuffix != null) {
+                            pathPatterns.add(".*" + pathSuffix.replace("\\", "\\\\").replace("*", "\\*"));
+                        }
+                        addValue(pathPatterns, attributes.getValue(0, "pathAdvancedPattern"));
+                        addValue(mimeTypes, attributes.getValue(ATTR_MIME_TYPE, "mimeType"));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String element) {
+            switch (element) {
+                case "intent-filter":
+                    if (actions != null) {
+                        filters.add(new IpcComponent.Filter(actions, categories, schemes, hosts, ports,
+                                paths, pathPrefixes, pathPatterns, mimeTypes, autoVerify));
+                        actions = null;
+                    }
+                    break;
+                case "activity":
+                case "activity-alias":
+                case "service":
+                case "receiver":
+                case "provider":
+                    if (kind != null) {
+                        endComponent();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void startComponent(IpcComponent.Kind kind, AxmlParser.Attributes attributes) {
+            this.kind = kind;
+            name = className(attributes.getValue(ATTR_NAME, "name"));
+            exported = attributes.getValue(ATTR_EXPORTED, "exported");
+            permission = attributes.getValue(ATTR_PERMISSION, "permission");
+            readPermission = attributes.getValue(ATTR_READ_PERMISSION, "readPermission");
+            writePermission = attributes.getValue(ATTR_WRITE_PERMISSION, "writePermission");
+            String authority = attributes.getValue(ATTR_AUTHORITIES, "authorities");
+            authorities = authority != null ? IpcComponent.splitAuthorities(authority) : Collections.emptyList();
+            filters = new ArrayList<>();
+        }
+
+        private void endComponent() {
+            // Without android:exported, components with intent filters are exported; providers are not
+            boolean isExported = exported != null ? exported.equals("true")
+                    : kind != IpcComponent.Kind.PROVIDER && !filters.isEmpty();
+            components.add(new IpcComponent(kind, packageName, name, isExported, permission,
+                    readPermission, writePermission, authorities, filters));
+            kind = null;
+        }
+
+        /**
+         * Qualifies a class name given relative to the package, e.g. ".MainActivity".
+         */
+        private String className(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.startsWith(".")) {
+                return packageName + value;
+            }
+            return value.indexOf('.') < 0 ? packageName + "." + value : value;
+        }
+
+        private static void addValue(List<String> values, String value) {
+            if (values != null && value != null) {
+                values.add(value);
+            }
+        }
+    }
+}
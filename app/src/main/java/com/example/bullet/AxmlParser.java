@@ -0,0 +1,295 @@
+package com.example.bullet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The AxmlParser class reads the binary XML format of compiled Android resources, such as the
+ * AndroidManifest.xml inside an APK, in a single pass over its chunks. Elements are reported to a
+ * {@link Handler} as they are read, nothing is kept but the string pool, whose strings are decoded
+ * on first use.
+ * <p>
+ * Attributes can be looked up by their framework resource id, which still works for manifests whose
+ * attribute names were obfuscated or stripped, or by name.
+ */
+public final class AxmlParser {
+
+    private static final int RES_STRING_POOL_TYPE = 0x0001;
+    private static final int RES_XML_TYPE = 0x0003;
+    private static final int RES_XML_START_ELEMENT_TYPE = 0x0102;
+    private static final int RES_XML_END_ELEMENT_TYPE = 0x0103;
+    private static final int RES_XML_RESOURCE_MAP_TYPE = 0x0180;
+
+    private static final int UTF8_FLAG = 1 << 8;
+    private static final int NO_INDEX = 0xffffffff;
+
+    static final int TYPE_REFERENCE = 0x01;
+    static final int TYPE_STRING = 0x03;
+    static final int TYPE_INT_DEC = 0x10;
+    static final int TYPE_INT_HEX = 0x11;
+    static final int TYPE_INT_BOOLEAN = 0x12;
+
+    /**
+     * Receives the elements of a document in order.
+     */
+    public interface Handler {
+        void startElement(String name, Attributes attributes);
+
+        void endElement(String name);
+    }
+
+    /**
+     * Resolves references to resources, e.g. {@code @string/host}, which need the target's resources.
+     */
+    public interface ReferenceResolver {
+        /**
+         * @param resourceId The id of the referenced resource.
+         * @return The value of the resource as a string, or null if it cannot be resolved.
+         */
+        String resolve(int resourceId);
+    }
+
+    /**
+     * The attributes of the element being started, only valid during {@link Handler#startElement}.
+     */
+    public final class Attributes {
+        private int offset;
+        private int size;
+        private int count;
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @param index The index of an attribute.
+         * @return The name of the attribute, or an empty string if it was stripped.
+         */
+        public String getName(int index) {
+            return string(buffer.getInt(offset + index * size + 4));
+        }
+
+        /**
+         * @param index The index of an attribute.
+         * @return The framework resource id of the attribute, or 0 if it has none.
+         */
+        public int getResourceId(int index) {
+            int name = buffer.getInt(offset + index * size + 4);
+            return name >= 0 && name < resourceIds.length ? resourceIds[name] : 0;
+        }
+
+        /**
+         * Returns the value of an attribute as a string. References are resolved if possible.
+         *
+         * @param index The index of an attribute.
+         * @return The value, or null if it is a reference that cannot be resolved.
+         */
+        public String getValue(int index) {
+            int attribute = offset + index * size;
+            int rawValue = buffer.getInt(attribute + 8);
+            int type = buffer.get(attribute + 15) & 0xff;
+            int data = buffer.getInt(attribute + 16);
+            if (rawValue != NO_INDEX) {
+                return string(rawValue);
+            }
+            switch (type) {
+                case TYPE_STRING:
+                    return string(data);
+                case TYPE_REFERENCE:
+                    return resolver != null ? resolver.resolve(data) : null;
+                case TYPE_INT_BOOLEAN:
+                    return data != 0 ? "true" : "false";
+                case TYPE_INT_HEX:
+                    return "0x" + Integer.toHexString(data);
+                default:
+                    return Integer.toString(data);
+            }
+        }
+
+        /**
+         * Finds an attribute by its framework resource id or, for manifests without a resource map, its name.
+         *
+         * @param resourceId The resource id of the attribute, e.g. 0x01010003 for android:name, or 0 for
+         *                   attributes outside the android namespace.
+         * @param name       The name of the attribute.
+         * @return The index of the attribute, or -1 if the element does not have it.
+         */
+        public int indexOf(int resourceId, String name) {
+            for (int i = 0; i < count; i++) {
+                int id = getResourceId(i);
+                if ((resourceId != 0 && id == resourceId) || (id == 0 && name.equals(getName(i)))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return The value of the attribute, or null if the element does not have it.
+         */
+        public String getValue(int resourceId, String name) {
+            int index = indexOf(resourceId, name);
+            return index >= 0 ? getValue(index) : null;
+        }
+
+        /**
+         * @return The boolean value of the attribute, or {@code fallback} if the element does not have it.
+         */
+        public boolean getBoolean(int resourceId, String name, boolean fallback) {
+            String value = getValue(resourceId, name);
+            return value != null ? value.equals("true") : fallback;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final ReferenceResolver resolver;
+    private final Attributes attributes = new Attributes();
+    private int[] resourceIds = new int[0];
+    private int stringCount;
+    private int stringOffsets;
+    private int stringData;
+    private int stringPoolEnd;
+    private boolean utf8;
+    private String[] strings = new String[0];
+
+    /**
+     * @param document The binary XML document.
+     * @param resolver Resolves references in attribute values, may be null.
+     */
+    public AxmlParser(ByteBuffer document, ReferenceResolver resolver) {
+        this.buffer = document.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.resolver = resolver;
+    }
+
+    /**
+     * Reads the document, reporting its elements to the handler.
+     *
+     * @param handler Receives the elements.
+     * @throws IOException If the document is not binary XML or is damaged.
+     */
+    public void parse(Handler handler) throws IOException {
+        int start = buffer.position();
+        int end = buffer.limit();
+        if (end - start < 8 || (buffer.getShort(start) & 0xffff) != RES_XML_TYPE) {
+            throw new IOException("Not a binary XML document");
+        }
+        int position = start + (buffer.getShort(start + 2) & 0xffff);
+        try {
+            while (position + 8 <= end) {
+                int type = buffer.getShort(position) & 0xffff;
+                int headerSize = buffer.getShort(position + 2) & 0xffff;
+                int size = buffer.getInt(position + 4);
+                if (size < 8 || headerSize < 8 || headerSize > size || position + size > end) {
+                    throw new IOException("Damaged chunk at " + position);
+                }
+                switch (type) {
+                    case RES_STRING_POOL_TYPE:
+                        readStringPool(position, headerSize, size);
+                        break;
+                    case RES_XML_RESOURCE_MAP_TYPE:
+                        resourceIds = new int[(size - headerSize) / 4];
+                        for (int i = 0; i < resourceIds.length; i++) {
+                            resourceIds[i] = buffer.getInt(position + headerSize + i * 4);
+                        }
+                        break;
+                    case RES_XML_START_ELEMENT_TYPE: {
+                        // ResXMLTree_attrExt follows the node header: ns, name, attributeStart, attributeSize, attributeCount
+                        int ext = position + headerSize;
+                        attributes.offset = ext + (buffer.getShort(ext + 8) & 0xffff);
+                        attributes.size = buffer.getShort(ext + 10) & 0xffff;
+                        attributes.count = buffer.getShort(ext + 12) & 0xffff;
+                        handler.startElement(string(buffer.getInt(ext + 4)), attributes);
+                        break;
+                    }
+                    case RES_XML_END_ELEMENT_TYPE:
+                        handler.endElement(string(buffer.getInt(position + headerSize + 4)));
+                        break;
+                    default:
+                        // Namespaces and text are not needed
+                        break;
+                }
+                position += size;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Damaged binary XML document", e);
+        }
+    }
+
+    private void readStringPool(int chunk, int headerSize, int size) throws IOException {
+        // The counts and offsets come from the APK and are checked against the chunk before anything is
+        // allocated for them, a hostile manifest must not make the scan run out of memory
+        int count = buffer.getInt(chunk + 8);
+        if (headerSize < 28 || count < 0 || count > (size - headerSize) / 4) {
+            throw new IOException("Damaged string pool at " + chunk);
+        }
+        int dataOffset = buffer.getInt(chunk + 20);
+        if (count > 0 && (dataOffset < headerSize + count * 4 || dataOffset > size)) {
+            throw new IOException("Damaged string pool at " + chunk);
+        }
+        stringCount = count;
+        int flags = buffer.getInt(chunk + 16);
+        utf8 = (flags & UTF8_FLAG) != 0;
+        stringData = chunk + dataOffset;
+        stringOffsets = chunk + headerSize;
+        stringPoolEnd = chunk + size;
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Returns a string of the pool, decoding it on first use.
+     */
+    private String string(int index) {
+        if (index < 0 || index >= stringCount) {
+            return "";
+        }
+        String value = strings[index];
+        if (value == null) {
+            value = decode(stringData + buffer.getInt(stringOffsets + index * 4));
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    private String decode(int position) {
+        if (utf8) {
+            // The length in UTF-16 units comes first, then the length in bytes; each takes one or two bytes
+            position += (buffer.get(position) & 0x80) != 0 ? 2 : 1;
+            int length = buffer.get(position) & 0xff;
+            if ((length & 0x80) != 0) {
+                length = ((length & 0x7f) << 8) | (buffer.get(position + 1) & 0xff);
+                position += 2;
+            } else {
+                position += 1;
+            }
+            checkInPool(position, length);
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(position + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        // UTF-16: the length in units takes one or two units
+        int length = buffer.getShort(position) & 0xffff;
+        if ((length & 0x8000) != 0) {
+            length = ((length & 0x7fff) << 16) | (buffer.getShort(position + 2) & 0xffff);
+            position += 4;
+        } else {
+            position += 2;
+        }
+        checkInPool(position, length * 2L);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer.getShort(position + i * 2);
+        }
+        return new String(chars);
+    }
+
+    private void checkInPool(int position, long length) {
+        if (position < stringData || position + length > stringPoolEnd) {
+            // Reported as a damaged document by parse()
+            throw new IndexOutOfBoundsException("String at " + position + " extends past its pool");
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.bullet;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The BroadcastCampaign class sends explicitly targeted broadcasts to exported receivers: once without an
+ * action and once for every action a receiver's intent filters accept. Broadcasts are ordered, so the
+ * result code, data and extras a receiver sets come back together with the round-trip latency, and every
+ * outcome is written to a {@link ScanResultLog}:
+ * <ul>
+ *     <li>RESULT - the receiver set a result, which is logged,</li>
+ *     <li>NO_RESULT - the broadcast went through without a result being set,</li>
+ *     <li>TIMEOUT - no result arrived in time, e.g. because the receiver blocked,</li>
+ *     <li>REJECTED - sending threw, e.g. a {@code SecurityException} for a protected action.</li>
+ * </ul>
+ * Broadcasts are sent in batches at a limited rate, and a batch waits for its results before the next one
+ * is sent, so a slow receiver never has more than one batch queued.
+ */
+public class BroadcastCampaign {
+
+    private static final String TAG = "BroadcastCampaign";
+
+    public static final double DEFAULT_RATE = 10;
+    public static final int DEFAULT_BATCH_SIZE = 8;
+    private static final long RESULT_TIMEOUT_MS = 10_000;
+
+    // Result code the broadcasts start with, so an untouched result can be told apart from a set one
+    private static final int INITIAL_CODE = Integer.MIN_VALUE;
+
+    // System broadcasts receivers commonly listen for. Their filters cannot be read, so these are tried
+    // together with the actions the inventory knows about
+    private static final String[] COMMON_ACTIONS = {
+            "android.intent.action.BOOT_COMPLETED",
+            "android.intent.action.LOCKED_BOOT_COMPLETED",
+            "android.intent.action.MY_PACKAGE_REPLACED",
+            "android.intent.action.PACKAGE_ADDED",
+            "android.intent.action.PACKAGE_REMOVED",
+            "android.intent.action.PACKAGE_REPLACED",
+            "android.intent.action.USER_PRESENT",
+            "android.intent.action.SCREEN_ON",
+            "android.intent.action.SCREEN_OFF",
+            "android.intent.action.TIME_SET",
+            "android.intent.action.TIMEZONE_CHANGED",
+            "android.intent.action.LOCALE_CHANGED",
+            "android.intent.action.ACTION_POWER_CONNECTED",
+            "android.intent.action.ACTION_POWER_DISCONNECTED",
+            "android.intent.action.BATTERY_LOW",
+            "android.intent.action.BATTERY_OKAY",
+            "android.intent.action.NEW_OUTGOING_CALL",
+            "android.intent.action.PHONE_STATE",
+            "android.provider.Telephony.SMS_RECEIVED",
+            "android.net.conn.CONNECTIVITY_CHANGE",
+            "android.appwidget.action.APPWIDGET_UPDATE",
+            "com.android.vending.INSTALL_REFERRER",
+            "com.google.android.c2dm.intent.RECEIVE",
+            "com.google.firebase.MESSAGING_EVENT",
+    };
+
+    /**
+     * Receives the progress of a campaign after every batch, on the campaign's thread.
+     */
+    public interface Listener {
+        void onProgress(int sent, int total, int results);
+    }
+
+    /**
+     * What a campaign did.
+     */
+    public static final class Summary {
+        private final int sent;
+        private final int results;
+        private final int timeouts;
+        private final int rejected;
+
+        Summary(int sent, int results, int timeouts, int rejected) {
+            this.sent = sent;
+            this.results = results;
+            this.timeouts = timeouts;
+            this.rejected = rejected;
+        }
+
+        public int getSent() {
+            return sent;
+        }
+
+        public int getResults() {
+            return results;
+        }
+
+        public int getTimeouts() {
+            return timeouts;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+    }
+
+    // Resolved actions per receiver; the key includes the package's lastUpdateTime, so updates invalidate it
+    private static final ConcurrentHashMap<String, List<String>> actionCache = new ConcurrentHashMap<>();
+
+    /**
+     * A broadcast waiting for its result. Written on the result handler thread, read after the batch latch.
+     */
+    private static final class Pending extends BroadcastReceiver {
+        final IpcComponent receiver;
+        final String action;
+        final CountDownLatch done;
+        volatile long sentAt;
+        volatile long latencyNanos;
+        volatile int resultCode;
+        volatile String resultData;
+        volatile Bundle resultExtras;
+        String error;
+
+        Pending(IpcComponent receiver, String action, CountDownLatch done) {
+            this.receiver = receiver;
+            this.action = action;
+            this.done = done;
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            latencyNanos = SystemClock.elapsedRealtimeNanos() - sentAt;
+            resultCode = getResultCode();
+            resultData = getResultData();
+            resultExtras = getResultExtras(false);
+            done.countDown();
+        }
+    }
+
+    private final Context context;
+    private final List<IpcComponent> receivers;
+    private double rate = DEFAULT_RATE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private String extraKey;
+    private String extraValue;
+
+    /**
+     * @param context   Any context of the application.
+     * @param receivers The broadcast receivers to send to, usually of one package.
+     */
+    public BroadcastCampaign(Context context, List<IpcComponent> receivers) {
+        this.context = context.getApplicationContext();
+        this.receivers = new ArrayList<>(receivers);
+    }
+
+    /**
+     * @param rate The number of broadcasts sent per second.
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * @param batchSize The number of broadcasts awaiting their results at a time.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Adds a String extra to every broadcast.
+     *
+     * @param key   The key of the extra.
+     * @param value The value of the extra.
+     */
+    public void setExtra(String key, String value) {
+        this.extraKey = key;
+        this.extraValue = value;
+    }
+
+    /**
+     * Returns the result log of a package's broadcast campaigns.
+     *
+     * @param context     Any context of the application.
+     * @param packageName The package of the receivers.
+     * @return The log file, which may not exist.
+     */
+    public static File logFileFor(Context context, String packageName) {
+        return ScanResultLog.fuzzFileFor(context, packageName + "_broadcasts");
+    }
+
+    /**
+     * Returns the actions a receiver's intent filters accept, as far as they can be found out: the actions of
+     * the filters parsed from its manifest and common actions are resolved against the receiver, which also
+     * covers receivers whose manifest could not be parsed. Results are cached until the package is updated.
+     *
+     * @param context  Any context of the application.
+     * @param receiver The broadcast receiver.
+     * @return The accepted actions.
+     */
+    public static List<String> resolveActions(Context context, IpcComponent receiver) {
+        PackageManager packageManager = context.getPackageManager();
+        long lastUpdateTime;
+        try {
+            lastUpdateTime = packageManager.getPackageInfo(receiver.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return Collections.emptyList();
+        }
+        String key = receiver.getPackageName() + "/" + receiver.getName() + "@" + lastUpdateTime;
+        List<String> cached = actionCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Set<String> candidates = new LinkedHashSet<>();
+        for (IpcComponent.Filter filter : receiver.getFilters()) {
+            candidates.addAll(filter.getActions());
+        }
+        Collections.addAll(candidates, COMMON_ACTIONS);
+        // Older versions of this tool sent the class name as the action, some receivers do filter on it
+        candidates.add(receiver.getName());
+
+        List<String> actions = new ArrayList<>();
+        Intent query = new Intent().setPackage(receiver.getPackageName());
+        for (String action : candidates) {
+            query.setAction(action);
+            for (ResolveInfo info : packageManager.queryBroadcastReceivers(query, 0)) {
+                if (info.activityInfo != null && receiver.getName().equals(info.activityInfo.name)) {
+                    actions.add(action);
+                    break;
+                }
+            }
+        }
+        List<String> resolved = Collections.unmodifiableList(actions);
+        actionCache.put(key, resolved);
+        return resolved;
+    }
+
+    /**
+     * Sends the broadcasts, blocking until all were answered or a stop was requested.
+     *
+     * @param listener Receives the progress.
+     * @param stop     Checked before every batch.
+     * @return What the campaign did.
+     * @throws IOException If the result log cannot be written.
+     */
+    public Summary run(Listener listener, BooleanSupplier stop) throws IOException {
+        // Every receiver gets one broadcast without an action, explicit intents reach it regardless
+        List<IpcComponent> targets = new ArrayList<>();
+        List<String> actions = new ArrayList<>();
+        for (IpcComponent receiver : receivers) {
+            targets.add(receiver);
+            actions.add(null);
+            for (String action : resolveActions(context, receiver)) {
+                targets.add(receiver);
+                actions.add(action);
+            }
+        }
+        int total = targets.size();
+        if (total == 0) {
+            return new Summary(0, 0, 0, 0);
+        }
+
+        HandlerThread resultThread = new HandlerThread(TAG);
+        resultThread.start();
+        Handler resultHandler = new Handler(resultThread.getLooper());
+        File logFile = logFileFor(context, receivers.get(0).getPackageName());
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long nextStart = System.nanoTime();
+        int sent = 0;
+        int results = 0;
+        int timeouts = 0;
+        int rejected = 0;
+
+        try (ScanResultLog.Writer log = new ScanResultLog.Writer(logFile, false, ScanResultLog.DEFAULT_GROUP_SIZE,
+                ScanResultLog.DEFAULT_GROUP_DELAY_MS, ScanResultLog.SyncPolicy.ON_CLOSE)) {
+            while (sent < total && !stop.getAsBoolean()) {
+                int size = Math.min(batchSize, total - sent);
+                CountDownLatch done = new CountDownLatch(size);
+                List<Pending> batch = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    long wait = nextStart - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    nextStart = Math.max(nextStart, System.nanoTime() - intervalNanos) + intervalNanos;
+
+                    Pending pending = new Pending(targets.get(sent + i), actions.get(sent + i), done);
+                    batch.add(pending);
+                    send(pending, resultHandler);
+                }
+                sent += size;
+
+                // Results of broadcasts that are still pending after the timeout are dropped
+                done.await(RESULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                for (Pending pending : batch) {
+                    String outcome;
+                    String detail = null;
+                    if (pending.error != null) {
+                        outcome = "REJECTED";
+                        rejected++;
+                    } else if (pending.latencyNanos == 0) {
+                        outcome = "TIMEOUT";
+                        timeouts++;
+                    } else if (pending.resultCode == INITIAL_CODE && pending.resultData == null && pending.resultExtras == null) {
+                        outcome = "NO_RESULT";
+                    } else {
+                        outcome = "RESULT";
+                        detail = describeResult(pending);
+                        results++;
+                    }
+                    String target = "broadcast://" + pending.receiver.getPackageName() + "/" + pending.receiver.getName()
+                            + "#" + (pending.action != null ? pending.action : "");
+                    log.append(new ScanResultLog.Record(System.currentTimeMillis(), pending.latencyNanos, target,
+                            outcome, pending.error, detail));
+                }
+                listener.onProgress(sent, total, results);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            resultThread.quitSafely();
+        }
+        Log.i(TAG, "Sent " + sent + " broadcasts, " + results + " results, " + timeouts + " timeouts, " + rejected + " rejected.");
+        return new Summary(sent, results, timeouts, rejected);
+    }
+
+    /**
+     * Sends one ordered broadcast to its receiver.
+     */
+    private void send(Pending pending, Handler resultHandler) {
+        Intent intent = new Intent();
+        intent.setComponent(new ComponentName(pending.receiver.getPackageName(), pending.receiver.getName()));
+        if (pending.action != null) {
+            intent.setAction(pending.action);
+        }
+        if (extraKey != null && !extraKey.isEmpty()) {
+            intent.putExtra(extraKey, extraValue);
+        }
+        pending.sentAt = SystemClock.elapsedRealtimeNanos();
+        try {
+            context.sendOrderedBroadcast(intent, null, pending, resultHandler, INITIAL_CODE, null, null);
+        } catch (RuntimeException e) {
+            pending.error = e.getClass().getName();
+            pending.done.countDown();
+        }
+    }
+
+    private static String describeResult(Pending pending) {
+        StringBuilder detail = new StringBuilder();
+        detail.append("code=").append(pending.resultCode == INITIAL_CODE ? "-" : String.valueOf(pending.resultCode));
+        if (pending.resultData != null) {
+            detail.append(" data=").append(pending.resultData);
+        }
+        if (pending.resultExtras != null) {
+            detail.append(" extras=").append(pending.resultExtras.keySet());
+        }
+        return detail.toString();
+    }
+}
@@ -1,15 +1,22 @@
 package com.example.bullet;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.EditText;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 
+import java.io.IOException;
+import java.util.Collections;
+
 /**
  * The Broadcasts class provides methods to prompt the user for broadcast parameters
- * and send broadcasts with or without permissions.
+ * and send broadcasts with or without permissions, or run a {@link BroadcastCampaign}.
  */
 public class Broadcasts {
 
@@ -19,12 +26,16 @@ public class Broadcasts {
      * Depending on the user's input, it sends a broadcast with or without the specified permissions.
      *
      * @param context The context from which this method is called.
-     * @param receiverName The name of the broadcast receiver.
+     * @param receiver The broadcast receiver.
      */
-    public void promptForBroadcastPermissionParameters(Context context, String receiverName) {
+    public void promptForBroadcastPermissionParameters(Context context, IpcComponent receiver) {
         AlertDialog.Builder builder = new AlertDialog.Builder(context);
         builder.setTitle("Enter Broadcast Parameters");
 
+        // Input field for the action
+        EditText inputAction = new EditText(context);
+        inputAction.setHint("Enter action (optional)");
+
         // Input field for the key
         EditText inputKey = new EditText(context);
         inputKey.setHint("Enter key (optional)");
@@ -40,6 +51,7 @@ public class Broadcasts {
         // Arrange inputs in a vertical layout
         android.widget.LinearLayout layout = new android.widget.LinearLayout(context);
         layout.setOrientation(android.widget.LinearLayout.VERTICAL);
+        layout.addView(inputAction);
         layout.addView(inputKey);
         layout.addView(inputValue);
         layout.addView(inputPermissions);
@@ -48,43 +60,94 @@ public class Broadcasts {
 
         // On confirmation, send the broadcast
         builder.setPositiveButton("OK", (dialog, which) -> {
+            Intent intent = new Intent();
+            intent.setComponent(new ComponentName(receiver.getPackageName(), receiver.getName()));
+            String action = inputAction.getText().toString().trim();
+            if (!action.isEmpty()) {
+                intent.setAction(action);
+            }
             String key = inputKey.getText().toString().trim();
             String value = inputValue.getText().toString().trim();
             String permission = inputPermissions.getText().toString().trim();
             if (permission.isEmpty()) {
                 // Send broadcast without permissions if none are provided
-                sendBroadcast(context, receiverName, key, value);
+                sendBroadcast(context, intent, key, value);
             } else {
                 // Send broadcast with the provided permissions
-                sendBroadcast(context, receiverName, permission, key, value);
+                sendBroadcast(context, intent, permission, key, value);
             }
         });
 
         // Handle the "Cancel" button click event
         builder.setNegativeButton("Cancel", (dialog, which) -> dialog.cancel());
 
+        // Send every action the receiver accepts instead of a single broadcast
+        builder.setNeutralButton("Campaign", (dialog, which) -> {
+            BroadcastCampaign campaign = new BroadcastCampaign(context, Collections.singletonList(receiver));
+            String key = inputKey.getText().toString().trim();
+            String value = inputValue.getText().toString().trim();
+            if (!key.isEmpty() && !value.isEmpty()) {
+                campaign.setExtra(key, value);
+            }
+            startCampaign(context, receiver.getName(), campaign);
+        });
+
         builder.show();
     }
 
+    /**
+     * Queues a broadcast campaign on the job host. Its progress is shown in the host's notification and
+     * status, where it can also be stopped, so the campaign does not depend on the screen that started it.
+     *
+     * @param context      The context from which this method is called.
+     * @param receiverName The name of the receiver the campaign targets.
+     * @param campaign     The campaign to run.
+     */
+    private void startCampaign(Context context, String receiverName, BroadcastCampaign campaign) {
+        // The campaign may outlive the activity, so only the application context is kept
+        Context appContext = context.getApplicationContext();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        Toast.makeText(context, "Broadcasting to " + receiverName + " on the job host", Toast.LENGTH_SHORT).show();
+
+        // Runs on the job host, which keeps it going while the screen is off
+        MyForegroundService.submit(context, "Broadcast to " + receiverName, job -> {
+            int[] lastSent = {0};
+            String message;
+            try {
+                BroadcastCampaign.Summary summary = campaign.run((sent, total, results) -> {
+                    job.addOperations(sent - lastSent[0]);
+                    lastSent[0] = sent;
+                    job.setProgress("Sent " + sent + " of " + total + ", " + results + " results");
+                }, job::isCancelled);
+                message = "Sent " + summary.getSent() + " broadcasts, " + summary.getResults() + " results, "
+                        + summary.getTimeouts() + " timeouts, " + summary.getRejected() + " rejected.";
+            } catch (IOException e) {
+                Log.e("Broadcasts", "Failed to write campaign results for " + receiverName, e);
+                message = "Error writing campaign results.";
+            }
+            String result = message;
+            job.setProgress(result);
+            mainHandler.post(() -> Toast.makeText(appContext, result, Toast.LENGTH_LONG).show());
+        });
+    }
+
     /**
      * Sends a broadcast without permissions.
-     * This method creates an Intent with the specified action and extra data,
+     * This method adds the extra data to the Intent, which targets the receiver explicitly,
      * and sends the broadcast without requiring any permissions.
      *
      * @param context The context from which this method is called.
-     * @param inputIntent The intent action string for the broadcast.
+     * @param intent The intent targeting the receiver.
      * @param key The key for the broadcast extra data.
      * @param value The value for the broadcast extra data.
      */
-    private void sendBroadcast(Context context, String inputIntent, String key, String value) {
-        Intent intent = new Intent(inputIntent);
-
+    private void sendBroadcast(Context context, Intent intent, String key, String value) {
         // Add the key-value pair to the intent if provided
         if (!key.isEmpty() && !value.isEmpty()) {
             intent.putExtra(key, value);
         }
 
-        Log.d("Broadcasts", "Sending broadcast with action: " + inputIntent);
+        Log.d("Broadcasts", "Sending broadcast to " + intent.getComponent() + " with action: " + intent.getAction());
 
         // Send the broadcast
         context.sendBroadcast(intent);
@@ -92,24 +155,22 @@ public class Broadcasts {
 
     /**
      * Sends a broadcast with permissions.
-     * This method creates an Intent with the specified action and extra data,
+     * This method adds the extra data to the Intent, which targets the receiver explicitly,
      * and sends the broadcast with the specified permission.
      *
      * @param context The context from which this method is called.
-     * @param inputIntent The intent action string for the broadcast.
+     * @param intent The intent targeting the receiver.
      * @param receiverPermission The required permission for the broadcast receiver.
      * @param key The key for the broadcast extra data.
      * @param value The value for the broadcast extra data.
      */
-    private void sendBroadcast(Context context, String inputIntent, String receiverPermission, String key, String value) {
-        Intent intent = new Intent(inputIntent);
-
+    private void sendBroadcast(Context context, Intent intent, String receiverPermission, String key, String value) {
         // Add the key-value pair to the intent if provided
         if (!key.isEmpty() && !value.isEmpty()) {
             intent.putExtra(key, value);
         }
 
-        Log.d("Broadcasts", "Sending broadcast with action: " + inputIntent + " with permission: " + receiverPermission);
+        Log.d("Broadcasts", "Sending broadcast to " + intent.getComponent() + " with action: " + intent.getAction() + " with permission: " + receiverPermission);
 
         // Send the broadcast with the specified permission
         context.sendBroadcast(intent, receiverPermission);
@@ -0,0 +1,51 @@
+package com.example.bullet;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * The BulletApplication class brings the {@link PackageInventory} up to date when the app starts and keeps
+ * it current while the app runs. Package broadcasts are no longer delivered to receivers declared in the
+ * manifest, so the receiver is registered here for the lifetime of the process.
+ */
+public class BulletApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        PackageInventory inventory = PackageInventory.getInstance(this);
+        inventory.refresh();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        ContextCompat.registerReceiver(this, new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Uri data = intent.getData();
+                if (data == null) {
+                    return;
+                }
+                String packageName = data.getSchemeSpecificPart();
+                // An update sends REMOVED and ADDED with EXTRA_REPLACING before REPLACED, only the last one matters
+                if (intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)
+                        && !Intent.ACTION_PACKAGE_REPLACED.equals(intent.getAction())) {
+                    return;
+                }
+                if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())) {
+                    inventory.remove(packageName);
+                } else {
+                    inventory.update(packageName);
+                }
+            }
+        }, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.bullet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ComponentIndex class indexes the components of a package by class name, by kind and by provider
+ * authority, so looking a component up never needs the PackageManager or a scan of the component list.
+ * Indexes are immutable and built once per package version.
+ */
+public final class ComponentIndex {
+
+    private final List<IpcComponent> components;
+    private final Map<String, IpcComponent> byName = new HashMap<>();
+    private final Map<String, IpcComponent> byAuthority = new HashMap<>();
+    private final EnumMap<IpcComponent.Kind, List<IpcComponent>> byKind = new EnumMap<>(IpcComponent.Kind.class);
+
+    /**
+     * @param components The components of a package.
+     */
+    public ComponentIndex(List<IpcComponent> components) {
+        this.components = Collections.unmodifiableList(new ArrayList<>(components));
+        for (IpcComponent.Kind kind : IpcComponent.Kind.values()) {
+            byKind.put(kind, new ArrayList<>());
+        }
+        for (IpcComponent component : this.components) {
+            byName.put(component.getName(), component);
+            byKind.get(component.getKind()).add(component);
+            for (String authority : component.getAuthorities()) {
+                byAuthority.put(authority, component);
+            }
+        }
+        for (IpcComponent.Kind kind : IpcComponent.Kind.values()) {
+            byKind.put(kind, Collections.unmodifiableList(byKind.get(kind)));
+        }
+    }
+
+    /**
+     * @return Every component, in the order activities, services, providers, receivers.
+     */
+    public List<IpcComponent> all() {
+        return components;
+    }
+
+    /**
+     * @param name The fully qualified class name of a component.
+     * @return The component, or null if the package has none of that name.
+     */
+    public IpcComponent get(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @param authority A content provider authority.
+     * @return The provider serving the authority, or null if the package has none.
+     */
+    public IpcComponent getByAuthority(String authority) {
+        return byAuthority.get(authority);
+    }
+
+    /**
+     * @param kind A kind of component.
+     * @return The components of that kind.
+     */
+    public List<IpcComponent> ofKind(IpcComponent.Kind kind) {
+        return byKind.get(kind);
+    }
+
+    /**
+     * @return The exported components.
+     */
+    public List<IpcComponent> exported() {
+        List<IpcComponent> exported = new ArrayList<>();
+        for (IpcComponent component : components) {
+            if (component.isExported()) {
+                exported.add(component);
+            }
+        }
+        return exported;
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.bullet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ComponentSearchIndex class answers searches over components as the user types. Every component's
+ * package name, class name, authorities, intent filter actions and permissions are indexed by their
+ * trigrams, so a query only verifies the few components containing all trigrams of its terms instead of
+ * matching every component on the device.
+ * <p>
+ * A query is a list of space separated terms, all of which must match:
+ * <ul>
+ *     <li>{@code text} - the text occurs in any indexed field,</li>
+ *     <li>{@code pkg:text}, {@code name:text}, {@code authority:text}, {@code action:text},
+ *     {@code perm:text} - the text occurs in that field,</li>
+ *     <li>{@code kind:activity|service|provider|receiver} - the component is of that kind,</li>
+ *     <li>{@code exported:true|false} - the component is exported or not,</li>
+ *     <li>{@code noperm:any|read|write} - the component requires no permission at all, or none to read or
+ *     write a provider.</li>
+ * </ul>
+ * For example {@code kind:provider exported:true noperm:read authority:file} finds exported providers
+ * whose data anybody may read and whose authority contains "file". Matching ignores case.
+ * <p>
+ * Indexes are immutable and safe to search from any thread.
+ */
+public final class ComponentSearchIndex {
+
+    private static final int[] NO_DOCS = new int[0];
+    private static final Set<String> FIELDS = new HashSet<>(Arrays.asList(
+            "pkg", "name", "authority", "action", "perm", "kind", "exported", "noperm"));
+
+    private final IpcComponent[] components;
+    private final String[] packages;
+    private final String[] names;
+    private final String[] authorities;
+    private final String[] actions;
+    private final String[] permissions;
+    private final Map<Long, int[]> postings = new HashMap<>();
+
+    /**
+     * A parsed query term.
+     */
+    private static final class Term {
+        final String field;
+        final String text;
+
+        Term(String field, String text) {
+            this.field = field;
+            this.text = text;
+        }
+    }
+
+    /**
+     * The documents containing a trigram while the index is built.
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size = 0;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(docs, size);
+        }
+    }
+
+    /**
+     * Indexes components, e.g. those of every installed package.
+     *
+     * @param components The components to search.
+     */
+    public ComponentSearchIndex(List<IpcComponent> components) {
+        int count = components.size();
+        this.components = components.toArray(new IpcComponent[0]);
+        packages = new String[count];
+        names = new String[count];
+        authorities = new String[count];
+        actions = new String[count];
+        permissions = new String[count];
+
+        Map<Long, Postings> building = new HashMap<>();
+        Set<Long> trigrams = new HashSet<>();
+        for (int doc = 0; doc < count; doc++) {
+            IpcComponent component = this.components[doc];
+            packages[doc] = lower(component.getPackageName());
+            names[doc] = lower(component.getName());
+            authorities[doc] = lower(String.join("\n", component.getAuthorities()));
+            List<String> filterActions = new ArrayList<>();
+            for (IpcComponent.Filter filter : component.getFilters()) {
+                filterActions.addAll(filter.getActions());
+            }
+            actions[doc] = lower(String.join("\n", filterActions));
+            permissions[doc] = lower(join(component.getPermission(), component.getReadPermission(), component.getWritePermission()));
+
+            // Postings stay sorted, as documents are added in order and each trigram once per document
+            trigrams.clear();
+            addTrigrams(trigrams, packages[doc]);
+            addTrigrams(trigrams, names[doc]);
+            addTrigrams(trigrams, authorities[doc]);
+            addTrigrams(trigrams, actions[doc]);
+            addTrigrams(trigrams, permissions[doc]);
+            for (Long trigram : trigrams) {
+                Postings docs = building.get(trigram);
+                if (docs == null) {
+                    docs = new Postings();
+                    building.put(trigram, docs);
+                }
+                docs.add(doc);
+            }
+        }
+        for (Map.Entry<Long, Postings> entry : building.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    /**
+     * @return The number of indexed components.
+     */
+    public int size() {
+        return components.length;
+    }
+
+    /**
+     * Finds the components matching a query.
+     *
+     * @param query The query, see the class documentation. An empty query matches every component.
+     * @param limit The maximum number of components returned.
+     * @return The matching components, in the order they were indexed.
+     */
+    public List<IpcComponent> search(String query, int limit) {
+        List<Term> terms = parse(query);
+
+        // Components containing every trigram of every text term; null while no term narrowed the search
+        int[] candidates = null;
+        for (Term term : terms) {
+            if (isTextField(term.field) && term.text.length() >= 3) {
+                for (int i = 0; i + 3 <= term.text.length(); i++) {
+                    int[] docs = postings.get(trigramAt(term.text, i));
+                    candidates = candidates == null ? (docs != null ? docs : NO_DOCS) : intersect(candidates, docs);
+                    if (candidates.length == 0) {
+                        return new ArrayList<>();
+                    }
+                }
+            }
+        }
+
+        List<IpcComponent> results = new ArrayList<>();
+        int count = candidates != null ? candidates.length : components.length;
+        for (int i = 0; i < count && results.size() < limit; i++) {
+            int doc = candidates != null ? candidates[i] : i;
+            if (matches(doc, terms)) {
+                results.add(components[doc]);
+            }
+        }
+        return results;
+    }
+
+    private boolean matches(int doc, List<Term> terms) {
+        IpcComponent component = components[doc];
+        for (Term term : terms) {
+            boolean match;
+            switch (term.field) {
+                case "":
+                    match = packages[doc].contains(term.text) || names[doc].contains(term.text)
+                            || authorities[doc].contains(term.text) || actions[doc].contains(term.text)
+                            || permissions[doc].contains(term.text);
+                    break;
+                case "pkg":
+                    match = packages[doc].contains(term.text);
+                    break;
+                case "name":
+                    match = names[doc].contains(term.text);
+                    break;
+                case "authority":
+                    match = authorities[doc].contains(term.text);
+                    break;
+                case "action":
+                    match = actions[doc].contains(term.text);
+                    break;
+                case "perm":
+                    match = permissions[doc].contains(term.text);
+                    break;
+                case "kind":
+                    match = component.getKind().name().toLowerCase(Locale.ROOT).startsWith(term.text);
+                    break;
+                case "exported":
+                    match = component.isExported() == !(term.text.startsWith("f") || term.text.startsWith("n"));
+                    break;
+                case "noperm":
+                    match = hasNoPermission(component, term.text);
+                    break;
+                default:
+                    match = true;
+            }
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasNoPermission(IpcComponent component, String which) {
+        switch (which) {
+            case "read":
+                return component.getReadPermission() == null;
+            case "write":
+                return component.getWritePermission() == null;
+            default:
+                return component.getPermission() == null && component.getReadPermission() == null
+                        && component.getWritePermission() == null;
+        }
+    }
+
+    private static List<Term> parse(String query) {
+        List<Term> terms = new ArrayList<>();
+        for (String token : lower(query).trim().split("\\s+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int colon = token.indexOf(':');
+            String field = colon > 0 ? token.substring(0, colon) : "";
+            if (!FIELDS.contains(field)) {
+                // Not a filter, e.g. a URI, so the whole token is searched for
+                terms.add(new Term("", token));
+            } else if (colon < token.length() - 1) {
+                terms.add(new Term(field, token.substring(colon + 1)));
+            }
+            // A filter without text yet, e.g. while typing "kind:", does not filter
+        }
+        return terms;
+    }
+
+    private static boolean isTextField(String field) {
+        switch (field) {
+            case "":
+            case "pkg":
+            case "name":
+            case "authority":
+            case "action":
+            case "perm":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void addTrigrams(Set<Long> trigrams, String text) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(trigramAt(text, i));
+        }
+    }
+
+    private static long trigramAt(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    /**
+     * Intersects two sorted posting lists.
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        if (b == null) {
+            return NO_DOCS;
+        }
+        int[] result = new int[Math.min(a.length, b.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static String join(String... values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (value != null) {
+                joined.append(value).append('\n');
+            }
+        }
+        return joined.toString();
+    }
+
+    private static String lower(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bullet;
+
+/**
+ * The ConcatWordSource class reads several {@link WordSource}s one after another, see {@link WordSource#concat(WordSource...)}.
+ */
+final class ConcatWordSource implements WordSource {
+
+    private final WordSource[] sources;
+    // offsets[i] is the index of the first entry of sources[i]
+    private final int[] offsets;
+    private final int size;
+    private final int maxEntryLength;
+
+    ConcatWordSource(WordSource... sources) {
+        this.sources = sources.clone();
+        this.offsets = new int[sources.length];
+        long total = 0;
+        int max = 0;
+        for (int i = 0; i < sources.length; i++) {
+            offsets[i] = (int) total;
+            total += sources[i].size();
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many entries: " + total);
+            }
+            max = Math.max(max, sources[i].getMaxEntryLength());
+        }
+        this.size = (int) total;
+        this.maxEntryLength = max;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getMaxEntryLength() {
+        return maxEntryLength;
+    }
+
+    @Override
+    public Reader reader() {
+        return new Reader() {
+            private int source = 0;
+            private Reader current = sources.length > 0 ? sources[0].reader() : null;
+
+            @Override
+            public boolean next() {
+                while (current != null) {
+                    if (current.next()) {
+                        return true;
+                    }
+                    source++;
+                    current = source < sources.length ? sources[source].reader() : null;
+                }
+                return false;
+            }
+
+            @Override
+            public void seek(int target) {
+                if (target < 0 || target > size) {
+                    throw new IndexOutOfBoundsException("Entry " + target + " of " + size);
+                }
+                source = 0;
+                while (source + 1 < sources.length && target >= offsets[source + 1]) {
+                    source++;
+                }
+                current = source < sources.length ? sources[source].reader() : null;
+                if (current != null) {
+                    current.seek(Math.min(target - offsets[source], sources[source].size()));
+                }
+            }
+
+            @Override
+            public int index() {
+                return offsets[source] + current.index();
+            }
+
+            @Override
+            public byte[] bytes() {
+                return current.bytes();
+            }
+
+            @Override
+            public int length() {
+                return current.length();
+            }
+        };
+    }
+}
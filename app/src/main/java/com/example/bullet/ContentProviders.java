@@ -1,25 +1,25 @@
 package com.example.bullet;
 
-import android.content.ContentProviderClient;
 import android.content.Context;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.net.Uri;
-import android.os.Handler;
-import android.os.Looper;
 import android.os.RemoteException;
 import android.util.Log;
 import android.widget.Toast;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import androidx.core.content.pm.PackageInfoCompat;
+
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
 
 /**
  * The ContentProviders class provides methods to discover accessible paths
@@ -27,22 +27,65 @@ import java.util.List;
  */
 public class ContentProviders {
 
+    /**
+     * Default maximum number of queries kept in flight against a single authority.
+     */
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    // Number of queries in flight when a scan starts, raised while the provider keeps up
+    private static final int INITIAL_CONCURRENCY = 4;
+
+    /**
+     * Default number of path segments explored below the authority.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 3;
+
+    /**
+     * Default maximum number of queries sent by a single discovery run.
+     */
+    public static final long DEFAULT_PROBE_BUDGET = 5_000_000;
+
+    // Number of wordlist lines buffered ahead of the probe workers
+    private static final int QUEUE_CAPACITY = 1024;
+
+    // Minimum time between two checkpoints of a running scan
+    private static final long CHECKPOINT_INTERVAL_MS = 5000;
+
+    // Minimum time between two saves of the probe cache of a running scan
+    private static final long CACHE_SAVE_INTERVAL_MS = 60000;
+
     private final Context context;
     private final DiscoveryCallback callback;
-    private boolean stopRequested = false;  // Flag to know when the process will be stopped
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private long probeBudget = DEFAULT_PROBE_BUDGET;
+    private Set<WordMutator.Mutation> wordMutations = EnumSet.copyOf(WordMutator.DEFAULT_MUTATIONS);
+    private double falsePositiveRate = ProbeDeduplicator.DEFAULT_FALSE_POSITIVE_RATE;
+    private long deduplicationBytes = ProbeDeduplicator.DEFAULT_MAX_BYTES;
 
     /**
      * Interface for callback to be invoked when content provider discovery is complete.
      */
     public interface DiscoveryCallback {
         void onDiscoveryComplete(List<String> accessiblePaths);
+
+        /**
+         * Called on the main thread at most a few times per second while a scan runs, and once more when it ends.
+         *
+         * @param progress A snapshot of the scan.
+         */
+        default void onDiscoveryProgress(ScanProgress progress) {
+        }
     }
 
     /**
      *  Method to stop the discovery process
      */
     public void stopDiscovery(){
-        stopRequested = true;
+        // The scans save their progress and can be resumed later; like stopping a single scan, this
+        // clears the pause, which would otherwise hold the scans when they are started again
+        ScanScheduler.getInstance().resumeAll();
+        DiscoveryWorker.cancelAll(context);
     }
 
     public ContentProviders(Context context, DiscoveryCallback callback) {
@@ -50,101 +93,497 @@ public class ContentProviders {
         this.callback = callback;
     }
 
+    /**
+     * Sets how many paths the next discovery run may query in parallel. The run starts with fewer and only
+     * raises the number of queries in flight up to this limit while the provider's latency stays stable.
+     *
+     * @param concurrency The maximum number of queries in flight, at least 1.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets how many path segments deep the next discovery run explores. Only paths the provider answers
+     * differently from unknown paths are expanded, so deeper scans stay far cheaper than the full cross product.
+     *
+     * @param maxDepth The maximum depth, 1 to only probe {@code content://authority/<word>}.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1");
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets the maximum number of queries the next discovery run may send.
+     *
+     * @param probeBudget The query budget, at least 1.
+     */
+    public void setProbeBudget(long probeBudget) {
+        if (probeBudget < 1) {
+            throw new IllegalArgumentException("probeBudget must be at least 1");
+        }
+        this.probeBudget = probeBudget;
+    }
+
+    /**
+     * Sets the mutations the next discovery run applies to the wordlist and to the table names derived from
+     * the provider's package and authority. Every word is probed as it is before any of its variants.
+     *
+     * @param wordMutations The mutations, {@link WordMutator.Mutation#NONE} to include the words as they are.
+     */
+    public void setWordMutations(Set<WordMutator.Mutation> wordMutations) {
+        if (wordMutations.isEmpty()) {
+            throw new IllegalArgumentException("wordMutations must not be empty");
+        }
+        this.wordMutations = EnumSet.copyOf(wordMutations);
+    }
+
+    /**
+     * Sets how the next discovery run avoids probing a URI twice, e.g. one listed by several wordlists.
+     * Small runs remember every URI, larger ones use a Bloom filter that may skip a few URIs never probed.
+     *
+     * @param falsePositiveRate The fraction of new URIs the filter may skip, above 0 and below 1.
+     * @param maxBytes          The maximum memory used to remember the URIs of a run.
+     */
+    public void setDeduplication(double falsePositiveRate, long maxBytes) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        if (maxBytes < 8) {
+            throw new IllegalArgumentException("maxBytes must be at least 8");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.deduplicationBytes = maxBytes;
+    }
+
+    /**
+     * Starts discovering accessible paths of the given authority as a background job that survives the
+     * activity. See {@link #runDiscovery(String, long, BooleanSupplier)} for how the scan works; progress
+     * and results are published through WorkManager and the scan's result log.
+     *
+     * @param authority The authority of the content provider to scan.
+     */
     public void discoverContentProviderPaths(String authority) {
         List<String> requiredPermissions = getPermissionsForAuthority(authority);
         if (!arePermissionsDeclared(requiredPermissions)) {
             Toast.makeText(context, "Required permissions are not declared in the manifest.", Toast.LENGTH_SHORT).show();
             return;
         }
+        DiscoveryWorker.enqueue(context, authority, concurrency, maxDepth, probeBudget, wordMutations,
+                falsePositiveRate, deduplicationBytes);
+    }
 
-        new Thread(() -> {
-            File outputFile = new File(context.getExternalFilesDir(null), "found_paths.txt");
-            List<String> accessiblePaths = new ArrayList<>();
+    /**
+     * Discovers accessible paths of the given authority by probing every wordlist entry, and the variants
+     * chosen with {@link #setWordMutations(Set)}, on a pool of
+     * worker threads, recursing into paths the provider recognises up to the configured depth.
+     * Progress is checkpointed regularly; if an earlier scan of the authority was interrupted, this one
+     * continues where it stopped. Blocks until the scan ends, is stopped or has sent {@code chunkProbes}
+     * queries; in the last two cases a checkpoint is left behind for the next call to continue from.
+     * The callback receives the accessible paths in scan order once the whole scan has finished.
+     *
+     * @param authority   The authority of the content provider to scan.
+     * @param chunkProbes The maximum number of queries sent by this call.
+     * @param stop        Polled regularly; when it returns true the scan stops.
+     * @return The last progress snapshot; {@link ScanProgress#isFinished()} is false if the scan stopped early
+     * and can be continued. Null if the scan could not run at all.
+     */
+    public ScanProgress runDiscovery(String authority, long chunkProbes, BooleanSupplier stop) {
+        File logFile = ScanResultLog.fileFor(context, authority);
+        File checkpointFile = ScanCheckpoint.fileFor(context, authority);
+        File deduplicatorFile = ProbeDeduplicator.fileFor(context, authority);
 
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, false))) {
-                writer.write(""); // Clear the output file
-            } catch (IOException e) {
-                Log.e("ContentProviders", "Error clearing output file", e);
-            }
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(context.getResources().openRawResource(R.raw.words)));
-                 BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, true))) {
-
-                int counter = 0;
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    //  Print inside the console that process has successfully stopped
-                    if (stopRequested) {
-                        Log.i("ContentProviders", "Discovery process stopped.");
-                        break;
-                    }
-
-                    String path = line.trim();
-                    path = "content://" + authority + "/" + path;
-
-                    Log.d("ContentProviders", "Checking path: " + path);  // Log the path being checked
-
-                    boolean isAccessible = isPathAccessible(path);
-
-                    counter++;
-                    if (isAccessible) {
-                        writer.write(path);
-                        writer.newLine();
-                        accessiblePaths.add(path);
-                        Log.d("ContentProviders", "Accessible path found: " + path);  // Log accessible path
-                    } else {
-                        Log.d("ContentProviders", "Path not accessible: " + path);  // Log non-accessible path
-                    }
-
-                    if (counter % 10000 == 0) {
-                        final int linesProcessed = counter;
-                        new Handler(Looper.getMainLooper()).post(() ->
-                                Toast.makeText(context, "Processed " + linesProcessed + " lines.", Toast.LENGTH_SHORT).show()
-                        );
-                        Log.i("ContentProviders", "Processed " + counter + " lines.");
-                    }
+        WordSource wordlist;
+        long wordlistFingerprint;
+        try {
+            // Names derived from the provider come first, they are the likeliest table names
+            ProviderInfo providerInfo = context.getPackageManager().resolveContentProvider(authority, 0);
+            WordlistDictionary tableNames = WordlistDictionary.of(
+                    WordMutator.tableNames(providerInfo != null ? providerInfo.packageName : null, authority));
+            // The user's wordlists are merged with the bundled one
+            wordlist = new WordMutator(WordSource.concat(tableNames, UserWordlists.load(context)), wordMutations);
+            wordlistFingerprint = wordlistFingerprint(tableNames, UserWordlists.signature(context));
+        } catch (IOException e) {
+            Log.e("ContentProviders", "Error loading wordlist", e);
+            return null;
+        }
+
+        // Continue an interrupted scan and its result log, otherwise start a new log
+        ScanCheckpoint resume = loadCheckpoint(checkpointFile, wordlist, wordlistFingerprint);
+        ScanMetrics metrics = resume != null ? MetricsRegistry.resume(authority) : MetricsRegistry.start(authority);
+        long startSent = resume != null ? resume.getProbesSent() : 0;
+        long chunkEnd = chunkProbes >= Long.MAX_VALUE - startSent ? Long.MAX_VALUE : startSent + chunkProbes;
+        // Logging every probe slows a scan down considerably, so it is only done when enabled with
+        // "adb shell setprop log.tag.ContentProviders VERBOSE"
+        boolean verbose = Log.isLoggable("ContentProviders", Log.VERBOSE);
+
+        try (ScanResultLog.Writer resultLog = openResultLog(logFile, resume == null);
+             ProviderClientHolder clients = new ProviderClientHolder(context.getContentResolver(), authority)) {
+
+            // Answers recorded by earlier scans of the same target version are not queried again
+            ProbeCache cache = openProbeCache(authority);
+            File cacheFile = ProbeCache.fileFor(context, authority);
+            long[] lastCacheSave = {System.currentTimeMillis()};
+
+            // Backs off when the provider slows down, fails binder calls or dies
+            AdaptiveConcurrencyController limiter = new AdaptiveConcurrencyController(1, concurrency,
+                    Math.min(concurrency, INITIAL_CONCURRENCY));
+            clients.setDeathListener(limiter::onProviderDeath);
+
+            // One client is shared by every worker for the whole scan
+            ProbeEngine engine = new ProbeEngine(concurrency, QUEUE_CAPACITY, path -> {
+                ProbeResult cached = cache.get(path);
+                if (cached != null) {
+                    metrics.recordProbe(cached, 0, true);
+                    resultLog.append(new ScanResultLog.Record(System.currentTimeMillis(), 0, path,
+                            cached.getOutcome().name(), cached.getErrorClass(), "cached"));
+                    return cached;
+                }
+                // Workers waiting for the provider to recover should not delay a stop
+                if (stop.getAsBoolean()) {
+                    limiter.shutdown();
+                }
+                try {
+                    limiter.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return ProbeResult.fromException(e);
                 }
+                long start = System.nanoTime();
+                ProbeResult result = probePath(clients, path, verbose);
+                long latency = System.nanoTime() - start;
+                limiter.release(latency, isBinderFailure(result));
+                metrics.recordProbe(result, latency, false);
+                cache.put(path, result);
+                resultLog.append(new ScanResultLog.Record(System.currentTimeMillis(), latency, path,
+                        result.getOutcome().name(), result.getErrorClass(), null));
+                return result;
+            });
+            // The shared workers only pick up as many probes as the limiter lets through, so they rarely wait in it
+            engine.setConcurrencyLimit(limiter::getLimit);
+            engine.setMaxDepth(maxDepth);
+            engine.setProbeBudget(probeBudget);
+            engine.setDeduplication(falsePositiveRate, deduplicationBytes);
+            engine.setWordlistFingerprint(wordlistFingerprint);
+            // The URIs queued by earlier chunks of the scan are not probed again
+            if (resume != null) {
+                engine.setDeduplicator(loadDeduplicator(deduplicatorFile));
+            }
+            engine.setCheckpointListener(checkpoint -> {
+                try {
+                    // Results must be committed before the checkpoint that no longer repeats them
+                    resultLog.flush();
+                    checkpoint.save(checkpointFile);
+                } catch (IOException e) {
+                    Log.e("ContentProviders", "Error saving checkpoint", e);
+                }
+                // The cache is much larger than a checkpoint, so it is saved less often
+                if (System.currentTimeMillis() - lastCacheSave[0] >= CACHE_SAVE_INTERVAL_MS) {
+                    lastCacheSave[0] = System.currentTimeMillis();
+                    saveProbeCache(cache, cacheFile);
+                }
+            }, CHECKPOINT_INTERVAL_MS);
+            ProgressChannel progress = new ProgressChannel(() -> snapshotProgress(authority, engine, limiter, metrics, false),
+                    callback::onDiscoveryProgress, ProgressChannel.DEFAULT_INTERVAL_MS);
+            List<String> accessiblePaths = engine.run(wordlist, authority, resume, (path, result, processed) -> {
+                if (verbose) {
+                    Log.v("ContentProviders", "Checking path: " + path);  // Log the path being checked
+                }
+
+                if (result.isAccessible()) {
+                    metrics.recordHit(path);
+                    Log.d("ContentProviders", "Accessible path found: " + path);  // Log accessible path
+                } else if (verbose) {
+                    Log.v("ContentProviders", "Path not accessible (" + result + "): " + path);  // Log non-accessible path
+                }
+
+                progress.signal();
+                if (processed % 10000 == 0) {
+                    Log.i("ContentProviders", "Processed " + processed + " lines.");
+                }
+            }, () -> stop.getAsBoolean() || engine.getProbesSent() >= chunkEnd);
+
+            boolean finished = engine.isFinished();
+            //  Print inside the console that process has successfully stopped
+            if (stop.getAsBoolean()) {
+                Log.i("ContentProviders", "Discovery process stopped, progress saved to " + checkpointFile);
+            } else if (!finished) {
+                Log.i("ContentProviders", "Discovery chunk of " + authority + " done after " + engine.getProbesSent() + " queries.");
+            } else {
+                discardCheckpoint(authority);
+            }
+            if (!finished) {
+                // Saved after the final checkpoint, which it is marked with
+                try {
+                    engine.getDeduplicator().save(deduplicatorFile);
+                } catch (IOException e) {
+                    Log.e("ContentProviders", "Error saving probe deduplicator", e);
+                }
+            }
+            saveProbeCache(cache, cacheFile);
+            if (engine.getDuplicatesSkipped() > 0) {
+                Log.i("ContentProviders", "Skipped " + engine.getDuplicatesSkipped() + " candidates already probed by this scan.");
+            }
+            Log.i("ContentProviders", String.format(Locale.ROOT, "Probe cache hit rate: %.1f%% (%d of %d)",
+                    cache.getHitRate() * 100, cache.getHits(), cache.getHits() + cache.getMisses()));
+            if (clients.getProviderDeaths() > 0) {
+                Log.w("ContentProviders", "Provider " + authority + " died " + clients.getProviderDeaths() + " times during discovery.");
+            }
+            if (limiter.getDecreases() > 0) {
+                Log.i("ContentProviders", "Backed off " + limiter.getDecreases() + " times, final limit "
+                        + limiter.getLimit() + " queries in flight.");
+            }
+            if (finished || stop.getAsBoolean()) {
+                metrics.finish();
+                dumpMetrics(metrics, authority);
+            }
+            ScanProgress last = snapshotProgress(authority, engine, limiter, metrics, finished);
+            progress.close(last);
 
-                Log.i("ContentProviders", "Total lines processed: " + counter);
+            if (finished) {
                 callback.onDiscoveryComplete(accessiblePaths);
+            }
+            return last;
 
+        } catch (IOException e) {
+            Log.e("ContentProviders", "Error writing scan results to " + logFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Opens the result log of a scan, starting a new one if the existing log is unreadable.
+     *
+     * @param logFile  The result log of the authority.
+     * @param truncate True to discard results of earlier scans.
+     * @return The log writer.
+     * @throws IOException If the log cannot be created.
+     */
+    private ScanResultLog.Writer openResultLog(File logFile, boolean truncate) throws IOException {
+        try {
+            return new ScanResultLog.Writer(logFile, truncate, ScanResultLog.DEFAULT_GROUP_SIZE,
+                    ScanResultLog.DEFAULT_GROUP_DELAY_MS, ScanResultLog.SyncPolicy.ON_COMMIT);
+        } catch (IOException e) {
+            if (truncate) {
+                throw e;
+            }
+            Log.e("ContentProviders", "Unreadable result log " + logFile + ", starting a new one", e);
+            return new ScanResultLog.Writer(logFile, true, ScanResultLog.DEFAULT_GROUP_SIZE,
+                    ScanResultLog.DEFAULT_GROUP_DELAY_MS, ScanResultLog.SyncPolicy.ON_COMMIT);
+        }
+    }
+
+    /**
+     * @param authority The authority of a content provider.
+     * @return True if an interrupted scan of the authority can be resumed.
+     */
+    public boolean hasCheckpoint(String authority) {
+        return ScanCheckpoint.fileFor(context, authority).exists();
+    }
+
+    /**
+     * Deletes the saved progress of an interrupted scan, so the next scan of the authority starts over.
+     *
+     * @param authority The authority of a content provider.
+     */
+    public void discardCheckpoint(String authority) {
+        File checkpointFile = ScanCheckpoint.fileFor(context, authority);
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            Log.w("ContentProviders", "Could not delete checkpoint " + checkpointFile);
+        }
+        File deduplicatorFile = ProbeDeduplicator.fileFor(context, authority);
+        if (deduplicatorFile.exists() && !deduplicatorFile.delete()) {
+            Log.w("ContentProviders", "Could not delete " + deduplicatorFile);
+        }
+    }
+
+    /**
+     * Opens the probe cache of an authority for the installed version of the package hosting the provider.
+     *
+     * @param authority The authority of the content provider.
+     * @return The cache, empty if there is none for this version or it cannot be read.
+     */
+    private ProbeCache openProbeCache(String authority) {
+        long versionCode = -1;
+        long lastUpdateTime = -1;
+        PackageManager packageManager = context.getPackageManager();
+        ProviderInfo providerInfo = packageManager.resolveContentProvider(authority, 0);
+        if (providerInfo != null) {
+            try {
+                PackageInfo packageInfo = packageManager.getPackageInfo(providerInfo.packageName, 0);
+                versionCode = PackageInfoCompat.getLongVersionCode(packageInfo);
+                lastUpdateTime = packageInfo.lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w("ContentProviders", "Package of " + authority + " not found, probe cache disabled", e);
+            }
+        }
+        File cacheFile = ProbeCache.fileFor(context, authority);
+        if (versionCode != -1) {
+            try {
+                return ProbeCache.load(cacheFile, versionCode, lastUpdateTime, ProbeCache.DEFAULT_MAX_ENTRIES, ProbeCache.DEFAULT_TTL_MS);
             } catch (IOException e) {
-                Log.e("ContentProviders", "Error processing paths from file", e);
+                Log.e("ContentProviders", "Error reading probe cache " + cacheFile, e);
+            }
+        }
+        return new ProbeCache(versionCode, lastUpdateTime, ProbeCache.DEFAULT_MAX_ENTRIES, ProbeCache.DEFAULT_TTL_MS);
+    }
+
+    private void saveProbeCache(ProbeCache cache, File cacheFile) {
+        try {
+            cache.save(cacheFile);
+        } catch (IOException e) {
+            Log.e("ContentProviders", "Error saving probe cache " + cacheFile, e);
+        }
+    }
+
+    /**
+     * Builds a progress snapshot from the engine's position, the limiter and the scan metrics, which are all
+     * safe to read from any thread.
+     */
+    private static ScanProgress snapshotProgress(String authority, ProbeEngine engine, AdaptiveConcurrencyController limiter,
+                                                 ScanMetrics metrics, boolean finished) {
+        long probes = metrics.getProbes();
+        double rate = metrics.getProbesPerSecond();
+        long etaMs = finished ? 0 : rate > 0 ? (long) (engine.getRemainingLevelCandidates() / rate * 1000) : -1;
+        int depth = Math.min(engine.getDepth(), engine.getMaxDepth());
+        return new ScanProgress(authority, probes, metrics.getHits(), rate, etaMs, depth, engine.getMaxDepth(),
+                engine.getLevelProgress(), probes == 0 ? 0 : metrics.getCacheHits() / (double) probes,
+                limiter.getLimit(), limiter.getRateLimit(), finished);
+    }
+
+    /**
+     * @return True if the query failed in the binder layer rather than in the provider, a sign of an overloaded target.
+     */
+    private static boolean isBinderFailure(ProbeResult result) {
+        String errorClass = result.getErrorClass();
+        return errorClass != null && (errorClass.equals("android.os.DeadObjectException")
+                || errorClass.equals("android.os.RemoteException")
+                || errorClass.equals("android.os.TransactionTooLargeException"));
+    }
+
+    /**
+     * Writes the metrics of a finished scan next to its result log.
+     */
+    private void dumpMetrics(ScanMetrics metrics, String authority) {
+        File metricsFile = ScanMetrics.fileFor(context, authority);
+        try {
+            metrics.dump(metricsFile);
+            Log.i("ContentProviders", metrics.format());
+        } catch (IOException e) {
+            Log.e("ContentProviders", "Error writing scan metrics to " + metricsFile, e);
+        }
+    }
+
+    /**
+     * Identifies the candidates of a scan: the names derived from the provider, the bundled and user
+     * wordlists and the enabled mutations.
+     *
+     * @return The fingerprint stored in the scan's checkpoints.
+     */
+    private long wordlistFingerprint(WordlistDictionary tableNames, String userWordlistsSignature) {
+        long hash = tableNames.fingerprint();
+        hash = 31 * hash + userWordlistsSignature.hashCode();
+        for (WordMutator.Mutation mutation : wordMutations) {
+            hash = 31 * hash + mutation.name().hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * Loads the checkpoint of an interrupted scan, dropping it if it cannot be read or was taken
+     * with a different wordlist, mutations or depth.
+     *
+     * @return The checkpoint to resume from, or null to start over.
+     */
+    private ScanCheckpoint loadCheckpoint(File checkpointFile, WordSource wordlist, long wordlistFingerprint) {
+        try {
+            ScanCheckpoint checkpoint = ScanCheckpoint.load(checkpointFile);
+            if (checkpoint != null && checkpoint.isCompatible(wordlist.size(), wordlistFingerprint, maxDepth)) {
+                return checkpoint;
             }
-        }).start();
+        } catch (IOException e) {
+            Log.e("ContentProviders", "Error reading checkpoint " + checkpointFile, e);
+        }
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            Log.w("ContentProviders", "Could not delete checkpoint " + checkpointFile);
+        }
+        return null;
     }
 
-    private boolean isPathAccessible(String path) {
+    /**
+     * Loads the deduplicator left behind by the previous chunk of a scan.
+     *
+     * @return The deduplicator, or null if there is none or it cannot be read.
+     */
+    private static ProbeDeduplicator loadDeduplicator(File file) {
+        try {
+            return ProbeDeduplicator.load(file);
+        } catch (IOException e) {
+            Log.e("ContentProviders", "Error reading probe deduplicator " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Queries a path through the scan's shared client and classifies the provider's answer.
+     * Failures are counted by the scan metrics, their stack traces are only logged when verbose.
+     *
+     * @param clients The client holder of the authority being scanned.
+     * @param path The content URI to query.
+     * @param verbose True to log every failed query.
+     * @return How the provider answered the query.
+     */
+    private ProbeResult probePath(ProviderClientHolder clients, String path, boolean verbose) {
         Cursor cursor = null;
-        ContentProviderClient client = null;
         try {
             Uri uri = Uri.parse(path);
-            client = context.getContentResolver().acquireUnstableContentProviderClient(uri);
-            if (client != null) {
-                cursor = client.query(uri, null, null, null, null);
-                if (cursor != null && cursor.moveToFirst()) {
-                    return true; // The path is accessible
-                }
+            cursor = clients.query(uri);
+            if (cursor == null) {
+                return ProbeResult.NO_CURSOR;
             }
+            return cursor.moveToFirst() ? ProbeResult.ACCESSIBLE : ProbeResult.EMPTY;
         } catch (IllegalArgumentException | SecurityException e) {
-            Log.e("ContentProviders", "Security or Argument issue for path: " + path, e);
+            if (verbose) {
+                Log.v("ContentProviders", "Security or Argument issue for path: " + path, e);
+            }
+            return ProbeResult.fromException(e);
         } catch (RemoteException e) {
-            Log.e("ContentProviders", "RemoteException querying URI: " + path, e);
+            if (verbose) {
+                Log.v("ContentProviders", "RemoteException querying URI: " + path, e);
+            }
+            return ProbeResult.fromException(e);
         } catch (Exception e) {
-            Log.e("ContentProviders", "Query failed for URI: " + path, e);
+            if (verbose) {
+                Log.v("ContentProviders", "Query failed for URI: " + path, e);
+            }
+            return ProbeResult.fromException(e);
         } finally {
             if (cursor != null) {
                 cursor.close();
             }
-            if (client != null) {
-                client.close();
-            }
         }
-        return false;
     }
 
     private List<String> getPermissionsForAuthority(String authority) {
         List<String> requiredPermissions = new ArrayList<>();
+        IpcComponent provider = PackageInventory.getInstance(context).findProvider(authority);
+        if (provider != null) {
+            if (provider.getReadPermission() != null) {
+                requiredPermissions.add(provider.getReadPermission());
+            }
+            if (provider.getWritePermission() != null) {
+                requiredPermissions.add(provider.getWritePermission());
+            }
+            return requiredPermissions;
+        }
+
+        // The inventory may still be loading
         PackageManager packageManager = context.getPackageManager();
         ProviderInfo providerInfo = packageManager.resolveContentProvider(authority, PackageManager.GET_META_DATA);
         if (providerInfo != null) {
@@ -0,0 +1,309 @@
+package com.example.bullet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The DeepLinkGenerator class turns the {@code <data>} elements of an activity's intent filters into concrete
+ * URIs the filters accept, and every URI into mutated variants. Like {@link IntentTemplate}, links are never
+ * built up front: link {@code i} is decoded from {@code i} as a mixed-radix number whose digits select the
+ * filter's scheme, host, port, path and the mutation.
+ * <p>
+ * Wildcard hosts and path patterns are filled in with a value that matches them, path prefixes get an id
+ * segment appended.
+ */
+public class DeepLinkGenerator implements Iterable<DeepLinkGenerator.Link> {
+
+    /**
+     * Where a mutation puts its payload.
+     */
+    private enum Target {NONE, PATH, QUERY}
+
+    /**
+     * The changes made to a link that matches a filter, besides leaving it as it is.
+     */
+    public enum Mutation {
+        NONE(Target.NONE, ""),
+        OPEN_REDIRECT(Target.QUERY, "url=https%3A%2F%2Fevil.example&redirect_uri=https%3A%2F%2Fevil.example&next=%2F%2Fevil.example"),
+        JAVASCRIPT_URL(Target.QUERY, "url=javascript%3Aalert(1)"),
+        FILE_URL(Target.QUERY, "url=file%3A%2F%2F%2Fdata%2Fdata%2F&path=..%2F..%2F..%2Fdata%2Fdata"),
+        DEBUG_FLAGS(Target.QUERY, "debug=true&admin=true&test=1"),
+        NEGATIVE_ID(Target.QUERY, "id=-1&page=-1"),
+        SQL_QUOTE(Target.QUERY, "id=1%27%20OR%20%271%27%3D%271"),
+        SCRIPT(Target.QUERY, "q=%3Cscript%3Ealert(1)%3C%2Fscript%3E"),
+        FORMAT_STRING(Target.QUERY, "q=%25s%25s%25s%25n"),
+        TRAVERSAL(Target.PATH, "/../../../../data/data"),
+        ENCODED_TRAVERSAL(Target.PATH, "/..%2F..%2F..%2F..%2Fdata%2Fdata"),
+        NUL_BYTE(Target.PATH, "%00"),
+        LONG_SEGMENT(Target.PATH, "/" + repeat('A', 4096));
+
+        private final Target target;
+        private final String payload;
+
+        Mutation(Target target, String payload) {
+            this.target = target;
+            this.payload = payload;
+        }
+
+        /**
+         * @param uri A URI without a fragment.
+         * @return The URI with the payload appended to its path or query.
+         */
+        String apply(String uri) {
+            switch (target) {
+                case PATH: {
+                    int query = uri.indexOf('?');
+                    return query < 0 ? uri + payload : uri.substring(0, query) + payload + uri.substring(query);
+                }
+                case QUERY:
+                    return uri + (uri.indexOf('?') < 0 ? "?" : "&") + payload;
+                default:
+                    return uri;
+            }
+        }
+    }
+
+    /**
+     * A generated link and the filter it was generated from.
+     */
+    public static final class Link {
+        private final String uri;
+        private final IpcComponent.Filter filter;
+        private final Mutation mutation;
+
+        Link(String uri, IpcComponent.Filter filter, Mutation mutation) {
+            this.uri = uri;
+            this.filter = filter;
+            this.mutation = mutation;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        /**
+         * @return The filter the link matches before it is mutated.
+         */
+        public IpcComponent.Filter getFilter() {
+            return filter;
+        }
+
+        public Mutation getMutation() {
+            return mutation;
+        }
+
+        /**
+         * @return The first MIME type of the filter, which the link has to be sent with, or null.
+         */
+        public String getMimeType() {
+            return filter.getMimeTypes().isEmpty() ? null : filter.getMimeTypes().get(0);
+        }
+
+        @Override
+        public String toString() {
+            return mutation == Mutation.NONE ? uri : mutation + " " + uri;
+        }
+    }
+
+    /**
+     * The links of one filter: the cross product of its schemes, hosts, ports and paths.
+     */
+    private static final class FilterSpace {
+        final IpcComponent.Filter filter;
+        final List<String> hosts;
+        final List<String> ports;
+        final List<String> paths;
+        final long size;
+
+        FilterSpace(IpcComponent.Filter filter) {
+            this.filter = filter;
+            List<String> hosts = new ArrayList<>();
+            for (String host : filter.getHosts()) {
+                hosts.add(concreteHost(host));
+            }
+            this.hosts = orNone(hosts);
+            this.ports = orNone(filter.getPorts());
+            List<String> paths = new ArrayList<>(filter.getPaths());
+            for (String prefix : filter.getPathPrefixes()) {
+                paths.add(prefix + (prefix.endsWith("/") ? "1" : "/1"));
+            }
+            for (String pattern : filter.getPathPatterns()) {
+                paths.add(concretePath(pattern));
+            }
+            this.paths = orNone(paths);
+            this.size = (long) filter.getSchemes().size() * this.hosts.size() * this.ports.size() * this.paths.size();
+        }
+
+        String uri(long index) {
+            String path = paths.get((int) (index % paths.size()));
+            index /= paths.size();
+            String port = ports.get((int) (index % ports.size()));
+            index /= ports.size();
+            String host = hosts.get((int) (index % hosts.size()));
+            index /= hosts.size();
+            String scheme = filter.getSchemes().get((int) index);
+
+            // A filter without hosts accepts any, and ignores ports and paths; one is made up so the link is hierarchical
+            if (host.isEmpty()) {
+                return scheme + "://" + PLACEHOLDER_HOST + path;
+            }
+            return scheme + "://" + host + (port.isEmpty() ? "" : ":" + port) + path;
+        }
+
+        private static List<String> orNone(List<String> values) {
+            return values.isEmpty() ? Collections.singletonList("") : values;
+        }
+    }
+
+    // Filled in for wildcard hosts and filters that accept any host
+    private static final String PLACEHOLDER_HOST = "example.com";
+    // Filled in for wildcards of path patterns
+    private static final String PLACEHOLDER_SEGMENT = "test";
+
+    private final List<FilterSpace> spaces = new ArrayList<>();
+    private final Mutation[] mutations;
+    private final long size;
+
+    /**
+     * @param filters   The intent filters of an activity; those without a data scheme are left out.
+     * @param mutations The mutations to apply to every link, {@link Mutation#NONE} for the links as they are.
+     */
+    public DeepLinkGenerator(List<IpcComponent.Filter> filters, Set<Mutation> mutations) {
+        long links = 0;
+        for (IpcComponent.Filter filter : filters) {
+            if (!filter.getSchemes().isEmpty()) {
+                FilterSpace space = new FilterSpace(filter);
+                spaces.add(space);
+                links += space.size;
+            }
+        }
+        this.mutations = mutations.toArray(new Mutation[0]);
+        Arrays.sort(this.mutations);
+        this.size = links * this.mutations.length;
+    }
+
+    /**
+     * Creates a generator applying every mutation.
+     *
+     * @param filters The intent filters of an activity.
+     * @return The generator.
+     */
+    public static DeepLinkGenerator withAllMutations(List<IpcComponent.Filter> filters) {
+        return new DeepLinkGenerator(filters, EnumSet.allOf(Mutation.class));
+    }
+
+    /**
+     * @return The number of links, every mutation of every link the filters accept.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Builds link {@code index}. All mutations of a link come one after another, starting with the link as
+     * it is if {@link Mutation#NONE} was chosen.
+     *
+     * @param index The link, from 0 to {@link #size()} - 1.
+     * @return The link.
+     */
+    public Link get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Link " + index + " of " + size);
+        }
+        Mutation mutation = mutations[(int) (index % mutations.length)];
+        long rest = index / mutations.length;
+        for (FilterSpace space : spaces) {
+            if (rest < space.size) {
+                return new Link(mutation.apply(space.uri(rest)), space.filter, mutation);
+            }
+            rest -= space.size;
+        }
+        throw new IllegalStateException("Link " + index + " not found");
+    }
+
+    @Override
+    public Iterator<Link> iterator() {
+        return new Iterator<Link>() {
+            private long next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Link next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Returns a host matching a declared one, which may start with a wildcard, e.g. "*.example.com".
+     */
+    static String concreteHost(String host) {
+        if (host.equals("*")) {
+            return PLACEHOLDER_HOST;
+        }
+        return host.startsWith("*.") ? "www" + host.substring(1) : host;
+    }
+
+    /**
+     * Returns a path matching a simple glob as used by {@code android:pathPattern}: "." is any character,
+     * "*" repeats the previous one zero or more times and "\\" escapes. The "[...]" classes and "+" of
+     * {@code pathAdvancedPattern} are understood as well.
+     */
+    static String concretePath(String pattern) {
+        StringBuilder path = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            String literal;
+            if (c == '\\' && i + 1 < pattern.length()) {
+                literal = String.valueOf(pattern.charAt(i + 1));
+                i += 2;
+            } else if (c == '[') {
+                // The first character of the class, or "a" for a negated one
+                int end = pattern.indexOf(']', i);
+                end = end < 0 ? pattern.length() : end;
+                literal = i + 1 < end && pattern.charAt(i + 1) != '^' ? String.valueOf(pattern.charAt(i + 1)) : "a";
+                i = end + 1;
+            } else if (c == '.') {
+                literal = null;
+                i++;
+            } else {
+                literal = String.valueOf(c);
+                i++;
+            }
+            boolean repeated = i < pattern.length() && (pattern.charAt(i) == '*' || pattern.charAt(i) == '+');
+            if (repeated) {
+                i++;
+            }
+            if (literal != null) {
+                // One occurrence satisfies both "*" and "+"
+                path.append(literal);
+            } else {
+                path.append(repeated ? PLACEHOLDER_SEGMENT : "a");
+            }
+        }
+        if (path.length() == 0 || path.charAt(0) != '/') {
+            path.insert(0, '/');
+        }
+        return path.toString();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
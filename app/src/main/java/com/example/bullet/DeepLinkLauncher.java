@@ -0,0 +1,315 @@
+package com.example.bullet;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The DeepLinkLauncher class opens the links of a {@link DeepLinkGenerator} in their activity with
+ * {@code ACTION_VIEW}, one after another through a {@link LaunchMonitor}, at a limited rate. Links are taken
+ * from the generator in batches on a background thread, where each one is also resolved the way another
+ * app's link would be, without naming the component, to record whether the activity is reachable with it.
+ * The launch itself names the component, so mutated links that no longer match reach the activity too.
+ * <p>
+ * When the run is over, the launches are ranked like an {@link ActivitySweep} and written to a
+ * {@link LaunchReport}. All methods must be called on the main thread.
+ */
+public class DeepLinkLauncher {
+
+    private static final String TAG = "DeepLinkLauncher";
+
+    public static final double DEFAULT_RATE = 2;
+    public static final int DEFAULT_MAX_LAUNCHES = 500;
+    private static final int BATCH_SIZE = 16;
+
+    /**
+     * The outcome of one link.
+     */
+    public static final class Result {
+        private final DeepLinkGenerator.Link link;
+        private final boolean resolved;
+        private final LaunchMonitor.Result launch;
+
+        Result(DeepLinkGenerator.Link link, boolean resolved, LaunchMonitor.Result launch) {
+            this.link = link;
+            this.resolved = resolved;
+            this.launch = launch;
+        }
+
+        public DeepLinkGenerator.Link getLink() {
+            return link;
+        }
+
+        /**
+         * @return True if the link resolves to the activity without naming it, as it would from a browser.
+         */
+        public boolean isResolved() {
+            return resolved;
+        }
+
+        /**
+         * @return What happened to the activity.
+         */
+        public LaunchMonitor.Result getLaunch() {
+            return launch;
+        }
+
+        @Override
+        public String toString() {
+            return (resolved ? "RESOLVED " : "UNRESOLVED ") + launch;
+        }
+    }
+
+    /**
+     * Receives the progress and the ranked results of a run.
+     */
+    public interface Listener {
+        void onLaunchFinished(int done, int total, Result result);
+
+        /**
+         * @param ranked The results, most suspicious first.
+         * @param report The written report, or null if it could not be written.
+         */
+        void onFinished(List<Result> ranked, File report);
+    }
+
+    /**
+     * Orders the results like {@link ActivitySweep#RANKING}, resolved links first among equals.
+     */
+    static final Comparator<Result> RANKING = Comparator
+            .comparing(Result::getLaunch, ActivitySweep.RANKING)
+            .thenComparing(result -> !result.isResolved());
+
+    /**
+     * A link waiting to be launched.
+     */
+    private static final class Pending {
+        final DeepLinkGenerator.Link link;
+        final boolean resolved;
+
+        Pending(DeepLinkGenerator.Link link, boolean resolved) {
+            this.link = link;
+            this.resolved = resolved;
+        }
+    }
+
+    private final Context context;
+    private final LaunchMonitor monitor;
+    private final IpcComponent activity;
+    private final DeepLinkGenerator generator;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService resolver = Executors.newSingleThreadExecutor();
+    private final ArrayDeque<Pending> ready = new ArrayDeque<>();
+    private final List<Result> results = new ArrayList<>();
+    private Iterator<DeepLinkGenerator.Link> links;
+    private double rate = DEFAULT_RATE;
+    private int maxLaunches = DEFAULT_MAX_LAUNCHES;
+    private long dwellMillis = ActivitySweep.DEFAULT_DWELL_MS;
+    private Listener listener;
+    private int taken = 0;
+    private boolean fetching = false;
+    private boolean waiting = false;
+    private boolean cancelled = false;
+    // Set once the resolver is shut down, callbacks still queued on the handler must not touch it
+    private boolean finished = false;
+    private long lastLaunchAt = 0;
+
+    /**
+     * @param context   Any context of the application.
+     * @param monitor   The monitor making the launches.
+     * @param activity  The activity the links are opened in.
+     * @param generator The links.
+     */
+    public DeepLinkLauncher(Context context, LaunchMonitor monitor, IpcComponent activity, DeepLinkGenerator generator) {
+        this.context = context.getApplicationContext();
+        this.monitor = monitor;
+        this.activity = activity;
+        this.generator = generator;
+    }
+
+    /**
+     * @param rate The maximum number of launches per second.
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * @param maxLaunches The maximum number of links opened; the generator may have many more.
+     */
+    public void setMaxLaunches(int maxLaunches) {
+        this.maxLaunches = maxLaunches;
+    }
+
+    /**
+     * @param dwellMillis How long the activity is left open with every link.
+     */
+    public void setDwellMillis(long dwellMillis) {
+        this.dwellMillis = dwellMillis;
+    }
+
+    /**
+     * @return The number of links the run opens.
+     */
+    public int size() {
+        return (int) Math.min(generator.size(), maxLaunches);
+    }
+
+    /**
+     * Starts opening the links.
+     *
+     * @param listener Receives the progress and the results.
+     */
+    public void start(Listener listener) {
+        this.listener = listener;
+        this.links = generator.iterator();
+        if (size() == 0) {
+            finish();
+            return;
+        }
+        waiting = true;
+        fetchBatch();
+    }
+
+    /**
+     * Stops the run after the current launch; the results so far are still reported.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Takes the next batch of links from the generator and resolves them in the background.
+     */
+    private void fetchBatch() {
+        int count = Math.min(BATCH_SIZE, size() - taken);
+        // At most one batch is kept ready, the generator may have far more links than fit in memory
+        if (finished || fetching || count <= 0 || ready.size() >= BATCH_SIZE) {
+            return;
+        }
+        List<DeepLinkGenerator.Link> batch = new ArrayList<>(count);
+        for (int i = 0; i < count && links.hasNext(); i++) {
+            batch.add(links.next());
+        }
+        taken += batch.size();
+        fetching = true;
+        resolver.execute(() -> {
+            List<Pending> resolved = new ArrayList<>(batch.size());
+            for (DeepLinkGenerator.Link link : batch) {
+                resolved.add(new Pending(link, resolves(link)));
+            }
+            handler.post(() -> {
+                if (finished) {
+                    // The run was cancelled while this batch was being resolved
+                    return;
+                }
+                fetching = false;
+                ready.addAll(resolved);
+                // The next batch is resolved while this one is launched
+                fetchBatch();
+                if (waiting) {
+                    waiting = false;
+                    launchNext();
+                }
+            });
+        });
+    }
+
+    private boolean resolves(DeepLinkGenerator.Link link) {
+        Intent intent = buildIntent(link);
+        intent.setPackage(activity.getPackageName());
+        try {
+            for (ResolveInfo info : context.getPackageManager().queryIntentActivities(intent, PackageManager.MATCH_DEFAULT_ONLY)) {
+                if (info.activityInfo != null && activity.getName().equals(info.activityInfo.name)) {
+                    return true;
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Cannot resolve " + link.getUri(), e);
+        }
+        return false;
+    }
+
+    private static Intent buildIntent(DeepLinkGenerator.Link link) {
+        Intent intent = new Intent(Intent.ACTION_VIEW);
+        Uri uri = Uri.parse(link.getUri());
+        if (link.getMimeType() != null) {
+            intent.setDataAndType(uri, link.getMimeType());
+        } else {
+            intent.setData(uri);
+        }
+        for (String category : link.getFilter().getCategories()) {
+            intent.addCategory(category);
+        }
+        return intent;
+    }
+
+    private void launchNext() {
+        if (finished) {
+            return;
+        }
+        if (cancelled || (ready.isEmpty() && !fetching)) {
+            finish();
+            return;
+        }
+        if (ready.isEmpty()) {
+            // The next batch is still being resolved
+            waiting = true;
+            return;
+        }
+        long delay = lastLaunchAt + (long) (1000 / rate) - SystemClock.elapsedRealtime();
+        if (delay > 0) {
+            handler.postDelayed(this::launchNext, delay);
+            return;
+        }
+
+        Pending pending = ready.poll();
+        fetchBatch();
+        lastLaunchAt = SystemClock.elapsedRealtime();
+        Intent intent = buildIntent(pending.link);
+        intent.setComponent(new ComponentName(activity.getPackageName(), activity.getName()));
+        monitor.launch(intent, pending.link.toString(), dwellMillis, launch -> {
+            Result result = new Result(pending.link, pending.resolved, launch);
+            results.add(result);
+            listener.onLaunchFinished(results.size(), size(), result);
+            launchNext();
+        });
+    }
+
+    private void finish() {
+        finished = true;
+        resolver.shutdownNow();
+        List<Result> ranked = rank(results);
+        LaunchReport.write(context, activity.getPackageName() + "_deeplinks", ranked,
+                report -> listener.onFinished(ranked, report));
+    }
+
+    /**
+     * Ranks results most suspicious first, see {@link #RANKING}.
+     *
+     * @param results The results of the launches.
+     * @return The ranked results.
+     */
+    static List<Result> rank(List<Result> results) {
+        List<Result> ranked = new ArrayList<>(results);
+        Collections.sort(ranked, RANKING);
+        return ranked;
+    }
+}
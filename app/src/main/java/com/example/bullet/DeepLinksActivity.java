@@ -0,0 +1,200 @@
+package com.example.bullet;
+
+import android.content.ActivityNotFoundException;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The DeepLinksActivity class lists the deep links declared by installed apps. The intent filters are taken
+ * from the {@link ManifestIndex}, since the PackageManager does not report them.
+ * Clicking a link opens it with {@code ACTION_VIEW}.
+ * <p>
+ * With a "packageName" extra only that package is read, otherwise every user app is.
+ */
+public class DeepLinksActivity extends AppCompatActivity {
+
+    private static final String TAG = "DeepLinksActivity";
+
+    /**
+     * A link and the activity declaring it.
+     */
+    static final class DeepLink {
+        final String uri;
+        final IpcComponent component;
+        final boolean autoVerify;
+
+        DeepLink(String uri, IpcComponent component, boolean autoVerify) {
+            this.uri = uri;
+            this.component = component;
+            this.autoVerify = autoVerify;
+        }
+    }
+
+    private final List<DeepLink> links = new ArrayList<>();
+    private LinksAdapter adapter;
+    private Button btnStartExtraction;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_deep_links);
+
+        RecyclerView recyclerView = findViewById(R.id.recyclerViewDeepLinks);
+        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new LinksAdapter();
+        recyclerView.setAdapter(adapter);
+
+        btnStartExtraction = findViewById(R.id.btnStartExtraction);
+        btnStartExtraction.setOnClickListener(view -> startExtraction());
+    }
+
+    /**
+     * Reads the manifests on a background thread and shows the links when done.
+     */
+    private void startExtraction() {
+        btnStartExtraction.setEnabled(false);
+        String packageName = getIntent().getStringExtra("packageName");
+        PackageManager packageManager = getPackageManager();
+        ManifestIndex index = ManifestIndex.getInstance(this);
+        new Thread(() -> {
+            long start = SystemClock.elapsedRealtime();
+            List<IpcComponent> components;
+            if (packageName != null) {
+                try {
+                    index.update(Collections.singletonList(packageManager.getApplicationInfo(packageName, 0)));
+                } catch (PackageManager.NameNotFoundException e) {
+                    Log.w(TAG, packageName + " is not installed");
+                }
+                components = index.getComponents(packageName);
+            } else {
+                // Only APKs that changed since the last extraction are parsed again
+                index.refresh(false);
+                components = index.getAllComponents(false);
+            }
+
+            List<DeepLink> found = new ArrayList<>();
+            for (IpcComponent component : components) {
+                if (component.getKind() == IpcComponent.Kind.ACTIVITY && component.isExported()) {
+                    for (IpcComponent.Filter filter : component.getFilters()) {
+                        for (String uri : linksOf(filter)) {
+                            found.add(new DeepLink(uri, component, filter.isAutoVerify()));
+                        }
+                    }
+                }
+            }
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            String summary = "Found " + found.size() + " links in " + elapsed + " ms.";
+
+            runOnUiThread(() -> {
+                links.clear();
+                links.addAll(found);
+                adapter.notifyDataSetChanged();
+                btnStartExtraction.setEnabled(true);
+                Toast.makeText(this, summary, Toast.LENGTH_LONG).show();
+            });
+        }).start();
+    }
+
+    /**
+     * Lists the links an intent filter accepts: every scheme with every host, and every path, path prefix
+     * and path pattern of the filter. Patterns are shown as they are declared.
+     *
+     * @param filter An intent filter.
+     * @return The links, empty if the filter has no scheme.
+     */
+    static List<String> linksOf(IpcComponent.Filter filter) {
+        if (filter.getSchemes().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> hosts = filter.getHosts().isEmpty() ? Collections.singletonList("") : filter.getHosts();
+        List<String> paths = new ArrayList<>();
+        paths.addAll(filter.getPaths());
+        paths.addAll(filter.getPathPrefixes());
+        paths.addAll(filter.getPathPatterns());
+        if (paths.isEmpty()) {
+            paths.add("");
+        }
+
+        List<String> links = new ArrayList<>();
+        for (String scheme : filter.getSchemes()) {
+            for (String host : hosts) {
+                for (String path : paths) {
+                    if (host.isEmpty()) {
+                        links.add(scheme + ":" + path);
+                    } else {
+                        links.add(scheme + "://" + host + (path.isEmpty() || path.startsWith("/") ? path : "/" + path));
+                    }
+                }
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Opens a link with the activity that declares it.
+     */
+    private void openLink(DeepLink link) {
+        Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(link.uri));
+        intent.setPackage(link.component.getPackageName());
+        try {
+            startActivity(intent);
+        } catch (ActivityNotFoundException | SecurityException e) {
+            Log.e(TAG, "Failed to open " + link.uri, e);
+            Toast.makeText(this, "Failed to open " + link.uri, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private final class LinksAdapter extends RecyclerView.Adapter<LinksAdapter.ViewHolder> {
+
+        final class ViewHolder extends RecyclerView.ViewHolder {
+            final TextView textKind;
+            final TextView textName;
+
+            ViewHolder(View itemView) {
+                super(itemView);
+                textKind = itemView.findViewById(R.id.textKind);
+                textName = itemView.findViewById(R.id.textName);
+            }
+        }
+
+        @NonNull
+        @Override
+        public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_ipc_component, parent, false);
+            return new ViewHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+            DeepLink link = links.get(position);
+            // App Links the app asked to verify open without a chooser, which makes them the more valuable targets
+            holder.textKind.setText(link.autoVerify ? "App Link: " : "Link: ");
+            holder.textName.setText(link.uri + "\n" + link.component.getName());
+            holder.itemView.setOnClickListener(view -> openLink(link));
+        }
+
+        @Override
+        public int getItemCount() {
+            return links.size();
+        }
+    }
+}
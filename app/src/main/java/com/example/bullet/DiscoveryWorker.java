@@ -0,0 +1,286 @@
+package com.example.bullet;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.ForegroundInfo;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The DiscoveryWorker class runs content provider discovery as a WorkManager job, so a scan keeps going
+ * when IPCActivity is rotated, backgrounded or destroyed. A scan is split into chunks of
+ * {@link #CHUNK_PROBES} queries: every job continues from the scan's checkpoint, runs one chunk and, if the
+ * scan is not done, appends the job for the next chunk to the scan's unique work. Jobs are expedited and
+ * run in the foreground with a notification showing the scan's progress, which is also published
+ * through {@link #setProgressAsync(Data)} for the activity to display.
+ */
+public class DiscoveryWorker extends Worker {
+
+    /**
+     * Tag of every discovery job.
+     */
+    public static final String TAG = "discovery";
+
+    public static final String KEY_AUTHORITY = "authority";
+    public static final String KEY_FINISHED = "finished";
+
+    private static final String KEY_CONCURRENCY = "concurrency";
+    private static final String KEY_MAX_DEPTH = "maxDepth";
+    private static final String KEY_PROBE_BUDGET = "probeBudget";
+    private static final String KEY_WORD_MUTATIONS = "wordMutations";
+    private static final String KEY_FALSE_POSITIVE_RATE = "falsePositiveRate";
+    private static final String KEY_DEDUPLICATION_BYTES = "deduplicationBytes";
+    private static final String KEY_PROCESSED = "processed";
+    private static final String KEY_HITS = "hits";
+    private static final String KEY_PROBES_PER_SECOND = "probesPerSecond";
+    private static final String KEY_ETA_MS = "etaMs";
+    private static final String KEY_DEPTH = "depth";
+    private static final String KEY_LEVEL_PROGRESS = "levelProgress";
+    private static final String KEY_CACHE_HIT_RATE = "cacheHitRate";
+    private static final String KEY_CONCURRENCY_LIMIT = "concurrencyLimit";
+    private static final String KEY_RATE_LIMIT = "rateLimit";
+
+    // Number of queries sent by a single job, small enough to fit the execution limits of expedited work
+    private static final long CHUNK_PROBES = 50_000;
+
+    private static final String CHANNEL_ID = "DiscoveryChannel";
+    private static final int NOTIFICATION_ID = 2;  // MyForegroundService uses 1
+    private static final long NOTIFICATION_INTERVAL_MS = 1000;
+
+    private long lastNotification;
+
+    public DiscoveryWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * @param authority The authority of a content provider.
+     * @return The name of the unique work holding the jobs of a scan of the authority; also one of the jobs' tags.
+     */
+    public static String uniqueWorkName(String authority) {
+        return TAG + ":" + authority;
+    }
+
+    /**
+     * Starts a scan of an authority unless one is already queued or running.
+     *
+     * @param context            Any context of the application.
+     * @param authority          The authority of the content provider to scan.
+     * @param concurrency        The maximum number of queries in flight.
+     * @param maxDepth           The maximum number of path segments explored.
+     * @param probeBudget        The maximum number of queries of the whole scan.
+     * @param mutations          The mutations applied to the wordlist.
+     * @param falsePositiveRate  The fraction of new URIs the de-duplication may skip.
+     * @param deduplicationBytes The maximum memory used to remember the URIs of a job.
+     */
+    public static void enqueue(Context context, String authority, int concurrency, int maxDepth, long probeBudget,
+                               Set<WordMutator.Mutation> mutations, double falsePositiveRate, long deduplicationBytes) {
+        String[] mutationNames = new String[mutations.size()];
+        int i = 0;
+        for (WordMutator.Mutation mutation : mutations) {
+            mutationNames[i++] = mutation.name();
+        }
+        Data input = new Data.Builder()
+                .putString(KEY_AUTHORITY, authority)
+                .putInt(KEY_CONCURRENCY, concurrency)
+                .putInt(KEY_MAX_DEPTH, maxDepth)
+                .putLong(KEY_PROBE_BUDGET, probeBudget)
+                .putStringArray(KEY_WORD_MUTATIONS, mutationNames)
+                .putDouble(KEY_FALSE_POSITIVE_RATE, falsePositiveRate)
+                .putLong(KEY_DEDUPLICATION_BYTES, deduplicationBytes)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(uniqueWorkName(authority), ExistingWorkPolicy.KEEP,
+                request(authority, input));
+    }
+
+    /**
+     * Cancels every queued and running scan. Running scans save a checkpoint and can be resumed later.
+     *
+     * @param context Any context of the application.
+     */
+    public static void cancelAll(Context context) {
+        WorkManager.getInstance(context).cancelAllWorkByTag(TAG);
+    }
+
+    /**
+     * Cancels the scan of an authority. A running scan saves a checkpoint and can be resumed later.
+     *
+     * @param context   Any context of the application.
+     * @param authority The authority whose scan is cancelled.
+     */
+    public static void cancel(Context context, String authority) {
+        WorkManager.getInstance(context).cancelUniqueWork(uniqueWorkName(authority));
+    }
+
+    private static OneTimeWorkRequest request(String authority, Data input) {
+        return new OneTimeWorkRequest.Builder(DiscoveryWorker.class)
+                .setInputData(input)
+                .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+                .addTag(TAG)
+                .addTag(uniqueWorkName(authority))
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Data input = getInputData();
+        String authority = input.getString(KEY_AUTHORITY);
+        if (authority == null) {
+            return Result.failure();
+        }
+
+        // Long scans must not be killed as soon as the app leaves the foreground
+        try {
+            setForegroundAsync(getForegroundInfo()).get();
+        } catch (Exception e) {
+            Log.w("DiscoveryWorker", "Could not run discovery of " + authority + " in the foreground", e);
+        }
+
+        ContentProviders providers = new ContentProviders(getApplicationContext(), new ContentProviders.DiscoveryCallback() {
+            @Override
+            public void onDiscoveryComplete(List<String> accessiblePaths) {
+                Log.i("DiscoveryWorker", "Discovery of " + authority + " found " + accessiblePaths.size() + " accessible paths.");
+            }
+
+            @Override
+            public void onDiscoveryProgress(ScanProgress progress) {
+                publishProgress(progress);
+            }
+        });
+        providers.setConcurrency(input.getInt(KEY_CONCURRENCY, ContentProviders.DEFAULT_CONCURRENCY));
+        providers.setMaxDepth(input.getInt(KEY_MAX_DEPTH, ContentProviders.DEFAULT_MAX_DEPTH));
+        providers.setProbeBudget(input.getLong(KEY_PROBE_BUDGET, ContentProviders.DEFAULT_PROBE_BUDGET));
+        String[] mutationNames = input.getStringArray(KEY_WORD_MUTATIONS);
+        if (mutationNames != null && mutationNames.length > 0) {
+            Set<WordMutator.Mutation> mutations = EnumSet.noneOf(WordMutator.Mutation.class);
+            for (String name : mutationNames) {
+                mutations.add(WordMutator.Mutation.valueOf(name));
+            }
+            providers.setWordMutations(mutations);
+        }
+        providers.setDeduplication(input.getDouble(KEY_FALSE_POSITIVE_RATE, ProbeDeduplicator.DEFAULT_FALSE_POSITIVE_RATE),
+                input.getLong(KEY_DEDUPLICATION_BYTES, ProbeDeduplicator.DEFAULT_MAX_BYTES));
+
+        ScanProgress last = providers.runDiscovery(authority, CHUNK_PROBES, this::isStopped);
+        if (last == null) {
+            return Result.failure();
+        }
+        if (isStopped()) {
+            return Result.success();
+        }
+        if (!last.isFinished()) {
+            // The next chunk runs as a new job once this one has completed
+            WorkManager.getInstance(getApplicationContext()).enqueueUniqueWork(uniqueWorkName(authority),
+                    ExistingWorkPolicy.APPEND_OR_REPLACE, request(authority, input));
+        }
+        return Result.success(toData(last));
+    }
+
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        Notification notification = buildNotification(getInputData().getString(KEY_AUTHORITY), "Starting discovery");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return new ForegroundInfo(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        }
+        return new ForegroundInfo(NOTIFICATION_ID, notification);
+    }
+
+    /**
+     * Publishes a progress snapshot to WorkManager and, at most once per second, to the notification.
+     * Called on the main thread.
+     */
+    private void publishProgress(ScanProgress progress) {
+        setProgressAsync(toData(progress));
+
+        long now = SystemClock.uptimeMillis();
+        if (now - lastNotification >= NOTIFICATION_INTERVAL_MS) {
+            lastNotification = now;
+            NotificationManager manager = getApplicationContext().getSystemService(NotificationManager.class);
+            if (manager != null) {
+                String text = String.format(Locale.ROOT, "Depth %d/%d, %d probed, %d hits, %.0f/s",
+                        progress.getDepth(), progress.getMaxDepth(), progress.getProcessed(), progress.getHits(),
+                        progress.getProbesPerSecond());
+                manager.notify(NOTIFICATION_ID, buildNotification(progress.getAuthority(), text));
+            }
+        }
+    }
+
+    private Notification buildNotification(String authority, String text) {
+        Context context = getApplicationContext();
+        NotificationManager manager = context.getSystemService(NotificationManager.class);
+        if (manager != null && manager.getNotificationChannel(CHANNEL_ID) == null) {
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID, "Discovery Scans",
+                    NotificationManager.IMPORTANCE_LOW));
+        }
+        return new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setContentTitle("Discovering " + authority)
+                .setContentText(text)
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .addAction(0, "Stop", WorkManager.getInstance(context).createCancelPendingIntent(getId()))
+                .build();
+    }
+
+    /**
+     * Converts a progress snapshot into work data.
+     *
+     * @param progress The snapshot.
+     * @return The data.
+     */
+    static Data toData(ScanProgress progress) {
+        return new Data.Builder()
+                .putString(KEY_AUTHORITY, progress.getAuthority())
+                .putLong(KEY_PROCESSED, progress.getProcessed())
+                .putLong(KEY_HITS, progress.getHits())
+                .putDouble(KEY_PROBES_PER_SECOND, progress.getProbesPerSecond())
+                .putLong(KEY_ETA_MS, progress.getEtaMs())
+                .putInt(KEY_DEPTH, progress.getDepth())
+                .putInt(KEY_MAX_DEPTH, progress.getMaxDepth())
+                .putDouble(KEY_LEVEL_PROGRESS, progress.getLevelProgress())
+                .putDouble(KEY_CACHE_HIT_RATE, progress.getCacheHitRate())
+                .putInt(KEY_CONCURRENCY_LIMIT, progress.getConcurrencyLimit())
+                .putDouble(KEY_RATE_LIMIT, progress.getRateLimit())
+                .putBoolean(KEY_FINISHED, progress.isFinished())
+                .build();
+    }
+
+    /**
+     * Reads a progress snapshot from work data, i.e. the progress or output of a discovery job.
+     *
+     * @param data The work data.
+     * @return The snapshot, or null if the data holds none.
+     */
+    public static ScanProgress progressFrom(Data data) {
+        String authority = data.getString(KEY_AUTHORITY);
+        if (authority == null || !data.hasKeyWithValueOfType(KEY_PROCESSED, Long.class)) {
+            return null;
+        }
+        return new ScanProgress(authority, data.getLong(KEY_PROCESSED, 0), data.getLong(KEY_HITS, 0),
+                data.getDouble(KEY_PROBES_PER_SECOND, 0), data.getLong(KEY_ETA_MS, -1), data.getInt(KEY_DEPTH, 0),
+                data.getInt(KEY_MAX_DEPTH, 0), data.getDouble(KEY_LEVEL_PROGRESS, 0),
+                data.getDouble(KEY_CACHE_HIT_RATE, 0), data.getInt(KEY_CONCURRENCY_LIMIT, 0),
+                data.getDouble(KEY_RATE_LIMIT, Double.POSITIVE_INFINITY), data.getBoolean(KEY_FINISHED, false));
+    }
+}
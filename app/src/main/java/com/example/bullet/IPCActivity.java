@@ -1,44 +1,76 @@
 package com.example.bullet;
 
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.ComponentName;
 import android.content.Intent;
-import android.content.pm.ActivityInfo;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
-import android.content.pm.ProviderInfo;
-import android.content.pm.ServiceInfo;
-import android.graphics.Color;
+import android.content.ServiceConnection;
 import android.os.Bundle;
-import android.text.SpannableString;
-import android.text.style.ForegroundColorSpan;
+import android.os.IBinder;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.text.TextUtils;
 import android.util.Log;
+import android.view.View;
 import android.widget.Button;
+import android.widget.EditText;
+import android.widget.ProgressBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * The IPCActivity class is responsible for listing and interacting with various Inter-Process Communication (IPC) components
  * of a selected package, such as Activities, Services, Content Providers, and Broadcast Receivers.
  */
-public class IPCActivity extends AppCompatActivity implements ContentProviders.DiscoveryCallback {
+public class IPCActivity extends AppCompatActivity implements ContentProviders.DiscoveryCallback, IPCAdapter.OnItemClickListener {
 
     private IPCAdapter ipcAdapter;
+    private ComponentSearchIndex componentSearch;
+    private EditText editFilter;
     private String currentPackageName;
     private Broadcasts broadcasts;
     private ContentProviders providers;
     private Activities activities;
     private Services services;
-    private PackageManager packageManager;
+    private View layoutDiscoveryProgress;
+    private ProgressBar progressDiscovery;
+    private TextView textDiscoveryProgress;
+    private TextView textJobHost;
+    private MyForegroundService jobHost;
+    private final MyForegroundService.StatusListener jobHostListener = this::showJobHostStatus;
+    private final ServiceConnection jobHostConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            jobHost = ((MyForegroundService.LocalBinder) service).getService();
+            jobHost.addStatusListener(jobHostListener);
+            showJobHostStatus(jobHost.getStatus());
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            jobHost = null;
+            textJobHost.setVisibility(View.GONE);
+        }
+    };
+    private final Set<String> runningScans = new HashSet<>();
+    private Set<UUID> reportedScans;  // Finished scan jobs whose results were shown or predate this activity
 
     /**
      * Initializes the activity, setting up the UI and fetching IPC components of the provided package.
@@ -67,14 +99,31 @@ public class IPCActivity extends AppCompatActivity implements ContentProviders.D
         broadcasts = new Broadcasts();
         services = new Services();
         providers = new ContentProviders(this, this);
-        packageManager = getPackageManager();
 
         // Set up the RecyclerView for displaying IPC components
         RecyclerView recyclerViewIPC = findViewById(R.id.recyclerViewIPC);
         recyclerViewIPC.setLayoutManager(new LinearLayoutManager(this));
-        ipcAdapter = new IPCAdapter(new ArrayList<>(), this::onItemClick);
+        recyclerViewIPC.setHasFixedSize(true);
+        ipcAdapter = new IPCAdapter(this);
         recyclerViewIPC.setAdapter(ipcAdapter);
 
+        // Filter the listed components as the user types
+        editFilter = findViewById(R.id.editFilter);
+        editFilter.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                showComponents();
+            }
+        });
+
         // Fetch and display the exported IPC components
         fetchExportedIPCList(currentPackageName);
 
@@ -82,125 +131,133 @@ public class IPCActivity extends AppCompatActivity implements ContentProviders.D
         Button btnShowPaths = findViewById(R.id.btnShowPaths);
         btnShowPaths.setOnClickListener(view -> showAccessiblePaths());
 
+        // Set up button to display the live metrics of discovery scans
+        Button btnShowMetrics = findViewById(R.id.btnShowMetrics);
+        btnShowMetrics.setOnClickListener(view -> showScanMetrics());
+
+        // Set up the panel showing the progress of a running discovery
+        layoutDiscoveryProgress = findViewById(R.id.layoutDiscoveryProgress);
+        progressDiscovery = findViewById(R.id.progressDiscovery);
+        textDiscoveryProgress = findViewById(R.id.textDiscoveryProgress);
+
+        // Shows what the job host is running, e.g. a fuzzing run or broadcast campaign
+        textJobHost = findViewById(R.id.textJobHost);
+        // Jobs run on the host, not in this activity, so they can be stopped from here after it was recreated
+        textJobHost.setOnClickListener(view -> {
+            String running = jobHost != null ? jobHost.getStatus().getRunning() : null;
+            if (running != null) {
+                new AlertDialog.Builder(this)
+                        .setTitle("Stop " + running + "?")
+                        .setPositiveButton("Stop", (dialog, which) -> {
+                            if (jobHost != null) {
+                                jobHost.cancel(running);
+                            }
+                        })
+                        .setNegativeButton("Cancel", null)
+                        .show();
+            }
+        });
+
+        // Scans run as background jobs, so a re-created activity picks up the ones still running
+        WorkManager.getInstance(this).getWorkInfosByTagLiveData(DiscoveryWorker.TAG)
+                .observe(this, this::onDiscoveryWorkChanged);
+
         // Set up the new Stop button
         Button btnStopDiscovery = findViewById(R.id.btnStopDiscovery);
         btnStopDiscovery.setOnClickListener(view -> providers.stopDiscovery());
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Without BIND_AUTO_CREATE the binding connects whenever the job host runs, but never starts it
+        bindService(new Intent(this, MyForegroundService.class), jobHostConnection, 0);
+    }
+
+    @Override
+    protected void onStop() {
+        if (jobHost != null) {
+            jobHost.removeStatusListener(jobHostListener);
+            jobHost = null;
+        }
+        unbindService(jobHostConnection);
+        textJobHost.setVisibility(View.GONE);
+        super.onStop();
+    }
+
     /**
-     * Fetches the exported IPC components of the specified package and displays them in the RecyclerView.
+     * Shows the status of the job host while it runs jobs.
+     *
+     * @param status The status of the job host.
+     */
+    private void showJobHostStatus(MyForegroundService.Status status) {
+        if (status.getRunning() == null) {
+            textJobHost.setVisibility(View.GONE);
+        } else {
+            textJobHost.setText(getString(R.string.job_host_status, status.toString()));
+            textJobHost.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Fetches the exported IPC components of the specified package from the package inventory and displays
+     * them in the RecyclerView.
      *
      * @param packageName The name of the package to fetch IPC components from.
      */
     private void fetchExportedIPCList(String packageName) {
-        try {
-            // Get all activities, services, providers, and receivers of the package
-            PackageInfo packageInfo = packageManager.getPackageInfo(packageName,
-                    PackageManager.GET_SERVICES | PackageManager.GET_ACTIVITIES |
-                            PackageManager.GET_PROVIDERS | PackageManager.GET_RECEIVERS);
-
-            ArrayList<SpannableString> ipcList = new ArrayList<>();
-
-            // Process exported activities
-            if (packageInfo.activities != null) {
-                for (ActivityInfo activityInfo : packageInfo.activities) {
-                    if (activityInfo.exported && !(activityInfo.name.contains("MainActivity"))) {
-                        String activityLabel = "Activity: ";
-                        SpannableString spannableActivity = new SpannableString(activityLabel + activityInfo.name);
-                        spannableActivity.setSpan(new ForegroundColorSpan(Color.BLUE), 0, activityLabel.length(), 0);
-                        ipcList.add(spannableActivity);
-                    }
+        PackageInventory inventory = PackageInventory.getInstance(this);
+
+        // A package the inventory does not know yet is read from the PackageManager, so stay off the main thread
+        new Thread(() -> {
+            List<IpcComponent> ipcList = new ArrayList<>();
+            for (IpcComponent component : inventory.getIndex(packageName).exported()) {
+                if (component.getKind() == IpcComponent.Kind.ACTIVITY && component.getName().contains("MainActivity")) {
+                    continue;
                 }
+                ipcList.add(component);
             }
 
-            // Process exported services
-            if (packageInfo.services != null) {
-                for (ServiceInfo serviceInfo : packageInfo.services) {
-                    if (serviceInfo.exported) {
-                        String serviceLabel = "Service: ";
-                        SpannableString spannableService = new SpannableString(serviceLabel + serviceInfo.name);
-                        spannableService.setSpan(new ForegroundColorSpan(Color.GREEN), 0, serviceLabel.length(), 0);
-                        ipcList.add(spannableService);
-                    }
-                }
-            }
-
-            // Process exported content providers
-            if (packageInfo.providers != null) {
-                for (ProviderInfo providerInfo : packageInfo.providers) {
-                    if (providerInfo.exported) {
-                        String providerLabel = "Provider: ";
-                        SpannableString spannableProvider = new SpannableString(providerLabel + providerInfo.name);
-                        spannableProvider.setSpan(new ForegroundColorSpan(Color.RED), 0, providerLabel.length(), 0);
-                        ipcList.add(spannableProvider);
-                    }
-                }
-            }
-
-            // Process exported broadcast receivers
-            if (packageInfo.receivers != null) {
-                for (ActivityInfo receiverInfo : packageInfo.receivers) {
-                    if (receiverInfo.exported) {
-                        String receiverLabel = "Receiver: ";
-                        SpannableString spannableReceiver = new SpannableString(receiverLabel + receiverInfo.name);
-                        spannableReceiver.setSpan(new ForegroundColorSpan(Color.GRAY), 0, receiverLabel.length(), 0);
-                        ipcList.add(spannableReceiver);
-                    }
-                }
-            }
+            ComponentSearchIndex index = new ComponentSearchIndex(ipcList);
 
             // Update the RecyclerView with the fetched IPC components
             runOnUiThread(() -> {
-                if (ipcAdapter != null) {
-                    ipcAdapter.updateIPCList(ipcList);
-                }
+                componentSearch = index;
+                showComponents();
             });
+        }).start();
+    }
 
-        } catch (PackageManager.NameNotFoundException e) {
-            Log.e("IPCActivity", "Package not found", e);
+    /**
+     * Shows the fetched components matching the filter.
+     */
+    private void showComponents() {
+        if (componentSearch != null && ipcAdapter != null) {
+            ipcAdapter.updateIPCList(componentSearch.search(editFilter.getText().toString(), Integer.MAX_VALUE));
         }
     }
 
     /**
      * Handles item clicks in the RecyclerView, performing the appropriate action based on the selected IPC component.
      *
-     * @param selectedItem The SpannableString representing the selected IPC component.
+     * @param component The selected IPC component.
      */
-    private void onItemClick(SpannableString selectedItem) {
+    @Override
+    public void onItemClick(IpcComponent component) {
         try {
-            String selectedItemText = selectedItem.toString();
-            if (selectedItemText.startsWith("Activity: ")) {
-                String activityName = selectedItemText.replace("Activity: ", "");
-                activities.showActionOptions(this, currentPackageName, activityName);
-            } else if (selectedItemText.startsWith("Service: ")) {
-                String serviceName = selectedItemText.replace("Service: ", "");
-                showPermissionDialog(() -> services.promptForServiceParameters(this, currentPackageName, serviceName));
-            } else if (selectedItemText.startsWith("Provider: ")) {
-                // Extract the provider name from the selected item text
-                String providerName = selectedItemText.replace("Provider: ", "");
-
-                // Retrieve the provider authority using the PackageManager
-                ProviderInfo[] providers = packageManager.getPackageInfo(currentPackageName, PackageManager.GET_PROVIDERS).providers;
-                String providerAuthority = null;
-
-                for (ProviderInfo providerInfo : providers) {
-                    if (providerInfo.name.equals(providerName)) {
-                        providerAuthority = providerInfo.authority;
-                        break;
-                    }
-                }
-
-                if (providerAuthority != null) {
-                    // Use the extracted authority instead of the provider name
-                    this.providers.discoverContentProviderPaths(providerAuthority);
-                } else {
-                    Toast.makeText(this, "Provider authority not found.", Toast.LENGTH_SHORT).show();
-                }
-            } else if (selectedItemText.startsWith("Receiver: ")) {
-                String receiverName = selectedItemText.replace("Receiver: ", "");
-                broadcasts.promptForBroadcastPermissionParameters(this, receiverName);
-            } else {
-                Toast.makeText(this, "Selected: " + selectedItemText, Toast.LENGTH_SHORT).show();
+            switch (component.getKind()) {
+                case ACTIVITY:
+                    activities.showActionOptions(this, currentPackageName, component.getName());
+                    break;
+                case SERVICE:
+                    showPermissionDialog(() -> services.promptForServiceParameters(this, currentPackageName, component.getName()));
+                    break;
+                case PROVIDER:
+                    chooseAuthority(component);
+                    break;
+                case RECEIVER:
+                    broadcasts.promptForBroadcastPermissionParameters(this, component);
+                    break;
             }
         } catch (Exception e) {
             Log.e("IPCActivity", "Error handling item click", e);
@@ -208,7 +265,152 @@ public class IPCActivity extends AppCompatActivity implements ContentProviders.D
         }
     }
 
+    /**
+     * Copies a discovered path to the clipboard, e.g. to query it with another tool.
+     *
+     * @param path The selected content URI.
+     */
+    @Override
+    public void onPathClick(String path) {
+        ClipboardManager clipboard = (ClipboardManager) getSystemService(CLIPBOARD_SERVICE);
+        clipboard.setPrimaryClip(ClipData.newPlainText("Content URI", path));
+        Toast.makeText(this, "Copied " + path, Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Starts discovery of a provider's authority, letting the user pick one if the provider serves several.
+     *
+     * @param provider The selected content provider.
+     */
+    private void chooseAuthority(IpcComponent provider) {
+        List<String> authorities = provider.getAuthorities();
+        if (authorities.isEmpty()) {
+            Toast.makeText(this, "Provider authority not found.", Toast.LENGTH_SHORT).show();
+        } else if (authorities.size() == 1) {
+            startDiscovery(authorities.get(0));
+        } else {
+            String[] items = authorities.toArray(new String[0]);
+            new AlertDialog.Builder(this)
+                    .setTitle("Choose Authority")
+                    .setItems(items, (dialog, which) -> startDiscovery(items[which]))
+                    .show();
+        }
+    }
+
+    /**
+     * Starts content provider path discovery, offering to resume an interrupted scan of the same authority.
+     *
+     * @param authority The authority of the content provider to scan.
+     */
+    private void startDiscovery(String authority) {
+        if (runningScans.contains(authority)) {
+            manageRunningScan(authority);
+            return;
+        }
+        if (!providers.hasCheckpoint(authority)) {
+            providers.discoverContentProviderPaths(authority);
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Resume Discovery")
+                .setMessage("An earlier scan of " + authority + " was interrupted. Continue where it stopped?")
+                .setPositiveButton("Resume", (dialog, which) -> providers.discoverContentProviderPaths(authority))
+                .setNegativeButton("Start Over", (dialog, which) -> {
+                    providers.discardCheckpoint(authority);
+                    providers.discoverContentProviderPaths(authority);
+                })
+                .show();
+    }
 
+    /**
+     * Lets the user pause, resume, reprioritise or stop a running scan. Scans share one pool of workers,
+     * and a scan of higher priority gets a larger share of it.
+     *
+     * @param authority The authority being scanned.
+     */
+    private void manageRunningScan(String authority) {
+        ScanScheduler scheduler = ScanScheduler.getInstance();
+        boolean paused = scheduler.isPaused(authority);
+        int priority = scheduler.getPriority(authority);
+        String[] options = {
+                paused ? "Resume" : "Pause",
+                "Raise priority",
+                "Lower priority",
+                "Stop"
+        };
+        new AlertDialog.Builder(this)
+                .setTitle("Discovery of " + authority + (paused ? " (paused)" : ""))
+                .setItems(options, (dialog, which) -> {
+                    switch (which) {
+                        case 0:
+                            scheduler.setPaused(authority, !paused);
+                            break;
+                        case 1:
+                            scheduler.setPriority(authority, priority * 2);
+                            Toast.makeText(this, "Priority " + scheduler.getPriority(authority), Toast.LENGTH_SHORT).show();
+                            break;
+                        case 2:
+                            scheduler.setPriority(authority, priority / 2);
+                            Toast.makeText(this, "Priority " + scheduler.getPriority(authority), Toast.LENGTH_SHORT).show();
+                            break;
+                        case 3:
+                            // A stopped scan is resumed from its checkpoint
+                            scheduler.setPaused(authority, false);
+                            DiscoveryWorker.cancel(this, authority);
+                            break;
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Shows the progress of running discovery jobs and the results of scans that finished while this
+     * activity was observing them.
+     *
+     * @param workInfos The current state of every discovery job.
+     */
+    private void onDiscoveryWorkChanged(List<WorkInfo> workInfos) {
+        boolean firstUpdate = reportedScans == null;
+        if (firstUpdate) {
+            reportedScans = new HashSet<>();
+        }
+        runningScans.clear();
+        for (WorkInfo workInfo : workInfos) {
+            if (!workInfo.getState().isFinished()) {
+                for (String tag : workInfo.getTags()) {
+                    if (tag.startsWith(DiscoveryWorker.TAG + ":")) {
+                        runningScans.add(tag.substring(DiscoveryWorker.TAG.length() + 1));
+                    }
+                }
+                ScanProgress progress = DiscoveryWorker.progressFrom(workInfo.getProgress());
+                if (progress != null) {
+                    onDiscoveryProgress(progress);
+                }
+            } else if (workInfo.getState() == WorkInfo.State.SUCCEEDED && reportedScans.add(workInfo.getId()) && !firstUpdate) {
+                ScanProgress progress = DiscoveryWorker.progressFrom(workInfo.getOutputData());
+                if (progress != null && progress.isFinished()) {
+                    onDiscoveryProgress(progress);
+                    showDiscoveryResults(progress.getAuthority());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the accessible paths of a finished scan from its result log and displays them.
+     *
+     * @param authority The scanned authority.
+     */
+    private void showDiscoveryResults(String authority) {
+        File logFile = ScanResultLog.fileFor(this, authority);
+        new Thread(() -> {
+            try {
+                onDiscoveryComplete(new ArrayList<>(ScanResultLog.readTargets(logFile, ProbeResult.Outcome.ACCESSIBLE.name())));
+            } catch (IOException e) {
+                Log.e("IPCActivity", "Error reading result log " + logFile, e);
+            }
+        }).start();
+    }
 
     /**
      * Callback method triggered when content provider path discovery is complete.
@@ -218,6 +420,7 @@ public class IPCActivity extends AppCompatActivity implements ContentProviders.D
     @Override
     public void onDiscoveryComplete(List<String> accessiblePaths) {
         runOnUiThread(() -> {
+            ipcAdapter.addPaths(accessiblePaths);
             StringBuilder message = new StringBuilder("Content provider path discovery is finished.\n\n");
 
             if (!accessiblePaths.isEmpty()) {
@@ -238,6 +441,46 @@ public class IPCActivity extends AppCompatActivity implements ContentProviders.D
         });
     }
 
+    /**
+     * Callback method triggered on the main thread while content provider path discovery runs.
+     *
+     * @param progress A snapshot of the running discovery.
+     */
+    @Override
+    public void onDiscoveryProgress(ScanProgress progress) {
+        // Scans run in this process, so their hits can be listed below the provider while they run
+        ScanMetrics metrics = MetricsRegistry.get(progress.getAuthority());
+        if (metrics != null && progress.getHits() > 0) {
+            ipcAdapter.addPaths(metrics.getHitPaths());
+        }
+
+        layoutDiscoveryProgress.setVisibility(View.VISIBLE);
+        progressDiscovery.setProgress(progress.isFinished() ? progressDiscovery.getMax()
+                : (int) (progress.getLevelProgress() * progressDiscovery.getMax()));
+
+        StringBuilder text = new StringBuilder(progress.getAuthority());
+        text.append(String.format(Locale.ROOT, "\nDepth %d/%d, %d probed, %d hits, %.0f/s",
+                progress.getDepth(), progress.getMaxDepth(), progress.getProcessed(), progress.getHits(),
+                progress.getProbesPerSecond()));
+        if (progress.getCacheHitRate() > 0) {
+            text.append(String.format(Locale.ROOT, ", %.0f%% cached", progress.getCacheHitRate() * 100));
+        }
+        text.append("\nUp to ").append(progress.getConcurrencyLimit()).append(" queries in flight");
+        if (progress.getRateLimit() != Double.POSITIVE_INFINITY) {
+            text.append(String.format(Locale.ROOT, ", capped at %.0f/s", progress.getRateLimit()));
+        }
+        if (progress.isFinished()) {
+            text.append("\nFinished");
+        } else if (ScanScheduler.getInstance().isPaused(progress.getAuthority())) {
+            text.append("\nPaused");
+        } else if (progress.getEtaMs() >= 0) {
+            long seconds = progress.getEtaMs() / 1000;
+            text.append(String.format(Locale.ROOT, "\nDepth %d done in about %d:%02d:%02d",
+                    progress.getDepth(), seconds / 3600, seconds / 60 % 60, seconds % 60));
+        }
+        textDiscoveryProgress.setText(text);
+    }
+
     /**
      * Displays a confirmation dialog before launching a service or performing an action.
      *
@@ -253,31 +496,63 @@ public class IPCActivity extends AppCompatActivity implements ContentProviders.D
     }
 
     /**
-     * Displays the accessible paths discovered by the ContentProviders class.
+     * Displays the accessible paths discovered by the ContentProviders class, read from the result logs
+     * of every scanned authority.
      */
     private void showAccessiblePaths() {
-        File file = new File(getExternalFilesDir(null), "found_paths.txt");
-        if (!file.exists()) {
+        File resultsDir = getExternalFilesDir("results");
+        File[] logs = resultsDir != null ? resultsDir.listFiles((dir, name) -> name.endsWith(".log")) : null;
+        if (logs == null || logs.length == 0) {
             Toast.makeText(this, "No accessible paths found.", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        StringBuilder paths = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                paths.append(line).append("\n");
+        // Result logs hold every probe, so they are read off the main thread
+        new Thread(() -> {
+            Set<String> paths = new LinkedHashSet<>();
+            for (File log : logs) {
+                try {
+                    paths.addAll(ScanResultLog.readTargets(log, ProbeResult.Outcome.ACCESSIBLE.name()));
+                } catch (IOException e) {
+                    Log.e("IPCActivity", "Error reading result log " + log, e);
+                    runOnUiThread(() -> Toast.makeText(this, "Error reading paths file.", Toast.LENGTH_SHORT).show());
+                    return;
+                }
             }
-        } catch (IOException e) {
-            Log.e("IPCActivity", "Error reading paths file", e);
-            Toast.makeText(this, "Error reading paths file.", Toast.LENGTH_SHORT).show();
+
+            runOnUiThread(() -> {
+                if (paths.isEmpty()) {
+                    Toast.makeText(this, "No accessible paths found.", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+
+                // Display the discovered paths in a dialog
+                new AlertDialog.Builder(this)
+                        .setTitle("Accessible Paths")
+                        .setMessage(TextUtils.join("\n", paths))
+                        .setPositiveButton("OK", (dialog, which) -> dialog.dismiss())
+                        .show();
+            });
+        }).start();
+    }
+
+    /**
+     * Displays the metrics of the running and finished discovery scans of this process.
+     */
+    private void showScanMetrics() {
+        List<ScanMetrics> scans = MetricsRegistry.all();
+        if (scans.isEmpty()) {
+            Toast.makeText(this, "No discovery scan has run yet.", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        // Display the discovered paths in a dialog
+        List<String> summaries = new ArrayList<>();
+        for (ScanMetrics metrics : scans) {
+            summaries.add(metrics.format());
+        }
         new AlertDialog.Builder(this)
-                .setTitle("Accessible Paths")
-                .setMessage(paths.toString())
+                .setTitle("Scan Metrics")
+                .setMessage(TextUtils.join("\n", summaries))
                 .setPositiveButton("OK", (dialog, which) -> dialog.dismiss())
                 .show();
     }
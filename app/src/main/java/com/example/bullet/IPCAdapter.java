@@ -1,65 +1,230 @@
 package com.example.bullet;
 
+import android.graphics.Color;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import android.text.SpannableString;
-
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
- * RecyclerView Adapter for displaying IPC components.
+ * RecyclerView Adapter for displaying IPC components, each content provider followed by the accessible
+ * paths discovered so far. Lists are diffed on a background thread, so only changed rows are rebound when
+ * components are reloaded or scan results arrive. Rows have stable IDs and one view type per kind of
+ * component, whose colored label is set once when the row's view is created.
  */
-public class IPCAdapter extends RecyclerView.Adapter<IPCAdapter.ViewHolder> {
+public class IPCAdapter extends ListAdapter<IPCAdapter.Row, IPCAdapter.ViewHolder> {
 
-    private List<SpannableString> ipcList;
-    private OnItemClickListener listener;
+    private static final IpcComponent.Kind[] KINDS = IpcComponent.Kind.values();
+    private static final int VIEW_TYPE_PATH = KINDS.length;
 
     public interface OnItemClickListener {
-        void onItemClick(SpannableString selectedItem);
+        void onItemClick(IpcComponent selectedItem);
+
+        void onPathClick(String path);
+    }
+
+    /**
+     * A row of the list: either a component or an accessible path of the provider above it.
+     */
+    public static final class Row {
+        private final String key;
+        private final IpcComponent component;
+        private final String path;
+
+        private Row(String key, IpcComponent component, String path) {
+            this.key = key;
+            this.component = component;
+            this.path = path;
+        }
+
+        static Row of(IpcComponent component) {
+            return new Row(component.getKind().name() + ":" + component.getName(), component, null);
+        }
+
+        static Row of(String path) {
+            return new Row("path:" + path, null, path);
+        }
     }
 
-    public IPCAdapter(List<SpannableString> ipcList, OnItemClickListener listener) {
-        this.ipcList = ipcList;
+    private static final DiffUtil.ItemCallback<Row> DIFF_CALLBACK = new DiffUtil.ItemCallback<Row>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Row oldItem, @NonNull Row newItem) {
+            return oldItem.key.equals(newItem.key);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Row oldItem, @NonNull Row newItem) {
+            return oldItem.component == newItem.component && Objects.equals(oldItem.path, newItem.path);
+        }
+    };
+
+    private final OnItemClickListener listener;
+    private final View.OnClickListener clickListener;
+    // Rows keep their ID for the lifetime of the adapter, so RecyclerView can track them across updates
+    private final Map<String, Long> ids = new HashMap<>();
+    private List<IpcComponent> components = Collections.emptyList();
+    private final Map<String, Set<String>> pathsByAuthority = new HashMap<>();
+
+    public IPCAdapter(OnItemClickListener listener) {
+        super(DIFF_CALLBACK);
         this.listener = listener;
+        setHasStableIds(true);
+
+        // One listener shared by every row, which finds its row through the view holder
+        this.clickListener = view -> {
+            ViewHolder holder = (ViewHolder) view.getTag();
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Row row = getItem(position);
+            if (row.component != null) {
+                this.listener.onItemClick(row.component);
+            } else {
+                this.listener.onPathClick(row.path);
+            }
+        };
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        Row row = getItem(position);
+        return row.component != null ? row.component.getKind().ordinal() : VIEW_TYPE_PATH;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String key = getItem(position).key;
+        Long id = ids.get(key);
+        if (id == null) {
+            id = (long) ids.size();
+            ids.put(key, id);
+        }
+        return id;
     }
 
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext()).inflate(android.R.layout.simple_list_item_1, parent, false);
-        return new ViewHolder(view);
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        ViewHolder holder;
+        if (viewType == VIEW_TYPE_PATH) {
+            holder = new ViewHolder(inflater.inflate(R.layout.item_discovered_path, parent, false));
+        } else {
+            holder = new ViewHolder(inflater.inflate(R.layout.item_ipc_component, parent, false));
+            IpcComponent.Kind kind = KINDS[viewType];
+            holder.textKind.setText(kind.getLabel() + ": ");
+            holder.textKind.setTextColor(colorOf(kind));
+        }
+        holder.itemView.setTag(holder);
+        holder.itemView.setOnClickListener(clickListener);
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        SpannableString item = ipcList.get(position);
-        holder.textView.setText(item);
-        holder.itemView.setOnClickListener(v -> listener.onItemClick(item));
+        Row row = getItem(position);
+        holder.textName.setText(row.component != null ? row.component.getName() : row.path);
     }
 
-    @Override
-    public int getItemCount() {
-        return ipcList.size();
+    /**
+     * Replaces the listed components, keeping the paths discovered for their providers.
+     *
+     * @param newData The components to list.
+     */
+    public void updateIPCList(List<IpcComponent> newData) {
+        components = new ArrayList<>(newData);
+        publish();
+    }
+
+    /**
+     * Lists accessible paths below the providers serving them. Paths already listed are ignored.
+     *
+     * @param paths Accessible content URIs.
+     */
+    public void addPaths(Collection<String> paths) {
+        boolean changed = false;
+        for (String path : paths) {
+            String authority = authorityOf(path);
+            if (authority == null) {
+                continue;
+            }
+            Set<String> known = pathsByAuthority.get(authority);
+            if (known == null) {
+                known = new LinkedHashSet<>();
+                pathsByAuthority.put(authority, known);
+            }
+            changed |= known.add(path);
+        }
+        if (changed) {
+            publish();
+        }
+    }
+
+    /**
+     * Builds the rows from the components and discovered paths and hands them to the background differ.
+     */
+    private void publish() {
+        List<Row> rows = new ArrayList<>(components.size());
+        for (IpcComponent component : components) {
+            rows.add(Row.of(component));
+            for (String authority : component.getAuthorities()) {
+                Set<String> paths = pathsByAuthority.get(authority);
+                if (paths != null) {
+                    for (String path : paths) {
+                        rows.add(Row.of(path));
+                    }
+                }
+            }
+        }
+        submitList(rows);
     }
 
-    public void updateIPCList(List<SpannableString> newData) {
-        ipcList.clear();
-        ipcList.addAll(newData);
-        notifyDataSetChanged();
+    private static String authorityOf(String path) {
+        String prefix = "content://";
+        if (!path.startsWith(prefix)) {
+            return null;
+        }
+        int end = path.indexOf('/', prefix.length());
+        return end < 0 ? path.substring(prefix.length()) : path.substring(prefix.length(), end);
+    }
+
+    private static int colorOf(IpcComponent.Kind kind) {
+        switch (kind) {
+            case ACTIVITY:
+                return Color.BLUE;
+            case SERVICE:
+                return Color.GREEN;
+            case PROVIDER:
+                return Color.RED;
+            default:
+                return Color.GRAY;
+        }
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
-        TextView textView;
+        TextView textKind;
+        TextView textName;
 
         public ViewHolder(View itemView) {
             super(itemView);
-            textView = itemView.findViewById(android.R.id.text1);
+            textKind = itemView.findViewById(R.id.textKind);
+            textName = itemView.findViewById(R.id.textName);
         }
     }
 }
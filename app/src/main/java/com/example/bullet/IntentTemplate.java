@@ -0,0 +1,265 @@
+package com.example.bullet;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The IntentTemplate class describes a family of intents as the cross product of actions, data URIs and
+ * typed values for every extra. Intents are never materialized up front: combination {@code i} is decoded
+ * from {@code i} as a mixed-radix number whose digits select the action, the data URI and the value of
+ * each extra, so a template of millions of combinations costs no memory and can be resumed at any index.
+ * <p>
+ * Every dimension includes "absent": no action, no data, or the extra left out.
+ */
+public class IntentTemplate {
+
+    /**
+     * The types of extra values a template can send.
+     */
+    public enum ExtraType {
+        INT, LONG, BOOLEAN, STRING, BUNDLE, INT_ARRAY, STRING_ARRAY
+    }
+
+    /**
+     * A typed value of an extra.
+     */
+    public static final class ExtraValue {
+        private final ExtraType type;
+        private final Object value;
+
+        private ExtraValue(ExtraType type, Object value) {
+            this.type = type;
+            this.value = value;
+        }
+
+        /**
+         * @param type  The type of the value.
+         * @param value The value, boxed for primitive types and an array for array types.
+         * @return The typed value.
+         */
+        public static ExtraValue of(ExtraType type, Object value) {
+            return new ExtraValue(type, value);
+        }
+
+        public ExtraType getType() {
+            return type;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case STRING:
+                    String text = (String) value;
+                    return text.length() > 32 ? "String(" + text.length() + " chars)" : "\"" + text + "\"";
+                case INT_ARRAY:
+                    return "int[" + ((int[]) value).length + "]";
+                case STRING_ARRAY:
+                    return "String[" + ((String[]) value).length + "]";
+                case BUNDLE:
+                    return "Bundle(" + ((Bundle) value).size() + ")";
+                default:
+                    return type.name().toLowerCase(Locale.ROOT) + " " + value;
+            }
+        }
+    }
+
+    private final List<String> actions;
+    private final List<String> dataUris;
+    private final List<String> extraKeys;
+    private final List<List<ExtraValue>> extraValues;
+    // Number of choices per dimension: action, data, then one per extra; index 0 of each means absent
+    private final long[] radices;
+    private final long size;
+
+    /**
+     * @param actions     The actions to send, absent is added.
+     * @param dataUris    The data URIs to send, absent is added.
+     * @param extraKeys   The keys of the extras.
+     * @param extraValues The values tried for each extra, in the order of the keys; absent is added.
+     */
+    public IntentTemplate(List<String> actions, List<String> dataUris, List<String> extraKeys, List<List<ExtraValue>> extraValues) {
+        if (extraKeys.size() != extraValues.size()) {
+            throw new IllegalArgumentException("Every extra needs its values");
+        }
+        this.actions = new ArrayList<>(actions);
+        this.dataUris = new ArrayList<>(dataUris);
+        this.extraKeys = new ArrayList<>(extraKeys);
+        this.extraValues = new ArrayList<>(extraValues);
+
+        radices = new long[2 + extraKeys.size()];
+        radices[0] = actions.size() + 1;
+        radices[1] = dataUris.size() + 1;
+        for (int i = 0; i < extraKeys.size(); i++) {
+            radices[2 + i] = extraValues.get(i).size() + 1;
+        }
+        long product = 1;
+        for (long radix : radices) {
+            // Saturate instead of overflowing, no run gets anywhere near that many intents anyway
+            product = product > Long.MAX_VALUE / radix ? Long.MAX_VALUE : product * radix;
+        }
+        size = product;
+    }
+
+    /**
+     * Creates a template trying the default corpus of values for every extra.
+     *
+     * @param actions   The actions to send.
+     * @param dataUris  The data URIs to send.
+     * @param extraKeys The keys of the extras.
+     * @return The template.
+     */
+    public static IntentTemplate withDefaultValues(List<String> actions, List<String> dataUris, List<String> extraKeys) {
+        List<List<ExtraValue>> values = new ArrayList<>();
+        for (int i = 0; i < extraKeys.size(); i++) {
+            values.add(defaultValues());
+        }
+        return new IntentTemplate(actions, dataUris, extraKeys, values);
+    }
+
+    /**
+     * Returns boundary and malformed values of every supported type, the usual suspects for crashing a
+     * component that trusts its extras.
+     *
+     * @return The values.
+     */
+    public static List<ExtraValue> defaultValues() {
+        List<ExtraValue> values = new ArrayList<>();
+        for (int value : new int[]{0, -1, 1, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            values.add(new ExtraValue(ExtraType.INT, value));
+        }
+        for (long value : new long[]{0, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            values.add(new ExtraValue(ExtraType.LONG, value));
+        }
+        values.add(new ExtraValue(ExtraType.BOOLEAN, true));
+        values.add(new ExtraValue(ExtraType.BOOLEAN, false));
+
+        char[] longText = new char[16 * 1024];
+        Arrays.fill(longText, 'A');
+        for (String value : new String[]{"", new String(longText), "../../../../../../etc/hosts",
+                "%s%s%s%n", "' OR '1'='1' --", "content://", "file:///data/data/", "\u0000"}) {
+            values.add(new ExtraValue(ExtraType.STRING, value));
+        }
+
+        values.add(new ExtraValue(ExtraType.BUNDLE, new Bundle()));
+        Bundle nested = new Bundle();
+        nested.putString("key", "value");
+        nested.putInt("int", -1);
+        Bundle outer = new Bundle();
+        outer.putBundle("bundle", nested);
+        values.add(new ExtraValue(ExtraType.BUNDLE, outer));
+
+        values.add(new ExtraValue(ExtraType.INT_ARRAY, new int[0]));
+        values.add(new ExtraValue(ExtraType.INT_ARRAY, new int[25_000]));
+        values.add(new ExtraValue(ExtraType.STRING_ARRAY, new String[0]));
+        values.add(new ExtraValue(ExtraType.STRING_ARRAY, new String[]{"", null}));
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * @return The number of intents the template describes, saturated at {@code Long.MAX_VALUE}.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Decodes a combination into the choice of every dimension.
+     *
+     * @param index  The combination, from 0 to {@link #size()} - 1.
+     * @param digits Receives the choice of the action, the data URI and each extra; 0 means absent.
+     *               Must have room for {@link #dimensions()} values.
+     */
+    public void decode(long index, int[] digits) {
+        long rest = index;
+        for (int i = 0; i < radices.length; i++) {
+            digits[i] = (int) (rest % radices[i]);
+            rest /= radices[i];
+        }
+    }
+
+    /**
+     * @return The number of dimensions: the action, the data URI and every extra.
+     */
+    public int dimensions() {
+        return radices.length;
+    }
+
+    /**
+     * Turns an intent into combination {@code index}, replacing its action, data and extras. The component
+     * and flags are kept, so one intent can be reused for a whole run.
+     *
+     * @param index  The combination.
+     * @param intent The intent to fill.
+     * @param digits Scratch space of {@link #dimensions()} values.
+     */
+    public void fill(long index, Intent intent, int[] digits) {
+        decode(index, digits);
+        intent.setAction(digits[0] == 0 ? null : actions.get(digits[0] - 1));
+        intent.setData(digits[1] == 0 ? null : Uri.parse(dataUris.get(digits[1] - 1)));
+        intent.replaceExtras((Bundle) null);
+        for (int i = 0; i < extraKeys.size(); i++) {
+            int digit = digits[2 + i];
+            if (digit != 0) {
+                putExtra(intent, extraKeys.get(i), extraValues.get(i).get(digit - 1));
+            }
+        }
+    }
+
+    /**
+     * Describes combination {@code index} for the result log.
+     *
+     * @param index The combination.
+     * @return A short description.
+     */
+    public String describe(long index) {
+        int[] digits = new int[dimensions()];
+        decode(index, digits);
+        StringBuilder description = new StringBuilder();
+        description.append("action=").append(digits[0] == 0 ? "-" : actions.get(digits[0] - 1));
+        description.append(" data=").append(digits[1] == 0 ? "-" : dataUris.get(digits[1] - 1));
+        for (int i = 0; i < extraKeys.size(); i++) {
+            int digit = digits[2 + i];
+            if (digit != 0) {
+                description.append(' ').append(extraKeys.get(i)).append('=').append(extraValues.get(i).get(digit - 1));
+            }
+        }
+        return description.toString();
+    }
+
+    private static void putExtra(Intent intent, String key, ExtraValue extra) {
+        switch (extra.type) {
+            case INT:
+                intent.putExtra(key, (int) (Integer) extra.value);
+                break;
+            case LONG:
+                intent.putExtra(key, (long) (Long) extra.value);
+                break;
+            case BOOLEAN:
+                intent.putExtra(key, (boolean) (Boolean) extra.value);
+                break;
+            case STRING:
+                intent.putExtra(key, (String) extra.value);
+                break;
+            case BUNDLE:
+                intent.putExtra(key, (Bundle) extra.value);
+                break;
+            case INT_ARRAY:
+                intent.putExtra(key, (int[]) extra.value);
+                break;
+            case STRING_ARRAY:
+                intent.putExtra(key, (String[]) extra.value);
+                break;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.bullet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The IpcComponent class describes one component of an installed package, as kept by the
+ * {@link PackageInventory}: its kind, class name, whether it is exported, the permissions guarding it,
+ * the authorities of a provider and the intent filters it declares.
+ * <p>
+ * Intent filters are not reported by the PackageManager, so they are only known for packages whose
+ * manifest was parsed.
+ */
+public final class IpcComponent {
+
+    /**
+     * The kinds of IPC components, with the label shown in the component list.
+     */
+    public enum Kind {
+        ACTIVITY("Activity"),
+        SERVICE("Service"),
+        PROVIDER("Provider"),
+        RECEIVER("Receiver");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * An intent filter declared by a component.
+     */
+    public static final class Filter {
+        private final List<String> actions;
+        private final List<String> categories;
+        private final List<String> schemes;
+        private final List<String> hosts;
+        private final List<String> ports;
+        private final List<String> paths;
+        private final List<String> pathPrefixes;
+        private final List<String> pathPatterns;
+        private final List<String> mimeTypes;
+        private final boolean autoVerify;
+
+        public Filter(List<String> actions, List<String> categories, List<String> schemes, List<String> hosts,
+                      List<String> paths, List<String> pathPrefixes, List<String> pathPatterns, List<String> mimeTypes) {
+            this(actions, categories, schemes, hosts, Collections.emptyList(), paths, pathPrefixes, pathPatterns,
+                    mimeTypes, false);
+        }
+
+        /**
+         * @param ports      The ports of the filter's data, as declared.
+         * @param autoVerify True if the filter asks for its web links to be verified as App Links.
+         */
+        public Filter(List<String> actions, List<String> categories, List<String> schemes, List<String> hosts,
+                      List<String> ports, List<String> paths, List<String> pathPrefixes, List<String> pathPatterns,
+                      List<String> mimeTypes, boolean autoVerify) {
+            this.actions = Collections.unmodifiableList(actions);
+            this.categories = Collections.unmodifiableList(categories);
+            this.schemes = Collections.unmodifiableList(schemes);
+            this.hosts = Collections.unmodifiableList(hosts);
+            this.ports = Collections.unmodifiableList(ports);
+            this.paths = Collections.unmodifiableList(paths);
+            this.pathPrefixes = Collections.unmodifiableList(pathPrefixes);
+            this.pathPatterns = Collections.unmodifiableList(pathPatterns);
+            this.mimeTypes = Collections.unmodifiableList(mimeTypes);
+            this.autoVerify = autoVerify;
+        }
+
+        public List<String> getActions() {
+            return actions;
+        }
+
+        public List<String> getCategories() {
+            return categories;
+        }
+
+        public List<String> getSchemes() {
+            return schemes;
+        }
+
+        public List<String> getHosts() {
+            return hosts;
+        }
+
+        public List<String> getPorts() {
+            return ports;
+        }
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        public List<String> getPathPrefixes() {
+            return pathPrefixes;
+        }
+
+        public List<String> getPathPatterns() {
+            return pathPatterns;
+        }
+
+        public List<String> getMimeTypes() {
+            return mimeTypes;
+        }
+
+        public boolean isAutoVerify() {
+            return autoVerify;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            writeList(out, actions);
+            writeList(out, categories);
+            writeList(out, schemes);
+            writeList(out, hosts);
+            writeList(out, ports);
+            writeList(out, paths);
+            writeList(out, pathPrefixes);
+            writeList(out, pathPatterns);
+            writeList(out, mimeTypes);
+            out.writeBoolean(autoVerify);
+        }
+
+        static Filter readFrom(DataInputStream in) throws IOException {
+            return new Filter(readList(in), readList(in), readList(in), readList(in), readList(in),
+                    readList(in), readList(in), readList(in), readList(in), in.readBoolean());
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final Kind kind;
+    private final String packageName;
+    private final String name;
+    private final boolean exported;
+    private final String permission;
+    private final String readPermission;
+    private final String writePermission;
+    private final List<String> authorities;
+    private final List<Filter> filters;
+
+    /**
+     * @param kind            The kind of the component.
+     * @param packageName     The package declaring the component.
+     * @param name            The fully qualified class name of the component.
+     * @param exported        True if other apps may use the component.
+     * @param permission      The permission required to use the component, or null.
+     * @param readPermission  The permission required to read from a provider, or null.
+     * @param writePermission The permission required to write to a provider, or null.
+     * @param authorities     The authorities of a provider, empty for other kinds.
+     * @param filters         The intent filters of the component, empty if unknown.
+     */
+    public IpcComponent(Kind kind, String packageName, String name, boolean exported, String permission,
+                        String readPermission, String writePermission, List<String> authorities, List<Filter> filters) {
+        this.kind = kind;
+        this.packageName = packageName;
+        this.name = name;
+        this.exported = exported;
+        this.permission = permission;
+        this.readPermission = readPermission;
+        this.writePermission = writePermission;
+        this.authorities = Collections.unmodifiableList(authorities);
+        this.filters = Collections.unmodifiableList(filters);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isExported() {
+        return exported;
+    }
+
+    /**
+     * @return The permission required to use the component, or null if there is none.
+     */
+    public String getPermission() {
+        return permission;
+    }
+
+    /**
+     * @return The permission required to query a provider, falling back to its general permission, or null.
+     */
+    public String getReadPermission() {
+        return readPermission != null ? readPermission : permission;
+    }
+
+    /**
+     * @return The permission required to modify a provider's data, falling back to its general permission, or null.
+     */
+    public String getWritePermission() {
+        return writePermission != null ? writePermission : permission;
+    }
+
+    /**
+     * @return The authorities of a provider, empty for other kinds.
+     */
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+
+    /**
+     * @return The intent filters of the component, empty if they are not known.
+     */
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    /**
+     * Splits the semicolon separated authorities reported by the PackageManager.
+     *
+     * @param authority The authority string of a provider, may be null.
+     * @return The authorities.
+     */
+    public static List<String> splitAuthorities(String authority) {
+        List<String> authorities = new ArrayList<>();
+        if (authority != null) {
+            for (String part : authority.split(";")) {
+                if (!part.isEmpty()) {
+                    authorities.add(part);
+                }
+            }
+        }
+        return authorities;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(kind.ordinal());
+        out.writeUTF(name);
+        out.writeBoolean(exported);
+        writeNullable(out, permission);
+        writeNullable(out, readPermission);
+        writeNullable(out, writePermission);
+        writeList(out, authorities);
+        out.writeInt(filters.size());
+        for (Filter filter : filters) {
+            filter.writeTo(out);
+        }
+    }
+
+    static IpcComponent readFrom(DataInputStream in, String packageName) throws IOException {
+        int kind = in.readByte();
+        if (kind < 0 || kind >= KINDS.length) {
+            throw new IOException("Unknown component kind " + kind);
+        }
+        String name = in.readUTF();
+        boolean exported = in.readBoolean();
+        String permission = readNullable(in);
+        String readPermission = readNullable(in);
+        String writePermission = readNullable(in);
+        List<String> authorities = readList(in);
+        int filterCount = in.readInt();
+        List<Filter> filters = new ArrayList<>(filterCount);
+        for (int i = 0; i < filterCount; i++) {
+            filters.add(Filter.readFrom(in));
+        }
+        return new IpcComponent(KINDS[kind], packageName, name, exported, permission, readPermission, writePermission,
+                authorities, filters);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+        out.writeShort(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return kind.getLabel() + ": " + name;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bullet;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class records latencies into a fixed set of log-linear buckets: values are kept
+ * in microseconds with 16 buckets per power of two, so every recorded value is accurate to within about
+ * 6% while the histogram never grows beyond a few kilobytes. Recording is lock-free and safe from any
+ * number of threads.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 4;
+    // Covers up to 2^(BUCKET_GROUPS + 3) microseconds, i.e. far beyond any binder timeout
+    private static final int BUCKET_GROUPS = 36;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_GROUPS * SUB_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+
+    /**
+     * Records a single latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(indexOf(micros));
+        total.increment();
+        sumMicros.add(micros);
+    }
+
+    /**
+     * @return The number of recorded latencies.
+     */
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * @return The mean latency in microseconds, 0 if nothing was recorded.
+     */
+    public double meanMicros() {
+        long n = total.sum();
+        return n == 0 ? 0 : sumMicros.sum() / (double) n;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of recorded latencies fall.
+     *
+     * @param quantile The quantile, e.g. 0.99 for the 99th percentile.
+     * @return The upper bound of the bucket holding the quantile, in microseconds; 0 if nothing was recorded.
+     */
+    public long percentileMicros(double quantile) {
+        long n = total.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(counts.length() - 1);
+    }
+
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int index = (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) - SUB_BUCKETS);
+        return Math.min(index, BUCKET_GROUPS * SUB_BUCKETS - 1);
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.bullet;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * The LaunchMonitor class launches other apps' activities from a host activity one at a time and watches
+ * what happens to them. Apps cannot observe other apps' activities or processes, so the host's own
+ * lifecycle is used instead:
+ * <ul>
+ *     <li>the target is started for a result, which puts it on top of the host in the host's task,</li>
+ *     <li>the host being stopped means the target is shown; the time until then is the launch time,</li>
+ *     <li>the host being resumed before the dwell time is over means the target went away by itself,
+ *     because it finished or its process crashed,</li>
+ *     <li>after the dwell time the target is closed with {@code finishActivity}, which brings the host back.</li>
+ * </ul>
+ * All methods must be called on the main thread.
+ */
+public class LaunchMonitor implements Application.ActivityLifecycleCallbacks {
+
+    private static final String TAG = "LaunchMonitor";
+
+    private static final int REQUEST_CODE = 0x4c4d;
+
+    // How long the host may take to come back after the target was closed, before it is brought forward
+    private static final long CLOSE_TIMEOUT_MS = 3_000;
+
+    /**
+     * What happened to a launched activity.
+     */
+    public enum Outcome {
+        ENDED_EARLY,  // Went away before the dwell time was over: finished itself or crashed
+        NOT_SHOWN,    // Never covered the host, e.g. hung in onCreate (ANR), transparent or ignored
+        SHOWN,        // Shown and still there after the dwell time
+        REJECTED      // Could not be started, e.g. not exported or requires a permission
+    }
+
+    /**
+     * The result of one launch.
+     */
+    public static final class Result {
+        private final ComponentName component;
+        private final String description;
+        private final Outcome outcome;
+        private final long launchMillis;
+        private final long aliveMillis;
+        private final String error;
+
+        Result(ComponentName component, String description, Outcome outcome, long launchMillis, long aliveMillis, String error) {
+            this.component = component;
+            this.description = description;
+            this.outcome = outcome;
+            this.launchMillis = launchMillis;
+            this.aliveMillis = aliveMillis;
+            this.error = error;
+        }
+
+        public ComponentName getComponent() {
+            return component;
+        }
+
+        /**
+         * @return The action, categories and data the activity was launched with.
+         */
+        public String getDescription() {
+            return description;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * @return Milliseconds until the activity was shown, or -1 if it never was.
+         */
+        public long getLaunchMillis() {
+            return launchMillis;
+        }
+
+        /**
+         * @return Milliseconds from the launch until the activity went away or was closed.
+         */
+        public long getAliveMillis() {
+            return aliveMillis;
+        }
+
+        /**
+         * @return The exception class if the activity could not be started, otherwise null.
+         */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            String launch = launchMillis >= 0 ? launchMillis + " ms" : "-";
+            return outcome + " " + component.getClassName() + " (" + description + ") launch " + launch
+                    + ", alive " + aliveMillis + " ms" + (error != null ? ", " + error : "");
+        }
+    }
+
+    /**
+     * Receives the result of a launch once the host is back in front. It is posted to the main thread rather
+     * than called from the host's lifecycle callbacks, so the next launch can be started right from it.
+     */
+    public interface Callback {
+        void onLaunchFinished(Result result);
+    }
+
+    private enum State {IDLE, LAUNCHING, SHOWN, CLOSING}
+
+    private final Activity host;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable dwellOver = this::onDwellOver;
+    private final Runnable closeTimeout = this::onCloseTimeout;
+
+    private State state = State.IDLE;
+    private Intent intent;
+    private String description;
+    private Callback callback;
+    private long startedAt;
+    private long shownAt;
+    private long endedAt;
+    private Outcome outcome;
+    private boolean broughtForward;
+
+    /**
+     * @param host The activity launches are made from. It must be in front whenever a launch is made.
+     */
+    public LaunchMonitor(Activity host) {
+        this.host = host;
+        host.getApplication().registerActivityLifecycleCallbacks(this);
+    }
+
+    /**
+     * Stops watching the host. A running launch is abandoned without its callback being called.
+     */
+    public void release() {
+        handler.removeCallbacks(dwellOver);
+        handler.removeCallbacks(closeTimeout);
+        if (state == State.LAUNCHING || state == State.SHOWN) {
+            host.finishActivity(REQUEST_CODE);
+        }
+        state = State.IDLE;
+        host.getApplication().unregisterActivityLifecycleCallbacks(this);
+    }
+
+    /**
+     * @return True while a launch is in progress.
+     */
+    public boolean isBusy() {
+        return state != State.IDLE;
+    }
+
+    /**
+     * Launches an activity and reports what happened to it after the dwell time.
+     *
+     * @param intent      An explicit intent of the activity, without {@code FLAG_ACTIVITY_NEW_TASK}.
+     * @param description A description of the launch for the result.
+     * @param dwellMillis How long the activity is left open.
+     * @param callback    Receives the result.
+     */
+    public void launch(Intent intent, String description, long dwellMillis, Callback callback) {
+        if (state != State.IDLE) {
+            throw new IllegalStateException("A launch is already in progress");
+        }
+        this.intent = intent;
+        this.description = description;
+        this.callback = callback;
+        this.shownAt = 0;
+        this.outcome = null;
+        this.broughtForward = false;
+        state = State.LAUNCHING;
+        startedAt = SystemClock.elapsedRealtime();
+        try {
+            host.startActivityForResult(intent, REQUEST_CODE);
+        } catch (RuntimeException e) {
+            Log.i(TAG, "Cannot launch " + intent.getComponent() + ": " + e);
+            state = State.IDLE;
+            Result result = new Result(intent.getComponent(), description, Outcome.REJECTED, -1, 0,
+                    e.getClass().getName());
+            handler.post(() -> callback.onLaunchFinished(result));
+            return;
+        }
+        handler.postDelayed(dwellOver, dwellMillis);
+    }
+
+    private void onDwellOver() {
+        endedAt = SystemClock.elapsedRealtime();
+        outcome = state == State.SHOWN ? Outcome.SHOWN : Outcome.NOT_SHOWN;
+        state = State.CLOSING;
+        host.finishActivity(REQUEST_CODE);
+        handler.postDelayed(closeTimeout, CLOSE_TIMEOUT_MS);
+    }
+
+    private void onCloseTimeout() {
+        if (!broughtForward) {
+            // The target started in a task of its own, where finishActivity cannot reach it
+            Log.w(TAG, intent.getComponent() + " could not be closed, bringing the host forward");
+            broughtForward = true;
+            host.startActivity(new Intent(host, host.getClass()).addFlags(Intent.FLAG_ACTIVITY_REORDER_TO_FRONT));
+            handler.postDelayed(closeTimeout, CLOSE_TIMEOUT_MS);
+        } else {
+            finish();
+        }
+    }
+
+    private void finish() {
+        handler.removeCallbacks(dwellOver);
+        handler.removeCallbacks(closeTimeout);
+        long launchMillis = shownAt != 0 ? shownAt - startedAt : -1;
+        Result result = new Result(intent.getComponent(), description, outcome, launchMillis, endedAt - startedAt, null);
+        state = State.IDLE;
+        Callback callback = this.callback;
+        handler.post(() -> callback.onLaunchFinished(result));
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        if (activity == host && state == State.LAUNCHING) {
+            shownAt = SystemClock.elapsedRealtime();
+            state = State.SHOWN;
+        }
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+        if (activity != host) {
+            return;
+        }
+        if (state == State.LAUNCHING || state == State.SHOWN) {
+            // The host is only resumed again while waiting if the target went away by itself
+            endedAt = SystemClock.elapsedRealtime();
+            outcome = Outcome.ENDED_EARLY;
+            finish();
+        } else if (state == State.CLOSING) {
+            finish();
+        }
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        if (activity == host) {
+            release();
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.bullet;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * The LaunchReport class writes the ranked results of an {@link ActivitySweep} or a {@link DeepLinkLauncher}
+ * to a plain-text report, one result per line, in the app's external files directory. The reports are kept
+ * next to the fuzzing result logs but under their own extension, as they are not framed like those.
+ */
+public final class LaunchReport {
+
+    private static final String TAG = "LaunchReport";
+
+    /**
+     * Receives the report once it is written.
+     */
+    public interface Callback {
+        /**
+         * Called on the main thread.
+         *
+         * @param report The report, or null if it could not be written.
+         */
+        void onReportWritten(File report);
+    }
+
+    private LaunchReport() {
+    }
+
+    /**
+     * Returns the report of a run against a package.
+     *
+     * @param context Any context of the application.
+     * @param name    The package and the kind of run, e.g. {@code <package>_activities}.
+     * @return The report file, which may not exist.
+     */
+    public static File fileFor(Context context, String name) {
+        return new File(context.getExternalFilesDir("fuzz"), name.replaceAll("[^A-Za-z0-9._-]", "_") + ".txt");
+    }
+
+    /**
+     * Writes a report off the main thread, replacing any earlier one with the same name.
+     *
+     * @param context  Any context of the application.
+     * @param name     The package and the kind of run, see {@link #fileFor(Context, String)}.
+     * @param ranked   The ranked results.
+     * @param callback Receives the report on the main thread once the write is over.
+     */
+    public static void write(Context context, String name, List<?> ranked, Callback callback) {
+        File report = fileFor(context, name);
+        Handler handler = new Handler(Looper.getMainLooper());
+        new Thread(() -> {
+            boolean written;
+            try (Writer writer = new FileWriter(report)) {
+                for (Object result : ranked) {
+                    writer.write(result + "\n");
+                }
+                written = true;
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write the report " + report, e);
+                written = false;
+            }
+            File result = written ? report : null;
+            handler.post(() -> callback.onReportWritten(result));
+        }, "LaunchReport").start();
+    }
+}
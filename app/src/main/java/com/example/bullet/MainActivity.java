@@ -8,7 +8,7 @@ import androidx.appcompat.app.AppCompatActivity;
 
 /**
  * MainActivity is the entry point of the application, presenting the main UI to the user.
- * It contains a button that navigates to the PackageSelectionActivity when clicked.
+ * It contains buttons that navigate to the PackageSelectionActivity and the DeepLinksActivity.
  */
 public class MainActivity extends AppCompatActivity {
 
@@ -31,5 +31,9 @@ public class MainActivity extends AppCompatActivity {
             Intent intent = new Intent(MainActivity.this, PackageSelectionActivity.class);
             startActivity(intent);  // Start the activity
         });
+
+        // List the deep links declared by the installed apps
+        Button btnDeepLinks = findViewById(R.id.btnDeepLinks);
+        btnDeepLinks.setOnClickListener(view -> startActivity(new Intent(MainActivity.this, DeepLinksActivity.class)));
     }
 }
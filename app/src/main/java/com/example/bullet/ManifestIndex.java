@@ -0,0 +1,423 @@
+package com.example.bullet;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The ManifestIndex class keeps the parsed manifests of installed APKs, read with an {@link ApkManifestReader}.
+ * Every APK is keyed by its path, size and modification time and stored in the app's private storage, so
+ * only APKs that changed since they were last seen are parsed again. Stale APKs are parsed in parallel on a
+ * fork-join pool.
+ * <p>
+ * On top of the manifests the index maps every intent filter action, data scheme and host to the
+ * components declaring it, across all packages. The index can be used from any thread.
+ */
+public class ManifestIndex {
+
+    private static final String TAG = "ManifestIndex";
+
+    private static final int MAGIC = 0x424d4649; // "BMFI"
+    private static final int FORMAT_VERSION = 2;
+
+    // APKs parsed by one fork-join task; parsing a manifest takes about a millisecond, so tasks stay small
+    private static final int PARSE_BATCH_SIZE = 4;
+
+    private static ManifestIndex instance;
+
+    /**
+     * The parsed manifest of an APK.
+     */
+    private static final class Entry {
+        final String path;
+        final long size;
+        final long lastModified;
+        final String packageName;
+        final boolean system;
+        final List<IpcComponent> components;
+
+        Entry(String path, long size, long lastModified, String packageName, boolean system, List<IpcComponent> components) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.packageName = packageName;
+            this.system = system;
+            this.components = Collections.unmodifiableList(components);
+        }
+
+        boolean isCurrent(File apk) {
+            return apk.length() == size && apk.lastModified() == lastModified;
+        }
+    }
+
+    /**
+     * The device-wide maps, rebuilt from the entries whenever they changed.
+     */
+    private static final class Maps {
+        final Map<String, List<IpcComponent>> byPackage = new HashMap<>();
+        final Map<String, List<IpcComponent>> byAction = new HashMap<>();
+        final Map<String, List<IpcComponent>> byScheme = new HashMap<>();
+        final Map<String, List<IpcComponent>> byHost = new HashMap<>();
+    }
+
+    /**
+     * Parses a range of APKs, splitting it while it is larger than {@link #PARSE_BATCH_SIZE}.
+     */
+    private final class ParseTask extends RecursiveTask<Integer> {
+        private final List<ApplicationInfo> applications;
+        private final int from;
+        private final int to;
+
+        ParseTask(List<ApplicationInfo> applications, int from, int to) {
+            this.applications = applications;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > PARSE_BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                ParseTask left = new ParseTask(applications, from, middle);
+                left.fork();
+                int right = new ParseTask(applications, middle, to).compute();
+                return left.join() + right;
+            }
+            int parsed = 0;
+            for (int i = from; i < to; i++) {
+                if (parse(applications.get(i)) != null) {
+                    parsed++;
+                }
+            }
+            return parsed;
+        }
+    }
+
+    private final PackageManager packageManager;
+    private final File file;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private boolean loaded = false;
+    private volatile boolean dirty = true;
+    private volatile Maps maps = new Maps();
+
+    private ManifestIndex(Context context) {
+        this.packageManager = context.getPackageManager();
+        this.file = new File(context.getFilesDir(), "manifest-index.bin");
+    }
+
+    /**
+     * @param context Any context of the application.
+     * @return The manifest index of the application.
+     */
+    public static synchronized ManifestIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new ManifestIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Brings the index up to date with every installed package, blocking until it is. APKs that are no
+     * longer installed are forgotten.
+     *
+     * @param includeSystem True to parse the APKs of system packages as well.
+     * @return The number of APKs that had to be parsed.
+     */
+    public synchronized int refresh(boolean includeSystem) {
+        List<ApplicationInfo> applications = new ArrayList<>();
+        Set<String> installed = new HashSet<>();
+        for (ApplicationInfo applicationInfo : packageManager.getInstalledApplications(0)) {
+            if (applicationInfo.sourceDir == null) {
+                continue;
+            }
+            installed.add(applicationInfo.sourceDir);
+            if (includeSystem || (applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) == 0) {
+                applications.add(applicationInfo);
+            }
+        }
+        int parsed = update(applications);
+        if (entries.keySet().retainAll(installed)) {
+            dirty = true;
+            save();
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses the APKs of the given packages that changed since they were last parsed, in parallel, and
+     * blocks until they are done.
+     *
+     * @param applications The packages.
+     * @return The number of APKs that had to be parsed.
+     */
+    public synchronized int update(Collection<ApplicationInfo> applications) {
+        ensureLoaded();
+        List<ApplicationInfo> stale = new ArrayList<>();
+        for (ApplicationInfo applicationInfo : applications) {
+            if (applicationInfo.sourceDir == null) {
+                continue;
+            }
+            Entry entry = entries.get(applicationInfo.sourceDir);
+            if (entry == null || !entry.isCurrent(new File(applicationInfo.sourceDir))) {
+                stale.add(applicationInfo);
+            }
+        }
+        if (stale.isEmpty()) {
+            return 0;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        int parsed = pool.invoke(new ParseTask(stale, 0, stale.size()));
+        Log.i(TAG, "Parsed " + parsed + " of " + stale.size() + " changed manifests in "
+                + (SystemClock.elapsedRealtime() - start) + " ms, " + entries.size() + " known.");
+        dirty = true;
+        save();
+        return parsed;
+    }
+
+    /**
+     * Returns the components declared by a package's manifest, parsing its APK now if the index does not
+     * know its current version.
+     *
+     * @param applicationInfo The package.
+     * @return The components, or null if the APK cannot be read.
+     */
+    public List<IpcComponent> getComponents(ApplicationInfo applicationInfo) {
+        if (applicationInfo.sourceDir == null) {
+            return null;
+        }
+        ensureLoaded();
+        Entry entry = entries.get(applicationInfo.sourceDir);
+        if (entry == null || !entry.isCurrent(new File(applicationInfo.sourceDir))) {
+            entry = parse(applicationInfo);
+            if (entry == null) {
+                return null;
+            }
+            dirty = true;
+            save();
+        }
+        return entry.components;
+    }
+
+    /**
+     * @param packageName The name of a package.
+     * @return The components its manifest declares, or an empty list if it was not parsed.
+     */
+    public List<IpcComponent> getComponents(String packageName) {
+        return lookup(maps().byPackage, packageName);
+    }
+
+    /**
+     * @param action An intent action.
+     * @return The components with an intent filter for the action.
+     */
+    public List<IpcComponent> findByAction(String action) {
+        return lookup(maps().byAction, action);
+    }
+
+    /**
+     * @param scheme A data scheme, e.g. "https".
+     * @return The components with an intent filter for the scheme.
+     */
+    public List<IpcComponent> findByScheme(String scheme) {
+        return lookup(maps().byScheme, scheme);
+    }
+
+    /**
+     * @param host A host, as declared by intent filters, e.g. "*.example.com".
+     * @return The components with an intent filter for the host.
+     */
+    public List<IpcComponent> findByHost(String host) {
+        return lookup(maps().byHost, host);
+    }
+
+    /**
+     * @return Every action declared by an intent filter, sorted.
+     */
+    public Set<String> getActions() {
+        return new TreeSet<>(maps().byAction.keySet());
+    }
+
+    /**
+     * @return Every data scheme declared by an intent filter, sorted.
+     */
+    public Set<String> getSchemes() {
+        return new TreeSet<>(maps().byScheme.keySet());
+    }
+
+    /**
+     * @param includeSystem True to include packages of the system image.
+     * @return The components of every parsed package.
+     */
+    public List<IpcComponent> getAllComponents(boolean includeSystem) {
+        ensureLoaded();
+        List<IpcComponent> components = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (includeSystem || !entry.system) {
+                components.addAll(entry.components);
+            }
+        }
+        return components;
+    }
+
+    private static List<IpcComponent> lookup(Map<String, List<IpcComponent>> map, String key) {
+        List<IpcComponent> components = map.get(key);
+        return components != null ? Collections.unmodifiableList(components) : Collections.emptyList();
+    }
+
+    /**
+     * Parses the APK of a package and stores the result.
+     *
+     * @return The new entry, or null if the APK cannot be read.
+     */
+    private Entry parse(ApplicationInfo applicationInfo) {
+        File apk = new File(applicationInfo.sourceDir);
+        // Taken before parsing, so an APK replaced meanwhile is parsed again next time
+        long size = apk.length();
+        long lastModified = apk.lastModified();
+        try {
+            List<IpcComponent> components = ApkManifestReader.readComponents(packageManager, applicationInfo);
+            boolean system = (applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
+            Entry entry = new Entry(applicationInfo.sourceDir, size, lastModified, applicationInfo.packageName,
+                    system, components);
+            entries.put(entry.path, entry);
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot parse the manifest of " + applicationInfo.packageName, e);
+            return null;
+        }
+    }
+
+    private synchronized void ensureLoaded() {
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+    }
+
+    private Maps maps() {
+        ensureLoaded();
+        if (dirty) {
+            synchronized (this) {
+                if (dirty) {
+                    dirty = false;
+                    maps = buildMaps(entries.values());
+                }
+            }
+        }
+        return maps;
+    }
+
+    private static Maps buildMaps(Collection<Entry> entries) {
+        Maps maps = new Maps();
+        for (Entry entry : entries) {
+            maps.byPackage.computeIfAbsent(entry.packageName, key -> new ArrayList<>()).addAll(entry.components);
+            for (IpcComponent component : entry.components) {
+                // A component with several filters naming the same value is listed once
+                Set<String> actions = new HashSet<>();
+                Set<String> schemes = new HashSet<>();
+                Set<String> hosts = new HashSet<>();
+                for (IpcComponent.Filter filter : component.getFilters()) {
+                    actions.addAll(filter.getActions());
+                    schemes.addAll(filter.getSchemes());
+                    hosts.addAll(filter.getHosts());
+                }
+                addAll(maps.byAction, actions, component);
+                addAll(maps.byScheme, schemes, component);
+                addAll(maps.byHost, hosts, component);
+            }
+        }
+        return maps;
+    }
+
+    private static void addAll(Map<String, List<IpcComponent>> map, Set<String> keys, IpcComponent component) {
+        for (String key : keys) {
+            map.computeIfAbsent(key, k -> new ArrayList<>()).add(component);
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                Log.i(TAG, "Ignoring manifest index of another format");
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                String packageName = in.readUTF();
+                boolean system = in.readBoolean();
+                int componentCount = in.readInt();
+                List<IpcComponent> components = new ArrayList<>(componentCount);
+                for (int c = 0; c < componentCount; c++) {
+                    components.add(IpcComponent.readFrom(in, packageName));
+                }
+                entries.put(path, new Entry(path, size, lastModified, packageName, system, components));
+            }
+        } catch (IOException e) {
+            // A damaged index is rebuilt from the APKs
+            Log.w(TAG, "Error reading manifest index", e);
+            entries.clear();
+        }
+        dirty = true;
+    }
+
+    /**
+     * Writes the index to a temporary file and renames it over the previous one.
+     */
+    private synchronized void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            List<Entry> snapshot = new ArrayList<>(entries.values());
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot) {
+                out.writeUTF(entry.path);
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeUTF(entry.packageName);
+                out.writeBoolean(entry.system);
+                out.writeInt(entry.components.size());
+                for (IpcComponent component : entry.components) {
+                    component.writeTo(out);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing manifest index", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Cannot replace " + file);
+        }
+    }
+}
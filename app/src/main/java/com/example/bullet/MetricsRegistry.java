@@ -0,0 +1,56 @@
+package com.example.bullet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The MetricsRegistry class holds the metrics of every discovery scan of the process, one entry per
+ * authority, so the UI can read them while scans run and after they finish.
+ */
+public final class MetricsRegistry {
+
+    private static final ConcurrentHashMap<String, ScanMetrics> SCANS = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Registers fresh metrics for a scan that is starting, replacing those of an earlier scan of the same authority.
+     *
+     * @param authority The authority being scanned.
+     * @return The new metrics.
+     */
+    public static ScanMetrics start(String authority) {
+        ScanMetrics metrics = new ScanMetrics(authority);
+        SCANS.put(authority, metrics);
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of a scan that continues in this process, e.g. with its next chunk, so its counters
+     * keep adding up. Registers fresh metrics if the scan started in another process or already finished.
+     *
+     * @param authority The authority being scanned.
+     * @return The metrics to continue with.
+     */
+    public static ScanMetrics resume(String authority) {
+        ScanMetrics metrics = SCANS.get(authority);
+        return metrics != null && !metrics.isFinished() ? metrics : start(authority);
+    }
+
+    /**
+     * @param authority A scanned authority.
+     * @return The metrics of the latest scan of the authority, or null if it was never scanned.
+     */
+    public static ScanMetrics get(String authority) {
+        return SCANS.get(authority);
+    }
+
+    /**
+     * @return The metrics of the latest scan of every authority.
+     */
+    public static List<ScanMetrics> all() {
+        return new ArrayList<>(SCANS.values());
+    }
+}
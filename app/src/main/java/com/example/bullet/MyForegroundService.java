@@ -8,86 +8,531 @@ import android.app.Service;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ServiceInfo;
 import android.net.Uri;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * MyForegroundService class to handle foreground service operations and launching other services dynamically.
- * This service runs in the foreground and displays a persistent notification to ensure it continues running.
+ * MyForegroundService class is the execution host of long-running IPC jobs such as service fuzzing runs and
+ * broadcast campaigns. Jobs are queued with {@link #submit(Context, String, Task)} and run one after another
+ * on a dedicated thread, taken from the queue in batches. While there is work, the service runs in the
+ * foreground with a notification showing the queue depth and throughput, and holds a partial wake lock so
+ * jobs keep running at full speed while the screen is off. It stops itself once the queue is empty.
+ * <p>
+ * The host owns its jobs: they are stopped with the notification's Stop action or {@link #cancel(String)},
+ * and report their progress through {@link Job#setProgress(String)}, which reaches the UI as part of the
+ * {@link Status}. Jobs must not hold on to an activity, which may be recreated long before they end.
+ * The UI can bind to the service for its {@link Status}.
  */
 public class MyForegroundService extends Service {
 
     public static final String CHANNEL_ID = "ForegroundServiceChannel";
 
     /**
-     * This method is required for bound services, but since this service is not bound,
-     * it returns null.
+     * Start action cancelling the running job, sent by the notification's Stop action.
+     */
+    public static final String ACTION_CANCEL = "com.example.bullet.action.CANCEL_JOB";
+
+    private static final int NOTIFICATION_ID = 1;
+    private static final long NOTIFICATION_INTERVAL_MS = 1000;
+
+    // Number of jobs taken from the queue at once
+    private static final int BATCH_SIZE = 32;
+
+    // The wake lock is renewed for every job and while a job runs; the timeout only matters if renewals stop,
+    // e.g. the main thread is blocked, so a stuck host cannot keep the device awake for good
+    private static final long WAKE_LOCK_TIMEOUT_MS = 10 * 60 * 1000;
+
+    // Renewing is a binder call, short jobs renew at most this often
+    private static final long WAKE_LOCK_RENEW_MS = 60 * 1000;
+
+    /**
+     * The work of a job. Tasks count the IPC calls they make, e.g. intents sent, with
+     * {@link Job#addOperations(long)}, which is what the throughput shown in the notification is measured in,
+     * and return soon after {@link Job#isCancelled()} becomes true.
+     */
+    public interface Task {
+        void run(Job job) throws Exception;
+    }
+
+    /**
+     * Receives the status of the host on the main thread, at most once per second.
+     */
+    public interface StatusListener {
+        void onStatusChanged(Status status);
+    }
+
+    /**
+     * A snapshot of the host's state.
+     */
+    public static final class Status {
+        private final int queued;
+        private final String running;
+        private final String progress;
+        private final long completed;
+        private final long failed;
+        private final double operationsPerSecond;
+
+        Status(int queued, String running, String progress, long completed, long failed, double operationsPerSecond) {
+            this.queued = queued;
+            this.running = running;
+            this.progress = progress;
+            this.completed = completed;
+            this.failed = failed;
+            this.operationsPerSecond = operationsPerSecond;
+        }
+
+        /**
+         * @return The number of jobs waiting, not counting the running one.
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        /**
+         * @return The name of the running job, or null if the host is idle.
+         */
+        public String getRunning() {
+            return running;
+        }
+
+        /**
+         * @return The progress reported by the running job, or by the last job once the host is idle; may be null.
+         */
+        public String getProgress() {
+            return progress;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public double getOperationsPerSecond() {
+            return operationsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            if (running == null) {
+                return "Idle, " + completed + " jobs done" + (progress != null ? "\n" + progress : "");
+            }
+            String status = String.format(Locale.ROOT, "%s, %d queued, %.0f calls/s", running, queued, operationsPerSecond);
+            return progress != null ? status + "\n" + progress : status;
+        }
+    }
+
+    /**
+     * Gives bound clients in this process access to the service.
+     */
+    public class LocalBinder extends Binder {
+        public MyForegroundService getService() {
+            return MyForegroundService.this;
+        }
+
+        /**
+         * Cancels the running and queued jobs of the given name, see {@link MyForegroundService#cancel(String)}.
+         *
+         * @param name The name the jobs were submitted with.
+         * @return True if a job was cancelled.
+         */
+        public boolean cancel(String name) {
+            return MyForegroundService.this.cancel(name);
+        }
+    }
+
+    /**
+     * A queued or running job. Its cancel flag belongs to the host, so a job can be stopped whatever
+     * happened to the screen that started it.
+     */
+    public static final class Job {
+        private final String name;
+        private final Task task;
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        // The host's counter, set before the task runs
+        private AtomicLong operations;
+        private volatile String progress;
+
+        Job(String name, Task task) {
+            this.name = name;
+            this.task = task;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return True once the job was cancelled; the task should stop as soon as it can.
+         */
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        void cancel() {
+            cancelled.set(true);
+        }
+
+        /**
+         * Counts IPC calls made by the job towards the host's throughput.
+         *
+         * @param count The number of calls made since the last report.
+         */
+        public void addOperations(long count) {
+            operations.addAndGet(count);
+        }
+
+        /**
+         * Sets the progress shown with the job in the notification and the host's status, e.g. the number
+         * of intents sent, or the outcome once the job is done.
+         *
+         * @param progress A short, human-readable text.
+         */
+        public void setProgress(String progress) {
+            this.progress = progress;
+        }
+    }
+
+    // Shared with submit(), so jobs can be queued before the service is created
+    private static final LinkedBlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+
+    private final IBinder binder = new LocalBinder();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong operations = new AtomicLong();
+    private final CopyOnWriteArrayList<StatusListener> listeners = new CopyOnWriteArrayList<>();
+    private PowerManager.WakeLock wakeLock;
+    // Guarded by wakeLock, together with clearing running
+    private long wakeLockRenewedAt;
+    private volatile Job running;
+    private volatile String lastProgress;
+    private volatile long completed;
+    private volatile long failed;
+    private volatile double operationsPerSecond;
+    private long lastPublished;
+    private long operationsAtLastPublish;
+    private int lastStartId;
+
+    // Keeps the status current while a long job runs
+    private final Runnable statusTicker = new Runnable() {
+        @Override
+        public void run() {
+            if (running != null) {
+                publishStatus(false);
+                // A single job may run longer than the wake lock timeout
+                renewWakeLock();
+            }
+            mainHandler.postDelayed(this, NOTIFICATION_INTERVAL_MS);
+        }
+    };
+
+    /**
+     * Queues a job and starts the service if it is not running. Must be called while the app is in the
+     * foreground, which is when foreground services may be started.
+     *
+     * @param context Any context of the application.
+     * @param name    The name of the job shown in the notification.
+     * @param task    The job.
+     */
+    public static void submit(Context context, String name, Task task) {
+        queue.add(new Job(name, task));
+        ContextCompat.startForegroundService(context, new Intent(context, MyForegroundService.class));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // The channel only has to be created once per process
+        createNotificationChannel();
+        PowerManager powerManager = getSystemService(PowerManager.class);
+        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "bullet:ipc-host");
+        wakeLock.setReferenceCounted(false);
+        mainHandler.postDelayed(statusTicker, NOTIFICATION_INTERVAL_MS);
+    }
+
+    @Override
+    public void onDestroy() {
+        mainHandler.removeCallbacks(statusTicker);
+        executor.shutdownNow();
+        if (wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Returns the binder giving clients in this process access to the service's status.
      *
      * @param intent The Intent that was used to bind to this service.
-     * @return Always returns null since this is a foreground service, not a bound service.
+     * @return The binder.
      */
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return binder;
     }
 
     /**
-     * Called when the service is started. It creates a notification channel and starts the service
-     * in the foreground with a persistent notification. It then dynamically launches another service
-     * based on the parameters passed in the intent.
+     * Called when the service is started. It puts the service in the foreground and starts draining the
+     * queue. Intents carrying the parameters of a service to launch queue that launch as a job.
      *
-     * @param intent  The intent containing the parameters for the service to be launched.
+     * @param intent  The intent that started the service, or null if it was restarted after being killed.
      * @param flags   Additional data about the start request. This is usually 0, but can be START_FLAG_REDELIVERY or START_FLAG_RETRY.
      * @param startId A unique integer representing this specific request to start. Used to identify the request.
-     * @return The return value indicates what semantics the system should use for the service's current started state. In this case, START_NOT_STICKY is used.
+     * @return START_STICKY, the host is kept available until it runs out of work.
      */
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        // Retrieve the full service class name and the user's input from the intent
-        String fullServiceClassName = intent.getStringExtra("serviceClassName");
-        String input = intent.getStringExtra("inputExtra");
+        // Every start must put the service in the foreground, even when there is nothing left to do
+        startInForeground(buildNotification(getStatus()));
+        lastStartId = startId;
 
-        // Extract the base from the selected service (e.g., "androidx.work.impl.background.systemjob.")
-        assert fullServiceClassName != null;
-        String baseService = extractBaseService(fullServiceClassName);
+        if (intent != null && ACTION_CANCEL.equals(intent.getAction())) {
+            Job job = running;
+            if (job != null) {
+                cancel(job.name);
+            }
+        } else if (intent != null && intent.hasExtra("className")) {
+            queueServiceLaunch(intent);
+        }
+        drainLater();
+        return START_STICKY;
+    }
 
-        // Ensure the input is converted to uppercase and combine it with the base service
-        assert input != null;
-        String fullAction = baseService + input.toUpperCase();
+    public void addStatusListener(StatusListener listener) {
+        listeners.add(listener);
+    }
 
-        // Create and configure the notification channel for the foreground service
-        createNotificationChannel();
-        Intent notificationIntent = new Intent(this, MainActivity.class);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
+    public void removeStatusListener(StatusListener listener) {
+        listeners.remove(listener);
+    }
 
-        // Build the notification for the foreground service
-        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("Foreground Service")
-                .setContentText(input)
-                .setSmallIcon(R.drawable.ic_launcher_foreground)
-                .setContentIntent(pendingIntent)
-                .build();
+    /**
+     * @return The current state of the host.
+     */
+    public Status getStatus() {
+        Job job = running;
+        if (job == null) {
+            return new Status(queue.size(), null, lastProgress, completed, failed, operationsPerSecond);
+        }
+        return new Status(queue.size(), job.name, job.progress, completed, failed, operationsPerSecond);
+    }
 
-        // Start the service in the foreground, displaying the notification
-        startForeground(1, notification);
+    /**
+     * Cancels the jobs of the given name: queued ones never start, and the running one is asked to stop.
+     *
+     * @param name The name the jobs were submitted with.
+     * @return True if a job was cancelled.
+     */
+    public boolean cancel(String name) {
+        boolean cancelled = false;
+        for (Job job : queue) {
+            if (job.name.equals(name) && queue.remove(job)) {
+                job.cancel();
+                cancelled = true;
+            }
+        }
+        Job job = running;
+        if (job != null && job.name.equals(name)) {
+            job.cancel();
+            cancelled = true;
+        }
+        if (cancelled) {
+            Log.i("MyForegroundService", "Cancelled " + name);
+            publishStatus(true);
+        }
+        return cancelled;
+    }
 
-        // Perform the actual work of the service here: launch another service based on the intent data
+    /**
+     * Queues the launch of another service from the parameters of a start intent.
+     */
+    private void queueServiceLaunch(Intent intent) {
+        // Retrieve the full service class name and the user's input from the intent
+        String fullServiceClassName = intent.getStringExtra("serviceClassName");
+        String input = intent.getStringExtra("inputExtra");
         String packageName = intent.getStringExtra("packageName");
         String className = intent.getStringExtra("className");
         String data = intent.getStringExtra("data");
         String extraKey = intent.getStringExtra("extraKey");
         String extraValue = intent.getStringExtra("extraValue");
 
-        // Use the constructed fullAction instead of just the user's input
-        launchService(this, packageName, className, fullAction, data, extraKey, extraValue);
+        // Combine the base of the selected service (e.g., "androidx.work.impl.background.systemjob.") with the input
+        String fullAction = null;
+        if (fullServiceClassName != null && input != null) {
+            fullAction = extractBaseService(fullServiceClassName) + input.toUpperCase(Locale.ROOT);
+        }
+        String action = fullAction;
+        queue.add(new Job("Launch " + className, job -> {
+            launchService(this, packageName, className, action, data, extraKey, extraValue);
+            job.addOperations(1);
+        }));
+    }
 
-        // Use START_NOT_STICKY to prevent the service from being restarted automatically if it is killed
-        return START_NOT_STICKY;
+    /**
+     * Starts draining the queue on the executor unless it is already being drained.
+     */
+    private void drainLater() {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Runs queued jobs in batches until the queue is empty. Runs on the executor.
+     */
+    private void drain() {
+        List<Job> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+                for (Job job : batch) {
+                    if (job.isCancelled()) {
+                        continue;
+                    }
+                    job.operations = operations;
+                    running = job;
+                    renewWakeLock();
+                    publishStatus(true);
+                    try {
+                        job.task.run(job);
+                    } catch (Exception e) {
+                        Log.e("MyForegroundService", "Job failed: " + job.name, e);
+                        failed++;
+                    }
+                    lastProgress = job.progress;
+                    completed++;
+                }
+                batch.clear();
+            }
+        } finally {
+            synchronized (wakeLock) {
+                running = null;
+                if (wakeLock.isHeld()) {
+                    wakeLock.release();
+                }
+            }
+            draining.set(false);
+        }
+
+        // A job may have been queued after the queue was found empty
+        if (!queue.isEmpty()) {
+            drainLater();
+        } else {
+            mainHandler.post(this::stopIfIdle);
+        }
+    }
+
+    /**
+     * Acquires the wake lock, or extends its timeout, while a job is running. Called from the executor
+     * for every job and from the status ticker on the main thread.
+     */
+    private void renewWakeLock() {
+        synchronized (wakeLock) {
+            // The ticker may see the last job just before drain() releases the lock
+            if (running == null) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (!wakeLock.isHeld() || now - wakeLockRenewedAt >= WAKE_LOCK_RENEW_MS) {
+                wakeLock.acquire(WAKE_LOCK_TIMEOUT_MS);
+                wakeLockRenewedAt = now;
+            }
+        }
+    }
+
+    /**
+     * Leaves the foreground and stops the service once there is no more work. Called on the main thread.
+     */
+    private void stopIfIdle() {
+        if (queue.isEmpty() && !draining.get()) {
+            publishStatus(true);
+            stopForeground(STOP_FOREGROUND_REMOVE);
+            // Only stops if no start request came in since, which would bring new work
+            stopSelf(lastStartId);
+        }
+    }
+
+    /**
+     * Measures the throughput and publishes the status to the notification and the listeners, at most
+     * once per second unless forced, e.g. when a job starts.
+     */
+    private synchronized void publishStatus(boolean force) {
+        long now = SystemClock.elapsedRealtime();
+        long elapsed = now - lastPublished;
+        if (!force && elapsed < NOTIFICATION_INTERVAL_MS) {
+            return;
+        }
+        long total = operations.get();
+        if (elapsed >= NOTIFICATION_INTERVAL_MS) {
+            operationsPerSecond = (total - operationsAtLastPublish) * 1000.0 / elapsed;
+            operationsAtLastPublish = total;
+            lastPublished = now;
+        }
+
+        Status status = getStatus();
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null && status.getRunning() != null) {
+            manager.notify(NOTIFICATION_ID, buildNotification(status));
+        }
+        mainHandler.post(() -> {
+            for (StatusListener listener : listeners) {
+                listener.onStatusChanged(status);
+            }
+        });
+    }
+
+    private void startInForeground(Notification notification) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+
+    private Notification buildNotification(Status status) {
+        Intent notificationIntent = new Intent(this, MainActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
+        String text = status.toString();
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("IPC Jobs")
+                .setContentText(text)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(text))
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setContentIntent(pendingIntent)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true);
+        if (status.getRunning() != null) {
+            // Stops the running job even when the screen that started it is gone
+            Intent cancelIntent = new Intent(this, MyForegroundService.class).setAction(ACTION_CANCEL);
+            PendingIntent cancel = PendingIntent.getForegroundService(this, 1, cancelIntent, PendingIntent.FLAG_IMMUTABLE);
+            builder.addAction(R.drawable.ic_launcher_foreground, "Stop", cancel);
+        }
+        return builder.build();
     }
 
     /**
@@ -113,15 +558,15 @@ public class MyForegroundService extends Service {
      * The notification channel defines the importance and behavior of the notifications from this service.
      */
     private void createNotificationChannel() {
-        // Define the notification channel with a unique ID and description
-        NotificationChannel serviceChannel = new NotificationChannel(
-                CHANNEL_ID,
-                "Foreground Service Channel",
-                NotificationManager.IMPORTANCE_DEFAULT
-        );
-        // Register the notification channel with the system
         NotificationManager manager = getSystemService(NotificationManager.class);
-        if (manager != null) {
+        if (manager != null && manager.getNotificationChannel(CHANNEL_ID) == null) {
+            // Define the notification channel with a unique ID and description
+            NotificationChannel serviceChannel = new NotificationChannel(
+                    CHANNEL_ID,
+                    "Foreground Service Channel",
+                    NotificationManager.IMPORTANCE_LOW
+            );
+            // Register the notification channel with the system
             manager.createNotificationChannel(serviceChannel);
         }
     }
@@ -0,0 +1,460 @@
+package com.example.bullet;
+
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ProviderInfo;
+import android.content.pm.ServiceInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The PackageInventory class keeps the components of every installed package, so the package
+ * list and the IPC screen do not have to query the PackageManager each time they are opened. The inventory
+ * is stored in the app's private storage and every package is keyed by its lastUpdateTime: on startup only
+ * packages installed, updated or removed since the last run are read again, and while the app runs
+ * {@link BulletApplication} feeds package broadcasts into {@link #update(String)} and {@link #remove(String)}.
+ * <p>
+ * The PackageManager does not report intent filters, so they are taken from the package's manifest in the
+ * {@link ManifestIndex}.
+ * <p>
+ * Changes are applied on a single background thread; the inventory can be read from any thread.
+ */
+public class PackageInventory {
+
+    private static final String TAG = "PackageInventory";
+
+    private static final int MAGIC = 0x42504b49; // "BPKI"
+    private static final int FORMAT_VERSION = 5;
+
+    private static final int COMPONENT_FLAGS = PackageManager.GET_ACTIVITIES | PackageManager.GET_SERVICES
+            | PackageManager.GET_PROVIDERS | PackageManager.GET_RECEIVERS;
+
+    // Boot times differing by more than this belong to different boots, whose change sequences are unrelated
+    private static final long BOOT_TIME_TOLERANCE_MS = 10_000;
+
+    private static PackageInventory instance;
+
+    /**
+     * Notified on the main thread whenever packages were added, updated or removed.
+     */
+    public interface Listener {
+        void onInventoryChanged();
+    }
+
+    /**
+     * An installed package and its components.
+     */
+    public static final class PackageEntry {
+        private final String packageName;
+        private final long lastUpdateTime;
+        private final boolean system;
+        private final ComponentIndex index;
+
+        PackageEntry(String packageName, long lastUpdateTime, boolean system, List<IpcComponent> components) {
+            this.packageName = packageName;
+            this.lastUpdateTime = lastUpdateTime;
+            this.system = system;
+            this.index = new ComponentIndex(components);
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public long getLastUpdateTime() {
+            return lastUpdateTime;
+        }
+
+        /**
+         * @return True if the package is part of the system image.
+         */
+        public boolean isSystem() {
+            return system;
+        }
+
+        /**
+         * @return The components of the package, exported or not.
+         */
+        public ComponentIndex getIndex() {
+            return index;
+        }
+    }
+
+    private final PackageManager packageManager;
+    private final ManifestIndex manifestIndex;
+    private final File file;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ConcurrentHashMap<String, PackageEntry> entries = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean loaded = false;
+
+    // Where the last run stopped in the PackageManager's change sequence; only touched on the executor
+    private int sequenceNumber = 0;
+    private long bootTime = 0;
+
+    private PackageInventory(Context context) {
+        this.packageManager = context.getPackageManager();
+        this.manifestIndex = ManifestIndex.getInstance(context);
+        this.file = new File(context.getFilesDir(), "package-inventory.bin");
+    }
+
+    /**
+     * @param context Any context of the application.
+     * @return The inventory of the application.
+     */
+    public static synchronized PackageInventory getInstance(Context context) {
+        if (instance == null) {
+            instance = new PackageInventory(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return True once the inventory reflects the installed packages.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Loads the stored inventory and brings it up to date in the background.
+     */
+    public void refresh() {
+        executor.execute(() -> {
+            if (!loaded) {
+                load();
+            }
+            reconcile();
+            loaded = true;
+            save();
+            notifyListeners();
+        });
+    }
+
+    /**
+     * Reads a package again in the background, e.g. after it was installed or updated.
+     *
+     * @param packageName The name of the package.
+     */
+    public void update(String packageName) {
+        executor.execute(() -> {
+            PackageEntry entry = readPackage(packageName);
+            if (entry != null) {
+                entries.put(packageName, entry);
+            } else {
+                entries.remove(packageName);
+            }
+            save();
+            notifyListeners();
+        });
+    }
+
+    /**
+     * Forgets a package in the background after it was removed.
+     *
+     * @param packageName The name of the package.
+     */
+    public void remove(String packageName) {
+        executor.execute(() -> {
+            if (entries.remove(packageName) != null) {
+                save();
+                notifyListeners();
+            }
+        });
+    }
+
+    /**
+     * @param includeSystem True to include packages of the system image.
+     * @return The names of the known packages, sorted.
+     */
+    public List<String> getPackageNames(boolean includeSystem) {
+        List<String> names = new ArrayList<>();
+        for (PackageEntry entry : entries.values()) {
+            if (includeSystem || !entry.isSystem()) {
+                names.add(entry.getPackageName());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Returns the components of a package. A package the inventory does not know yet is read from the
+     * PackageManager, so callers on the main thread should only use this once {@link #isLoaded()}.
+     *
+     * @param packageName The name of the package.
+     * @return The components, or an empty index if the package is not installed.
+     */
+    public ComponentIndex getIndex(String packageName) {
+        PackageEntry entry = entries.get(packageName);
+        if (entry == null) {
+            entry = readPackage(packageName);
+            if (entry == null) {
+                return new ComponentIndex(Collections.emptyList());
+            }
+            entries.put(packageName, entry);
+            executor.execute(this::save);
+        }
+        return entry.getIndex();
+    }
+
+    /**
+     * @param includeSystem True to include packages of the system image.
+     * @return The components of every known package, grouped by package.
+     */
+    public List<IpcComponent> getAllComponents(boolean includeSystem) {
+        List<IpcComponent> components = new ArrayList<>();
+        for (String packageName : getPackageNames(includeSystem)) {
+            PackageEntry entry = entries.get(packageName);
+            if (entry != null) {
+                components.addAll(entry.getIndex().all());
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Looks up the provider serving an authority among the known packages.
+     *
+     * @param authority A content provider authority.
+     * @return The provider, or null if no known package declares it.
+     */
+    public IpcComponent findProvider(String authority) {
+        for (PackageEntry entry : entries.values()) {
+            IpcComponent provider = entry.getIndex().getByAuthority(authority);
+            if (provider != null) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Brings the inventory up to date with the installed packages. Within the same boot only the packages
+     * the PackageManager reports as changed are checked; otherwise every package is compared by its
+     * lastUpdateTime.
+     */
+    private void reconcile() {
+        long currentBootTime = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+        boolean sameBoot = bootTime != 0 && Math.abs(currentBootTime - bootTime) < BOOT_TIME_TOLERANCE_MS;
+        int read = 0;
+
+        if (sameBoot && !entries.isEmpty()) {
+            ChangedPackages changed = packageManager.getChangedPackages(sequenceNumber);
+            if (changed != null) {
+                for (String packageName : changed.getPackageNames()) {
+                    PackageEntry entry = readPackage(packageName);
+                    if (entry != null) {
+                        entries.put(packageName, entry);
+                        read++;
+                    } else {
+                        entries.remove(packageName);
+                    }
+                }
+                sequenceNumber = changed.getSequenceNumber();
+            }
+        } else {
+            Set<String> installed = new HashSet<>();
+            List<PackageInfo> stale = new ArrayList<>();
+            List<ApplicationInfo> staleApplications = new ArrayList<>();
+            for (PackageInfo info : packageManager.getInstalledPackages(0)) {
+                installed.add(info.packageName);
+                PackageEntry entry = entries.get(info.packageName);
+                if (entry == null || entry.getLastUpdateTime() != info.lastUpdateTime) {
+                    stale.add(info);
+                    if (info.applicationInfo != null) {
+                        staleApplications.add(info.applicationInfo);
+                    }
+                }
+            }
+            // The manifests are parsed in parallel up front, readPackage then finds them in the index
+            manifestIndex.update(staleApplications);
+            for (PackageInfo info : stale) {
+                PackageEntry entry = readPackage(info.packageName);
+                if (entry != null) {
+                    entries.put(info.packageName, entry);
+                    read++;
+                }
+            }
+            entries.keySet().retainAll(installed);
+
+            // Changes from now on are picked up by sequence number
+            ChangedPackages changed = packageManager.getChangedPackages(0);
+            sequenceNumber = changed != null ? changed.getSequenceNumber() : 0;
+        }
+        bootTime = currentBootTime;
+        Log.i(TAG, "Inventory holds " + entries.size() + " packages, " + read + " read from the PackageManager.");
+    }
+
+    /**
+     * Reads the components of a package from the PackageManager, with the intent filters of its manifest.
+     *
+     * @param packageName The name of the package.
+     * @return The package, or null if it is not installed.
+     */
+    private PackageEntry readPackage(String packageName) {
+        PackageInfo info;
+        try {
+            info = packageManager.getPackageInfo(packageName, COMPONENT_FLAGS);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // Packages with very many components can exceed the binder transaction limit
+            Log.w(TAG, "Cannot read the components of " + packageName, e);
+            return null;
+        }
+
+        // The PackageManager stays the source of the components, the manifest only adds their filters
+        Map<String, List<IpcComponent.Filter>> filters = new HashMap<>();
+        List<IpcComponent> declared = info.applicationInfo != null ? manifestIndex.getComponents(info.applicationInfo) : null;
+        if (declared != null) {
+            for (IpcComponent component : declared) {
+                filters.put(component.getKind() + ":" + component.getName(), component.getFilters());
+            }
+        }
+
+        List<IpcComponent> components = new ArrayList<>();
+        List<String> none = Collections.emptyList();
+        if (info.activities != null) {
+            for (ActivityInfo activityInfo : info.activities) {
+                components.add(new IpcComponent(IpcComponent.Kind.ACTIVITY, packageName, activityInfo.name,
+                        activityInfo.exported, activityInfo.permission, null, null, none,
+                        filtersOf(filters, IpcComponent.Kind.ACTIVITY, activityInfo.name)));
+            }
+        }
+        if (info.services != null) {
+            for (ServiceInfo serviceInfo : info.services) {
+                components.add(new IpcComponent(IpcComponent.Kind.SERVICE, packageName, serviceInfo.name,
+                        serviceInfo.exported, serviceInfo.permission, null, null, none,
+                        filtersOf(filters, IpcComponent.Kind.SERVICE, serviceInfo.name)));
+            }
+        }
+        if (info.providers != null) {
+            for (ProviderInfo providerInfo : info.providers) {
+                components.add(new IpcComponent(IpcComponent.Kind.PROVIDER, packageName, providerInfo.name,
+                        providerInfo.exported, null, providerInfo.readPermission, providerInfo.writePermission,
+                        IpcComponent.splitAuthorities(providerInfo.authority),
+                        filtersOf(filters, IpcComponent.Kind.PROVIDER, providerInfo.name)));
+            }
+        }
+        if (info.receivers != null) {
+            for (ActivityInfo receiverInfo : info.receivers) {
+                components.add(new IpcComponent(IpcComponent.Kind.RECEIVER, packageName, receiverInfo.name,
+                        receiverInfo.exported, receiverInfo.permission, null, null, none,
+                        filtersOf(filters, IpcComponent.Kind.RECEIVER, receiverInfo.name)));
+            }
+        }
+        boolean system = info.applicationInfo != null && (info.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
+        return new PackageEntry(packageName, info.lastUpdateTime, system, components);
+    }
+
+    private static List<IpcComponent.Filter> filtersOf(Map<String, List<IpcComponent.Filter>> filters,
+                                                      IpcComponent.Kind kind, String name) {
+        List<IpcComponent.Filter> componentFilters = filters.get(kind + ":" + name);
+        return componentFilters != null ? componentFilters : Collections.emptyList();
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                Log.i(TAG, "Ignoring inventory of another format");
+                return;
+            }
+            bootTime = in.readLong();
+            sequenceNumber = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String packageName = in.readUTF();
+                long lastUpdateTime = in.readLong();
+                boolean system = in.readBoolean();
+                int componentCount = in.readInt();
+                List<IpcComponent> components = new ArrayList<>(componentCount);
+                for (int c = 0; c < componentCount; c++) {
+                    components.add(IpcComponent.readFrom(in, packageName));
+                }
+                entries.put(packageName, new PackageEntry(packageName, lastUpdateTime, system, components));
+            }
+        } catch (IOException e) {
+            // A damaged inventory is rebuilt from scratch
+            Log.w(TAG, "Error reading inventory", e);
+            entries.clear();
+            bootTime = 0;
+        }
+    }
+
+    /**
+     * Writes the inventory to a temporary file and renames it over the previous one.
+     */
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(bootTime);
+            out.writeInt(sequenceNumber);
+            List<PackageEntry> snapshot = new ArrayList<>(entries.values());
+            out.writeInt(snapshot.size());
+            for (PackageEntry entry : snapshot) {
+                out.writeUTF(entry.getPackageName());
+                out.writeLong(entry.getLastUpdateTime());
+                out.writeBoolean(entry.isSystem());
+                out.writeInt(entry.getIndex().all().size());
+                for (IpcComponent component : entry.getIndex().all()) {
+                    component.writeTo(out);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing inventory", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Cannot replace " + file);
+        }
+    }
+
+    private void notifyListeners() {
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onInventoryChanged();
+            }
+        });
+    }
+}
@@ -2,49 +2,116 @@
 package com.example.bullet;
 
 import android.content.Intent;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.widget.ArrayAdapter;
+import android.widget.EditText;
 import android.widget.ListView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class PackageSelectionActivity extends AppCompatActivity {
+public class PackageSelectionActivity extends AppCompatActivity implements PackageInventory.Listener {
 
-    private List<String> userApps;
+    // More results than this are not useful while typing
+    private static final int MAX_SEARCH_RESULTS = 500;
+
+    private final List<String> items = new ArrayList<>();
+    private final List<String> itemPackages = new ArrayList<>();
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+    private PackageInventory inventory;
+    private ComponentSearchIndex searchIndex;
+    private ArrayAdapter<String> adapter;
+    private EditText editSearch;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_package_selection);
 
-        // Initialize PackageManager to retrieve installed applications
-        PackageManager packageManager = getPackageManager();
-        userApps = new ArrayList<>();
-
-        // Fetch the list of installed applications and filter out system apps
-        List<ApplicationInfo> apps = packageManager.getInstalledApplications(PackageManager.GET_META_DATA);
-        for (ApplicationInfo app : apps) {
-            if ((app.flags & ApplicationInfo.FLAG_SYSTEM) == 0) {
-                userApps.add(app.packageName);
-            }
-        }
+        // The inventory is built in the background, so the list fills in as soon as it is ready
+        inventory = PackageInventory.getInstance(this);
+        inventory.addListener(this);
 
         // Set up the ListView to display the list of user apps
         ListView listView = findViewById(R.id.listViewPackages);
-        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, userApps);
+        adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, items);
         listView.setAdapter(adapter);
 
+        // Search the components of every installed package as the user types
+        editSearch = findViewById(R.id.editSearch);
+        editSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                showItems();
+            }
+        });
+        onInventoryChanged();
+
         // Handle item clicks to show the IPC components directly
         listView.setOnItemClickListener((parent, view, position, id) -> {
-            String selectedPackage = userApps.get(position);
+            String selectedPackage = itemPackages.get(position);
             Intent intent = new Intent(PackageSelectionActivity.this, IPCActivity.class);
             intent.putExtra("packageName", selectedPackage);
             startActivity(intent);
         });
     }
+
+    @Override
+    protected void onDestroy() {
+        inventory.removeListener(this);
+        indexExecutor.shutdownNow();
+        super.onDestroy();
+    }
+
+    /**
+     * Shows the new package list and rebuilds the search index in the background.
+     */
+    @Override
+    public void onInventoryChanged() {
+        showItems();
+        if (inventory.isLoaded()) {
+            indexExecutor.execute(() -> {
+                ComponentSearchIndex index = new ComponentSearchIndex(inventory.getAllComponents(true));
+                runOnUiThread(() -> {
+                    searchIndex = index;
+                    showItems();
+                });
+            });
+        }
+    }
+
+    /**
+     * Shows the installed packages, leaving out system apps, or the components matching the search.
+     */
+    private void showItems() {
+        items.clear();
+        itemPackages.clear();
+        String query = editSearch.getText().toString().trim();
+        if (query.isEmpty() || searchIndex == null) {
+            for (String packageName : inventory.getPackageNames(false)) {
+                items.add(packageName);
+                itemPackages.add(packageName);
+            }
+        } else {
+            for (IpcComponent component : searchIndex.search(query, MAX_SEARCH_RESULTS)) {
+                items.add(component + "\n" + component.getPackageName());
+                itemPackages.add(component.getPackageName());
+            }
+        }
+        adapter.notifyDataSetChanged();
+    }
 }
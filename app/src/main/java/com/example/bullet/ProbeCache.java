@@ -0,0 +1,272 @@
+package com.example.bullet;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The ProbeCache class remembers how a content provider answered earlier probes, so re-scanning an
+ * unchanged target does not query the same paths again. There is one cache per authority; it is keyed
+ * by the normalized path and is only valid for the exact version (versionCode and lastUpdateTime) of the
+ * package hosting the provider. The cache holds a bounded number of entries, evicting the least recently
+ * used ones, and entries expire after a fixed age.
+ * <p>
+ * All methods are safe to call from several probe workers at the same time.
+ */
+public class ProbeCache {
+
+    private static final int MAGIC = 0x42504348; // "BPCH"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Default maximum number of entries kept per authority.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 500_000;
+
+    /**
+     * Default age after which an entry is probed again, one week.
+     */
+    public static final long DEFAULT_TTL_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final ProbeResult.Outcome[] OUTCOMES = ProbeResult.Outcome.values();
+
+    private final long versionCode;
+    private final long lastUpdateTime;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * A cached answer and when it was recorded.
+     */
+    private static final class Entry {
+        final ProbeResult result;
+        final long timestamp;
+
+        Entry(ProbeResult result, long timestamp) {
+            this.result = result;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Creates an empty cache for one version of the target package.
+     *
+     * @param versionCode    The versionCode of the package hosting the provider.
+     * @param lastUpdateTime The lastUpdateTime of the package hosting the provider.
+     * @param maxEntries     The maximum number of entries kept.
+     * @param ttlMs          The age in milliseconds after which an entry is no longer used.
+     */
+    public ProbeCache(long versionCode, long lastUpdateTime, int maxEntries, long ttlMs) {
+        this.versionCode = versionCode;
+        this.lastUpdateTime = lastUpdateTime;
+        this.ttlMs = ttlMs;
+        // Access order makes the eldest entry the least recently used one
+        this.entries = new LinkedHashMap<String, Entry>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache file of an authority inside the app's private storage.
+     *
+     * @param context   Any context of the application.
+     * @param authority The authority of the content provider.
+     * @return The cache file, which may not exist.
+     */
+    public static File fileFor(Context context, String authority) {
+        File dir = new File(context.getFilesDir(), "probe-cache");
+        return new File(dir, authority.replaceAll("[^A-Za-z0-9._-]", "_") + ".cache");
+    }
+
+    /**
+     * Loads the cache of an authority for the given version of its package. A cache written for
+     * another version is discarded, as the provider may answer differently now.
+     *
+     * @param file           The cache file.
+     * @param versionCode    The current versionCode of the package hosting the provider.
+     * @param lastUpdateTime The current lastUpdateTime of the package hosting the provider.
+     * @param maxEntries     The maximum number of entries kept.
+     * @param ttlMs          The age in milliseconds after which an entry is no longer used.
+     * @return The loaded cache, or an empty one if there is no usable cache file.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    public static ProbeCache load(File file, long versionCode, long lastUpdateTime, int maxEntries, long ttlMs) throws IOException {
+        ProbeCache cache = new ProbeCache(versionCode, lastUpdateTime, maxEntries, ttlMs);
+        if (!file.exists()) {
+            return cache;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a probe cache: " + file);
+            }
+            if (in.readLong() != versionCode || in.readLong() != lastUpdateTime) {
+                return cache;
+            }
+            int count = in.readInt();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                int outcome = in.readByte();
+                String errorClass = in.readBoolean() ? in.readUTF() : null;
+                long timestamp = in.readLong();
+                if (outcome < 0 || outcome >= OUTCOMES.length) {
+                    throw new IOException("Corrupt probe cache: " + file);
+                }
+                if (now - timestamp < ttlMs) {
+                    cache.entries.put(path, new Entry(resultOf(OUTCOMES[outcome], errorClass), timestamp));
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Writes the cache to a temporary file and renames it over the previous one.
+     * Entries are written from least to most recently used, so a reload keeps the eviction order.
+     *
+     * @param file The cache file.
+     * @throws IOException If the cache cannot be written.
+     */
+    public synchronized void save(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(versionCode);
+            out.writeLong(lastUpdateTime);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                ProbeResult result = entry.getValue().result;
+                out.writeUTF(entry.getKey());
+                out.writeByte(result.getOutcome().ordinal());
+                out.writeBoolean(result.getErrorClass() != null);
+                if (result.getErrorClass() != null) {
+                    out.writeUTF(result.getErrorClass());
+                }
+                out.writeLong(entry.getValue().timestamp);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Looks up the answer recorded for a path.
+     *
+     * @param path The queried content URI.
+     * @return The cached answer, or null if the path was not probed yet or its entry expired.
+     */
+    public synchronized ProbeResult get(String path) {
+        String key = normalize(path);
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.timestamp >= ttlMs) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    /**
+     * Records the answer to a probe. Answers caused by the provider process dying are not cached,
+     * as the same query may well succeed once the provider is back.
+     *
+     * @param path   The queried content URI.
+     * @param result The provider's answer.
+     */
+    public synchronized void put(String path, ProbeResult result) {
+        if (isTransient(result)) {
+            return;
+        }
+        entries.put(normalize(path), new Entry(result, System.currentTimeMillis()));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The fraction of lookups answered from the cache, 0 if there were none.
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : hits / (double) lookups;
+    }
+
+    /**
+     * Reduces a content URI to the part identifying the provider path: the authority and path segments,
+     * without empty segments, surrounding whitespace or a trailing slash.
+     *
+     * @param path The content URI.
+     * @return The normalized path.
+     */
+    static String normalize(String path) {
+        String trimmed = path.trim();
+        int start = trimmed.startsWith("content://") ? "content://".length() : 0;
+        StringBuilder normalized = new StringBuilder(trimmed.length() - start);
+        for (int i = start; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c == '/' && (normalized.length() == 0 || normalized.charAt(normalized.length() - 1) == '/')) {
+                continue;
+            }
+            normalized.append(c);
+        }
+        if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) == '/') {
+            normalized.setLength(normalized.length() - 1);
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isTransient(ProbeResult result) {
+        String errorClass = result.getErrorClass();
+        return errorClass != null && (errorClass.equals("android.os.DeadObjectException")
+                || errorClass.equals("android.os.RemoteException"));
+    }
+
+    private static ProbeResult resultOf(ProbeResult.Outcome outcome, String errorClass) {
+        if (errorClass == null) {
+            switch (outcome) {
+                case ACCESSIBLE:
+                    return ProbeResult.ACCESSIBLE;
+                case EMPTY:
+                    return ProbeResult.EMPTY;
+                case NO_CURSOR:
+                    return ProbeResult.NO_CURSOR;
+                default:
+                    break;
+            }
+        }
+        return new ProbeResult(outcome, errorClass);
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.bullet;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The ProbeDeduplicator class remembers the content URIs a scan has queued, so that none is sent to the
+ * provider twice: the same path reached through several wordlists, through two mutations of different words,
+ * or spelled with redundant slashes. URIs are normalized first, see {@link #normalize(String)}.
+ * <p>
+ * Every scan starts with an exact set. The number of URIs a scan will queue is only bounded by its budget,
+ * which is far above what most providers yield, so the set only turns into a Bloom filter once it holds more
+ * URIs than fit in it: the filter is sized for the expected number of URIs and the false-positive rate, within
+ * the memory budget. A false positive makes the scan skip a URI it has not probed, never probe one twice.
+ * Not thread-safe, it is meant for the single producer of a scan.
+ * <p>
+ * A scan split into several runs keeps one deduplicator: it is saved next to the scan's checkpoint and marked
+ * with the checkpoint it belongs to, see {@link #mark(int, long, long)}.
+ */
+public class ProbeDeduplicator {
+
+    private static final int MAGIC = 0x42504444; // "BPDD"
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Default fraction of new URIs a Bloom filter may mistake for ones already probed.
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.001;
+
+    /**
+     * Default maximum size of the filter's bit array.
+     */
+    public static final long DEFAULT_MAX_BYTES = 8L << 20;
+
+    // Scans remember at most this many URIs exactly before switching to a Bloom filter
+    static final long EXACT_LIMIT = 50_000;
+
+    // Rough heap cost of a URI in the exact set, with its String and hash set entry
+    private static final long EXACT_ENTRY_BYTES = 160;
+
+    private final long expectedUris;
+    private final double falsePositiveRate;
+    private final long maxBytes;
+    private Set<String> exact;
+    private long[] bits;
+    private long bitCount;
+    private int hashCount;
+    private long duplicates = 0;
+    // The checkpoint this state belongs to: its depth, the position up to which candidates were queued and its probe count
+    private int markedDepth = 0;
+    private long markedPosition = 0;
+    private long markedProbesSent = -1;
+
+    /**
+     * @param expectedUris      The most URIs the scan may queue, e.g. its remaining budget; sizes the Bloom filter.
+     * @param falsePositiveRate The fraction of new URIs the Bloom filter may mistake for known ones, above 0 and below 1.
+     * @param maxBytes          The maximum size of the Bloom filter, and of the exact set before it.
+     */
+    public ProbeDeduplicator(long expectedUris, double falsePositiveRate, long maxBytes) {
+        this(expectedUris, falsePositiveRate, maxBytes, new HashSet<>(), null, 0);
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        if (maxBytes < 8) {
+            throw new IllegalArgumentException("maxBytes must be at least 8");
+        }
+    }
+
+    private ProbeDeduplicator(long expectedUris, double falsePositiveRate, long maxBytes, Set<String> exact,
+                              long[] bits, int hashCount) {
+        this.expectedUris = Math.max(1, expectedUris);
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxBytes = maxBytes;
+        this.exact = exact;
+        this.bits = bits;
+        this.bitCount = bits != null ? bits.length * 64L : 0;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Replaces the exact set with a Bloom filter holding the same URIs, once the set has outgrown its limit.
+     */
+    private void growIntoFilter() {
+        long expected = Math.max(expectedUris, exact.size() * 2L);
+        // Optimal filter: m = -n ln(p) / ln(2)^2 bits and k = m / n ln(2) hash functions
+        double optimalBits = -expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long maxBits = Math.min(maxBytes, (long) Integer.MAX_VALUE * 8) * 8;
+        long words = (Math.min((long) Math.ceil(optimalBits), maxBits) + 63) / 64;
+        bits = new long[(int) Math.max(1, words)];
+        bitCount = bits.length * 64L;
+        hashCount = (int) Math.max(1, Math.min(16, Math.round((double) bitCount / expected * Math.log(2))));
+        Set<String> known = exact;
+        exact = null;
+        for (String uri : known) {
+            setBits(uri);
+        }
+    }
+
+    /**
+     * @return The number of URIs the exact set holds before it turns into a Bloom filter.
+     */
+    private long exactLimit() {
+        return Math.min(EXACT_LIMIT, maxBytes / EXACT_ENTRY_BYTES);
+    }
+
+    /**
+     * Returns the file holding the deduplicator of an authority's scan, next to its checkpoint.
+     *
+     * @param context   Any context of the application.
+     * @param authority The authority being scanned.
+     * @return The file, which may not exist.
+     */
+    public static File fileFor(Context context, String authority) {
+        File dir = new File(context.getFilesDir(), "checkpoints");
+        return new File(dir, authority.replaceAll("[^A-Za-z0-9._-]", "_") + ".dedup");
+    }
+
+    /**
+     * Reads a deduplicator.
+     *
+     * @param file The file written by {@link #save(File)}.
+     * @return The deduplicator, or null if the file does not exist.
+     * @throws IOException If the file cannot be read or is not a valid deduplicator.
+     */
+    public static ProbeDeduplicator load(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a probe deduplicator: " + file);
+            }
+            int markedDepth = in.readInt();
+            long markedPosition = in.readLong();
+            long markedProbesSent = in.readLong();
+            long expectedUris = in.readLong();
+            double falsePositiveRate = in.readDouble();
+            long maxBytes = in.readLong();
+            long duplicates = in.readLong();
+            if (falsePositiveRate <= 0 || falsePositiveRate >= 1 || maxBytes < 8) {
+                throw new IOException("Corrupt probe deduplicator: " + file);
+            }
+            int count = in.readInt();
+            ProbeDeduplicator deduplicator;
+            if (in.readBoolean()) {
+                if (count < 0) {
+                    throw new IOException("Corrupt probe deduplicator: " + file);
+                }
+                Set<String> exact = new HashSet<>();
+                for (int i = 0; i < count; i++) {
+                    exact.add(in.readUTF());
+                }
+                deduplicator = new ProbeDeduplicator(expectedUris, falsePositiveRate, maxBytes, exact, null, 0);
+            } else {
+                int hashCount = in.readInt();
+                if (count < 1 || count > Integer.MAX_VALUE / 8 || hashCount < 1 || hashCount > 16) {
+                    throw new IOException("Corrupt probe deduplicator: " + file);
+                }
+                long[] bits = new long[count];
+                for (int i = 0; i < count; i++) {
+                    bits[i] = in.readLong();
+                }
+                deduplicator = new ProbeDeduplicator(expectedUris, falsePositiveRate, maxBytes, null, bits, hashCount);
+            }
+            deduplicator.duplicates = duplicates;
+            deduplicator.mark(markedDepth, markedPosition, markedProbesSent);
+            return deduplicator;
+        }
+    }
+
+    /**
+     * Writes the deduplicator to a temporary file and renames it over the previous one.
+     *
+     * @param file The file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(markedDepth);
+            out.writeLong(markedPosition);
+            out.writeLong(markedProbesSent);
+            out.writeLong(expectedUris);
+            out.writeDouble(falsePositiveRate);
+            out.writeLong(maxBytes);
+            out.writeLong(duplicates);
+            if (exact != null) {
+                out.writeInt(exact.size());
+                out.writeBoolean(true);
+                for (String uri : exact) {
+                    out.writeUTF(uri);
+                }
+            } else {
+                out.writeInt(bits.length);
+                out.writeBoolean(false);
+                out.writeInt(hashCount);
+                for (long word : bits) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Ties the current state to a scan checkpoint. A run resuming from that checkpoint keeps using the
+     * deduplicator, but must not reject the candidates queued before it, which may never have been answered.
+     *
+     * @param depth      The depth level of the checkpoint.
+     * @param position   The scan position up to which candidates of that level were queued.
+     * @param probesSent The number of queries of the checkpoint, which identifies it.
+     */
+    void mark(int depth, long position, long probesSent) {
+        this.markedDepth = depth;
+        this.markedPosition = position;
+        this.markedProbesSent = probesSent;
+    }
+
+    int getMarkedDepth() {
+        return markedDepth;
+    }
+
+    long getMarkedPosition() {
+        return markedPosition;
+    }
+
+    long getMarkedProbesSent() {
+        return markedProbesSent;
+    }
+
+    /**
+     * Records a URI.
+     *
+     * @param uri A content URI.
+     * @return True if the URI is new and should be probed, false if it was recorded before.
+     */
+    public boolean add(String uri) {
+        String normalized = normalize(uri);
+        boolean added;
+        if (exact != null) {
+            added = exact.add(normalized);
+            if (added && exact.size() > exactLimit()) {
+                growIntoFilter();
+            }
+        } else {
+            added = setBits(normalized);
+        }
+        if (!added) {
+            duplicates++;
+        }
+        return added;
+    }
+
+    /**
+     * Sets the filter bits of a normalized URI.
+     *
+     * @return True if at least one bit was not set yet, i.e. the URI is new.
+     */
+    private boolean setBits(String normalized) {
+        // Double hashing: the k bit positions are h1 + i * h2, from one 64 bit hash
+        long hash = hash(normalized);
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * @return True if URIs are remembered exactly, false if a Bloom filter is used.
+     */
+    public boolean isExact() {
+        return exact != null;
+    }
+
+    /**
+     * @return The number of URIs rejected as already recorded, by every run that used this deduplicator.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return The approximate memory used by the filter's bit array, 0 for the exact set.
+     */
+    public long getFilterBytes() {
+        return bits != null ? bits.length * 8L : 0;
+    }
+
+    /**
+     * @return The number of hash functions of the Bloom filter, 0 for the exact set.
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Normalizes a content URI the way a provider's {@code UriMatcher} sees it: surrounding whitespace is
+     * trimmed, the scheme lower-cased and empty path segments dropped, so "content://a//b/" equals "content://a/b".
+     *
+     * @param uri A content URI.
+     * @return The normalized URI.
+     */
+    static String normalize(String uri) {
+        String trimmed = uri.trim();
+        int schemeEnd = trimmed.indexOf("://");
+        if (schemeEnd < 0) {
+            return trimmed;
+        }
+        int pathStart = trimmed.indexOf('/', schemeEnd + 3);
+        StringBuilder normalized = new StringBuilder(trimmed.length());
+        normalized.append(trimmed.substring(0, schemeEnd).toLowerCase(Locale.ROOT));
+        normalized.append(trimmed, schemeEnd, pathStart < 0 ? trimmed.length() : pathStart);
+        if (pathStart >= 0) {
+            for (int i = pathStart; i < trimmed.length(); i++) {
+                char c = trimmed.charAt(i);
+                if (c == '/' && (i + 1 == trimmed.length() || trimmed.charAt(i + 1) == '/')) {
+                    continue;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * 64 bit FNV-1a of the URI's characters, with a final mix so both halves are usable as hashes.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,678 @@
+package com.example.bullet;
+
+import android.util.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * The ProbeEngine class runs content provider path discovery on the workers of the process-wide
+ * {@link ScanScheduler}. A single producer reads candidate paths from the wordlist into a bounded queue
+ * which the scheduler drains, fairly shared with other running scans and with at most {@code concurrency}
+ * queries in flight against the target authority.
+ * <p>
+ * Discovery is hierarchical: every path of one depth level that the provider answers differently
+ * from a made-up path under the same prefix becomes a prefix for the next level, while prefixes
+ * answered like made-up paths ("unknown URI") are pruned together with their whole subtree.
+ */
+public class ProbeEngine {
+
+    private static final String TAG = "ProbeEngine";
+
+    /**
+     * Poll interval used by the producer to notice a stop request while waiting on the queue.
+     */
+    private static final long POLL_INTERVAL_MS = 100;
+
+    /**
+     * Segment used to probe numeric id paths such as {@code /users/#}.
+     */
+    private static final String NUMERIC_SEGMENT = "1";
+
+    /**
+     * Segment no provider is expected to match, used to learn how a prefix answers unknown paths.
+     */
+    private static final String BASELINE_SEGMENT = "zz_bullet_no_such_path_7f3a";
+
+    private final int concurrency;
+    private final int queueCapacity;
+    private final PathProbe probe;
+    private final ScanScheduler scheduler;
+    private IntSupplier concurrencyLimit = () -> Integer.MAX_VALUE;
+    private int maxDepth = 1;
+    private long probeBudget = Long.MAX_VALUE;
+    private boolean numericSegments = true;
+    private double falsePositiveRate = ProbeDeduplicator.DEFAULT_FALSE_POSITIVE_RATE;
+    private long deduplicationBytes = ProbeDeduplicator.DEFAULT_MAX_BYTES;
+    private ProbeDeduplicator deduplicator;
+    private long wordlistFingerprint = 0;
+    private CheckpointListener checkpointListener;
+    private long checkpointIntervalMs;
+    private volatile Run current;
+
+    /**
+     * Queries a single fully-qualified content URI.
+     */
+    public interface PathProbe {
+        ProbeResult probe(String path);
+    }
+
+    /**
+     * Receives the outcome of every probe. Called concurrently from the worker threads.
+     */
+    public interface Listener {
+        void onPathChecked(String path, ProbeResult result, int processed);
+    }
+
+    /**
+     * Receives periodic snapshots of the scan, and a final one if the scan is stopped before it completes.
+     * Called from the thread that runs the scan.
+     */
+    public interface CheckpointListener {
+        void onCheckpoint(ScanCheckpoint checkpoint);
+    }
+
+    /**
+     * A path prefix being expanded, together with how the provider answers unknown paths below it.
+     */
+    private static final class Prefix {
+        final String path;
+        final String baselineSignature;
+
+        Prefix(String path, String baselineSignature) {
+            this.path = path;
+            this.baselineSignature = baselineSignature;
+        }
+    }
+
+    /**
+     * A candidate path together with its position in the scan: the depth level, the index of its prefix
+     * in that level's frontier and its wordlist index (-1 for the numeric id segment).
+     */
+    private static final class Candidate {
+        final int depth;
+        final int prefixIndex;
+        final int entryIndex;
+        final Prefix prefix;
+        final String path;
+
+        Candidate(int depth, int prefixIndex, int entryIndex, Prefix prefix, String path) {
+            this.depth = depth;
+            this.prefixIndex = prefixIndex;
+            this.entryIndex = entryIndex;
+            this.prefix = prefix;
+            this.path = path;
+        }
+
+        /**
+         * @return The position of the candidate within its depth level, ordered like the scan.
+         */
+        long position() {
+            return position(prefixIndex, entryIndex);
+        }
+
+        static long position(int prefixIndex, int entryIndex) {
+            return ((long) prefixIndex << 32) | (entryIndex + 1);
+        }
+    }
+
+    /**
+     * Appends dictionary entries to a fixed URI prefix in a reused char buffer, so building a candidate
+     * allocates only the resulting String. Entries are almost always ASCII; anything else is decoded as UTF-8.
+     */
+    private static final class CandidateBuilder {
+        private final char[] chars;
+        private final int prefixLength;
+
+        CandidateBuilder(String prefix, int maxEntryLength) {
+            prefixLength = prefix.length();
+            chars = new char[prefixLength + maxEntryLength];
+            prefix.getChars(0, prefixLength, chars, 0);
+        }
+
+        String build(byte[] entry, int length) {
+            for (int i = 0; i < length; i++) {
+                byte b = entry[i];
+                if (b < 0) {
+                    return new String(chars, 0, prefixLength) + new String(entry, 0, length, StandardCharsets.UTF_8);
+                }
+                chars[prefixLength + i] = (char) b;
+            }
+            return new String(chars, 0, prefixLength + length);
+        }
+    }
+
+    /**
+     * Creates an engine running its probes on the process-wide scheduler.
+     *
+     * @param concurrency   The maximum number of queries in flight at the same time.
+     * @param queueCapacity The maximum number of candidates buffered between the reader and the workers.
+     * @param probe         The probe used to check every candidate path.
+     */
+    public ProbeEngine(int concurrency, int queueCapacity, PathProbe probe) {
+        this(concurrency, queueCapacity, probe, ScanScheduler.getInstance());
+    }
+
+    /**
+     * @param concurrency   The maximum number of queries in flight at the same time.
+     * @param queueCapacity The maximum number of candidates buffered between the reader and the workers.
+     * @param probe         The probe used to check every candidate path.
+     * @param scheduler     The scheduler running the probes.
+     */
+    public ProbeEngine(int concurrency, int queueCapacity, PathProbe probe, ScanScheduler scheduler) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1");
+        }
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        this.probe = probe;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Sets a limit on the queries in flight that may change while a scan runs, e.g. one adapted to how
+     * well the provider copes. The lower of this limit and the engine's concurrency applies.
+     *
+     * @param concurrencyLimit Read before every probe.
+     */
+    public void setConcurrencyLimit(IntSupplier concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * Sets how many path segments deep discovery goes. A depth of 1 only probes {@code content://authority/<entry>}.
+     *
+     * @param maxDepth The maximum number of segments, at least 1.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1");
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets the maximum number of queries a run may send, including the baseline query of every prefix.
+     *
+     * @param probeBudget The query budget, at least 1.
+     */
+    public void setProbeBudget(long probeBudget) {
+        if (probeBudget < 1) {
+            throw new IllegalArgumentException("probeBudget must be at least 1");
+        }
+        this.probeBudget = probeBudget;
+    }
+
+    /**
+     * Sets a listener receiving scan checkpoints at most every {@code intervalMs} milliseconds.
+     *
+     * @param listener   The listener, or null to disable checkpoints.
+     * @param intervalMs The minimum time between two periodic checkpoints.
+     */
+    public void setCheckpointListener(CheckpointListener listener, long intervalMs) {
+        this.checkpointListener = listener;
+        this.checkpointIntervalMs = intervalMs;
+    }
+
+    /**
+     * Sets the fingerprint recorded in checkpoints, identifying the wordlists and mutations the run's
+     * candidates are generated from, see {@link ScanCheckpoint#isCompatible(int, long, int)}.
+     *
+     * @param wordlistFingerprint The fingerprint.
+     */
+    public void setWordlistFingerprint(long wordlistFingerprint) {
+        this.wordlistFingerprint = wordlistFingerprint;
+    }
+
+    /**
+     * Sets whether a numeric id segment is probed below every non-root prefix in addition to the wordlist.
+     *
+     * @param numericSegments True to probe paths such as {@code /users/1}.
+     */
+    public void setNumericSegments(boolean numericSegments) {
+        this.numericSegments = numericSegments;
+    }
+
+    /**
+     * Configures how a run remembers the URIs it has queued, so that none is probed twice. The memory is
+     * allocated when a scan starts, sized for its whole budget; runs continuing the scan keep using it, see
+     * {@link #setDeduplicator(ProbeDeduplicator)}.
+     *
+     * @param falsePositiveRate The fraction of new URIs that may be skipped as already probed, above 0 and below 1.
+     * @param maxBytes          The maximum memory used to remember the URIs.
+     * @see ProbeDeduplicator
+     */
+    public void setDeduplication(double falsePositiveRate, long maxBytes) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        if (maxBytes < 8) {
+            throw new IllegalArgumentException("maxBytes must be at least 8");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.deduplicationBytes = maxBytes;
+    }
+
+    /**
+     * Hands the deduplicator of an earlier run of the same scan to the next run, so URIs queued by earlier chunks
+     * are not probed again. It is only used if it was marked by the checkpoint the run resumes from; otherwise,
+     * or without one, the run starts a new deduplicator sized for the remaining budget.
+     *
+     * @param deduplicator The deduplicator returned by {@link #getDeduplicator()} after the earlier run, or null.
+     */
+    public void setDeduplicator(ProbeDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * @return The deduplicator of the running or last scan, marked with its last checkpoint; null if no scan has run.
+     */
+    public ProbeDeduplicator getDeduplicator() {
+        Run run = current;
+        return run != null ? run.deduplicator : null;
+    }
+
+    /**
+     * Probes the wordlist below {@code content://authority/}, level by level up to the maximum depth,
+     * and blocks until all queued candidates have been checked, the budget is spent or a stop is requested.
+     *
+     * @param wordlist  The candidate path segments, e.g. the wordlist or a {@link WordMutator} over it.
+     * @param authority The authority of the content provider being scanned.
+     * @param resume    A checkpoint of an earlier run of the same scan to continue from, or null to start over.
+     * @param listener  Receives the outcome of every probe.
+     * @param stop      Polled regularly; when it returns true no further candidates are queued or probed.
+     * @return The accessible paths, ordered by depth and then by wordlist order.
+     */
+    public List<String> run(WordSource wordlist, String authority, ScanCheckpoint resume, Listener listener,
+                            BooleanSupplier stop) {
+        return new Run(wordlist, authority, resume, listener, stop).execute();
+    }
+
+    /**
+     * @return The depth level being probed by the running or last scan, 0 if no scan has run.
+     */
+    public int getDepth() {
+        Run run = current;
+        return run != null ? run.depth : 0;
+    }
+
+    /**
+     * @return True if the last scan probed every candidate or spent its budget, false if it was stopped early.
+     */
+    public boolean isFinished() {
+        Run run = current;
+        return run != null && run.finished;
+    }
+
+    /**
+     * @return The maximum depth of scans run by this engine.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return The number of queries sent by the running or last scan, including those of the runs it resumed.
+     */
+    public long getProbesSent() {
+        Run run = current;
+        return run != null ? run.sent : 0;
+    }
+
+    /**
+     * @return The number of candidates the running or last scan skipped because their URI was already queued,
+     * including those skipped by the runs it resumed.
+     */
+    public long getDuplicatesSkipped() {
+        Run run = current;
+        return run != null ? run.deduplicator.getDuplicates() : 0;
+    }
+
+    /**
+     * Rough fraction of the current depth level that has been queued, for display only.
+     *
+     * @return A value between 0 and 1, 0 if no scan has run.
+     */
+    public double getLevelProgress() {
+        Run run = current;
+        if (run == null || run.frontierSize == 0 || run.wordlist.size() == 0) {
+            return 0;
+        }
+        long position = run.nextPosition;
+        double prefixes = (position >>> 32) + Math.max(0, (position & 0xFFFFFFFFL) - 1) / (double) run.wordlist.size();
+        return Math.min(1, prefixes / run.frontierSize);
+    }
+
+    /**
+     * @return The number of candidates of the current depth level that have not been queued yet.
+     */
+    public long getRemainingLevelCandidates() {
+        Run run = current;
+        if (run == null) {
+            return 0;
+        }
+        long position = run.nextPosition;
+        long remaining = (run.frontierSize - (position >>> 32)) * (long) run.wordlist.size()
+                - Math.max(0, (position & 0xFFFFFFFFL) - 1);
+        return Math.max(0, Math.min(remaining, probeBudget - run.sent));
+    }
+
+    /**
+     * The state of a single scan, shared between the producer and the probe workers.
+     */
+    private final class Run {
+        private final WordSource wordlist;
+        private final String authority;
+        private final String root;
+        private final Listener listener;
+        private final BooleanSupplier stop;
+        private final BlockingQueue<Candidate> queue = new ArrayBlockingQueue<>(queueCapacity);
+        // Candidates queued but not yet answered, keyed by their position; the first one is where a resume starts
+        private final ConcurrentSkipListMap<Long, Candidate> inFlight = new ConcurrentSkipListMap<>();
+        private final List<String> previousHits;
+        private final List<Candidate> hits = new ArrayList<>();
+        private final Set<String> nextFrontier = new LinkedHashSet<>();
+        private final AtomicInteger processed = new AtomicInteger();
+        private final ProbeDeduplicator deduplicator;
+        // Candidates of this level before this position were queued by the run that took the resumed checkpoint
+        private final int replayDepth;
+        private final long replayEnd;
+        private ScanScheduler.Scan scan;
+
+        // Written by the producer only, volatile so progress can be read from other threads
+        private volatile int depth;
+        private volatile int frontierSize;
+        private volatile long sent;
+        private volatile long nextPosition;
+        private List<String> frontier;
+        private int startPrefix;
+        private int startEntry;
+        private long lastCheckpoint;
+        // End of the positions of this level recorded in the deduplicator, including a candidate a stop kept from being queued
+        private long recordedEnd;
+        private volatile boolean finished;
+
+        Run(WordSource wordlist, String authority, ScanCheckpoint resume, Listener listener, BooleanSupplier stop) {
+            this.wordlist = wordlist;
+            this.authority = authority;
+            this.root = "content://" + authority + "/";
+            this.listener = listener;
+            this.stop = stop;
+            if (resume != null) {
+                depth = resume.getDepth();
+                frontier = new ArrayList<>(resume.getFrontier());
+                startPrefix = resume.getPrefixIndex();
+                startEntry = resume.getEntryIndex();
+                nextFrontier.addAll(resume.getNextFrontier());
+                previousHits = resume.getFoundPaths();
+                sent = resume.getProbesSent();
+                Log.i(TAG, "Resuming " + authority + " at depth " + depth + ", prefix " + startPrefix + ", entry " + startEntry);
+            } else {
+                depth = 1;
+                frontier = new ArrayList<>();
+                frontier.add("");
+                startPrefix = 0;
+                startEntry = -1;
+                previousHits = new ArrayList<>();
+                sent = 0;
+            }
+            frontierSize = frontier.size();
+            ProbeDeduplicator carried = ProbeEngine.this.deduplicator;
+            if (resume != null && carried != null && carried.getMarkedProbesSent() == resume.getProbesSent()) {
+                deduplicator = carried;
+                replayDepth = carried.getMarkedDepth();
+                replayEnd = carried.getMarkedPosition();
+            } else {
+                // The deeper levels queue up to frontier times wordlist candidates, only the budget bounds the scan;
+                // the deduplicator stays an exact set until the scan actually queues more URIs than it holds
+                deduplicator = new ProbeDeduplicator(probeBudget - sent, falsePositiveRate, deduplicationBytes);
+                replayDepth = 0;
+                replayEnd = 0;
+            }
+        }
+
+        List<String> execute() {
+            current = this;
+            lastCheckpoint = System.currentTimeMillis();
+            boolean stopped;
+            scan = scheduler.register(authority, () -> Math.min(concurrency, concurrencyLimit.getAsInt()), this::nextTask);
+            try {
+                stopped = !produce() || !awaitAnswers();
+            } catch (InterruptedException e) {
+                stopped = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                // Waits for the probes still running, so their findings are in the final checkpoint
+                scan.close();
+            }
+
+            // Candidates left unanswered by the stop are still in flight, so the final checkpoint resumes with them
+            if (stopped && checkpointListener != null) {
+                checkpointListener.onCheckpoint(snapshot());
+            }
+            finished = !stopped;
+
+            Log.i(TAG, "Probed " + processed.get() + " paths up to depth " + Math.min(depth, maxDepth) + " with up to " + concurrency
+                    + " queries in flight, skipped " + deduplicator.getDuplicates() + " duplicates.");
+            return accessiblePaths();
+        }
+
+        /**
+         * Queues every candidate of the scan, level by level.
+         *
+         * @return False if a stop was requested before the scan completed.
+         */
+        private boolean produce() throws InterruptedException {
+            while (depth <= maxDepth && !frontier.isEmpty()) {
+                for (int p = startPrefix; p < frontier.size(); p++) {
+                    int firstEntry = p == startPrefix ? startEntry : -1;
+                    nextPosition = Candidate.position(p, firstEntry);
+                    if (stop.getAsBoolean()) {
+                        return false;
+                    }
+                    if (sent >= probeBudget) {
+                        return true;
+                    }
+
+                    // Learn how this prefix answers paths that cannot exist, so those can be pruned
+                    String prefixPath = frontier.get(p);
+                    ProbeResult baseline = probe.probe(root + prefixPath + BASELINE_SEGMENT);
+                    sent++;
+                    Prefix prefix = new Prefix(prefixPath, baseline.signature());
+
+                    if (firstEntry < 0) {
+                        if (numericSegments && depth > 1) {
+                            if (!enqueue(new Candidate(depth, p, -1, prefix, root + prefixPath + NUMERIC_SEGMENT))) {
+                                return false;
+                            }
+                        }
+                        firstEntry = 0;
+                        nextPosition = Candidate.position(p, 0);
+                    }
+
+                    CandidateBuilder builder = new CandidateBuilder(root + prefixPath, wordlist.getMaxEntryLength());
+                    WordSource.Reader reader = wordlist.reader();
+                    reader.seek(firstEntry);
+                    while (reader.next()) {
+                        if (sent >= probeBudget) {
+                            return true;
+                        }
+                        String path = builder.build(reader.bytes(), reader.length());
+                        if (!enqueue(new Candidate(depth, p, reader.index(), prefix, path))) {
+                            return false;
+                        }
+                    }
+                    nextPosition = Candidate.position(p + 1, -1);
+                }
+
+                // The next level can only start once every candidate of this one has been answered
+                while (!inFlight.isEmpty()) {
+                    if (stop.getAsBoolean()) {
+                        return false;
+                    }
+                    Thread.sleep(10);
+                }
+                synchronized (nextFrontier) {
+                    frontier = new ArrayList<>(nextFrontier);
+                    nextFrontier.clear();
+                }
+                frontierSize = frontier.size();
+                depth++;
+                startPrefix = 0;
+                startEntry = -1;
+                nextPosition = Candidate.position(0, -1);
+                recordedEnd = 0;
+                if (depth <= maxDepth && !frontier.isEmpty()) {
+                    Log.i(TAG, "Depth " + (depth - 1) + " done, expanding " + frontier.size() + " prefixes.");
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Queues a candidate, blocking while the workers are saturated but giving up on a stop request.
+         * A candidate whose URI was queued before is skipped.
+         *
+         * @return False if a stop was requested before the candidate could be queued.
+         */
+        private boolean enqueue(Candidate candidate) throws InterruptedException {
+            // Candidates queued before the resumed checkpoint are recorded already, but may never have been answered
+            boolean replayed = candidate.depth == replayDepth && candidate.position() < replayEnd;
+            if (!replayed && !deduplicator.add(candidate.path)) {
+                return true;
+            }
+            recordedEnd = candidate.position() + 1;
+            inFlight.put(candidate.position(), candidate);
+            while (!queue.offer(candidate, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                if (stop.getAsBoolean()) {
+                    inFlight.remove(candidate.position());
+                    return false;
+                }
+            }
+            scan.signal();
+            sent++;
+            nextPosition = candidate.position() + 1;
+            maybeCheckpoint();
+            return true;
+        }
+
+        /**
+         * Waits until every queued candidate has been answered.
+         *
+         * @return False if a stop was requested first.
+         */
+        private boolean awaitAnswers() throws InterruptedException {
+            while (!inFlight.isEmpty()) {
+                if (stop.getAsBoolean()) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+            return true;
+        }
+
+        /**
+         * Hands the next queued candidate to the scheduler. Once a stop is requested no further candidates
+         * are handed out; the ones left in the queue stay in flight for the final checkpoint.
+         */
+        private Runnable nextTask() {
+            if (stop.getAsBoolean()) {
+                return null;
+            }
+            Candidate candidate = queue.poll();
+            return candidate != null ? () -> check(candidate) : null;
+        }
+
+        private void check(Candidate candidate) {
+            ProbeResult result = probe.probe(candidate.path);
+            if (result.isAccessible()) {
+                synchronized (hits) {
+                    hits.add(candidate);
+                }
+            }
+            if (expands(result, candidate.prefix)) {
+                synchronized (nextFrontier) {
+                    nextFrontier.add(candidate.path.substring(root.length()) + "/");
+                }
+            }
+            // Only forget the candidate once its findings are recorded, so checkpoints never lose them
+            inFlight.remove(candidate.position());
+            listener.onPathChecked(candidate.path, result, processed.incrementAndGet());
+        }
+
+        private void maybeCheckpoint() {
+            if (checkpointListener == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastCheckpoint >= checkpointIntervalMs) {
+                lastCheckpoint = now;
+                checkpointListener.onCheckpoint(snapshot());
+            }
+        }
+
+        /**
+         * Captures the scan so that resuming repeats every candidate not answered yet. Candidates answered
+         * after the resume position are repeated as well, their findings are de-duplicated on resume.
+         */
+        private ScanCheckpoint snapshot() {
+            long resumeAt = nextPosition;
+            Map.Entry<Long, Candidate> firstInFlight = inFlight.firstEntry();
+            if (firstInFlight != null) {
+                resumeAt = Math.min(resumeAt, firstInFlight.getKey());
+            }
+            List<String> next;
+            synchronized (nextFrontier) {
+                next = new ArrayList<>(nextFrontier);
+            }
+            deduplicator.mark(depth, Math.max(nextPosition, recordedEnd), sent);
+            return new ScanCheckpoint(authority, wordlist.size(), wordlistFingerprint, maxDepth, depth, frontier,
+                    (int) (resumeAt >>> 32), (int) (resumeAt & 0xFFFFFFFFL) - 1, next, accessiblePaths(), sent);
+        }
+
+        /**
+         * @return The paths found by earlier runs followed by the ones found by this run, in scan order.
+         */
+        private List<String> accessiblePaths() {
+            List<Candidate> sorted;
+            synchronized (hits) {
+                sorted = new ArrayList<>(hits);
+            }
+            sorted.sort((a, b) -> a.depth != b.depth ? Integer.compare(a.depth, b.depth) : Long.compare(a.position(), b.position()));
+            Set<String> paths = new LinkedHashSet<>(previousHits);
+            for (Candidate hit : sorted) {
+                paths.add(hit.path);
+            }
+            return new ArrayList<>(paths);
+        }
+    }
+
+    /**
+     * A path is worth expanding if the provider answered it with anything but its answer for unknown paths.
+     */
+    private static boolean expands(ProbeResult result, Prefix prefix) {
+        switch (result.getOutcome()) {
+            case ACCESSIBLE:
+            case EMPTY:
+                return true;
+            case UNKNOWN_URI:
+                return false;
+            default:
+                return !result.signature().equals(prefix.baselineSignature);
+        }
+    }
+}
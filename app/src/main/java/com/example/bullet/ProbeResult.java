@@ -0,0 +1,86 @@
+package com.example.bullet;
+
+import java.util.Locale;
+
+/**
+ * The ProbeResult class describes how a content provider answered a single query:
+ * the kind of outcome and, for failures, the class of the exception it threw.
+ */
+public final class ProbeResult {
+
+    /**
+     * The kinds of answer a provider can give to a query.
+     */
+    public enum Outcome {
+        ACCESSIBLE,   // The query returned at least one row
+        EMPTY,        // The query returned an empty cursor
+        NO_CURSOR,    // The query returned null
+        UNKNOWN_URI,  // The provider rejected the URI as not matching any of its paths
+        DENIED,       // The provider threw a SecurityException
+        ERROR         // The provider threw any other exception
+    }
+
+    public static final ProbeResult ACCESSIBLE = new ProbeResult(Outcome.ACCESSIBLE, null);
+    public static final ProbeResult EMPTY = new ProbeResult(Outcome.EMPTY, null);
+    public static final ProbeResult NO_CURSOR = new ProbeResult(Outcome.NO_CURSOR, null);
+
+    private final Outcome outcome;
+    private final String errorClass;
+
+    public ProbeResult(Outcome outcome, String errorClass) {
+        this.outcome = outcome;
+        this.errorClass = errorClass;
+    }
+
+    /**
+     * Classifies an exception thrown by a query. Providers built on UriMatcher usually reject
+     * unmatched paths with an IllegalArgumentException or UnsupportedOperationException whose
+     * message mentions the URI, which is reported as {@link Outcome#UNKNOWN_URI}.
+     *
+     * @param e The exception thrown by the query.
+     * @return The matching result.
+     */
+    public static ProbeResult fromException(Exception e) {
+        String errorClass = e.getClass().getName();
+        if (e instanceof SecurityException) {
+            return new ProbeResult(Outcome.DENIED, errorClass);
+        }
+        if (e instanceof IllegalArgumentException || e instanceof UnsupportedOperationException) {
+            String message = e.getMessage() == null ? "" : e.getMessage().toLowerCase(Locale.ROOT);
+            if (message.contains("unknown uri") || message.contains("unsupported uri")
+                    || message.contains("invalid uri") || message.contains("unknown url")) {
+                return new ProbeResult(Outcome.UNKNOWN_URI, errorClass);
+            }
+        }
+        return new ProbeResult(Outcome.ERROR, errorClass);
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return The exception class name for failed queries, null otherwise.
+     */
+    public String getErrorClass() {
+        return errorClass;
+    }
+
+    public boolean isAccessible() {
+        return outcome == Outcome.ACCESSIBLE;
+    }
+
+    /**
+     * Two results with the same signature are indistinguishable to the scanner.
+     *
+     * @return The outcome together with the exception class, if any.
+     */
+    public String signature() {
+        return errorClass == null ? outcome.name() : outcome.name() + ":" + errorClass;
+    }
+
+    @Override
+    public String toString() {
+        return signature();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.bullet;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The ProgressChannel class carries scan progress from the probe workers to the main thread. Workers only
+ * signal that something changed; the channel coalesces signals and builds at most one snapshot per interval
+ * on the main thread. Signalling never blocks and costs a single volatile read while a delivery is pending,
+ * so a slow or backgrounded UI cannot slow the scan down or pile up messages.
+ */
+public class ProgressChannel {
+
+    /**
+     * Default minimum time between two snapshots, i.e. at most four updates per second.
+     */
+    public static final long DEFAULT_INTERVAL_MS = 250;
+
+    /**
+     * Receives progress snapshots on the main thread.
+     */
+    public interface Listener {
+        void onProgress(ScanProgress progress);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Supplier<ScanProgress> source;
+    private final Listener listener;
+    private final long intervalMs;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final Runnable deliver = this::deliver;
+    private volatile long lastDelivery;
+    private volatile boolean closed;
+
+    /**
+     * @param source     Builds a snapshot of the scan; called on the main thread, so it must only read thread-safe state.
+     * @param listener   Receives the snapshots.
+     * @param intervalMs The minimum time between two snapshots.
+     */
+    public ProgressChannel(Supplier<ScanProgress> source, Listener listener, long intervalMs) {
+        this.source = source;
+        this.listener = listener;
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Tells the channel that the scan made progress. Safe to call from any thread, on every probe.
+     */
+    public void signal() {
+        if (closed || pending.get() || !pending.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = Math.max(0, lastDelivery + intervalMs - SystemClock.uptimeMillis());
+        handler.postDelayed(deliver, delay);
+    }
+
+    /**
+     * Drops any pending snapshot and delivers the last one of the scan. Later signals are ignored.
+     *
+     * @param last The final snapshot of the scan.
+     */
+    public void close(ScanProgress last) {
+        closed = true;
+        handler.removeCallbacks(deliver);
+        handler.post(() -> listener.onProgress(last));
+    }
+
+    private void deliver() {
+        lastDelivery = SystemClock.uptimeMillis();
+        pending.set(false);
+        if (!closed) {
+            listener.onProgress(source.get());
+        }
+    }
+}
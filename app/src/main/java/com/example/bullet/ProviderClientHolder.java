@@ -0,0 +1,123 @@
+package com.example.bullet;
+
+import android.content.ContentProviderClient;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.DeadObjectException;
+import android.util.Log;
+
+/**
+ * The ProviderClientHolder class keeps a single unstable ContentProviderClient for one authority
+ * for the lifetime of a scan, so every probe only pays for the query itself. When the provider
+ * process dies the client is dropped and transparently re-acquired on the next query.
+ * <p>
+ * The holder is safe to use from several probe workers at the same time.
+ */
+public class ProviderClientHolder implements AutoCloseable {
+
+    private static final String TAG = "ProviderClientHolder";
+
+    private final ContentResolver resolver;
+    private final String authority;
+    private ContentProviderClient client;
+    private int reacquireCount = 0;
+    private boolean closed = false;
+    private Runnable deathListener;
+
+    /**
+     * @param resolver  The resolver used to acquire the client.
+     * @param authority The authority of the content provider the client is held for.
+     */
+    public ProviderClientHolder(ContentResolver resolver, String authority) {
+        this.resolver = resolver;
+        this.authority = authority;
+    }
+
+    /**
+     * Sets a listener run whenever the client has to be re-acquired because the provider process died.
+     *
+     * @param deathListener The listener, or null. Called from the probe worker that noticed the death.
+     */
+    public synchronized void setDeathListener(Runnable deathListener) {
+        this.deathListener = deathListener;
+    }
+
+    /**
+     * Queries the given URI through the shared client. If the provider process died since the client was
+     * acquired, the client is re-acquired and the query retried once.
+     *
+     * @param uri The URI to query.
+     * @return The cursor returned by the provider, or null if the provider returned none or could not be acquired.
+     * @throws Exception Any exception thrown by the provider, except a single provider death.
+     */
+    public Cursor query(Uri uri) throws Exception {
+        ContentProviderClient current = acquire();
+        if (current == null) {
+            return null;
+        }
+        try {
+            return current.query(uri, null, null, null, null);
+        } catch (DeadObjectException e) {
+            invalidate(current);
+            ContentProviderClient fresh = acquire();
+            if (fresh == null) {
+                throw e;
+            }
+            return fresh.query(uri, null, null, null, null);
+        }
+    }
+
+    /**
+     * Returns the shared client, acquiring it first if there is none.
+     *
+     * @return The client, or null if the authority cannot be resolved or the holder is closed.
+     */
+    public synchronized ContentProviderClient acquire() {
+        if (closed) {
+            return null;
+        }
+        if (client == null) {
+            client = resolver.acquireUnstableContentProviderClient(authority);
+            if (client != null && reacquireCount++ > 0) {
+                Log.w(TAG, "Re-acquired client for " + authority + " after provider death");
+                if (deathListener != null) {
+                    deathListener.run();
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Drops the given client if it is still the shared one, so the next query acquires a new client.
+     * Workers that observed the same dead client concurrently only cause a single re-acquire.
+     *
+     * @param dead The client that reported the provider death.
+     */
+    public synchronized void invalidate(ContentProviderClient dead) {
+        if (client == dead && client != null) {
+            client.close();
+            client = null;
+        }
+    }
+
+    /**
+     * @return How many times the client was acquired after the first time, i.e. how often the provider died.
+     */
+    public synchronized int getProviderDeaths() {
+        return Math.max(0, reacquireCount - 1);
+    }
+
+    /**
+     * Releases the shared client. Further queries return null.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.bullet;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ScanCheckpoint class is a snapshot of a running discovery scan: the depth level being probed,
+ * its prefix frontier, the position in the wordlist below which every candidate has been answered,
+ * and everything found so far. Scans resume from the last checkpoint after a stop, activity death
+ * or app kill instead of starting from zero.
+ */
+public class ScanCheckpoint {
+
+    private static final int MAGIC = 0x42534350; // "BSCP"
+    private static final int FORMAT_VERSION = 2;
+
+    private final String authority;
+    private final int wordlistSize;
+    private final long wordlistFingerprint;
+    private final int maxDepth;
+    private final int depth;
+    private final List<String> frontier;
+    private final int prefixIndex;
+    private final int entryIndex;
+    private final List<String> nextFrontier;
+    private final List<String> foundPaths;
+    private final long probesSent;
+
+    /**
+     * @param authority           The authority being scanned.
+     * @param wordlistSize        The number of wordlist entries, used to reject checkpoints of another wordlist.
+     * @param wordlistFingerprint Identifies the wordlists and mutations the candidates were generated from.
+     * @param maxDepth            The maximum depth of the scan.
+     * @param depth               The depth level in progress, starting at 1.
+     * @param frontier            The prefixes expanded at this depth, relative to the authority and ending in '/'.
+     * @param prefixIndex         The index in the frontier of the prefix to resume with.
+     * @param entryIndex          The wordlist index to resume with, -1 to start with the numeric id segment.
+     * @param nextFrontier        The prefixes already found for the next depth.
+     * @param foundPaths          The accessible paths found so far, in scan order.
+     * @param probesSent          The number of queries sent so far, counted against the scan budget.
+     */
+    public ScanCheckpoint(String authority, int wordlistSize, long wordlistFingerprint, int maxDepth, int depth,
+                          List<String> frontier, int prefixIndex, int entryIndex, List<String> nextFrontier,
+                          List<String> foundPaths, long probesSent) {
+        this.authority = authority;
+        this.wordlistSize = wordlistSize;
+        this.wordlistFingerprint = wordlistFingerprint;
+        this.maxDepth = maxDepth;
+        this.depth = depth;
+        this.frontier = Collections.unmodifiableList(new ArrayList<>(frontier));
+        this.prefixIndex = prefixIndex;
+        this.entryIndex = entryIndex;
+        this.nextFrontier = Collections.unmodifiableList(new ArrayList<>(nextFrontier));
+        this.foundPaths = Collections.unmodifiableList(new ArrayList<>(foundPaths));
+        this.probesSent = probesSent;
+    }
+
+    /**
+     * Returns the checkpoint file of an authority inside the app's private storage.
+     *
+     * @param context   Any context of the application.
+     * @param authority The authority being scanned.
+     * @return The checkpoint file, which may not exist.
+     */
+    public static File fileFor(Context context, String authority) {
+        File dir = new File(context.getFilesDir(), "checkpoints");
+        return new File(dir, authority.replaceAll("[^A-Za-z0-9._-]", "_") + ".ckpt");
+    }
+
+    /**
+     * Reads a checkpoint.
+     *
+     * @param file The checkpoint file.
+     * @return The checkpoint, or null if the file does not exist.
+     * @throws IOException If the file cannot be read or is not a valid checkpoint.
+     */
+    public static ScanCheckpoint load(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a scan checkpoint: " + file);
+            }
+            String authority = in.readUTF();
+            int wordlistSize = in.readInt();
+            long wordlistFingerprint = in.readLong();
+            int maxDepth = in.readInt();
+            int depth = in.readInt();
+            List<String> frontier = readList(in);
+            int prefixIndex = in.readInt();
+            int entryIndex = in.readInt();
+            List<String> nextFrontier = readList(in);
+            List<String> foundPaths = readList(in);
+            long probesSent = in.readLong();
+            return new ScanCheckpoint(authority, wordlistSize, wordlistFingerprint, maxDepth, depth, frontier, prefixIndex, entryIndex,
+                    nextFrontier, foundPaths, probesSent);
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and renames it over the previous one,
+     * so a crash while saving never leaves a torn checkpoint behind.
+     *
+     * @param file The checkpoint file.
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    public void save(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(authority);
+            out.writeInt(wordlistSize);
+            out.writeLong(wordlistFingerprint);
+            out.writeInt(maxDepth);
+            out.writeInt(depth);
+            writeList(out, frontier);
+            out.writeInt(prefixIndex);
+            out.writeInt(entryIndex);
+            writeList(out, nextFrontier);
+            writeList(out, foundPaths);
+            out.writeLong(probesSent);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Corrupt checkpoint");
+        }
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(in.readUTF());
+        }
+        return list;
+    }
+
+    private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+        out.writeInt(list.size());
+        for (String item : list) {
+            out.writeUTF(item);
+        }
+    }
+
+    /**
+     * A checkpoint only makes sense for the candidates it was taken with: the same wordlist size can hide
+     * a changed user wordlist, a new bundled wordlist or other mutations, which shift every position.
+     *
+     * @param wordlistSize        The size of the wordlist the scan would use.
+     * @param wordlistFingerprint The fingerprint of the wordlists and mutations the scan would use.
+     * @param maxDepth            The maximum depth the scan would use.
+     * @return True if this checkpoint was taken by a scan with the same candidates and depth.
+     */
+    public boolean isCompatible(int wordlistSize, long wordlistFingerprint, int maxDepth) {
+        return this.wordlistSize == wordlistSize && this.wordlistFingerprint == wordlistFingerprint
+                && this.maxDepth == maxDepth;
+    }
+
+    /**
+     * Rough fraction of the current depth level that is done, for display only.
+     *
+     * @return A value between 0 and 1.
+     */
+    public double getLevelProgress() {
+        if (frontier.isEmpty() || wordlistSize == 0) {
+            return 0;
+        }
+        return Math.min(1, (prefixIndex + Math.max(0, entryIndex) / (double) wordlistSize) / frontier.size());
+    }
+
+    public String getAuthority() {
+        return authority;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public List<String> getFrontier() {
+        return frontier;
+    }
+
+    public int getPrefixIndex() {
+        return prefixIndex;
+    }
+
+    public int getEntryIndex() {
+        return entryIndex;
+    }
+
+    public List<String> getNextFrontier() {
+        return nextFrontier;
+    }
+
+    public List<String> getFoundPaths() {
+        return foundPaths;
+    }
+
+    public long getProbesSent() {
+        return probesSent;
+    }
+}
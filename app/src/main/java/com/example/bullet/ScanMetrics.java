@@ -0,0 +1,198 @@
+package com.example.bullet;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ScanMetrics class counts what a discovery scan of one authority is doing: probes sent, cache hits,
+ * accessible paths, outcomes, failures per exception class and the latency distribution of real queries.
+ * All counters are lock-free, so probe workers can update them on every probe; readers such as the UI
+ * see live values at any time.
+ */
+public class ScanMetrics {
+
+    private static final ProbeResult.Outcome[] OUTCOMES = ProbeResult.Outcome.values();
+
+    private final String authority;
+    private final long startedAt = System.currentTimeMillis();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder[] outcomes = new LongAdder[OUTCOMES.length];
+    private final ConcurrentHashMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ConcurrentLinkedQueue<String> hitPaths = new ConcurrentLinkedQueue<>();
+    private volatile long finishedAt = 0;
+
+    public ScanMetrics(String authority) {
+        this.authority = authority;
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the metrics dump of an authority, kept next to its result log.
+     *
+     * @param context   Any context of the application.
+     * @param authority The scanned authority.
+     * @return The metrics file, which may not exist.
+     */
+    public static File fileFor(Context context, String authority) {
+        return new File(context.getExternalFilesDir("results"), authority.replaceAll("[^A-Za-z0-9._-]", "_") + ".metrics.txt");
+    }
+
+    /**
+     * Records one probe.
+     *
+     * @param result       The provider's answer.
+     * @param latencyNanos How long the query took; ignored for cached answers.
+     * @param cached       True if the answer came from the probe cache instead of the provider.
+     */
+    public void recordProbe(ProbeResult result, long latencyNanos, boolean cached) {
+        probes.increment();
+        outcomes[result.getOutcome().ordinal()].increment();
+        if (result.getErrorClass() != null) {
+            LongAdder counter = failures.get(result.getErrorClass());
+            if (counter == null) {
+                counter = failures.computeIfAbsent(result.getErrorClass(), key -> new LongAdder());
+            }
+            counter.increment();
+        }
+        if (cached) {
+            cacheHits.increment();
+        } else {
+            latency.record(latencyNanos);
+        }
+    }
+
+    /**
+     * Records an accessible path, so the UI can list it while the scan still runs.
+     *
+     * @param path The accessible content URI.
+     */
+    public void recordHit(String path) {
+        hitPaths.add(path);
+    }
+
+    /**
+     * @return The accessible paths recorded so far, in the order they were found.
+     */
+    public List<String> getHitPaths() {
+        return new ArrayList<>(hitPaths);
+    }
+
+    /**
+     * Marks the scan as finished, freezing its duration.
+     */
+    public void finish() {
+        finishedAt = System.currentTimeMillis();
+    }
+
+    public String getAuthority() {
+        return authority;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return outcomes[ProbeResult.Outcome.ACCESSIBLE.ordinal()].sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getOutcomeCount(ProbeResult.Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != 0;
+    }
+
+    /**
+     * @return The time the scan has been running, or ran for if it finished, in ms.
+     */
+    public long getElapsedMs() {
+        long end = finishedAt != 0 ? finishedAt : System.currentTimeMillis();
+        return end - startedAt;
+    }
+
+    /**
+     * @return The average number of probes per second since the scan started.
+     */
+    public double getProbesPerSecond() {
+        long elapsed = getElapsedMs();
+        return elapsed == 0 ? 0 : getProbes() * 1000.0 / elapsed;
+    }
+
+    /**
+     * @return The number of failures per exception class, sorted by class name.
+     */
+    public Map<String, Long> getFailures() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : failures.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Formats the current values as human-readable text.
+     *
+     * @return A multi-line summary of the metrics.
+     */
+    public String format() {
+        StringBuilder text = new StringBuilder();
+        text.append(authority).append(isFinished() ? " (finished)" : " (running)").append('\n');
+        text.append(String.format(Locale.ROOT, "probes: %d (%.0f/s), hits: %d, cache hits: %d%n",
+                getProbes(), getProbesPerSecond(), getHits(), getCacheHits()));
+        text.append(String.format(Locale.ROOT, "latency p50/p95/p99: %.1f / %.1f / %.1f ms (%d queries)%n",
+                latency.percentileMicros(0.50) / 1000.0, latency.percentileMicros(0.95) / 1000.0,
+                latency.percentileMicros(0.99) / 1000.0, latency.count()));
+        for (ProbeResult.Outcome outcome : OUTCOMES) {
+            long count = getOutcomeCount(outcome);
+            if (count > 0) {
+                text.append(outcome.name().toLowerCase(Locale.ROOT)).append(": ").append(count).append('\n');
+            }
+        }
+        for (Map.Entry<String, Long> failure : getFailures().entrySet()) {
+            text.append("  ").append(failure.getKey()).append(": ").append(failure.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes the formatted metrics to a file, replacing its content.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void dump(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (Writer writer = new FileWriter(file, false)) {
+            writer.write(format());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bullet;
+
+/**
+ * The ScanProgress class is an immutable snapshot of a running discovery scan, as shown by the progress panel.
+ */
+public class ScanProgress {
+
+    private final String authority;
+    private final long processed;
+    private final long hits;
+    private final double probesPerSecond;
+    private final long etaMs;
+    private final int depth;
+    private final int maxDepth;
+    private final double levelProgress;
+    private final double cacheHitRate;
+    private final int concurrencyLimit;
+    private final double rateLimit;
+    private final boolean finished;
+
+    /**
+     * @param authority        The authority being scanned.
+     * @param processed        The number of probes answered so far.
+     * @param hits             The number of accessible paths found so far.
+     * @param probesPerSecond  The average probe rate of the scan.
+     * @param etaMs            The estimated time until the current depth level is done, -1 if unknown.
+     * @param depth            The depth level being probed.
+     * @param maxDepth         The maximum depth of the scan.
+     * @param levelProgress    The fraction of the current depth level that is done, between 0 and 1.
+     * @param cacheHitRate     The fraction of probes answered from the probe cache.
+     * @param concurrencyLimit The current maximum number of queries in flight.
+     * @param rateLimit        The current maximum number of queries per second, infinite if not capped.
+     * @param finished         True for the last snapshot of a scan, once it completed or stopped.
+     */
+    public ScanProgress(String authority, long processed, long hits, double probesPerSecond, long etaMs, int depth,
+                        int maxDepth, double levelProgress, double cacheHitRate, int concurrencyLimit, double rateLimit,
+                        boolean finished) {
+        this.authority = authority;
+        this.processed = processed;
+        this.hits = hits;
+        this.probesPerSecond = probesPerSecond;
+        this.etaMs = etaMs;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+        this.levelProgress = levelProgress;
+        this.cacheHitRate = cacheHitRate;
+        this.concurrencyLimit = concurrencyLimit;
+        this.rateLimit = rateLimit;
+        this.finished = finished;
+    }
+
+    public String getAuthority() {
+        return authority;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public double getProbesPerSecond() {
+        return probesPerSecond;
+    }
+
+    public long getEtaMs() {
+        return etaMs;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public double getLevelProgress() {
+        return levelProgress;
+    }
+
+    public double getCacheHitRate() {
+        return cacheHitRate;
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
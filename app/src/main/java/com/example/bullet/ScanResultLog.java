@@ -0,0 +1,484 @@
+package com.example.bullet;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The ScanResultLog class is an append-only, structured log of scan results. Every record holds one
+ * probe: its target, outcome, latency and, for failures, the exception class. Records are written by a
+ * background thread in group commits, so durable results cost one write (and optionally one fsync) per
+ * group rather than per record.
+ * <p>
+ * File layout (all integers big-endian):
+ * <pre>
+ * magic "BRL" + version byte, long creation time in ms
+ * records: int body length, int CRC32 of body, body
+ * body:    long timestamp ms, long latency ns, UTF target, UTF outcome,
+ *          boolean + UTF exception class, boolean + UTF detail
+ * </pre>
+ * A torn record at the end of the file, e.g. after a crash, is ignored by readers and cut off
+ * when the log is reopened for writing.
+ */
+public final class ScanResultLog {
+
+    private static final byte[] MAGIC = {'B', 'R', 'L'};
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    /**
+     * Default number of records written together in one group commit.
+     */
+    public static final int DEFAULT_GROUP_SIZE = 256;
+
+    /**
+     * Default maximum time a record waits before its group is committed.
+     */
+    public static final long DEFAULT_GROUP_DELAY_MS = 200;
+
+    /**
+     * When written records are forced to the storage device.
+     */
+    public enum SyncPolicy {
+        NONE,       // Leave it to the OS, records survive app crashes but not power loss
+        ON_COMMIT,  // fsync after every group commit
+        ON_CLOSE    // fsync once when the log is closed
+    }
+
+    private ScanResultLog() {
+    }
+
+    /**
+     * Returns the result log of an authority. Logs are kept in app-specific external storage so they can
+     * be pulled from the device for offline analysis.
+     *
+     * @param context   Any context of the application.
+     * @param authority The scanned authority or other scan target.
+     * @return The log file, which may not exist.
+     */
+    public static File fileFor(Context context, String authority) {
+        return new File(context.getExternalFilesDir("results"), authority.replaceAll("[^A-Za-z0-9._-]", "_") + ".log");
+    }
+
+    /**
+     * Returns the result log of a fuzzing run against a component. These are kept apart from the provider
+     * scan logs, which are read in full to list the accessible paths.
+     *
+     * @param context Any context of the application.
+     * @param name    The fuzzed component or package.
+     * @return The log file, which may not exist.
+     */
+    public static File fuzzFileFor(Context context, String name) {
+        return new File(context.getExternalFilesDir("fuzz"), name.replaceAll("[^A-Za-z0-9._-]", "_") + ".log");
+    }
+
+    /**
+     * Reads the targets of every record with the given outcome. Resumed scans may repeat a few probes,
+     * so every target is only returned once.
+     *
+     * @param logFile The log file.
+     * @param outcome The outcome to look for, e.g. a {@link ProbeResult.Outcome} name.
+     * @return The targets in the order they were first logged.
+     * @throws IOException If the log cannot be read.
+     */
+    public static Set<String> readTargets(File logFile, String outcome) throws IOException {
+        Set<String> targets = new LinkedHashSet<>();
+        try (Reader reader = new Reader(logFile)) {
+            Record record;
+            while ((record = reader.next()) != null) {
+                if (outcome.equals(record.getOutcome())) {
+                    targets.add(record.getTarget());
+                }
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * A single logged probe.
+     */
+    public static final class Record {
+        private final long timestamp;
+        private final long latencyNanos;
+        private final String target;
+        private final String outcome;
+        private final String errorClass;
+        private final String detail;
+
+        /**
+         * @param timestamp    When the probe finished, in ms since the epoch.
+         * @param latencyNanos How long the probe took.
+         * @param target       What was probed, e.g. a content URI.
+         * @param outcome      The outcome, e.g. a {@link ProbeResult.Outcome} name.
+         * @param errorClass   The exception class for failed probes, or null.
+         * @param detail       Free-form extra information, or null.
+         */
+        public Record(long timestamp, long latencyNanos, String target, String outcome, String errorClass, String detail) {
+            this.timestamp = timestamp;
+            this.latencyNanos = latencyNanos;
+            this.target = target;
+            this.outcome = outcome;
+            this.errorClass = errorClass;
+            this.detail = detail;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public String getOutcome() {
+            return outcome;
+        }
+
+        public String getErrorClass() {
+            return errorClass;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+    }
+
+    /**
+     * Appends records through a background group-commit thread. {@link #append(Record)} is safe to call
+     * from any number of threads and only blocks when the writer falls far behind.
+     */
+    public static final class Writer implements Closeable {
+        private static final Record CLOSE = new Record(0, 0, null, null, null, null);
+
+        // How often a producer waiting on a full queue checks that the commit thread is still running
+        private static final long LIVENESS_CHECK_MS = 100;
+
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final int groupSize;
+        private final long groupDelayMs;
+        private final SyncPolicy syncPolicy;
+        private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>(64 * 1024);
+        private final Thread thread;
+        private final Object commitLock = new Object();
+        private long appended = 0;
+        private long committed = 0;
+        private long dropped = 0;
+        private IOException failure;
+
+        /**
+         * Opens a log for appending, creating it if needed. A torn record at the end is cut off first.
+         *
+         * @param logFile      The log file.
+         * @param truncate     True to discard any existing records.
+         * @param groupSize    The number of records committed together.
+         * @param groupDelayMs The maximum time a record waits for its group to fill up.
+         * @param syncPolicy   When committed records are forced to the storage device.
+         * @throws IOException If the file cannot be opened or is not a result log.
+         */
+        public Writer(File logFile, boolean truncate, int groupSize, long groupDelayMs, SyncPolicy syncPolicy) throws IOException {
+            File dir = logFile.getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            this.groupSize = groupSize;
+            this.groupDelayMs = groupDelayMs;
+            this.syncPolicy = syncPolicy;
+
+            long validEnd = 0;
+            if (!truncate && logFile.length() > 0) {
+                try (Reader reader = new Reader(logFile)) {
+                    while (reader.next() != null) {
+                        // Skip to the end of the last complete record
+                    }
+                    validEnd = reader.validEnd;
+                }
+            }
+            file = new RandomAccessFile(logFile, "rw");
+            channel = file.getChannel();
+            if (validEnd == 0) {
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.put(MAGIC).put(VERSION).putLong(System.currentTimeMillis()).flip();
+                channel.write(header, 0);
+                validEnd = HEADER_SIZE;
+            } else {
+                channel.truncate(validEnd);
+            }
+            channel.position(validEnd);
+
+            thread = new Thread(this::commitLoop, "ScanResultLog");
+            thread.start();
+        }
+
+        /**
+         * Queues a record for the next group commit. Once committing has failed the record is dropped and
+         * counted instead, see {@link #getDropped()}; the failure is reported by {@link #flush()} and {@link #close()}.
+         *
+         * @param record The record to append.
+         */
+        public void append(Record record) {
+            synchronized (commitLock) {
+                appended++;
+            }
+            try {
+                // Nothing drains the queue once the commit thread is gone, so a full queue must not block for good
+                while (thread.isAlive()) {
+                    if (queue.offer(record, LIVENESS_CHECK_MS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (commitLock) {
+                dropped++;
+            }
+        }
+
+        /**
+         * @return The number of records dropped because committing had failed.
+         */
+        public long getDropped() {
+            synchronized (commitLock) {
+                return dropped;
+            }
+        }
+
+        /**
+         * Blocks until every record appended before the call has been committed.
+         *
+         * @throws IOException If committing failed.
+         */
+        public void flush() throws IOException {
+            synchronized (commitLock) {
+                long target = appended;
+                while (committed < target && failure == null && thread.isAlive()) {
+                    try {
+                        commitLock.wait(groupDelayMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        }
+
+        /**
+         * Commits the remaining records and closes the log.
+         *
+         * @throws IOException If committing or closing failed.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                while (thread.isAlive() && !queue.offer(CLOSE, LIVENESS_CHECK_MS, TimeUnit.MILLISECONDS)) {
+                    // The queue is full, wait for the commit thread to take a group or to fail
+                }
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                if (syncPolicy == SyncPolicy.ON_CLOSE) {
+                    channel.force(false);
+                }
+            } finally {
+                file.close();
+            }
+            synchronized (commitLock) {
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        }
+
+        private void commitLoop() {
+            List<Record> group = new ArrayList<>(groupSize);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(groupSize * 128);
+            boolean closing = false;
+            try {
+                while (!closing) {
+                    Record first = queue.take();
+                    long deadline = System.currentTimeMillis() + groupDelayMs;
+                    if (first == CLOSE) {
+                        closing = true;
+                    } else {
+                        group.add(first);
+                    }
+                    while (!closing && group.size() < groupSize) {
+                        long wait = deadline - System.currentTimeMillis();
+                        Record next = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        if (next == CLOSE) {
+                            closing = true;
+                        } else {
+                            group.add(next);
+                        }
+                    }
+                    if (!group.isEmpty()) {
+                        commit(group, buffer);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                synchronized (commitLock) {
+                    failure = e;
+                    commitLock.notifyAll();
+                }
+            }
+        }
+
+        private void commit(List<Record> group, ByteArrayOutputStream buffer) throws IOException {
+            buffer.reset();
+            DataOutputStream out = new DataOutputStream(buffer);
+            ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+            DataOutputStream bodyOut = new DataOutputStream(body);
+            CRC32 crc = new CRC32();
+            for (Record record : group) {
+                body.reset();
+                bodyOut.writeLong(record.timestamp);
+                bodyOut.writeLong(record.latencyNanos);
+                bodyOut.writeUTF(record.target);
+                bodyOut.writeUTF(record.outcome);
+                writeOptional(bodyOut, record.errorClass);
+                writeOptional(bodyOut, record.detail);
+                crc.reset();
+                crc.update(body.toByteArray(), 0, body.size());
+                out.writeInt(body.size());
+                out.writeInt((int) crc.getValue());
+                body.writeTo(out);
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray(), 0, buffer.size());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (syncPolicy == SyncPolicy.ON_COMMIT) {
+                channel.force(false);
+            }
+            synchronized (commitLock) {
+                committed += group.size();
+                commitLock.notifyAll();
+            }
+            group.clear();
+        }
+
+        private static void writeOptional(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a log in the order they were committed.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final CRC32 crc = new CRC32();
+        private final long createdAt;
+        private long validEnd;
+
+        /**
+         * @param logFile The log file.
+         * @throws IOException If the file cannot be opened or is not a result log.
+         */
+        public Reader(File logFile) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile), 64 * 1024));
+            try {
+                for (byte b : MAGIC) {
+                    if (in.readByte() != b) {
+                        throw new IOException("Not a scan result log: " + logFile);
+                    }
+                }
+                byte version = in.readByte();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported scan result log version " + version);
+                }
+                createdAt = in.readLong();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+            validEnd = HEADER_SIZE;
+        }
+
+        /**
+         * @return When the log was created, in ms since the epoch.
+         */
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return The record, or null at the end of the log or at a torn record.
+         * @throws IOException If reading fails.
+         */
+        public Record next() throws IOException {
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    return null;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                crc.reset();
+                crc.update(body, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    return null;
+                }
+                DataInputStream bodyIn = new DataInputStream(new ByteArrayInputStream(body));
+                Record record = new Record(bodyIn.readLong(), bodyIn.readLong(), bodyIn.readUTF(), bodyIn.readUTF(),
+                        readOptional(bodyIn), readOptional(bodyIn));
+                validEnd += 8 + length;
+                return record;
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        private static String readOptional(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.bullet;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * The ScanScheduler class runs the probes of every active scan of the process on one shared, bounded pool
+ * of worker threads, so several scans together never put more than {@link #DEFAULT_POOL_SIZE} queries in
+ * flight. Whenever a worker is free it picks the next scan by smooth weighted round-robin over the scans
+ * that have work queued, are not paused and are below their concurrency cap; a scan's priority is its weight.
+ * <p>
+ * Priority and pause state are kept per scan name, so they also apply to later runs of the same scan,
+ * e.g. the next chunk of a background job.
+ */
+public final class ScanScheduler {
+
+    private static final String TAG = "ScanScheduler";
+
+    /**
+     * Number of worker threads shared by all scans.
+     */
+    public static final int DEFAULT_POOL_SIZE = 16;
+
+    /**
+     * Priority of scans nobody changed the priority of.
+     */
+    public static final int DEFAULT_PRIORITY = 4;
+
+    /**
+     * Highest priority a scan can have; a scan of priority n gets about n times the probes of a scan of priority 1.
+     */
+    public static final int MAX_PRIORITY = 16;
+
+    private static ScanScheduler instance;
+
+    /**
+     * Supplies the tasks of a scan.
+     */
+    public interface TaskSource {
+        /**
+         * Returns the next task of the scan without blocking. Called with the scheduler's lock held,
+         * so it must be quick.
+         *
+         * @return The task, or null if the scan has nothing to run right now.
+         */
+        Runnable poll();
+    }
+
+    /**
+     * Per-name settings, surviving the scans that use them.
+     */
+    private static final class Settings {
+        volatile int priority = DEFAULT_PRIORITY;
+        volatile boolean paused = false;
+    }
+
+    /**
+     * A scan registered with the scheduler.
+     */
+    public final class Scan implements AutoCloseable {
+        private final String name;
+        private final IntSupplier concurrencyCap;
+        private final TaskSource source;
+        private final Settings settings;
+        private int running = 0;
+        private long currentWeight = 0;
+        private boolean closed = false;
+
+        private Scan(String name, IntSupplier concurrencyCap, TaskSource source, Settings settings) {
+            this.name = name;
+            this.concurrencyCap = concurrencyCap;
+            this.source = source;
+            this.settings = settings;
+        }
+
+        /**
+         * Tells the scheduler that the scan has new tasks. Cheap when no worker is idle.
+         */
+        public void signal() {
+            if (idleWorkers > 0) {
+                lock.lock();
+                try {
+                    workChanged.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * @return The number of tasks of this scan being run right now.
+         */
+        public int getRunning() {
+            lock.lock();
+            try {
+                return running;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Unregisters the scan and waits until none of its tasks is running any more.
+         */
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                closed = true;
+                scans.remove(this);
+                while (running > 0) {
+                    taskDone.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A task picked for a worker, together with the scan it belongs to.
+     */
+    private static final class Assignment {
+        final Scan scan;
+        final Runnable task;
+
+        Assignment(Scan scan, Runnable task) {
+            this.scan = scan;
+            this.task = task;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workChanged = lock.newCondition();
+    private final Condition taskDone = lock.newCondition();
+    private final List<Scan> scans = new ArrayList<>();
+    private final ConcurrentHashMap<String, Settings> settings = new ConcurrentHashMap<>();
+    private volatile int idleWorkers = 0;
+
+    /**
+     * @param poolSize The number of shared worker threads.
+     */
+    ScanScheduler(int poolSize) {
+        for (int i = 0; i < poolSize; i++) {
+            Thread worker = new Thread(this::work, TAG + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * @return The scheduler shared by every scan of the process.
+     */
+    public static synchronized ScanScheduler getInstance() {
+        if (instance == null) {
+            instance = new ScanScheduler(DEFAULT_POOL_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a scan. Its tasks are run until it is closed.
+     *
+     * @param name           The name of the scan, e.g. the scanned authority.
+     * @param concurrencyCap The maximum number of tasks of the scan run at the same time; read before every task,
+     *                       so it may change while the scan runs.
+     * @param source         Supplies the tasks of the scan.
+     * @return The registered scan.
+     */
+    public Scan register(String name, IntSupplier concurrencyCap, TaskSource source) {
+        Scan scan = new Scan(name, concurrencyCap, source, settingsOf(name));
+        lock.lock();
+        try {
+            scans.add(scan);
+            workChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return scan;
+    }
+
+    /**
+     * Sets the priority of a scan and of its later runs.
+     *
+     * @param name     The name of the scan.
+     * @param priority The priority, from 1 to {@link #MAX_PRIORITY}.
+     */
+    public void setPriority(String name, int priority) {
+        settingsOf(name).priority = Math.max(1, Math.min(MAX_PRIORITY, priority));
+    }
+
+    /**
+     * @param name The name of a scan.
+     * @return The priority of the scan.
+     */
+    public int getPriority(String name) {
+        return settingsOf(name).priority;
+    }
+
+    /**
+     * Pauses or resumes a scan. A paused scan finishes the tasks it is running but starts no new ones.
+     *
+     * @param name   The name of the scan.
+     * @param paused True to pause the scan, false to resume it.
+     */
+    public void setPaused(String name, boolean paused) {
+        settingsOf(name).paused = paused;
+        if (!paused) {
+            lock.lock();
+            try {
+                workChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Resumes every paused scan, e.g. when all scans are stopped, so that none is still paused when it is
+     * started again.
+     */
+    public void resumeAll() {
+        for (Settings scanSettings : settings.values()) {
+            scanSettings.paused = false;
+        }
+        lock.lock();
+        try {
+            workChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param name The name of a scan.
+     * @return True if the scan is paused.
+     */
+    public boolean isPaused(String name) {
+        return settingsOf(name).paused;
+    }
+
+    private Settings settingsOf(String name) {
+        return settings.computeIfAbsent(name, key -> new Settings());
+    }
+
+    private void work() {
+        while (true) {
+            Assignment assignment;
+            lock.lock();
+            try {
+                while ((assignment = pick()) == null) {
+                    idleWorkers++;
+                    try {
+                        // Paused scans and scans at their cap do not signal, so re-check now and then
+                        workChanged.await(100, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        // Shared workers live as long as the process
+                    } finally {
+                        idleWorkers--;
+                    }
+                }
+                assignment.scan.running++;
+            } finally {
+                lock.unlock();
+            }
+
+            Scan scan = assignment.scan;
+            try {
+                assignment.task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Task of scan " + scan.name + " failed", e);
+            } finally {
+                lock.lock();
+                try {
+                    scan.running--;
+                    taskDone.signalAll();
+                    // A slot below the scan's cap may have opened up
+                    workChanged.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks the next task by smooth weighted round-robin: every eligible scan gains its priority, the scan
+     * with the highest total runs and pays back the sum of all priorities. Called with the lock held.
+     *
+     * @return The scan and its task, or null if no scan has a task that may run now.
+     */
+    private Assignment pick() {
+        List<Scan> eligible = new ArrayList<>(scans.size());
+        for (Scan scan : scans) {
+            if (!scan.closed && !scan.settings.paused && scan.running < scan.concurrencyCap.getAsInt()) {
+                eligible.add(scan);
+            }
+        }
+        while (!eligible.isEmpty()) {
+            long totalWeight = 0;
+            Scan best = null;
+            for (Scan scan : eligible) {
+                scan.currentWeight += scan.settings.priority;
+                totalWeight += scan.settings.priority;
+                if (best == null || scan.currentWeight > best.currentWeight) {
+                    best = scan;
+                }
+            }
+            best.currentWeight -= totalWeight;
+            Runnable task = best.source.poll();
+            if (task != null) {
+                return new Assignment(best, task);
+            }
+            // Nothing queued for this scan, give its turn to the others
+            best.currentWeight = 0;
+            eligible.remove(best);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.bullet;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The ServiceFuzzer class sends every intent of an {@link IntentTemplate} to an exported service at a
+ * fixed rate and logs how each one went to a {@link ScanResultLog}:
+ * <ul>
+ *     <li>STARTED - the service accepted the intent,</li>
+ *     <li>NOT_FOUND - the service does not exist (any more),</li>
+ *     <li>REJECTED - starting the service threw, e.g. a {@code SecurityException}; the exception class is logged,</li>
+ *     <li>CRASH - the target process died; logged after the intent that was sent last, the actual culprit
+ *     may be one of the intents just before it.</li>
+ * </ul>
+ * Intents are decoded from the template one at a time into a single reused intent, so a run of any size
+ * allocates almost nothing. A run can be continued from the index where an earlier one stopped.
+ */
+public class ServiceFuzzer {
+
+    private static final String TAG = "ServiceFuzzer";
+
+    /**
+     * Default number of intents sent per second.
+     */
+    public static final double DEFAULT_RATE = 20;
+
+    /**
+     * Receives the progress of a run after every intent, on the fuzzing thread.
+     */
+    public interface Listener {
+        void onProgress(long sent, long total, long rejected, int crashes);
+    }
+
+    /**
+     * What a run did.
+     */
+    public static final class Summary {
+        private final long sent;
+        private final long rejected;
+        private final int crashes;
+        private final long nextIndex;
+
+        Summary(long sent, long rejected, int crashes, long nextIndex) {
+            this.sent = sent;
+            this.rejected = rejected;
+            this.crashes = crashes;
+            this.nextIndex = nextIndex;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public int getCrashes() {
+            return crashes;
+        }
+
+        /**
+         * @return The index of the first intent not sent, where a later run can continue.
+         */
+        public long getNextIndex() {
+            return nextIndex;
+        }
+    }
+
+    private final Context context;
+    private final String packageName;
+    private final String serviceName;
+    private final IntentTemplate template;
+    private double rate = DEFAULT_RATE;
+    private long startIndex = 0;
+
+    /**
+     * @param context     Any context of the application.
+     * @param packageName The package of the target service.
+     * @param serviceName The class name of the target service.
+     * @param template    The intents to send.
+     */
+    public ServiceFuzzer(Context context, String packageName, String serviceName, IntentTemplate template) {
+        this.context = context.getApplicationContext();
+        this.packageName = packageName;
+        this.serviceName = serviceName;
+        this.template = template;
+    }
+
+    /**
+     * @param rate The number of intents sent per second.
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * @param startIndex The index of the first intent sent, e.g. where an earlier run stopped. A run from
+     *                   index 0 replaces the result log, a resumed one appends to it.
+     */
+    public void setStartIndex(long startIndex) {
+        this.startIndex = startIndex;
+    }
+
+    /**
+     * Returns the result log of a target service.
+     *
+     * @param context     Any context of the application.
+     * @param packageName The package of the service.
+     * @param serviceName The class name of the service.
+     * @return The log file, which may not exist.
+     */
+    public static File logFileFor(Context context, String packageName, String serviceName) {
+        return ScanResultLog.fuzzFileFor(context, packageName + "_" + serviceName);
+    }
+
+    /**
+     * Sends the intents, blocking until all were sent or a stop was requested.
+     *
+     * @param listener Receives the progress.
+     * @param stop     Checked before every intent.
+     * @return What the run did.
+     * @throws IOException If the result log cannot be written.
+     */
+    public Summary run(Listener listener, BooleanSupplier stop) throws IOException {
+        File logFile = logFileFor(context, packageName, serviceName);
+        String target = "service://" + packageName + "/" + serviceName + "#";
+        TargetProcessWatcher watcher = new TargetProcessWatcher(context, packageName, serviceName);
+        if (!watcher.start()) {
+            Log.w(TAG, "Crashes of " + serviceName + " will not be detected");
+        }
+
+        Intent intent = new Intent().setComponent(new ComponentName(packageName, serviceName));
+        int[] digits = new int[template.dimensions()];
+        long total = template.size();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long nextStart = System.nanoTime();
+        int deathsSeen = watcher.getDeaths();
+        long sent = 0;
+        long rejected = 0;
+        int crashes = 0;
+        long index = startIndex;
+
+        // A run from the start sends the same intents again, appending would log every one of them twice
+        boolean truncate = startIndex == 0;
+        try (ScanResultLog.Writer log = new ScanResultLog.Writer(logFile, truncate, ScanResultLog.DEFAULT_GROUP_SIZE,
+                ScanResultLog.DEFAULT_GROUP_DELAY_MS, ScanResultLog.SyncPolicy.ON_CLOSE)) {
+            for (; index < total && !stop.getAsBoolean(); index++) {
+                long wait = nextStart - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                // After a stall the rate is kept instead of catching up in a burst
+                nextStart = Math.max(nextStart, System.nanoTime() - intervalNanos) + intervalNanos;
+
+                template.fill(index, intent, digits);
+                String outcome;
+                String errorClass = null;
+                long start = System.nanoTime();
+                try {
+                    outcome = context.startService(intent) != null ? "STARTED" : "NOT_FOUND";
+                } catch (RuntimeException e) {
+                    outcome = "REJECTED";
+                    errorClass = e.getClass().getName();
+                    rejected++;
+                }
+                long latency = System.nanoTime() - start;
+                sent++;
+                log.append(new ScanResultLog.Record(System.currentTimeMillis(), latency, target + index, outcome,
+                        errorClass, template.describe(index)));
+
+                int deaths = watcher.getDeaths();
+                if (deaths != deathsSeen) {
+                    crashes += deaths - deathsSeen;
+                    deathsSeen = deaths;
+                    log.append(new ScanResultLog.Record(System.currentTimeMillis(), 0, target + index, "CRASH",
+                            null, template.describe(index)));
+                    Log.w(TAG, serviceName + " died after intent " + index + ": " + template.describe(index));
+                }
+                listener.onProgress(sent, total, rejected, crashes);
+            }
+        } finally {
+            watcher.stop();
+        }
+        Log.i(TAG, "Sent " + sent + " intents to " + serviceName + ", " + rejected + " rejected, " + crashes + " crashes.");
+        return new Summary(sent, rejected, crashes, index);
+    }
+}
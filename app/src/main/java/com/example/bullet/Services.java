@@ -4,18 +4,30 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.InputType;
 import android.util.Log;
 import android.widget.EditText;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.core.content.ContextCompat;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The Services class provides methods to prompt the user for service parameters
  * and to launch services with the specified parameters.
  */
 public class Services {
 
+    // The job's progress is not updated more often than this
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
     /**
      * Prompts the user to enter parameters for launching a service.
      * This method displays a dialog that allows the user to input an action, data URI,
@@ -67,9 +79,115 @@ public class Services {
         // Handle the "Cancel" button click event
         builder.setNegativeButton("Cancel", (dialog, which) -> dialog.cancel());
 
+        // Send many generated intents instead of a single one
+        builder.setNeutralButton("Fuzz", (dialog, which) -> promptForFuzzing(context, packageName, serviceName));
+
         builder.show();
     }
 
+    /**
+     * Prompts the user for the actions, data URIs and extra keys to fuzz a service with. Every combination
+     * of them is sent, with each extra taking every value of {@link IntentTemplate#defaultValues()}.
+     *
+     * @param context     The context from which this method is called.
+     * @param packageName The package name of the app containing the service.
+     * @param serviceName The name of the service to be fuzzed.
+     */
+    public void promptForFuzzing(Context context, String packageName, String serviceName) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(context);
+        builder.setTitle("Fuzz Service");
+
+        EditText inputActions = new EditText(context);
+        inputActions.setHint("Actions, comma separated (optional)");
+
+        EditText inputData = new EditText(context);
+        inputData.setHint("Data URIs, comma separated (optional)");
+
+        EditText inputExtraKeys = new EditText(context);
+        inputExtraKeys.setHint("Extra keys, comma separated (optional)");
+
+        EditText inputRate = new EditText(context);
+        inputRate.setHint("Intents per second (default " + (int) ServiceFuzzer.DEFAULT_RATE + ")");
+        inputRate.setInputType(InputType.TYPE_CLASS_NUMBER);
+
+        android.widget.LinearLayout layout = new android.widget.LinearLayout(context);
+        layout.setOrientation(android.widget.LinearLayout.VERTICAL);
+        layout.addView(inputActions);
+        layout.addView(inputData);
+        layout.addView(inputExtraKeys);
+        layout.addView(inputRate);
+        builder.setView(layout);
+
+        builder.setPositiveButton("Start", (dialog, which) -> {
+            IntentTemplate template = IntentTemplate.withDefaultValues(splitList(inputActions.getText().toString()),
+                    splitList(inputData.getText().toString()), splitList(inputExtraKeys.getText().toString()));
+            ServiceFuzzer fuzzer = new ServiceFuzzer(context, packageName, serviceName, template);
+            String rate = inputRate.getText().toString().trim();
+            try {
+                if (!rate.isEmpty() && Integer.parseInt(rate) > 0) {
+                    fuzzer.setRate(Integer.parseInt(rate));
+                }
+            } catch (NumberFormatException e) {
+                Toast.makeText(context, "Invalid rate, using the default.", Toast.LENGTH_SHORT).show();
+            }
+            startFuzzing(context, serviceName, fuzzer);
+        });
+        builder.setNegativeButton("Cancel", (dialog, which) -> dialog.cancel());
+        builder.show();
+    }
+
+    /**
+     * Queues a fuzzer on the job host. Its progress is shown in the host's notification and status, where
+     * it can also be stopped, so the run does not depend on the screen that started it.
+     *
+     * @param context     The context from which this method is called.
+     * @param serviceName The name of the fuzzed service.
+     * @param fuzzer      The fuzzer to run.
+     */
+    private void startFuzzing(Context context, String serviceName, ServiceFuzzer fuzzer) {
+        // The run may outlive the activity, so only the application context is kept
+        Context appContext = context.getApplicationContext();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        Toast.makeText(context, "Fuzzing " + serviceName + " on the job host", Toast.LENGTH_SHORT).show();
+
+        // Runs on the job host, which keeps it going while the screen is off
+        MyForegroundService.submit(context, "Fuzz " + serviceName, job -> {
+            long[] lastUpdate = {0};
+            String message;
+            try {
+                ServiceFuzzer.Summary summary = fuzzer.run((sent, total, rejected, crashes) -> {
+                    job.addOperations(1);
+                    long now = SystemClock.elapsedRealtime();
+                    if (now - lastUpdate[0] >= PROGRESS_INTERVAL_MS) {
+                        lastUpdate[0] = now;
+                        job.setProgress("Sent " + sent + " of " + total + ", " + rejected + " rejected, " + crashes + " crashes");
+                    }
+                }, job::isCancelled);
+                message = "Sent " + summary.getSent() + " intents, " + summary.getRejected() + " rejected, "
+                        + summary.getCrashes() + " crashes.";
+            } catch (IOException e) {
+                Log.e("Services", "Failed to write fuzzing results for " + serviceName, e);
+                message = "Error writing fuzzing results.";
+            }
+            String result = message;
+            job.setProgress(result);
+            mainHandler.post(() -> Toast.makeText(appContext, result, Toast.LENGTH_LONG).show());
+        });
+    }
+
+    /**
+     * Splits a comma separated list, leaving out empty entries.
+     */
+    static List<String> splitList(String text) {
+        List<String> values = new ArrayList<>();
+        for (String value : text.split(",")) {
+            if (!value.trim().isEmpty()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
+    }
+
     /**
      * Launches a service with the provided parameters.
      * This method creates an Intent to start a service, setting the specified action,
@@ -0,0 +1,102 @@
+package com.example.bullet;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The TargetProcessWatcher class notices when the process hosting a target service dies, e.g. because
+ * an input crashed it. Apps cannot list other apps' processes, so it binds to the service without
+ * {@code BIND_AUTO_CREATE}: the binding connects whenever the service runs and is disconnected when the
+ * hosting process goes away. Services that return no binder cannot be watched this way.
+ */
+public class TargetProcessWatcher implements ServiceConnection {
+
+    private static final String TAG = "TargetProcessWatcher";
+
+    private final Context context;
+    private final Intent bindIntent;
+    private final AtomicInteger deaths = new AtomicInteger();
+    private volatile boolean connected = false;
+    private volatile boolean bound = false;
+
+    /**
+     * @param context     Any context of the application.
+     * @param packageName The package of the target service.
+     * @param serviceName The class name of the target service.
+     */
+    public TargetProcessWatcher(Context context, String packageName, String serviceName) {
+        this.context = context.getApplicationContext();
+        this.bindIntent = new Intent().setComponent(new ComponentName(packageName, serviceName));
+    }
+
+    /**
+     * Starts watching. Does not start the service.
+     *
+     * @return False if the service cannot be bound, e.g. because it requires a permission.
+     */
+    public boolean start() {
+        try {
+            bound = context.bindService(bindIntent, this, 0);
+        } catch (SecurityException e) {
+            Log.w(TAG, "Cannot watch " + bindIntent.getComponent(), e);
+            bound = false;
+        }
+        return bound;
+    }
+
+    /**
+     * Stops watching.
+     */
+    public void stop() {
+        if (bound) {
+            bound = false;
+            context.unbindService(this);
+        }
+    }
+
+    /**
+     * @return How many times the target process died while being watched.
+     */
+    public int getDeaths() {
+        return deaths.get();
+    }
+
+    /**
+     * @return True while the service is running and bound.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder service) {
+        connected = true;
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        // Only called when the hosting process is gone
+        connected = false;
+        deaths.incrementAndGet();
+        Log.w(TAG, "Process hosting " + name + " died");
+    }
+
+    @Override
+    public void onBindingDied(ComponentName name) {
+        // The package was updated or force-stopped, the binding has to be made again
+        connected = false;
+        stop();
+        start();
+    }
+
+    @Override
+    public void onNullBinding(ComponentName name) {
+        Log.i(TAG, name + " returns no binder, its crashes cannot be detected");
+    }
+}
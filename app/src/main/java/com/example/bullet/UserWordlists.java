@@ -0,0 +1,206 @@
+package com.example.bullet;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The UserWordlists class merges the wordlists copied to the app's external files directory
+ * ({@code Android/data/<package>/files/wordlists}, one path segment per line in {@code *.txt} files, lines
+ * starting with "#" ignored) with the bundled wordlist. The merged dictionary is written to the cache
+ * directory once and memory-mapped from there by every scan, until a wordlist is added, removed or changed.
+ * <p>
+ * User wordlists can be far larger than the heap, so they are sorted externally: every file is read in chunks
+ * of {@link #CHUNK_LINES} lines, each chunk is sorted into a temporary dictionary, and the chunks are merged
+ * with the bundled dictionary in one streaming pass.
+ */
+public final class UserWordlists {
+
+    private static final String TAG = "UserWordlists";
+
+    /**
+     * Name of the external files directory holding the user's wordlists.
+     */
+    public static final String DIRECTORY = "wordlists";
+
+    // Lines of a user wordlist sorted in memory at once
+    static final int CHUNK_LINES = 100_000;
+
+    private static String mergedSignature;
+    private static WordlistDictionary merged;
+
+    private UserWordlists() {
+    }
+
+    /**
+     * @param context Any context of the application.
+     * @return The directory the user's wordlists are read from, or null if external storage is unavailable.
+     */
+    public static File directory(Context context) {
+        return context.getExternalFilesDir(DIRECTORY);
+    }
+
+    /**
+     * Returns the bundled wordlist merged with the user's wordlists, or the bundled one alone if there are none.
+     * Entries found in several wordlists are kept once.
+     *
+     * @param context Any context of the application.
+     * @return The wordlist scans should use.
+     * @throws IOException If the bundled wordlist cannot be loaded. Unreadable user wordlists are skipped.
+     */
+    public static synchronized WordlistDictionary load(Context context) throws IOException {
+        WordlistDictionary bundled = WordlistDictionary.getBundled(context);
+        File[] files = listFiles(context);
+        if (files.length == 0) {
+            return bundled;
+        }
+
+        // The merged file is named after the wordlists it was built from, so a changed wordlist is never mixed up with it
+        String signature = signature(bundled, files);
+        if (signature.equals(mergedSignature)) {
+            return merged;
+        }
+
+        File cacheDir = new File(context.getCacheDir(), DIRECTORY);
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + cacheDir + ", using the bundled wordlist only");
+            return bundled;
+        }
+        File mergedFile = new File(cacheDir, "merged-" + signature + ".fcd");
+        if (!mergedFile.exists()) {
+            File tmp = new File(cacheDir, mergedFile.getName() + ".tmp");
+            merge(bundled, files, tmp, CHUNK_LINES);
+            if (!tmp.renameTo(mergedFile)) {
+                throw new IOException("Cannot rename " + tmp + " to " + mergedFile);
+            }
+            // Merges of earlier versions of the wordlists are no longer used
+            File[] stale = cacheDir.listFiles((dir, name) -> name.startsWith("merged-") && !name.equals(mergedFile.getName()));
+            if (stale != null) {
+                for (File file : stale) {
+                    delete(file);
+                }
+            }
+        }
+
+        merged = WordlistDictionary.open(mergedFile);
+        mergedSignature = signature;
+        Log.i(TAG, "Merged " + files.length + " user wordlists with the bundled one: " + bundled.size()
+                + " entries grew to " + merged.size());
+        return merged;
+    }
+
+    /**
+     * Returns a signature of the wordlists {@link #load(Context)} returns, which changes whenever the bundled
+     * wordlist or one of the user's wordlists is added, removed or changed.
+     *
+     * @param context Any context of the application.
+     * @return The signature.
+     * @throws IOException If the bundled wordlist cannot be loaded.
+     */
+    public static String signature(Context context) throws IOException {
+        return signature(WordlistDictionary.getBundled(context), listFiles(context));
+    }
+
+    private static String signature(WordlistDictionary bundled, File[] files) {
+        long hash = bundled.fingerprint();
+        for (File file : files) {
+            hash = 31 * hash + file.getName().hashCode();
+            hash = 31 * hash + file.length();
+            hash = 31 * hash + file.lastModified();
+        }
+        return String.format(Locale.ROOT, "%016x", hash);
+    }
+
+    private static File[] listFiles(Context context) {
+        File directory = directory(context);
+        File[] files = directory != null ? directory.listFiles((dir, name) -> name.endsWith(".txt")) : null;
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Merges a dictionary with wordlist files into a new dictionary file. Sorted chunks are written next
+     * to the file and deleted once merged. Unreadable wordlists are skipped.
+     *
+     * @param base       The dictionary the wordlists are merged with.
+     * @param wordlists  The wordlist files, one entry per line.
+     * @param file       The dictionary file to write.
+     * @param chunkLines The maximum number of lines sorted in memory at once.
+     * @throws IOException If a chunk or the merged file cannot be written.
+     */
+    static void merge(WordlistDictionary base, File[] wordlists, File file, int chunkLines) throws IOException {
+        List<File> chunkFiles = new ArrayList<>();
+        try {
+            List<WordlistDictionary> dictionaries = new ArrayList<>();
+            dictionaries.add(base);
+            for (File wordlist : wordlists) {
+                int first = chunkFiles.size();
+                try {
+                    sortChunks(wordlist, file, chunkLines, chunkFiles);
+                } catch (IOException e) {
+                    Log.w(TAG, "Skipping unreadable wordlist " + wordlist, e);
+                    // Chunks of a partly read wordlist are not merged
+                    List<File> partial = chunkFiles.subList(first, chunkFiles.size());
+                    for (File chunk : partial) {
+                        delete(chunk);
+                    }
+                    partial.clear();
+                }
+            }
+            for (File chunk : chunkFiles) {
+                dictionaries.add(WordlistDictionary.open(chunk));
+            }
+            WordlistDictionary.merge(dictionaries, file, WordlistDictionary.DEFAULT_BLOCK_SIZE);
+        } finally {
+            for (File chunk : chunkFiles) {
+                delete(chunk);
+            }
+        }
+    }
+
+    /**
+     * Reads a wordlist {@code chunkLines} lines at a time, writing every chunk as a sorted dictionary.
+     */
+    private static void sortChunks(File wordlist, File file, int chunkLines, List<File> chunkFiles) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(wordlist), StandardCharsets.UTF_8))) {
+            List<String> lines = new ArrayList<>(Math.min(chunkLines, 8192));
+            String line;
+            do {
+                line = reader.readLine();
+                // Comment lines are dropped by WordlistDictionary.encode
+                if (line != null) {
+                    lines.add(line);
+                }
+                if (lines.size() >= chunkLines || (line == null && !lines.isEmpty())) {
+                    File chunk = new File(file.getPath() + ".chunk" + chunkFiles.size());
+                    chunkFiles.add(chunk);
+                    try (OutputStream out = new FileOutputStream(chunk)) {
+                        out.write(WordlistDictionary.encode(lines, WordlistDictionary.DEFAULT_BLOCK_SIZE));
+                    }
+                    lines.clear();
+                }
+            } while (line != null);
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete " + file);
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package com.example.bullet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The WordMutator class is a {@link WordSource} that applies a set of mutations to every entry of another
+ * source, such as case variants, singular and plural forms or other separators. Nothing is expanded up front:
+ * a reader decodes one entry of the underlying source and mutates it in place, so a wordlist with a dozen
+ * mutations costs no more memory than the wordlist alone.
+ * <p>
+ * The source is read once per mutation, in the order of {@link Mutation}: entry {@code i} of the mutator is
+ * mutation {@code i / n} of entry {@code i % n}, with {@code n} the size of the underlying source. A scan
+ * that runs out of budget has thus probed every word as it is before it probes any variant. Mutations that
+ * leave a word unchanged, or change it like an earlier mutation did, are skipped.
+ */
+public class WordMutator implements WordSource {
+
+    /**
+     * The changes made to a word.
+     */
+    public enum Mutation {
+        /**
+         * The word as it is.
+         */
+        NONE,
+        /**
+         * "UserProfile" to "userprofile".
+         */
+        LOWER_CASE,
+        /**
+         * "users" to "USERS".
+         */
+        UPPER_CASE,
+        /**
+         * "users" to "Users".
+         */
+        CAPITALIZED,
+        /**
+         * "userProfile" to "user_profile".
+         */
+        SNAKE_CASE,
+        /**
+         * "user_profile" or "user-profile" to "userProfile".
+         */
+        CAMEL_CASE,
+        /**
+         * "user_profile" to "user-profile".
+         */
+        DASHES,
+        /**
+         * "user-profile" to "user_profile".
+         */
+        UNDERSCORES,
+        /**
+         * "user_profile" or "user-profile" to "userprofile".
+         */
+        JOINED,
+        /**
+         * "user" to "users", "category" to "categories".
+         */
+        PLURAL,
+        /**
+         * "users" to "user", "categories" to "category".
+         */
+        SINGULAR,
+        /**
+         * "users" to "users/1", the row URI most providers match with {@code #}.
+         */
+        ID_SEGMENT
+    }
+
+    /**
+     * Mutations applied by discovery unless configured otherwise.
+     */
+    public static final Set<Mutation> DEFAULT_MUTATIONS = Collections.unmodifiableSet(EnumSet.of(Mutation.NONE,
+            Mutation.LOWER_CASE, Mutation.SNAKE_CASE, Mutation.DASHES, Mutation.UNDERSCORES, Mutation.PLURAL,
+            Mutation.SINGULAR));
+
+    // Package and authority segments that say nothing about the data behind a provider
+    private static final Set<String> GENERIC_NAME_TOKENS = new HashSet<>(Arrays.asList(
+            "com", "org", "net", "io", "co", "de", "android", "app", "provider", "providers", "content",
+            "contentprovider"));
+
+    private final WordSource source;
+    private final Mutation[] mutations;
+    private final int size;
+    private final int maxEntryLength;
+
+    /**
+     * @param source    The words to mutate.
+     * @param mutations The mutations, {@link Mutation#NONE} to include the words as they are.
+     */
+    public WordMutator(WordSource source, Set<Mutation> mutations) {
+        this.source = source;
+        this.mutations = EnumSet.copyOf(mutations).toArray(new Mutation[0]);
+        long total = (long) source.size() * this.mutations.length;
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many entries: " + total);
+        }
+        this.size = (int) total;
+        // Snake case doubles a word at most, the other mutations add at most two bytes
+        this.maxEntryLength = 2 * source.getMaxEntryLength() + 2;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getMaxEntryLength() {
+        return maxEntryLength;
+    }
+
+    @Override
+    public Reader reader() {
+        return new MutatingReader();
+    }
+
+    /**
+     * Reads the underlying source once per mutation.
+     */
+    private final class MutatingReader implements Reader {
+        private final Reader words = source.reader();
+        private final byte[] entry = new byte[Math.max(1, maxEntryLength)];
+        private final byte[] earlier = new byte[Math.max(1, maxEntryLength)];
+        private int mutation = 0;
+        private int length = 0;
+
+        @Override
+        public boolean next() {
+            while (mutation < mutations.length) {
+                while (words.next()) {
+                    length = apply(mutations[mutation], words.bytes(), words.length(), entry);
+                    if (length >= 0 && isNew()) {
+                        return true;
+                    }
+                }
+                mutation++;
+                if (mutation < mutations.length) {
+                    words.seek(0);
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return True unless the current entry is the word itself or the result of an earlier mutation of it.
+         */
+        private boolean isNew() {
+            Mutation current = mutations[mutation];
+            if (current != Mutation.NONE && equal(entry, length, words.bytes(), words.length())) {
+                return false;
+            }
+            for (int m = 0; m < mutation; m++) {
+                int earlierLength = apply(mutations[m], words.bytes(), words.length(), earlier);
+                if (earlierLength >= 0 && equal(entry, length, earlier, earlierLength)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void seek(int target) {
+            if (target < 0 || target > size) {
+                throw new IndexOutOfBoundsException("Entry " + target + " of " + size);
+            }
+            if (target == size || source.size() == 0) {
+                mutation = mutations.length;
+                return;
+            }
+            mutation = target / source.size();
+            words.seek(target % source.size());
+        }
+
+        @Override
+        public int index() {
+            return mutation * source.size() + words.index();
+        }
+
+        @Override
+        public byte[] bytes() {
+            return entry;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+    }
+
+    /**
+     * Applies a mutation to a UTF-8 word. Only ASCII letters change case, other bytes are copied as they are.
+     *
+     * @param mutation The mutation.
+     * @param in       The word.
+     * @param length   The length of the word in bytes.
+     * @param out      Receives the mutated word, at least {@code 2 * length + 2} bytes long.
+     * @return The length of the mutated word, or -1 if the mutation does not apply to the word.
+     */
+    static int apply(Mutation mutation, byte[] in, int length, byte[] out) {
+        switch (mutation) {
+            case NONE:
+                System.arraycopy(in, 0, out, 0, length);
+                return length;
+            case LOWER_CASE:
+                for (int i = 0; i < length; i++) {
+                    out[i] = lower(in[i]);
+                }
+                return length;
+            case UPPER_CASE:
+                for (int i = 0; i < length; i++) {
+                    out[i] = upper(in[i]);
+                }
+                return length;
+            case CAPITALIZED:
+                System.arraycopy(in, 0, out, 0, length);
+                if (length > 0) {
+                    out[0] = upper(in[0]);
+                }
+                return length;
+            case SNAKE_CASE: {
+                int n = 0;
+                for (int i = 0; i < length; i++) {
+                    if (isUpper(in[i]) && i > 0 && (isLower(in[i - 1]) || isDigit(in[i - 1]))) {
+                        out[n++] = '_';
+                    }
+                    out[n++] = lower(in[i]);
+                }
+                return n;
+            }
+            case CAMEL_CASE: {
+                int n = 0;
+                boolean boundary = false;
+                for (int i = 0; i < length; i++) {
+                    if (isSeparator(in[i])) {
+                        boundary = n > 0;
+                    } else {
+                        out[n++] = boundary ? upper(in[i]) : in[i];
+                        boundary = false;
+                    }
+                }
+                return n;
+            }
+            case DASHES:
+                for (int i = 0; i < length; i++) {
+                    out[i] = in[i] == '_' ? (byte) '-' : in[i];
+                }
+                return length;
+            case UNDERSCORES:
+                for (int i = 0; i < length; i++) {
+                    out[i] = in[i] == '-' ? (byte) '_' : in[i];
+                }
+                return length;
+            case JOINED: {
+                int n = 0;
+                for (int i = 0; i < length; i++) {
+                    if (!isSeparator(in[i])) {
+                        out[n++] = in[i];
+                    }
+                }
+                return n;
+            }
+            case PLURAL:
+                return plural(in, length, out);
+            case SINGULAR:
+                return singular(in, length, out);
+            case ID_SEGMENT:
+                System.arraycopy(in, 0, out, 0, length);
+                out[length] = '/';
+                out[length + 1] = '1';
+                return length + 2;
+            default:
+                return -1;
+        }
+    }
+
+    private static int plural(byte[] in, int length, byte[] out) {
+        if (length == 0 || !isLetter(in[length - 1]) || endsWith(in, length, "s")) {
+            return -1;
+        }
+        System.arraycopy(in, 0, out, 0, length);
+        boolean upper = isUpper(in[length - 1]);
+        if (endsWith(in, length, "x") || endsWith(in, length, "z") || endsWith(in, length, "ch")
+                || endsWith(in, length, "sh")) {
+            return append(out, length, "es", upper);
+        }
+        if (length > 1 && endsWith(in, length, "y") && !isVowel(in[length - 2])) {
+            return append(out, length - 1, "ies", upper);
+        }
+        return append(out, length, "s", upper);
+    }
+
+    private static int singular(byte[] in, int length, byte[] out) {
+        if (length < 3 || !endsWith(in, length, "s") || endsWith(in, length, "ss")) {
+            return -1;
+        }
+        System.arraycopy(in, 0, out, 0, length);
+        if (length > 3 && endsWith(in, length, "ies")) {
+            return append(out, length - 3, "y", isUpper(in[length - 1]));
+        }
+        if (endsWith(in, length, "xes") || endsWith(in, length, "zes") || endsWith(in, length, "ches")
+                || endsWith(in, length, "shes") || endsWith(in, length, "sses")) {
+            return length - 2;
+        }
+        return length - 1;
+    }
+
+    /**
+     * Compares the end of a word with a lower case ASCII suffix, ignoring case.
+     */
+    private static boolean endsWith(byte[] word, int length, String suffix) {
+        int offset = length - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (lower(word[offset + i]) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int append(byte[] out, int length, String suffix, boolean upper) {
+        for (int i = 0; i < suffix.length(); i++) {
+            byte b = (byte) suffix.charAt(i);
+            out[length + i] = upper ? upper(b) : b;
+        }
+        return length + suffix.length();
+    }
+
+    private static boolean equal(byte[] a, int aLength, byte[] b, int bLength) {
+        if (aLength != bLength) {
+            return false;
+        }
+        for (int i = 0; i < aLength; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLower(byte b) {
+        return b >= 'a' && b <= 'z';
+    }
+
+    private static boolean isUpper(byte b) {
+        return b >= 'A' && b <= 'Z';
+    }
+
+    private static boolean isLetter(byte b) {
+        return isLower(b) || isUpper(b);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isVowel(byte b) {
+        byte c = lower(b);
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u';
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == '_' || b == '-';
+    }
+
+    private static byte lower(byte b) {
+        return isUpper(b) ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte upper(byte b) {
+        return isLower(b) ? (byte) (b - ('a' - 'A')) : b;
+    }
+
+    /**
+     * Derives likely table names from the names of a provider: every meaningful segment of the package and
+     * authority, split at camel case and separators, in the naming conventions databases commonly use.
+     * For "com.example.notes" and "com.example.notes.NoteProvider" these include "notes", "note", "note_table",
+     * "tbl_note", "notes_db" and "notes_note".
+     *
+     * @param packageName The package of the provider, or null if unknown.
+     * @param authority   The authority of the provider.
+     * @return The derived names, without duplicates.
+     */
+    public static List<String> tableNames(String packageName, String authority) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String name : new String[]{packageName, authority}) {
+            if (name == null) {
+                continue;
+            }
+            for (String segment : name.split("\\.")) {
+                for (String token : segment.split("(?<=[a-z0-9])(?=[A-Z])|[_\\-]")) {
+                    token = token.toLowerCase(Locale.ROOT);
+                    if (token.length() > 1 && !token.matches("\\d+") && !GENERIC_NAME_TOKENS.contains(token)) {
+                        tokens.add(token);
+                    }
+                }
+            }
+        }
+        // The last package segment usually names the app, and prefixes its tables
+        String appName = packageName != null ? packageName.substring(packageName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT) : null;
+        if (appName != null && GENERIC_NAME_TOKENS.contains(appName)) {
+            appName = null;
+        }
+
+        Set<String> names = new LinkedHashSet<>();
+        for (String token : tokens) {
+            names.add(token);
+            names.add(token + "_table");
+            names.add("tbl_" + token);
+            names.add(token + "_db");
+            if (appName != null && !appName.equals(token)) {
+                names.add(appName + "_" + token);
+            }
+        }
+        return new ArrayList<>(names);
+    }
+}
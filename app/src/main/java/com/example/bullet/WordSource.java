@@ -0,0 +1,88 @@
+package com.example.bullet;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The WordSource interface is an indexed stream of path segments that discovery pulls candidates from.
+ * Entries are decoded one at a time into reused buffers, so a source can describe far more segments than
+ * fit in memory. Every entry has a stable index, which is what scan checkpoints record; a source may leave
+ * some indices out, but never reorders them.
+ * <p>
+ * The {@link WordlistDictionary} is the basic source, {@link WordMutator} and {@link #concat(WordSource...)}
+ * build larger ones from it.
+ */
+public interface WordSource {
+
+    /**
+     * @return The number of indices of the source; entries that are left out still count.
+     */
+    int size();
+
+    /**
+     * @return The length in bytes of the longest entry, useful for sizing decode buffers.
+     */
+    int getMaxEntryLength();
+
+    /**
+     * Creates a new reader positioned before the first entry. Readers are not thread-safe,
+     * but any number of readers can iterate the same source concurrently.
+     *
+     * @return A new reader.
+     */
+    Reader reader();
+
+    /**
+     * Iterates the entries of a source in index order.
+     */
+    interface Reader {
+
+        /**
+         * Advances to the next entry.
+         *
+         * @return False if there are no more entries.
+         */
+        boolean next();
+
+        /**
+         * Positions the reader so that the following {@link #next()} returns the first entry at or after the
+         * given index.
+         *
+         * @param target The index to continue from, between 0 and {@link WordSource#size()}.
+         */
+        void seek(int target);
+
+        /**
+         * @return The index of the current entry.
+         */
+        int index();
+
+        /**
+         * @return The buffer holding the current entry in UTF-8; only the first {@link #length()} bytes are valid.
+         */
+        byte[] bytes();
+
+        /**
+         * @return The length in bytes of the current entry.
+         */
+        int length();
+
+        /**
+         * Decodes the current entry into a String. Allocates, so avoid it on hot paths.
+         *
+         * @return The current entry.
+         */
+        default String current() {
+            return new String(bytes(), 0, length(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Chains sources one after another; the indices of each source follow those of the sources before it.
+     *
+     * @param sources The sources, in the order they are read.
+     * @return The combined source.
+     */
+    static WordSource concat(WordSource... sources) {
+        return new ConcatWordSource(sources);
+    }
+}
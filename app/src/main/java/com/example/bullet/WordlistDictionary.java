@@ -0,0 +1,501 @@
+package com.example.bullet;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * The WordlistDictionary class gives access to the discovery wordlist stored as a sorted, front-coded
+ * binary dictionary. The dictionary is produced at build time from {@code src/main/wordlists/words.txt}
+ * (see the {@code frontCodeWordlist} task in build.gradle.kts) and shipped uncompressed in the assets,
+ * so it can be memory-mapped instead of being decoded line by line on every scan.
+ * <p>
+ * Layout (all integers big-endian):
+ * <pre>
+ * magic "FCD" + version byte
+ * int entryCount, int blockSize, int blockCount
+ * int[blockCount] block offsets, relative to the start of the block data
+ * block data: per block the first entry is stored as varint length + bytes, every following
+ *             entry as varint shared-prefix length + varint suffix length + suffix bytes
+ * </pre>
+ */
+public class WordlistDictionary implements WordSource {
+
+    /**
+     * Name of the bundled dictionary inside the APK assets.
+     */
+    public static final String ASSET_NAME = "words.fcd";
+
+    private static final byte[] MAGIC = {'F', 'C', 'D'};
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 3 * 4;
+
+    /**
+     * Default number of entries per block; only the first entry of a block is stored in full.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 16;
+
+    private static WordlistDictionary bundled;
+
+    private final ByteBuffer data;
+    private final int entryCount;
+    private final int blockSize;
+    private final int blockCount;
+    private final int dataStart;
+    private final int maxEntryLength;
+    private long fingerprint = -1;
+
+    private WordlistDictionary(ByteBuffer buffer) throws IOException {
+        this.data = buffer.duplicate();
+        if (data.remaining() < HEADER_SIZE) {
+            throw new IOException("Dictionary is truncated");
+        }
+        for (byte b : MAGIC) {
+            if (data.get() != b) {
+                throw new IOException("Not a front-coded dictionary");
+            }
+        }
+        byte version = data.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported dictionary version " + version);
+        }
+        entryCount = data.getInt();
+        blockSize = data.getInt();
+        blockCount = data.getInt();
+        if (entryCount < 0 || blockSize < 1 || blockCount != (entryCount + blockSize - 1) / blockSize) {
+            throw new IOException("Corrupt dictionary header");
+        }
+        dataStart = HEADER_SIZE + blockCount * 4;
+        if (data.limit() < dataStart) {
+            throw new IOException("Dictionary is truncated");
+        }
+        maxEntryLength = scanMaxEntryLength();
+    }
+
+    /**
+     * Returns the bundled dictionary, memory-mapping it from the assets on first use.
+     * The mapping is shared by all scans of the process.
+     *
+     * @param context Any context of the application.
+     * @return The bundled wordlist dictionary.
+     * @throws IOException If the asset is missing or is not a valid dictionary.
+     */
+    public static synchronized WordlistDictionary getBundled(Context context) throws IOException {
+        if (bundled == null) {
+            try (AssetFileDescriptor afd = context.getAssets().openFd(ASSET_NAME);
+                 FileInputStream in = afd.createInputStream();
+                 FileChannel channel = in.getChannel()) {
+                // The mapping stays valid after the channel is closed
+                bundled = new WordlistDictionary(channel.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getDeclaredLength()));
+            }
+        }
+        return bundled;
+    }
+
+    /**
+     * Memory-maps a dictionary file, e.g. one written by {@link #merge(List, File, int)}.
+     *
+     * @param file The dictionary file.
+     * @return The dictionary backed by the mapped file.
+     * @throws IOException If the file cannot be read or is not a valid dictionary.
+     */
+    public static WordlistDictionary open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            return new WordlistDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Wraps an encoded dictionary that is already in memory.
+     *
+     * @param buffer The encoded dictionary, e.g. from {@link #encode(Iterable, int)}.
+     * @return The dictionary backed by the given buffer.
+     * @throws IOException If the buffer is not a valid dictionary.
+     */
+    public static WordlistDictionary wrap(ByteBuffer buffer) throws IOException {
+        return new WordlistDictionary(buffer);
+    }
+
+    /**
+     * Encodes a small set of words into an in-memory dictionary, e.g. words derived for a single scan.
+     *
+     * @param words The words, in any order.
+     * @return The dictionary of the trimmed, sorted and de-duplicated words.
+     */
+    public static WordlistDictionary of(Iterable<String> words) {
+        try {
+            return new WordlistDictionary(ByteBuffer.wrap(encode(words, DEFAULT_BLOCK_SIZE)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Encoded dictionary is invalid", e);
+        }
+    }
+
+    /**
+     * @return The number of entries in the dictionary.
+     */
+    @Override
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * @return The length in bytes of the longest entry, useful for sizing decode buffers.
+     */
+    @Override
+    public int getMaxEntryLength() {
+        return maxEntryLength;
+    }
+
+    /**
+     * Returns a CRC-32 of the encoded dictionary, computed on first use. Dictionaries of the same entries
+     * and block size have the same fingerprint.
+     *
+     * @return The fingerprint, between 0 and 2^32 - 1.
+     */
+    public synchronized long fingerprint() {
+        if (fingerprint < 0) {
+            ByteBuffer all = data.duplicate();
+            all.rewind();
+            CRC32 crc = new CRC32();
+            crc.update(all);
+            fingerprint = crc.getValue();
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Creates a new reader positioned before the first entry. Readers are not thread-safe,
+     * but any number of readers can iterate the same dictionary concurrently.
+     *
+     * @return A new reader.
+     */
+    @Override
+    public Reader reader() {
+        return new Reader();
+    }
+
+    /**
+     * Iterates the entries in sorted order, decoding each one into a reused byte buffer
+     * so no object is allocated per entry.
+     */
+    public class Reader implements WordSource.Reader {
+        private final ByteBuffer in = data.duplicate();
+        private final byte[] entry = new byte[Math.max(1, maxEntryLength)];
+        private int length = 0;
+        private int index = -1;
+
+        private Reader() {
+            in.position(dataStart);
+        }
+
+        /**
+         * Advances to the next entry.
+         *
+         * @return False if there are no more entries.
+         */
+        @Override
+        public boolean next() {
+            if (index + 1 >= entryCount) {
+                index = entryCount;
+                return false;
+            }
+            index++;
+            if (index % blockSize == 0) {
+                length = readVarint(in);
+                in.get(entry, 0, length);
+            } else {
+                int shared = readVarint(in);
+                int suffix = readVarint(in);
+                in.get(entry, shared, suffix);
+                length = shared + suffix;
+            }
+            return true;
+        }
+
+        /**
+         * Positions the reader so that the following {@link #next()} returns the entry at the given index.
+         * Only the block containing the entry is decoded.
+         *
+         * @param target The index of the entry to continue from, between 0 and {@link #size()}.
+         */
+        @Override
+        public void seek(int target) {
+            if (target < 0 || target > entryCount) {
+                throw new IndexOutOfBoundsException("Entry " + target + " of " + entryCount);
+            }
+            int block = Math.min(target / blockSize, Math.max(0, blockCount - 1));
+            if (blockCount > 0) {
+                in.position(dataStart + data.getInt(HEADER_SIZE + block * 4));
+            }
+            index = block * blockSize - 1;
+            while (index + 1 < target) {
+                next();
+            }
+        }
+
+        /**
+         * @return The index of the current entry.
+         */
+        @Override
+        public int index() {
+            return index;
+        }
+
+        /**
+         * @return The buffer holding the current entry in UTF-8; only the first {@link #length()} bytes are valid.
+         */
+        @Override
+        public byte[] bytes() {
+            return entry;
+        }
+
+        /**
+         * @return The length in bytes of the current entry.
+         */
+        @Override
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Decodes the current entry into a String. Allocates, so avoid it on hot paths.
+         *
+         * @return The current entry.
+         */
+        @Override
+        public String current() {
+            return new String(entry, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private int scanMaxEntryLength() throws IOException {
+        ByteBuffer in = data.duplicate();
+        in.position(dataStart);
+        int max = 0;
+        int length = 0;
+        try {
+            for (int i = 0; i < entryCount; i++) {
+                if (i % blockSize == 0) {
+                    length = readVarint(in);
+                    in.position(in.position() + length);
+                } else {
+                    int shared = readVarint(in);
+                    int suffix = readVarint(in);
+                    if (shared > length) {
+                        throw new IOException("Corrupt dictionary entry " + i);
+                    }
+                    in.position(in.position() + suffix);
+                    length = shared + suffix;
+                }
+                max = Math.max(max, length);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Dictionary is truncated", e);
+        }
+        return max;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Writes sorted entries as front-coded blocks and remembers where each block starts.
+     */
+    private static final class BlockWriter {
+        private final OutputStream out;
+        private final int blockSize;
+        private final List<Integer> offsets = new ArrayList<>();
+        private byte[] previous = new byte[16];
+        private int previousLength = 0;
+        private int count = 0;
+        private int written = 0;
+
+        BlockWriter(OutputStream out, int blockSize) {
+            this.out = out;
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * Appends an entry, which must not sort before the previous one; a repeat of it is dropped.
+         */
+        void add(byte[] word, int length) throws IOException {
+            if (count > 0 && compare(previous, previousLength, word, length) == 0) {
+                return;
+            }
+            if (count % blockSize == 0) {
+                offsets.add(written);
+                writeVarint(length);
+                write(word, 0, length);
+            } else {
+                int shared = 0;
+                int max = Math.min(previousLength, length);
+                while (shared < max && previous[shared] == word[shared]) {
+                    shared++;
+                }
+                writeVarint(shared);
+                writeVarint(length - shared);
+                write(word, shared, length - shared);
+            }
+            if (previous.length < length) {
+                previous = new byte[Math.max(length, 2 * previous.length)];
+            }
+            System.arraycopy(word, 0, previous, 0, length);
+            previousLength = length;
+            count++;
+        }
+
+        /**
+         * Writes the header and block offsets of the entries added so far.
+         */
+        void writeHeader(OutputStream header) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + offsets.size() * 4);
+            buffer.put(MAGIC).put(VERSION);
+            buffer.putInt(count).putInt(blockSize).putInt(offsets.size());
+            for (int offset : offsets) {
+                buffer.putInt(offset);
+            }
+            header.write(buffer.array());
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            written += length;
+        }
+
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                written++;
+                value >>>= 7;
+            }
+            out.write(value);
+            written++;
+        }
+    }
+
+    /**
+     * Compares two UTF-8 entries by their unsigned bytes, the order of the dictionary.
+     */
+    private static int compare(byte[] a, int aLength, byte[] b, int bLength) {
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Encodes words into the front-coded format. Lines starting with "#" are comments, the other words are
+     * trimmed with {@link String#trim()}, empty ones dropped, and the rest sorted by their UTF-8 bytes and
+     * de-duplicated. This mirrors the build-time conversion, and is the one rule for user wordlists too.
+     *
+     * @param words     The words to encode.
+     * @param blockSize The number of entries per block.
+     * @return The encoded dictionary.
+     */
+    public static byte[] encode(Iterable<String> words, int blockSize) {
+        TreeSet<byte[]> sorted = new TreeSet<>((a, b) -> compare(a, a.length, b, b.length));
+        for (String word : words) {
+            if (word.startsWith("#")) {
+                continue;
+            }
+            String trimmed = word.trim();
+            if (!trimmed.isEmpty()) {
+                sorted.add(trimmed.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        try {
+            ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+            BlockWriter writer = new BlockWriter(blocks, blockSize);
+            for (byte[] word : sorted) {
+                writer.add(word, word.length);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + blocks.size());
+            writer.writeHeader(out);
+            blocks.writeTo(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            // Byte array streams do not fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Merges dictionaries into a new dictionary file, streaming their entries in order without loading
+     * any of them into memory. Entries found in several dictionaries are written once.
+     *
+     * @param dictionaries The dictionaries to merge.
+     * @param file         The file to write; a temporary file next to it holds the blocks while merging.
+     * @param blockSize    The number of entries per block.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void merge(List<WordlistDictionary> dictionaries, File file, int blockSize) throws IOException {
+        // One reader per dictionary, ordered by its current entry
+        PriorityQueue<Reader> heads = new PriorityQueue<>(Math.max(1, dictionaries.size()),
+                (a, b) -> compare(a.bytes(), a.length(), b.bytes(), b.length()));
+        for (WordlistDictionary dictionary : dictionaries) {
+            Reader reader = dictionary.reader();
+            if (reader.next()) {
+                heads.add(reader);
+            }
+        }
+
+        File blocks = new File(file.getPath() + ".blocks");
+        try {
+            BlockWriter writer;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(blocks))) {
+                writer = new BlockWriter(out, blockSize);
+                while (!heads.isEmpty()) {
+                    Reader reader = heads.poll();
+                    writer.add(reader.bytes(), reader.length());
+                    if (reader.next()) {
+                        heads.add(reader);
+                    }
+                }
+            }
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+                 InputStream in = new FileInputStream(blocks)) {
+                writer.writeHeader(out);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        } finally {
+            if (blocks.exists() && !blocks.delete()) {
+                blocks.deleteOnExit();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for ranking the results of an activity sweep.
+ */
+public class ActivitySweepTest {
+
+    private static LaunchMonitor.Result result(String description, LaunchMonitor.Outcome outcome, long launchMillis) {
+        return new LaunchMonitor.Result(null, description, outcome, launchMillis, 1_500, null);
+    }
+
+    @Test
+    public void ranksCrashesAndHangsFirstThenSlowestLaunches() {
+        List<LaunchMonitor.Result> ranked = ActivitySweep.rank(Arrays.asList(
+                result("fast", LaunchMonitor.Outcome.SHOWN, 120),
+                result("rejected", LaunchMonitor.Outcome.REJECTED, -1),
+                result("slow", LaunchMonitor.Outcome.SHOWN, 2_300),
+                result("hang", LaunchMonitor.Outcome.NOT_SHOWN, -1),
+                result("crash", LaunchMonitor.Outcome.ENDED_EARLY, 300)));
+
+        List<String> order = new ArrayList<>();
+        for (LaunchMonitor.Result result : ranked) {
+            order.add(result.getDescription());
+        }
+        assertEquals(Arrays.asList("crash", "hang", "slow", "fast", "rejected"), order);
+    }
+}
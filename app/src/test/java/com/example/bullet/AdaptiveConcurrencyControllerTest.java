@@ -0,0 +1,74 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the AIMD limiter used by content provider discovery.
+ */
+public class AdaptiveConcurrencyControllerTest {
+
+    private static final long STABLE_NANOS = 2_000_000;  // 2 ms
+
+    private static void answer(AdaptiveConcurrencyController controller, int queries, long latencyNanos, boolean failed)
+            throws InterruptedException {
+        for (int i = 0; i < queries; i++) {
+            controller.acquire();
+            controller.release(latencyNanos, failed);
+        }
+    }
+
+    @Test
+    public void raisesLimitByOnePerStableWindow() throws Exception {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(1, 6, 2);
+
+        answer(controller, 2, STABLE_NANOS, false);
+        assertEquals(3, controller.getLimit());
+        answer(controller, 3, STABLE_NANOS, false);
+        assertEquals(4, controller.getLimit());
+        answer(controller, 100, STABLE_NANOS, false);
+        assertEquals(6, controller.getLimit());
+        assertEquals(Double.POSITIVE_INFINITY, controller.getRateLimit(), 0);
+    }
+
+    @Test
+    public void halvesLimitOnFailuresAndSpikes() throws Exception {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(1, 16, 16);
+        answer(controller, 10, STABLE_NANOS, false);
+
+        answer(controller, 1, STABLE_NANOS, true);
+        assertEquals(8, controller.getLimit());
+        answer(controller, 1, 100 * STABLE_NANOS, false);
+        assertEquals(4, controller.getLimit());
+        assertEquals(2, controller.getDecreases());
+    }
+
+    @Test
+    public void backsOffOnlyOnceForQueriesAlreadyInFlight() throws Exception {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(1, 8, 8);
+        for (int i = 0; i < 4; i++) {
+            controller.acquire();
+        }
+        // All four queries in flight fail together, e.g. because the provider was overloaded once
+        for (int i = 0; i < 4; i++) {
+            controller.release(STABLE_NANOS, true);
+        }
+        assertEquals(4, controller.getLimit());
+        assertEquals(1, controller.getDecreases());
+    }
+
+    @Test
+    public void providerDeathDropsToMinimumAndCapsRate() throws Exception {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(2, 16, 12);
+        answer(controller, 10, STABLE_NANOS, false);
+
+        controller.onProviderDeath();
+        assertEquals(2, controller.getLimit());
+        double cap = controller.getRateLimit();
+        assertTrue(cap != Double.POSITIVE_INFINITY && cap >= 1);
+
+        controller.shutdown();
+        assertEquals(Double.POSITIVE_INFINITY, controller.getRateLimit(), 0);
+    }
+}
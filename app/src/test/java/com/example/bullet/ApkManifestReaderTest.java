@@ -0,0 +1,277 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for reading components and intent filters out of an APK's binary manifest.
+ */
+public class ApkManifestReaderTest {
+
+    private static final int HOST_REFERENCE = 0x7f0e0001;
+
+    /**
+     * Writes binary XML the way aapt does: a UTF-16 string pool, a resource map for the attribute names
+     * and one chunk per start and end element.
+     */
+    private static final class AxmlWriter {
+        private final List<String> strings = new ArrayList<>();
+        private final List<Integer> resourceIds = new ArrayList<>();
+        private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+
+        AxmlWriter() {
+            // Attribute names with resource ids come first, so their indexes line up with the resource map
+            String[] names = {"name", "exported", "scheme", "host", "pathPrefix", "autoVerify", "authorities"};
+            int[] ids = {0x01010003, 0x01010010, 0x01010027, 0x01010028, 0x0101002b, 0x010104ee, 0x01010018};
+            for (int i = 0; i < names.length; i++) {
+                strings.add(names[i]);
+                resourceIds.add(ids[i]);
+            }
+        }
+
+        private int string(String value) {
+            int index = strings.indexOf(value);
+            if (index < 0) {
+                strings.add(value);
+                index = strings.size() - 1;
+            }
+            return index;
+        }
+
+        /**
+         * @param attributes Names and values; "true" and "false" are written as booleans, "@" as a reference.
+         */
+        AxmlWriter start(String element, String... attributes) {
+            int count = attributes.length / 2;
+            ByteBuffer chunk = chunk(0x0102, 36 + 20 * count);
+            chunk.putInt(-1).putInt(string(element));
+            chunk.putShort((short) 20).putShort((short) 20).putShort((short) count);
+            chunk.putShort((short) 0).putShort((short) 0).putShort((short) 0);
+            for (int i = 0; i < count; i++) {
+                String value = attributes[i * 2 + 1];
+                chunk.putInt(-1).putInt(string(attributes[i * 2]));
+                if (value.equals("true") || value.equals("false")) {
+                    chunk.putInt(-1).putShort((short) 8).put((byte) 0).put((byte) AxmlParser.TYPE_INT_BOOLEAN)
+                            .putInt(value.equals("true") ? -1 : 0);
+                } else if (value.equals("@")) {
+                    chunk.putInt(-1).putShort((short) 8).put((byte) 0).put((byte) AxmlParser.TYPE_REFERENCE)
+                            .putInt(HOST_REFERENCE);
+                } else {
+                    int index = string(value);
+                    chunk.putInt(index).putShort((short) 8).put((byte) 0).put((byte) AxmlParser.TYPE_STRING)
+                            .putInt(index);
+                }
+            }
+            nodes.write(chunk.array(), 0, chunk.capacity());
+            return this;
+        }
+
+        AxmlWriter end(String element) {
+            ByteBuffer chunk = chunk(0x0103, 24);
+            chunk.putInt(-1).putInt(string(element));
+            nodes.write(chunk.array(), 0, chunk.capacity());
+            return this;
+        }
+
+        private static ByteBuffer chunk(int type, int size) {
+            ByteBuffer chunk = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            chunk.putShort((short) type).putShort((short) 16).putInt(size);
+            // Line number and comment
+            chunk.putInt(1).putInt(-1);
+            return chunk;
+        }
+
+        byte[] toByteArray() {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            int[] offsets = new int[strings.size()];
+            for (int i = 0; i < strings.size(); i++) {
+                offsets[i] = data.size();
+                String value = strings.get(i);
+                ByteBuffer encoded = ByteBuffer.allocate(4 + value.length() * 2).order(ByteOrder.LITTLE_ENDIAN);
+                encoded.putShort((short) value.length());
+                for (char c : value.toCharArray()) {
+                    encoded.putChar(c);
+                }
+                encoded.putShort((short) 0);
+                data.write(encoded.array(), 0, encoded.capacity());
+            }
+            while (data.size() % 4 != 0) {
+                data.write(0);
+            }
+            int poolSize = 28 + offsets.length * 4 + data.size();
+            int mapSize = 8 + resourceIds.size() * 4;
+            ByteBuffer document = ByteBuffer.allocate(8 + poolSize + mapSize + nodes.size()).order(ByteOrder.LITTLE_ENDIAN);
+            document.putShort((short) 0x0003).putShort((short) 8).putInt(document.capacity());
+            document.putShort((short) 0x0001).putShort((short) 28).putInt(poolSize);
+            document.putInt(offsets.length).putInt(0).putInt(0).putInt(28 + offsets.length * 4).putInt(0);
+            for (int offset : offsets) {
+                document.putInt(offset);
+            }
+            document.put(data.toByteArray());
+            document.putShort((short) 0x0180).putShort((short) 8).putInt(mapSize);
+            for (int id : resourceIds) {
+                document.putInt(id);
+            }
+            document.put(nodes.toByteArray());
+            return document.array();
+        }
+    }
+
+    private static byte[] sampleManifest() {
+        return new AxmlWriter()
+                .start("manifest", "package", "com.target")
+                .start("application")
+                .start("activity", "name", ".LinkActivity")
+                .start("intent-filter", "autoVerify", "true")
+                .start("action", "name", "android.intent.action.VIEW").end("action")
+                .start("category", "name", "android.intent.category.BROWSABLE").end("category")
+                .start("data", "scheme", "https").end("data")
+                .start("data", "host", "@", "pathPrefix", "/open").end("data")
+                .end("intent-filter")
+                .end("activity")
+                .start("activity", "name", "com.target.internal.Hidden", "exported", "false")
+                .start("intent-filter")
+                .start("action", "name", "com.target.HIDDEN").end("action")
+                .end("intent-filter")
+                .end("activity")
+                .start("service", "name", "SyncService").end("service")
+                .start("provider", "name", ".Files", "authorities", "com.target.files;com.target.docs").end("provider")
+                .end("application")
+                .end("manifest")
+                .toByteArray();
+    }
+
+    private static File writeApk(byte[] manifest, boolean stored, String comment) throws IOException {
+        File apk = File.createTempFile("target", ".apk");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(apk))) {
+            zip.putNextEntry(new ZipEntry("classes.dex"));
+            zip.write(new byte[100_000]);
+            zip.closeEntry();
+
+            ZipEntry entry = new ZipEntry("AndroidManifest.xml");
+            if (stored) {
+                CRC32 crc = new CRC32();
+                crc.update(manifest);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(manifest.length);
+                entry.setCrc(crc.getValue());
+            }
+            zip.putNextEntry(entry);
+            zip.write(manifest);
+            zip.closeEntry();
+            if (comment != null) {
+                zip.setComment(comment);
+            }
+        }
+        return apk;
+    }
+
+    @Test
+    public void readsComponentsAndFiltersFromDeflatedManifest() throws Exception {
+        File apk = writeApk(sampleManifest(), false, null);
+        try {
+            List<IpcComponent> components = ApkManifestReader.readComponents(apk,
+                    id -> id == HOST_REFERENCE ? "links.target.com" : null);
+            assertEquals(4, components.size());
+
+            IpcComponent link = components.get(0);
+            assertEquals(IpcComponent.Kind.ACTIVITY, link.getKind());
+            assertEquals("com.target", link.getPackageName());
+            assertEquals("com.target.LinkActivity", link.getName());
+            // Exported because it has an intent filter
+            assertTrue(link.isExported());
+            IpcComponent.Filter filter = link.getFilters().get(0);
+            assertTrue(filter.isAutoVerify());
+            assertEquals(Collections.singletonList("android.intent.action.VIEW"), filter.getActions());
+            assertEquals(Collections.singletonList("https"), filter.getSchemes());
+            assertEquals(Collections.singletonList("links.target.com"), filter.getHosts());
+            assertEquals(Collections.singletonList("/open"), filter.getPathPrefixes());
+
+            IpcComponent hidden = components.get(1);
+            assertEquals("com.target.internal.Hidden", hidden.getName());
+            assertFalse(hidden.isExported());
+            assertFalse(hidden.getFilters().get(0).isAutoVerify());
+
+            assertEquals("com.target.SyncService", components.get(2).getName());
+            assertFalse(components.get(2).isExported());
+
+            IpcComponent provider = components.get(3);
+            assertEquals(IpcComponent.Kind.PROVIDER, provider.getKind());
+            assertEquals(Arrays.asList("com.target.files", "com.target.docs"), provider.getAuthorities());
+            assertFalse(provider.isExported());
+        } finally {
+            apk.delete();
+        }
+    }
+
+    @Test
+    public void readsStoredManifestBehindArchiveComment() throws Exception {
+        byte[] manifest = sampleManifest();
+        File apk = writeApk(manifest, true, "signed by nobody");
+        try {
+            ByteBuffer read = ApkManifestReader.readManifest(apk);
+            assertEquals(manifest.length, read.remaining());
+            // Unresolved references leave the value out
+            List<IpcComponent> components = ApkManifestReader.readComponents(apk, null);
+            assertEquals(Collections.emptyList(), components.get(0).getFilters().get(0).getHosts());
+        } finally {
+            apk.delete();
+        }
+    }
+
+    @Test
+    public void rejectsStringPoolsLargerThanTheirChunk() throws Exception {
+        // The string pool follows the 8 byte document header: its count at +8, the string offsets at +28
+        byte[] hugeCount = sampleManifest();
+        ByteBuffer.wrap(hugeCount).order(ByteOrder.LITTLE_ENDIAN).putInt(8 + 8, 0x10000000);
+        byte[] hugeString = sampleManifest();
+        ByteBuffer pool = ByteBuffer.wrap(hugeString).order(ByteOrder.LITTLE_ENDIAN);
+        // "manifest" follows the seven attribute names
+        int element = 8 + pool.getInt(8 + 20) + pool.getInt(8 + 28 + 7 * 4);
+        // A two unit length of 0x7fffffff characters
+        pool.putShort(element, (short) 0xffff).putShort(element + 2, (short) 0xffff);
+
+        for (byte[] manifest : new byte[][]{hugeCount, hugeString}) {
+            File apk = writeApk(manifest, false, null);
+            try {
+                ApkManifestReader.readComponents(apk, null);
+                fail("Expected an IOException");
+            } catch (IOException expected) {
+                // Expected
+            } finally {
+                apk.delete();
+            }
+        }
+    }
+
+    @Test
+    public void rejectsFilesThatAreNotApks() throws Exception {
+        File file = File.createTempFile("target", ".apk");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[1000]);
+        }
+        try {
+            ApkManifestReader.readManifest(file);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // Expected
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the typed component model of the package inventory.
+ */
+public class ComponentIndexTest {
+
+    private static final String PACKAGE = "com.example.target";
+
+    private static IpcComponent provider(String name, String authority) {
+        return new IpcComponent(IpcComponent.Kind.PROVIDER, PACKAGE, name, true, null, "com.example.READ", null,
+                IpcComponent.splitAuthorities(authority), Collections.emptyList());
+    }
+
+    private static IpcComponent activity(String name, boolean exported) {
+        return new IpcComponent(IpcComponent.Kind.ACTIVITY, PACKAGE, name, exported, null, null, null,
+                Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Test
+    public void looksUpComponentsByNameKindAndAuthority() {
+        IpcComponent files = provider(PACKAGE + ".FilesProvider", "com.example.files;com.example.files.legacy");
+        IpcComponent main = activity(PACKAGE + ".MainActivity", true);
+        IpcComponent hidden = activity(PACKAGE + ".HiddenActivity", false);
+        ComponentIndex index = new ComponentIndex(Arrays.asList(main, hidden, files));
+
+        assertSame(files, index.get(PACKAGE + ".FilesProvider"));
+        assertSame(files, index.getByAuthority("com.example.files.legacy"));
+        assertNull(index.getByAuthority("com.example.files;com.example.files.legacy"));
+        assertEquals(Arrays.asList(main, hidden), index.ofKind(IpcComponent.Kind.ACTIVITY));
+        assertTrue(index.ofKind(IpcComponent.Kind.RECEIVER).isEmpty());
+        assertEquals(Arrays.asList(main, files), index.exported());
+    }
+
+    @Test
+    public void providerPermissionsFallBackToGeneralPermission() {
+        IpcComponent guarded = new IpcComponent(IpcComponent.Kind.PROVIDER, PACKAGE, "Guarded", true, "com.example.ALL",
+                null, "com.example.WRITE", Collections.singletonList("guarded"), Collections.emptyList());
+
+        assertEquals("com.example.ALL", guarded.getReadPermission());
+        assertEquals("com.example.WRITE", guarded.getWritePermission());
+    }
+
+    @Test
+    public void survivesSerialization() throws Exception {
+        IpcComponent.Filter filter = new IpcComponent.Filter(Collections.singletonList("android.intent.action.VIEW"),
+                Arrays.asList("android.intent.category.DEFAULT", "android.intent.category.BROWSABLE"),
+                Collections.singletonList("https"), Collections.singletonList("example.com"), Collections.emptyList(),
+                Collections.singletonList("/item"), Collections.emptyList(), Collections.emptyList());
+        IpcComponent original = new IpcComponent(IpcComponent.Kind.ACTIVITY, PACKAGE, "LinkActivity", true,
+                "com.example.LINK", null, null, Collections.emptyList(), Collections.singletonList(filter));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        original.writeTo(new DataOutputStream(bytes));
+        IpcComponent copy = IpcComponent.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), PACKAGE);
+
+        assertEquals(original.getKind(), copy.getKind());
+        assertEquals(original.getName(), copy.getName());
+        assertEquals(PACKAGE, copy.getPackageName());
+        assertEquals("com.example.LINK", copy.getPermission());
+        assertEquals("com.example.LINK", copy.getReadPermission());
+        assertEquals(1, copy.getFilters().size());
+        IpcComponent.Filter copiedFilter = copy.getFilters().get(0);
+        assertEquals(filter.getCategories(), copiedFilter.getCategories());
+        assertEquals(filter.getHosts(), copiedFilter.getHosts());
+        assertEquals(filter.getPathPrefixes(), copiedFilter.getPathPrefixes());
+    }
+}
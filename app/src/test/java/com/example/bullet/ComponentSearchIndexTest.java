@@ -0,0 +1,80 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for searching the components of all installed packages.
+ */
+public class ComponentSearchIndexTest {
+
+    private static IpcComponent provider(String packageName, String name, boolean exported, String readPermission, String authority) {
+        return new IpcComponent(IpcComponent.Kind.PROVIDER, packageName, name, exported, null, readPermission, null,
+                IpcComponent.splitAuthorities(authority), Collections.emptyList());
+    }
+
+    private static IpcComponent receiver(String packageName, String name, String permission, String action) {
+        IpcComponent.Filter filter = new IpcComponent.Filter(Collections.singletonList(action), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList());
+        return new IpcComponent(IpcComponent.Kind.RECEIVER, packageName, name, true, permission, null, null,
+                Collections.emptyList(), Collections.singletonList(filter));
+    }
+
+    private static List<String> names(List<IpcComponent> components) {
+        List<String> names = new ArrayList<>();
+        for (IpcComponent component : components) {
+            names.add(component.getName());
+        }
+        return names;
+    }
+
+    private static final List<IpcComponent> COMPONENTS = Arrays.asList(
+            provider("com.example.notes", "NotesFileProvider", true, null, "com.example.notes.files"),
+            provider("com.example.notes", "NotesProvider", true, "com.example.notes.READ", "com.example.notes"),
+            provider("com.example.mail", "AttachmentProvider", false, null, "com.example.mail.attachments;com.example.mail.file"),
+            provider("com.example.mail", "MailFileProvider", true, null, "com.example.mail.fileprovider"),
+            receiver("com.example.mail", "SyncReceiver", "com.example.mail.SYNC", "com.example.mail.action.SYNC"),
+            receiver("com.example.notes", "BootReceiver", null, "android.intent.action.BOOT_COMPLETED"));
+
+    @Test
+    public void combinesFiltersAndText() {
+        ComponentSearchIndex index = new ComponentSearchIndex(COMPONENTS);
+
+        assertEquals(Arrays.asList("NotesFileProvider", "MailFileProvider"),
+                names(index.search("kind:provider exported:true noperm:read authority:file", 100)));
+        assertEquals(Arrays.asList("AttachmentProvider"), names(index.search("exported:false", 100)));
+        assertEquals(Arrays.asList("BootReceiver"), names(index.search("action:boot_completed", 100)));
+        assertEquals(Arrays.asList("SyncReceiver"), names(index.search("kind:rec perm:sync", 100)));
+    }
+
+    @Test
+    public void freeTextMatchesAnyFieldIgnoringCase() {
+        ComponentSearchIndex index = new ComponentSearchIndex(COMPONENTS);
+
+        assertEquals(Arrays.asList("NotesFileProvider", "NotesProvider", "BootReceiver"),
+                names(index.search("NOTES", 100)));
+        assertEquals(Arrays.asList("NotesProvider"), names(index.search("notes.read", 100)));
+        // Short terms cannot use trigrams and are matched directly
+        assertEquals(6, index.search("e", 100).size());
+        assertTrue(index.search("nothing-like-this", 100).isEmpty());
+    }
+
+    @Test
+    public void ignoresIncompleteFiltersAndHonoursLimit() {
+        ComponentSearchIndex index = new ComponentSearchIndex(COMPONENTS);
+
+        assertEquals(COMPONENTS.size(), index.search("kind:", 100).size());
+        assertEquals(COMPONENTS.size(), index.search("", 100).size());
+        assertEquals(2, index.search("example", 2).size());
+        // A colon that does not start a filter is searched for like any other text
+        assertTrue(index.search("content://com.example.mail.fileprovider", 100).isEmpty());
+        assertEquals(Arrays.asList("MailFileProvider"), names(index.search("mail.fileprovider", 100)));
+    }
+}
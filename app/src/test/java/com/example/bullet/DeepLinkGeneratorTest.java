@@ -0,0 +1,79 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for generating deep links from intent filters.
+ */
+public class DeepLinkGeneratorTest {
+
+    private static IpcComponent.Filter filter(List<String> schemes, List<String> hosts, List<String> ports,
+                                              List<String> paths, List<String> prefixes, List<String> patterns) {
+        return new IpcComponent.Filter(Collections.singletonList("android.intent.action.VIEW"),
+                Collections.singletonList("android.intent.category.BROWSABLE"), schemes, hosts, ports, paths,
+                prefixes, patterns, Collections.emptyList(), false);
+    }
+
+    @Test
+    public void everyIndexDecodesToADistinctLink() {
+        IpcComponent.Filter web = filter(Arrays.asList("http", "https"), Collections.singletonList("*.example.com"),
+                Collections.emptyList(), Collections.singletonList("/home"), Collections.singletonList("/item"),
+                Collections.emptyList());
+        IpcComponent.Filter custom = filter(Collections.singletonList("app"), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        // Filters without a scheme have no links
+        IpcComponent.Filter noData = filter(Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        DeepLinkGenerator generator = new DeepLinkGenerator(Arrays.asList(web, noData, custom),
+                EnumSet.of(DeepLinkGenerator.Mutation.NONE, DeepLinkGenerator.Mutation.DEBUG_FLAGS));
+
+        // 2 schemes x 1 host x 2 paths for the first filter, 1 for the second, each with 2 mutations
+        assertEquals(10, generator.size());
+
+        List<String> uris = new ArrayList<>();
+        for (DeepLinkGenerator.Link link : generator) {
+            uris.add(link.getUri());
+        }
+        assertEquals(10, new HashSet<>(uris).size());
+        assertEquals("http://www.example.com/home", uris.get(0));
+        assertEquals("http://www.example.com/home?debug=true&admin=true&test=1", uris.get(1));
+        assertEquals("http://www.example.com/item/1", uris.get(2));
+        assertTrue(uris.contains("https://www.example.com/home"));
+        assertEquals("app://example.com", uris.get(8));
+        assertSame(custom, generator.get(9).getFilter());
+        assertEquals(DeepLinkGenerator.Mutation.DEBUG_FLAGS, generator.get(9).getMutation());
+    }
+
+    @Test
+    public void portsAndPathMutationsKeepTheQuery() {
+        IpcComponent.Filter local = filter(Collections.singletonList("http"), Collections.singletonList("localhost"),
+                Collections.singletonList("8080"), Collections.emptyList(), Collections.emptyList(),
+                Collections.singletonList("/api/.*"));
+        DeepLinkGenerator generator = new DeepLinkGenerator(Collections.singletonList(local),
+                EnumSet.of(DeepLinkGenerator.Mutation.TRAVERSAL));
+
+        assertEquals(1, generator.size());
+        assertEquals("http://localhost:8080/api/test/../../../../data/data", generator.get(0).getUri());
+        assertEquals("/a%00?b", DeepLinkGenerator.Mutation.NUL_BYTE.apply("/a?b"));
+    }
+
+    @Test
+    public void pathPatternsAreFilledInWithMatchingPaths() {
+        assertEquals("/product/test", DeepLinkGenerator.concretePath("/product/.*"));
+        assertEquals("/test/b.html", DeepLinkGenerator.concretePath("/.*/b\\.html"));
+        assertEquals("/id/0", DeepLinkGenerator.concretePath("/id/[0-9]+"));
+        assertEquals("/x", DeepLinkGenerator.concretePath("x"));
+        assertEquals("/aa", DeepLinkGenerator.concretePath("/a*."));
+        assertEquals("example.com", DeepLinkGenerator.concreteHost("*"));
+        assertEquals("www.example.com", DeepLinkGenerator.concreteHost("*.example.com"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for expanding intent templates.
+ */
+public class IntentTemplateTest {
+
+    private static final List<IntentTemplate.ExtraValue> INTS = Arrays.asList(
+            IntentTemplate.ExtraValue.of(IntentTemplate.ExtraType.INT, 0),
+            IntentTemplate.ExtraValue.of(IntentTemplate.ExtraType.INT, -1));
+
+    @Test
+    public void everyIndexDecodesToADistinctCombination() {
+        IntentTemplate template = new IntentTemplate(Arrays.asList("a", "b"), Collections.singletonList("content://x"),
+                Arrays.asList("one", "two"), Arrays.asList(INTS, INTS));
+
+        // Every dimension adds "absent": 3 actions x 2 data x 3 x 3 values
+        assertEquals(54, template.size());
+        assertEquals(4, template.dimensions());
+
+        Set<List<Integer>> seen = new HashSet<>();
+        int[] digits = new int[template.dimensions()];
+        for (long i = 0; i < template.size(); i++) {
+            template.decode(i, digits);
+            seen.add(Arrays.asList(digits[0], digits[1], digits[2], digits[3]));
+        }
+        assertEquals(54, seen.size());
+    }
+
+    @Test
+    public void describesCombinations() {
+        IntentTemplate template = new IntentTemplate(Collections.singletonList("a"), Collections.emptyList(),
+                Collections.singletonList("key"), Collections.singletonList(INTS));
+
+        assertEquals("action=- data=-", template.describe(0));
+        assertEquals("action=a data=-", template.describe(1));
+        assertEquals("action=a data=- key=int -1", template.describe(5));
+    }
+
+    @Test
+    public void sizeSaturatesInsteadOfOverflowing() {
+        List<String> keys = Collections.nCopies(40, "key");
+        List<List<IntentTemplate.ExtraValue>> values = Collections.nCopies(40, INTS);
+        IntentTemplate template = new IntentTemplate(Collections.emptyList(), Collections.emptyList(), keys, values);
+
+        assertEquals(Long.MAX_VALUE, template.size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the persistent probe-outcome cache.
+ */
+public class ProbeCacheTest {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    @Test
+    public void normalizesEquivalentPaths() {
+        ProbeCache cache = new ProbeCache(1, 1, 10, DAY_MS);
+        cache.put("content://a.b/users/", ProbeResult.ACCESSIBLE);
+
+        assertSame(ProbeResult.ACCESSIBLE, cache.get(" content://a.b//users "));
+        assertEquals(1, cache.getHits());
+        assertNull(cache.get("content://a.b/user"));
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() {
+        ProbeCache cache = new ProbeCache(1, 1, 2, DAY_MS);
+        cache.put("content://a/x", ProbeResult.EMPTY);
+        cache.put("content://a/y", ProbeResult.EMPTY);
+        cache.get("content://a/x");
+        cache.put("content://a/z", ProbeResult.EMPTY);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("content://a/x"));
+        assertNull(cache.get("content://a/y"));
+    }
+
+    @Test
+    public void doesNotCacheProviderDeaths() {
+        ProbeCache cache = new ProbeCache(1, 1, 10, DAY_MS);
+        cache.put("content://a/x", new ProbeResult(ProbeResult.Outcome.ERROR, "android.os.DeadObjectException"));
+
+        assertNull(cache.get("content://a/x"));
+    }
+
+    @Test
+    public void reloadsOnlyForTheSameTargetVersion() throws Exception {
+        File file = File.createTempFile("probe", ".cache");
+        try {
+            ProbeCache cache = new ProbeCache(7, 100, 10, DAY_MS);
+            cache.put("content://a/x", new ProbeResult(ProbeResult.Outcome.DENIED, "java.lang.SecurityException"));
+            cache.put("content://a/y", ProbeResult.NO_CURSOR);
+            cache.save(file);
+
+            ProbeCache same = ProbeCache.load(file, 7, 100, 10, DAY_MS);
+            assertEquals(2, same.size());
+            assertEquals("DENIED:java.lang.SecurityException", same.get("content://a/x").signature());
+            assertSame(ProbeResult.NO_CURSOR, same.get("content://a/y"));
+
+            assertEquals(0, ProbeCache.load(file, 8, 100, 10, DAY_MS).size());
+            assertEquals(0, ProbeCache.load(file, 7, 101, 10, DAY_MS).size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void expiredEntriesAreProbedAgain() {
+        ProbeCache cache = new ProbeCache(1, 1, 10, 0);
+        cache.put("content://a/x", ProbeResult.ACCESSIBLE);
+
+        assertNull(cache.get("content://a/x"));
+        assertEquals(0, cache.size());
+    }
+}
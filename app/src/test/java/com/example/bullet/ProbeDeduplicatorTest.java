@@ -0,0 +1,111 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for de-duplicating the URIs of a scan.
+ */
+public class ProbeDeduplicatorTest {
+
+    @Test
+    public void smallScansRememberUrisExactly() {
+        ProbeDeduplicator deduplicator = new ProbeDeduplicator(100, 0.01, ProbeDeduplicator.DEFAULT_MAX_BYTES);
+
+        assertTrue(deduplicator.isExact());
+        assertTrue(deduplicator.add("content://test.authority/users"));
+        assertTrue(deduplicator.add("content://test.authority/Users"));
+        // Redundant slashes and whitespace make no difference to the provider
+        assertFalse(deduplicator.add("content://test.authority//users/"));
+        assertFalse(deduplicator.add(" CONTENT://test.authority/users"));
+        assertEquals(2, deduplicator.getDuplicates());
+    }
+
+    @Test
+    public void largeBudgetsStartExactUntilTheScanOutgrowsTheSet() {
+        // The default probe budget
+        ProbeDeduplicator deduplicator = new ProbeDeduplicator(5_000_000, 0.001, ProbeDeduplicator.DEFAULT_MAX_BYTES);
+
+        assertTrue(deduplicator.isExact());
+        assertEquals(0, deduplicator.getFilterBytes());
+        for (int i = 0; i < ProbeDeduplicator.EXACT_LIMIT; i++) {
+            deduplicator.add("content://test.authority/path" + i);
+        }
+        assertTrue(deduplicator.isExact());
+        assertTrue(deduplicator.add("content://test.authority/one-more"));
+        assertFalse(deduplicator.isExact());
+        // The URIs of the exact set carry over into the filter
+        for (int i = 0; i < ProbeDeduplicator.EXACT_LIMIT; i += 97) {
+            assertFalse(deduplicator.add("content://test.authority/path" + i));
+        }
+        assertFalse(deduplicator.add("content://test.authority/one-more"));
+    }
+
+    @Test
+    public void bloomFilterNeverAcceptsAUriTwiceAndKeepsItsFalsePositiveRate() {
+        int count = 200_000;
+        ProbeDeduplicator deduplicator = new ProbeDeduplicator(count, 0.01, ProbeDeduplicator.DEFAULT_MAX_BYTES);
+
+        int skipped = 0;
+        for (int i = 0; i < count; i++) {
+            if (!deduplicator.add("content://test.authority/path" + i)) {
+                skipped++;
+            }
+        }
+        assertFalse(deduplicator.isExact());
+        // About 9.6 bits and 7 hash functions per URI for 1%
+        assertEquals(7, deduplicator.getHashCount());
+        assertTrue(deduplicator.getFilterBytes() < count * 10 / 8 + 8);
+        assertTrue("Skipped " + skipped, skipped < count * 0.02);
+        for (int i = 0; i < count; i += 97) {
+            assertFalse(deduplicator.add("content://test.authority/path" + i));
+        }
+    }
+
+    @Test
+    public void memoryBudgetCapsTheFilter() {
+        ProbeDeduplicator deduplicator = new ProbeDeduplicator(10_000_000, 0.001, 1 << 20);
+        // The exact set gets the same budget, at about 160 bytes per URI
+        for (int i = 0; i <= (1 << 20) / 160; i++) {
+            deduplicator.add("content://test.authority/path" + i);
+        }
+
+        assertFalse(deduplicator.isExact());
+        assertEquals(1 << 20, deduplicator.getFilterBytes());
+        assertEquals("content://a/b/c", ProbeDeduplicator.normalize("content://a//b///c/"));
+        assertEquals("content://a", ProbeDeduplicator.normalize("content://a/"));
+    }
+
+    @Test
+    public void savedDeduplicatorKeepsItsUrisAndMark() throws Exception {
+        File file = File.createTempFile("probe", ".dedup");
+        try {
+            for (long maxBytes : new long[]{ProbeDeduplicator.DEFAULT_MAX_BYTES, 1024}) {
+                ProbeDeduplicator deduplicator = new ProbeDeduplicator(1_000_000, 0.01, maxBytes);
+                // Ten URIs fit the default budget exactly but turn the small one into a filter
+                for (int i = 0; i < 10; i++) {
+                    deduplicator.add("content://test.authority/path" + i);
+                }
+                deduplicator.add("content://test.authority/users");
+                deduplicator.add("content://test.authority/users");
+                deduplicator.mark(2, 42, 7);
+                deduplicator.save(file);
+
+                ProbeDeduplicator loaded = ProbeDeduplicator.load(file);
+                assertEquals(maxBytes == ProbeDeduplicator.DEFAULT_MAX_BYTES, loaded.isExact());
+                assertFalse(loaded.add("content://test.authority/users"));
+                assertTrue(loaded.add("content://test.authority/accounts"));
+                assertEquals(2, loaded.getDuplicates());
+                assertEquals(2, loaded.getMarkedDepth());
+                assertEquals(42, loaded.getMarkedPosition());
+                assertEquals(7, loaded.getMarkedProbesSent());
+                assertFalse(loaded.add("content://test.authority/path3"));
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
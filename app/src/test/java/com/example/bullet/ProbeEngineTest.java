@@ -0,0 +1,222 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for hierarchical discovery in ProbeEngine, run against a fake provider.
+ */
+public class ProbeEngineTest {
+
+    private static final String ROOT = "content://test.authority/";
+
+    /**
+     * Fake provider matching /users (rows), /users/# (empty) and /users/#/messages (rows).
+     * Everything else is rejected as an unknown URI. Remembers every queried path.
+     */
+    private static final class FakeProvider implements ProbeEngine.PathProbe {
+        final Set<String> queried = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public ProbeResult probe(String path) {
+            queried.add(path);
+            String relative = path.substring(ROOT.length());
+            if (relative.equals("users") || relative.matches("users/\\d+/messages")) {
+                return ProbeResult.ACCESSIBLE;
+            }
+            if (relative.matches("users/\\d+")) {
+                return ProbeResult.EMPTY;
+            }
+            return ProbeResult.fromException(new IllegalArgumentException("Unknown URI " + path));
+        }
+    }
+
+    private static WordlistDictionary wordlist(String... words) throws Exception {
+        return WordlistDictionary.wrap(ByteBuffer.wrap(WordlistDictionary.encode(Arrays.asList(words), 16)));
+    }
+
+    @Test
+    public void findsNestedPathsAndPrunesUnknownPrefixes() throws Exception {
+        FakeProvider provider = new FakeProvider();
+        ProbeEngine engine = new ProbeEngine(4, 8, provider);
+        engine.setMaxDepth(3);
+
+        List<String> found = engine.run(wordlist("accounts", "messages", "users"), "test.authority", null,
+                (path, result, processed) -> { }, () -> false);
+
+        assertEquals(Arrays.asList(ROOT + "users", ROOT + "users/1/messages"), found);
+        // Unknown first-level segments must never be used as prefixes
+        for (String path : provider.queried) {
+            assertFalse(path, path.startsWith(ROOT + "accounts/") || path.startsWith(ROOT + "messages/"));
+        }
+    }
+
+    @Test
+    public void depthOneOnlyProbesTheWordlist() throws Exception {
+        FakeProvider provider = new FakeProvider();
+        ProbeEngine engine = new ProbeEngine(2, 4, provider);
+
+        List<String> found = engine.run(wordlist("users", "accounts"), "test.authority", null,
+                (path, result, processed) -> { }, () -> false);
+
+        assertEquals(Collections.singletonList(ROOT + "users"), found);
+        // Two wordlist entries plus the baseline query of the root
+        assertEquals(3, provider.queried.size());
+    }
+
+    @Test
+    public void variantsMatchingOtherWordsAreProbedOnce() throws Exception {
+        List<String> queried = Collections.synchronizedList(new ArrayList<>());
+        ProbeEngine engine = new ProbeEngine(2, 4, path -> {
+            queried.add(path);
+            return ProbeResult.fromException(new IllegalArgumentException("Unknown URI " + path));
+        });
+        // The plural of "user" and the lower case of "Users" are both listed already
+        WordMutator words = new WordMutator(wordlist("Users", "user", "users"), EnumSet.of(WordMutator.Mutation.NONE,
+                WordMutator.Mutation.LOWER_CASE, WordMutator.Mutation.PLURAL));
+
+        engine.run(words, "test.authority", null, (path, result, processed) -> { }, () -> false);
+
+        assertEquals(queried.size(), new HashSet<>(queried).size());
+        // The baseline query and the three words
+        assertEquals(4, queried.size());
+        assertEquals(2, engine.getDuplicatesSkipped());
+    }
+
+    @Test
+    public void chunksOfAScanShareTheirDeduplicator() throws Exception {
+        List<String> queried = Collections.synchronizedList(new ArrayList<>());
+        ProbeEngine.PathProbe provider = path -> {
+            queried.add(path);
+            return ProbeResult.fromException(new IllegalArgumentException("Unknown URI " + path));
+        };
+        // The lower case of "Users" comes a whole wordlist after "users", in the second chunk
+        WordMutator words = new WordMutator(wordlist("Users", "a", "b", "c", "d", "users"),
+                EnumSet.of(WordMutator.Mutation.NONE, WordMutator.Mutation.LOWER_CASE));
+        File file = File.createTempFile("probe", ".dedup");
+        try {
+            AtomicReference<ScanCheckpoint> last = new AtomicReference<>();
+            ProbeEngine first = new ProbeEngine(1, 1, provider);
+            first.setCheckpointListener(last::set, Long.MAX_VALUE);
+            first.run(words, "test.authority", null, (path, result, processed) -> { },
+                    () -> first.getProbesSent() >= 4);
+            assertFalse(first.isFinished());
+            first.getDeduplicator().save(file);
+
+            ProbeEngine second = new ProbeEngine(1, 1, provider);
+            second.setDeduplicator(ProbeDeduplicator.load(file));
+            second.run(words, "test.authority", last.get(), (path, result, processed) -> { }, () -> false);
+
+            assertTrue(second.isFinished());
+            assertEquals(1, second.getDuplicatesSkipped());
+            // Every word once, plus the baseline query of each chunk
+            assertEquals(8, queried.size());
+            assertEquals(7, new HashSet<>(queried).size());
+            assertEquals(2, Collections.frequency(queried, ROOT + "zz_bullet_no_such_path_7f3a"));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void budgetLimitsTheNumberOfQueries() throws Exception {
+        FakeProvider provider = new FakeProvider();
+        ProbeEngine engine = new ProbeEngine(2, 4, provider);
+        engine.setMaxDepth(3);
+        engine.setProbeBudget(3);
+
+        engine.run(wordlist("a", "b", "c", "d", "e"), "test.authority", null, (path, result, processed) -> { }, () -> false);
+
+        assertEquals(3, provider.queried.size());
+    }
+
+    @Test
+    public void resumesFromCheckpointAfterStop() throws Exception {
+        WordlistDictionary words = wordlist("accounts", "b", "c", "d", "e", "f", "messages", "users");
+        AtomicReference<ScanCheckpoint> last = new AtomicReference<>();
+        AtomicBoolean stop = new AtomicBoolean();
+
+        ProbeEngine first = new ProbeEngine(1, 1, new FakeProvider());
+        first.setMaxDepth(3);
+        first.setCheckpointListener(last::set, 0);
+        first.run(words, "test.authority", null, (path, result, processed) -> {
+            if (processed == 10) {
+                stop.set(true);
+            }
+        }, stop::get);
+
+        ScanCheckpoint checkpoint = last.get();
+        assertNotNull(checkpoint);
+        assertTrue(checkpoint.getDepth() > 1 || checkpoint.getEntryIndex() > 0);
+
+        ProbeEngine second = new ProbeEngine(2, 4, new FakeProvider());
+        second.setMaxDepth(3);
+        List<String> found = second.run(words, "test.authority", checkpoint, (path, result, processed) -> { }, () -> false);
+
+        assertEquals(Arrays.asList(ROOT + "users", ROOT + "users/1/messages"), found);
+    }
+
+    @Test
+    public void checkpointsOfOtherWordlistsAreIncompatible() throws Exception {
+        WordlistDictionary words = wordlist("accounts", "b", "c", "users");
+        WordlistDictionary renamed = wordlist("accounts", "b", "c", "notes");
+        assertEquals(words.size(), renamed.size());
+        assertNotEquals(words.fingerprint(), renamed.fingerprint());
+        AtomicReference<ScanCheckpoint> last = new AtomicReference<>();
+
+        ProbeEngine engine = new ProbeEngine(1, 1, new FakeProvider());
+        engine.setWordlistFingerprint(words.fingerprint());
+        engine.setCheckpointListener(last::set, 0);
+        engine.run(words, "test.authority", null, (path, result, processed) -> { }, () -> false);
+
+        File file = File.createTempFile("scan", ".ckpt");
+        try {
+            last.get().save(file);
+            ScanCheckpoint checkpoint = ScanCheckpoint.load(file);
+            assertTrue(checkpoint.isCompatible(words.size(), words.fingerprint(), 1));
+            // Same size, but every position now names another candidate
+            assertFalse(checkpoint.isCompatible(renamed.size(), renamed.fingerprint(), 1));
+            assertFalse(checkpoint.isCompatible(words.size(), words.fingerprint(), 2));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void chunkedRunsAddUpToAFullScan() throws Exception {
+        WordlistDictionary words = wordlist("accounts", "b", "c", "d", "e", "f", "messages", "users");
+        ScanCheckpoint checkpoint = null;
+        List<String> found = null;
+        int chunks = 0;
+
+        // Every run stops after sending about five more queries, like a chunk of a background job
+        do {
+            AtomicReference<ScanCheckpoint> last = new AtomicReference<>();
+            ProbeEngine engine = new ProbeEngine(1, 1, new FakeProvider());
+            engine.setMaxDepth(3);
+            engine.setCheckpointListener(last::set, Long.MAX_VALUE);
+            long chunkEnd = (checkpoint != null ? checkpoint.getProbesSent() : 0) + 5;
+            found = engine.run(words, "test.authority", checkpoint, (path, result, processed) -> { },
+                    () -> engine.getProbesSent() >= chunkEnd);
+            checkpoint = engine.isFinished() ? null : last.get();
+            chunks++;
+        } while (checkpoint != null && chunks < 100);
+
+        assertTrue(chunks > 1);
+        assertEquals(Arrays.asList(ROOT + "users", ROOT + "users/1/messages"), found);
+    }
+}
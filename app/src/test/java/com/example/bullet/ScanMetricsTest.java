@@ -0,0 +1,53 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the scan counters and latency histograms.
+ */
+public class ScanMetricsTest {
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (long micros = 0; micros < 1_000_000; micros++) {
+            int index = LatencyHistogram.indexOf(micros);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(index));
+            assertTrue(index == 0 || micros > LatencyHistogram.upperBoundOf(index - 1));
+        }
+    }
+
+    @Test
+    public void percentilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L * 1000);  // 1 ms to 1 s
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(500_000, histogram.percentileMicros(0.50), 500_000 * 0.07);
+        assertEquals(950_000, histogram.percentileMicros(0.95), 950_000 * 0.07);
+        assertEquals(990_000, histogram.percentileMicros(0.99), 990_000 * 0.07);
+        assertEquals(0, new LatencyHistogram().percentileMicros(0.99));
+    }
+
+    @Test
+    public void countsOutcomesAndFailures() {
+        ScanMetrics metrics = new ScanMetrics("a.b");
+        metrics.recordProbe(ProbeResult.ACCESSIBLE, 2_000_000, false);
+        metrics.recordProbe(ProbeResult.EMPTY, 0, true);
+        metrics.recordProbe(ProbeResult.fromException(new SecurityException("denied")), 1_000_000, false);
+        metrics.recordProbe(ProbeResult.fromException(new SecurityException("denied")), 1_000_000, false);
+
+        assertEquals(4, metrics.getProbes());
+        assertEquals(1, metrics.getHits());
+        assertEquals(1, metrics.getCacheHits());
+        assertEquals(2, metrics.getOutcomeCount(ProbeResult.Outcome.DENIED));
+        assertEquals(3, metrics.getLatency().count());
+        Map<String, Long> failures = metrics.getFailures();
+        assertEquals(Long.valueOf(2), failures.get("java.lang.SecurityException"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the group-commit scan result log.
+ */
+public class ScanResultLogTest {
+
+    private static ScanResultLog.Writer open(File file, boolean truncate) throws Exception {
+        return new ScanResultLog.Writer(file, truncate, 4, 50, ScanResultLog.SyncPolicy.ON_COMMIT);
+    }
+
+    private static List<ScanResultLog.Record> readAll(File file) throws Exception {
+        List<ScanResultLog.Record> records = new ArrayList<>();
+        try (ScanResultLog.Reader reader = new ScanResultLog.Reader(file)) {
+            ScanResultLog.Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    public void recordsRoundTripInOrder() throws Exception {
+        File file = File.createTempFile("scan", ".log");
+        try {
+            try (ScanResultLog.Writer writer = open(file, true)) {
+                for (int i = 0; i < 10; i++) {
+                    writer.append(new ScanResultLog.Record(i, i * 1000L, "content://a/" + i, "EMPTY",
+                            i % 2 == 0 ? "java.lang.SecurityException" : null, i == 3 ? "cached" : null));
+                }
+            }
+
+            List<ScanResultLog.Record> records = readAll(file);
+            assertEquals(10, records.size());
+            ScanResultLog.Record third = records.get(3);
+            assertEquals("content://a/3", third.getTarget());
+            assertEquals(3000L, third.getLatencyNanos());
+            assertNull(third.getErrorClass());
+            assertEquals("cached", third.getDetail());
+            assertEquals("java.lang.SecurityException", records.get(4).getErrorClass());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void flushMakesRecordsVisibleWhileOpen() throws Exception {
+        File file = File.createTempFile("scan", ".log");
+        try (ScanResultLog.Writer writer = open(file, true)) {
+            writer.append(new ScanResultLog.Record(1, 1, "content://a/x", "ACCESSIBLE", null, null));
+            writer.flush();
+
+            assertEquals(1, readAll(file).size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void reopeningCutsOffATornRecordAndAppends() throws Exception {
+        File file = File.createTempFile("scan", ".log");
+        try {
+            try (ScanResultLog.Writer writer = open(file, true)) {
+                writer.append(new ScanResultLog.Record(1, 1, "content://a/x", "ACCESSIBLE", null, null));
+                writer.append(new ScanResultLog.Record(2, 2, "content://a/y", "EMPTY", null, null));
+            }
+            // Simulate a crash in the middle of writing the last record
+            try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+                raw.setLength(raw.length() - 3);
+            }
+            assertEquals(1, readAll(file).size());
+
+            try (ScanResultLog.Writer writer = open(file, false)) {
+                writer.append(new ScanResultLog.Record(3, 3, "content://a/z", "NO_CURSOR", null, null));
+            }
+
+            List<ScanResultLog.Record> records = readAll(file);
+            assertEquals(2, records.size());
+            assertEquals("content://a/z", records.get(1).getTarget());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void failedCommitsNeitherBlockAppendingNorClosing() throws Exception {
+        File file = File.createTempFile("scan", ".log");
+        try {
+            ScanResultLog.Writer writer = open(file, true);
+            // Every write of the commit thread now throws ClosedChannelException
+            Field channel = ScanResultLog.Writer.class.getDeclaredField("channel");
+            channel.setAccessible(true);
+            ((FileChannel) channel.get(writer)).close();
+
+            // More records than the queue holds
+            int count = 70_000;
+            for (int i = 0; i < count; i++) {
+                writer.append(new ScanResultLog.Record(i, i, "content://a/" + i, "EMPTY", null, null));
+            }
+            assertTrue(writer.getDropped() > 0);
+            try {
+                writer.close();
+                fail("The commit failure was not reported");
+            } catch (IOException expected) {
+                // The failure of the commit thread
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the worker pool shared by concurrent scans.
+ */
+public class ScanSchedulerTest {
+
+    /**
+     * Returns a source of endless tasks that take about a millisecond each.
+     */
+    private static ScanScheduler.TaskSource endless(AtomicInteger done, AtomicInteger running, AtomicInteger maxRunning) {
+        return () -> () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            done.incrementAndGet();
+        };
+    }
+
+    private static ScanScheduler.TaskSource endless(AtomicInteger done) {
+        return endless(done, new AtomicInteger(), new AtomicInteger());
+    }
+
+    @Test
+    public void sharesWorkersByPriority() throws Exception {
+        ScanScheduler scheduler = new ScanScheduler(2);
+        scheduler.setPriority("high", 3);
+        scheduler.setPriority("low", 1);
+        AtomicInteger high = new AtomicInteger();
+        AtomicInteger low = new AtomicInteger();
+
+        ScanScheduler.Scan first = scheduler.register("high", () -> 2, endless(high));
+        ScanScheduler.Scan second = scheduler.register("low", () -> 2, endless(low));
+        Thread.sleep(500);
+        first.close();
+        second.close();
+
+        assertTrue(low.get() > 0);
+        double ratio = high.get() / (double) low.get();
+        assertTrue("ratio " + ratio, ratio > 2 && ratio < 4);
+    }
+
+    @Test
+    public void keepsScanBelowItsCap() throws Exception {
+        ScanScheduler scheduler = new ScanScheduler(4);
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        ScanScheduler.Scan scan = scheduler.register("capped", () -> 1, endless(done, new AtomicInteger(), maxRunning));
+        Thread.sleep(200);
+        scan.close();
+
+        assertTrue(done.get() > 0);
+        assertEquals(1, maxRunning.get());
+        assertEquals(0, scan.getRunning());
+    }
+
+    @Test
+    public void pausedScanStartsNoTasksUntilResumed() throws Exception {
+        ScanScheduler scheduler = new ScanScheduler(2);
+        scheduler.setPaused("paused", true);
+        AtomicInteger done = new AtomicInteger();
+
+        ScanScheduler.Scan scan = scheduler.register("paused", () -> 2, endless(done));
+        Thread.sleep(100);
+        assertEquals(0, done.get());
+
+        scheduler.setPaused("paused", false);
+        Thread.sleep(100);
+        scan.close();
+        assertTrue(done.get() > 0);
+    }
+
+    @Test
+    public void resumeAllClearsEveryPause() throws Exception {
+        ScanScheduler scheduler = new ScanScheduler(2);
+        scheduler.setPaused("first", true);
+        scheduler.setPaused("second", true);
+        AtomicInteger done = new AtomicInteger();
+
+        ScanScheduler.Scan scan = scheduler.register("first", () -> 2, endless(done));
+        scheduler.resumeAll();
+        Thread.sleep(100);
+        scan.close();
+
+        assertTrue(done.get() > 0);
+        assertFalse(scheduler.isPaused("second"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for merging the user's wordlists with the bundled one.
+ */
+public class UserWordlistsTest {
+
+    @Test
+    public void largeWordlistsAreSortedInChunksAndMergedOnce() throws Exception {
+        File wordlist = File.createTempFile("words", ".txt");
+        File merged = File.createTempFile("merged", ".fcd");
+        try {
+            try (Writer writer = new FileWriter(wordlist)) {
+                writer.write("# comment\n");
+                for (int i = 9; i >= 0; i--) {
+                    writer.write("path" + i + "\n");
+                }
+                writer.write("users\npath3\n");
+            }
+            WordlistDictionary bundled = WordlistDictionary.of(Arrays.asList("accounts", "users"));
+
+            // Three lines per chunk, so the file is sorted in four chunks
+            UserWordlists.merge(bundled, new File[]{wordlist, new File(wordlist.getPath() + ".missing")}, merged, 3);
+
+            WordlistDictionary dictionary = WordlistDictionary.open(merged);
+            List<String> entries = new ArrayList<>();
+            WordlistDictionary.Reader reader = dictionary.reader();
+            while (reader.next()) {
+                entries.add(reader.current());
+            }
+            assertEquals(Arrays.asList("accounts", "path0", "path1", "path2", "path3", "path4", "path5", "path6",
+                    "path7", "path8", "path9", "users"), entries);
+            File[] chunks = merged.getParentFile().listFiles((dir, name) -> name.startsWith(merged.getName() + ".chunk"));
+            assertEquals(0, chunks.length);
+        } finally {
+            wordlist.delete();
+            merged.delete();
+        }
+    }
+}
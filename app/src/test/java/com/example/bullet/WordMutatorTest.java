@@ -0,0 +1,87 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the lazily mutated wordlists discovery reads candidates from.
+ */
+public class WordMutatorTest {
+
+    private static List<String> readAll(WordSource.Reader reader) {
+        List<String> entries = new ArrayList<>();
+        while (reader.next()) {
+            entries.add(reader.current());
+        }
+        return entries;
+    }
+
+    private static String mutate(WordMutator.Mutation mutation, String word) {
+        byte[] out = new byte[2 * word.length() + 2];
+        int length = WordMutator.apply(mutation, word.getBytes(), word.length(), out);
+        return length < 0 ? null : new String(out, 0, length);
+    }
+
+    @Test
+    public void everyWordComesBeforeAnyVariantAndUnchangedVariantsAreSkipped() {
+        WordlistDictionary words = WordlistDictionary.of(Arrays.asList("userProfile", "users"));
+        WordMutator mutator = new WordMutator(words, EnumSet.of(WordMutator.Mutation.NONE,
+                WordMutator.Mutation.LOWER_CASE, WordMutator.Mutation.SNAKE_CASE, WordMutator.Mutation.SINGULAR));
+
+        assertEquals(8, mutator.size());
+        // "users" has no case variants, and the snake case of "userProfile" is only listed once
+        assertEquals(Arrays.asList("userProfile", "users", "userprofile", "user_profile", "user"),
+                readAll(mutator.reader()));
+    }
+
+    @Test
+    public void seekResumesAtTheSameCandidate() {
+        WordSource source = WordSource.concat(WordlistDictionary.of(Arrays.asList("notes", "tbl_note")),
+                WordlistDictionary.of(Arrays.asList("accounts", "box", "user-data")));
+        WordMutator mutator = new WordMutator(source, EnumSet.of(WordMutator.Mutation.NONE,
+                WordMutator.Mutation.UNDERSCORES, WordMutator.Mutation.PLURAL));
+        List<String> all = readAll(mutator.reader());
+        assertEquals(Arrays.asList("notes", "tbl_note", "accounts", "box", "user-data", "user_data", "tbl_notes",
+                "boxes", "user-datas"), all);
+
+        WordSource.Reader reader = mutator.reader();
+        List<Integer> indices = new ArrayList<>();
+        while (reader.next()) {
+            indices.add(reader.index());
+        }
+        for (int i = 0; i < all.size(); i++) {
+            WordSource.Reader resumed = mutator.reader();
+            resumed.seek(indices.get(i));
+            assertEquals(all.subList(i, all.size()), readAll(resumed));
+        }
+        WordSource.Reader end = mutator.reader();
+        end.seek(mutator.size());
+        assertFalse(end.next());
+    }
+
+    @Test
+    public void mutationsFollowNamingConventions() {
+        assertEquals("categories", mutate(WordMutator.Mutation.PLURAL, "category"));
+        assertEquals("KEYS", mutate(WordMutator.Mutation.PLURAL, "KEY"));
+        assertEquals("matches", mutate(WordMutator.Mutation.PLURAL, "match"));
+        assertNull(mutate(WordMutator.Mutation.PLURAL, "users"));
+        assertEquals("category", mutate(WordMutator.Mutation.SINGULAR, "categories"));
+        assertEquals("address", mutate(WordMutator.Mutation.SINGULAR, "addresses"));
+        assertNull(mutate(WordMutator.Mutation.SINGULAR, "access"));
+        assertEquals("userProfile", mutate(WordMutator.Mutation.CAMEL_CASE, "user_profile"));
+        assertEquals("sms_inbox_v2", mutate(WordMutator.Mutation.SNAKE_CASE, "smsInboxV2"));
+        assertEquals("userprofile", mutate(WordMutator.Mutation.JOINED, "user-profile"));
+        assertEquals("users/1", mutate(WordMutator.Mutation.ID_SEGMENT, "users"));
+
+        List<String> names = WordMutator.tableNames("com.example.notes", "com.example.notes.NoteProvider");
+        assertTrue(names.containsAll(Arrays.asList("notes", "note", "note_table", "tbl_note", "notes_db", "notes_note")));
+        assertFalse(names.contains("com"));
+        assertFalse(names.contains("provider"));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.bullet;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the front-coded wordlist dictionary.
+ */
+public class WordlistDictionaryTest {
+
+    private static WordlistDictionary dictionary(int blockSize, String... words) throws Exception {
+        return WordlistDictionary.wrap(ByteBuffer.wrap(WordlistDictionary.encode(Arrays.asList(words), blockSize)));
+    }
+
+    private static List<String> readAll(WordlistDictionary.Reader reader) {
+        List<String> entries = new ArrayList<>();
+        while (reader.next()) {
+            entries.add(reader.current());
+        }
+        return entries;
+    }
+
+    @Test
+    public void entriesAreTrimmedSortedAndDeduplicated() throws Exception {
+        WordlistDictionary dictionary = dictionary(2, "users", " user\u0001", "", "# comment", "accounts", "users",
+                "usersettings");
+
+        assertEquals(4, dictionary.size());
+        assertEquals(Arrays.asList("accounts", "user", "users", "usersettings"), readAll(dictionary.reader()));
+        assertEquals("usersettings".length(), dictionary.getMaxEntryLength());
+    }
+
+    @Test
+    public void seekContinuesFromAnyEntry() throws Exception {
+        String[] words = new String[100];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = String.format("path%03d", i);
+        }
+        WordlistDictionary dictionary = dictionary(16, words);
+
+        for (int target : new int[]{0, 1, 15, 16, 17, 63, 99}) {
+            WordlistDictionary.Reader reader = dictionary.reader();
+            reader.seek(target);
+            assertTrue(reader.next());
+            assertEquals(target, reader.index());
+            assertEquals(words[target], reader.current());
+        }
+
+        WordlistDictionary.Reader reader = dictionary.reader();
+        reader.seek(100);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void nonAsciiEntriesRoundTrip() throws Exception {
+        WordlistDictionary dictionary = dictionary(4, "caf\u00e9", "cafe", "\u00fcber");
+
+        assertEquals(Arrays.asList("cafe", "caf\u00e9", "\u00fcber"), readAll(dictionary.reader()));
+    }
+
+    @Test
+    public void emptyDictionaryHasNoEntries() throws Exception {
+        WordlistDictionary dictionary = dictionary(16);
+
+        assertEquals(0, dictionary.size());
+        assertFalse(dictionary.reader().next());
+    }
+
+    @Test
+    public void mergeKeepsEveryEntryOnceInOrder() throws Exception {
+        File file = File.createTempFile("merged", ".fcd");
+        try {
+            WordlistDictionary.merge(Arrays.asList(dictionary(2, "accounts", "users", "zones"),
+                    dictionary(16), dictionary(3, " users ", "caf\u00e9", "messages", "accounts")), file, 2);
+            WordlistDictionary merged = WordlistDictionary.open(file);
+
+            assertEquals(Arrays.asList("accounts", "caf\u00e9", "messages", "users", "zones"), readAll(merged.reader()));
+            WordlistDictionary.Reader reader = merged.reader();
+            reader.seek(3);
+            assertTrue(reader.next());
+            assertEquals("users", reader.current());
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void buildTimeDictionaryMatchesEncode() throws Exception {
+        // The frontCodeWordlist task's output and its input, added to the test resources by build.gradle.kts
+        byte[] built = readResource(WordlistDictionary.ASSET_NAME);
+        List<String> words = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(readResource("words.txt")), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                words.add(line);
+            }
+        }
+
+        assertArrayEquals(WordlistDictionary.encode(words, WordlistDictionary.DEFAULT_BLOCK_SIZE), built);
+        WordlistDictionary dictionary = WordlistDictionary.wrap(ByteBuffer.wrap(built));
+        assertEquals(readAll(WordlistDictionary.of(words).reader()), readAll(dictionary.reader()));
+    }
+
+    private static byte[] readResource(String name) throws Exception {
+        try (InputStream in = WordlistDictionaryTest.class.getClassLoader().getResourceAsStream(name)) {
+            assertNotNull("Missing test resource " + name, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void rejectsUnknownFormat() throws Exception {
+        WordlistDictionary.wrap(ByteBuffer.wrap("not a dictionary at all".getBytes()));
+    }
+}